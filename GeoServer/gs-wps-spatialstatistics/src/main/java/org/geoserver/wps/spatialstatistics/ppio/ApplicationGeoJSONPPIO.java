@@ -55,11 +55,9 @@ public abstract class ApplicationGeoJSONPPIO extends CDataPPIO {
         @SuppressWarnings("rawtypes")
         @Override
         public void encode(Object value, OutputStream os) throws IOException {
-            FeatureJSON json = new FeatureJSON(new GeometryJSON(DECIMALS));
-            // commented out due to GEOT-3209
-            // json.setEncodeFeatureCRS(true);
-            // json.setEncodeFeatureCollectionCRS(true);
-            json.writeFeatureCollection((FeatureCollection) value, os);
+            // written while iterating, the features are never held in memory
+            // CRS is not encoded due to GEOT-3209
+            new StreamingGeoJSONWriter(DECIMALS).write((FeatureCollection) value, os);
         }
 
         @Override
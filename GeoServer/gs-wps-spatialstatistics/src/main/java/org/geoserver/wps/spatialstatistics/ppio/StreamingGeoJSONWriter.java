@@ -0,0 +1,360 @@
+/* (c) 2014 Open Source Geospatial Foundation - all rights reserved
+ * (c) 2014 MangoSystem
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wps.spatialstatistics.ppio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.Feature;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Writes a feature collection as GeoJSON while iterating over its features, so a lazy collection is never materialized and the output
+ * starts with the first feature. <br>
+ * The output matches gt-geojson's FeatureJSON without CRS and bounds. Coordinates are formatted into a reusable buffer with at most the
+ * given number of decimals and 15 significant digits, attribute numbers are written with their full precision.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class StreamingGeoJSONWriter {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final long[] POW10 = new long[16];
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private final int decimals;
+
+    private final StringBuilder number = new StringBuilder(32);
+
+    private final SimpleDateFormat dateFormat;
+
+    private Writer writer;
+
+    public StreamingGeoJSONWriter(int decimals) {
+        this.decimals = Math.max(0, Math.min(15, decimals));
+
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        this.dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    /**
+     * Writes the features to the stream and flushes it, the stream is not closed.
+     */
+    @SuppressWarnings("rawtypes")
+    public void write(FeatureCollection features, OutputStream os) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(os, UTF8), BUFFER_SIZE);
+
+        writer.write("{\"type\":\"FeatureCollection\",\"features\":[");
+        FeatureIterator iter = features.features();
+        try {
+            boolean first = true;
+            while (iter.hasNext()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                writeFeature(iter.next());
+                first = false;
+            }
+        } finally {
+            iter.close();
+        }
+        writer.write("]}");
+
+        writer.flush();
+    }
+
+    private void writeFeature(Feature feature) throws IOException {
+        Property defaultGeometry = feature.getDefaultGeometryProperty();
+
+        writer.write("{\"type\":\"Feature\",\"geometry\":");
+        writeGeometry(defaultGeometry == null ? null : (Geometry) defaultGeometry.getValue());
+
+        writer.write(",\"properties\":{");
+        boolean first = true;
+        if (feature instanceof SimpleFeature) {
+            // attributes by index, without the property objects
+            SimpleFeature simpleFeature = (SimpleFeature) feature;
+            Object geometry = simpleFeature.getDefaultGeometry();
+            for (int index = 0; index < simpleFeature.getAttributeCount(); index++) {
+                Object value = simpleFeature.getAttribute(index);
+                if (value != null && value == geometry) {
+                    continue;
+                }
+
+                if (!first) {
+                    writer.write(',');
+                }
+                writeString(simpleFeature.getType().getDescriptor(index).getLocalName());
+                writer.write(':');
+                writeValue(value);
+                first = false;
+            }
+        } else {
+            for (Property property : feature.getProperties()) {
+                if (property == defaultGeometry) {
+                    continue;
+                }
+
+                if (!first) {
+                    writer.write(',');
+                }
+                writeString(property.getName().getLocalPart());
+                writer.write(':');
+                writeValue(property.getValue());
+                first = false;
+            }
+        }
+        writer.write('}');
+
+        writer.write(",\"id\":");
+        writeString(feature.getIdentifier() == null ? null : feature.getIdentifier().getID());
+        writer.write('}');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof Geometry) {
+            writeGeometry((Geometry) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            // attributes keep their full precision, only coordinates are capped
+            double number = ((Number) value).doubleValue();
+            writer.write(Double.isNaN(number) || Double.isInfinite(number) ? "null" : value
+                    .toString());
+        } else if (value instanceof Number) {
+            writer.write(value.toString());
+        } else if (value instanceof Boolean) {
+            writer.write(((Boolean) value).booleanValue() ? "true" : "false");
+        } else if (value instanceof Date) {
+            writeString(dateFormat.format((Date) value));
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    private void writeGeometry(Geometry geometry) throws IOException {
+        if (geometry == null) {
+            writer.write("null");
+            return;
+        }
+
+        if (geometry instanceof Point) {
+            writer.write("{\"type\":\"Point\",\"coordinates\":");
+            if (geometry.isEmpty()) {
+                writer.write("[]");
+            } else {
+                writePosition(((Point) geometry).getCoordinateSequence(), 0);
+            }
+        } else if (geometry instanceof LineString) {
+            writer.write("{\"type\":\"LineString\",\"coordinates\":");
+            writePositions(((LineString) geometry).getCoordinateSequence());
+        } else if (geometry instanceof Polygon) {
+            writer.write("{\"type\":\"Polygon\",\"coordinates\":");
+            writeRings((Polygon) geometry);
+        } else if (geometry instanceof MultiPoint) {
+            writer.write("{\"type\":\"MultiPoint\",\"coordinates\":[");
+            for (int index = 0; index < geometry.getNumGeometries(); index++) {
+                if (index > 0) {
+                    writer.write(',');
+                }
+                writePosition(((Point) geometry.getGeometryN(index)).getCoordinateSequence(), 0);
+            }
+            writer.write(']');
+        } else if (geometry instanceof MultiLineString) {
+            writer.write("{\"type\":\"MultiLineString\",\"coordinates\":[");
+            for (int index = 0; index < geometry.getNumGeometries(); index++) {
+                if (index > 0) {
+                    writer.write(',');
+                }
+                writePositions(((LineString) geometry.getGeometryN(index))
+                        .getCoordinateSequence());
+            }
+            writer.write(']');
+        } else if (geometry instanceof MultiPolygon) {
+            writer.write("{\"type\":\"MultiPolygon\",\"coordinates\":[");
+            for (int index = 0; index < geometry.getNumGeometries(); index++) {
+                if (index > 0) {
+                    writer.write(',');
+                }
+                writeRings((Polygon) geometry.getGeometryN(index));
+            }
+            writer.write(']');
+        } else if (geometry instanceof GeometryCollection) {
+            writer.write("{\"type\":\"GeometryCollection\",\"geometries\":[");
+            for (int index = 0; index < geometry.getNumGeometries(); index++) {
+                if (index > 0) {
+                    writer.write(',');
+                }
+                writeGeometry(geometry.getGeometryN(index));
+            }
+            writer.write(']');
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type: "
+                    + geometry.getGeometryType());
+        }
+        writer.write('}');
+    }
+
+    private void writeRings(Polygon polygon) throws IOException {
+        writer.write('[');
+        if (!polygon.isEmpty()) {
+            writePositions(polygon.getExteriorRing().getCoordinateSequence());
+            for (int index = 0; index < polygon.getNumInteriorRing(); index++) {
+                writer.write(',');
+                writePositions(polygon.getInteriorRingN(index).getCoordinateSequence());
+            }
+        }
+        writer.write(']');
+    }
+
+    private void writePositions(CoordinateSequence sequence) throws IOException {
+        writer.write('[');
+        for (int index = 0; index < sequence.size(); index++) {
+            if (index > 0) {
+                writer.write(',');
+            }
+            writePosition(sequence, index);
+        }
+        writer.write(']');
+    }
+
+    private void writePosition(CoordinateSequence sequence, int index) throws IOException {
+        writer.write('[');
+        writeNumber(sequence.getX(index));
+        writer.write(',');
+        writeNumber(sequence.getY(index));
+
+        if (sequence.getDimension() > 2) {
+            double z = sequence.getOrdinate(index, CoordinateSequence.Z);
+            if (!Double.isNaN(z)) {
+                writer.write(',');
+                writeNumber(z);
+            }
+        }
+        writer.write(']');
+    }
+
+    private void writeNumber(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writer.write("null");
+            return;
+        }
+
+        final double abs = Math.abs(value);
+        if (abs >= 1.0e15) {
+            writer.write(Double.toString(value));
+            return;
+        }
+
+        // at most 15 significant digits are exact
+        int intDigits = 0;
+        while (intDigits < 15 && abs >= POW10[intDigits]) {
+            intDigits++;
+        }
+        int digits = Math.max(0, Math.min(decimals, 15 - intDigits));
+
+        long scaled = Math.round(abs * POW10[digits]);
+        long intPart = scaled / POW10[digits];
+        long fraction = scaled % POW10[digits];
+
+        number.setLength(0);
+        if (value < 0 && scaled != 0) {
+            number.append('-');
+        }
+        number.append(intPart);
+
+        if (fraction != 0) {
+            // leading zeros of the fraction, without trailing zeros
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            number.append('.');
+            for (int i = digits - 1; i > 0 && fraction < POW10[i]; i--) {
+                number.append('0');
+            }
+            number.append(fraction);
+        }
+
+        writer.append(number);
+    }
+
+    private void writeString(String text) throws IOException {
+        if (text == null) {
+            writer.write("null");
+            return;
+        }
+
+        writer.write('"');
+        for (int index = 0; index < text.length(); index++) {
+            char ch = text.charAt(index);
+            switch (ch) {
+            case '"':
+                writer.write("\\\"");
+                break;
+            case '\\':
+                writer.write("\\\\");
+                break;
+            case '\b':
+                writer.write("\\b");
+                break;
+            case '\f':
+                writer.write("\\f");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            case '\r':
+                writer.write("\\r");
+                break;
+            case '\t':
+                writer.write("\\t");
+                break;
+            default:
+                if (ch < 0x20) {
+                    String hex = Integer.toHexString(ch);
+                    writer.write("\\u");
+                    for (int i = hex.length(); i < 4; i++) {
+                        writer.write('0');
+                    }
+                    writer.write(hex);
+                } else {
+                    writer.write(ch);
+                }
+            }
+        }
+        writer.write('"');
+    }
+}
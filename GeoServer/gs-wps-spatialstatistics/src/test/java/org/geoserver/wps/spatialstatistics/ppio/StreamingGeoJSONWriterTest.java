@@ -0,0 +1,123 @@
+/* (c) 2014 Open Source Geospatial Foundation - all rights reserved
+ * (c) 2014 MangoSystem
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wps.spatialstatistics.ppio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geojson.feature.FeatureJSON;
+import org.geotools.geojson.geom.GeometryJSON;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class StreamingGeoJSONWriterTest {
+
+    private WKTReader reader = new WKTReader();
+
+    private ListFeatureCollection features;
+
+    @Before
+    public void setup() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.add("geom", Geometry.class, "EPSG:4326");
+        tb.add("name", String.class);
+        tb.add("count", Integer.class);
+        tb.add("pvalue", Double.class);
+        tb.add("zscore", Float.class);
+        tb.add("valid", Boolean.class);
+        tb.setName("result");
+        SimpleFeatureType ft = tb.buildFeatureType();
+
+        features = new ListFeatureCollection(ft);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(ft);
+
+        fb.add(reader.read("POINT (127.1234567891 37.5)"));
+        fb.add("say \"hello\"\n");
+        fb.add(Integer.valueOf(12));
+        fb.add(Double.valueOf(3e-14));
+        fb.add(Float.valueOf(-2.5758f));
+        fb.add(Boolean.TRUE);
+        features.add(fb.buildFeature("result.1"));
+
+        fb.add(reader.read("POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 4 2, 2 2))"));
+        fb.add(null);
+        fb.add(Integer.valueOf(-3));
+        fb.add(Double.valueOf(0.123456789012345678));
+        fb.add(Float.valueOf(1.0e-8f));
+        fb.add(Boolean.FALSE);
+        features.add(fb.buildFeature("result.2"));
+
+        fb.add(reader.read("MULTILINESTRING ((0 0, 1 1), (2 2, 3 3.25))"));
+        fb.add("");
+        fb.add(null);
+        fb.add(Double.valueOf(12345678.5));
+        fb.add(null);
+        fb.add(null);
+        features.add(fb.buildFeature("result.3"));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new StreamingGeoJSONWriter(ApplicationGeoJSONPPIO.DECIMALS).write(features, os);
+
+        FeatureJSON json = new FeatureJSON(new GeometryJSON(ApplicationGeoJSONPPIO.DECIMALS));
+        FeatureCollection<?, ?> decoded = json.readFeatureCollection(new ByteArrayInputStream(os
+                .toByteArray()));
+        assertEquals(features.size(), decoded.size());
+
+        Map<String, SimpleFeature> read = new HashMap<String, SimpleFeature>();
+        SimpleFeatureIterator iter = ((SimpleFeatureCollection) decoded).features();
+        try {
+            while (iter.hasNext()) {
+                SimpleFeature feature = iter.next();
+                read.put(feature.getID(), feature);
+            }
+        } finally {
+            iter.close();
+        }
+
+        for (SimpleFeature expected : features) {
+            SimpleFeature actual = read.get(expected.getID());
+
+            Geometry geometry = (Geometry) expected.getDefaultGeometry();
+            assertTrue(geometry.equalsExact((Geometry) actual.getDefaultGeometry(), 1e-10));
+
+            assertEquals(expected.getAttribute("name"), actual.getAttribute("name"));
+            assertEquals(expected.getAttribute("valid"), actual.getAttribute("valid"));
+            assertNumber(expected.getAttribute("count"), actual.getAttribute("count"));
+            assertNumber(expected.getAttribute("pvalue"), actual.getAttribute("pvalue"));
+            assertNumber(expected.getAttribute("zscore"), actual.getAttribute("zscore"));
+        }
+    }
+
+    private void assertNumber(Object expected, Object actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else if (expected instanceof Float) {
+            // floats are written with their shortest representation
+            assertEquals(((Float) expected).floatValue(), ((Number) actual).floatValue(), 0f);
+        } else {
+            assertEquals(((Number) expected).doubleValue(), ((Number) actual).doubleValue(), 0d);
+        }
+    }
+}
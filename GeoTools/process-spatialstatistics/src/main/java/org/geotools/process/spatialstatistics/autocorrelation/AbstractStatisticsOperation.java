@@ -19,6 +19,7 @@ package org.geotools.process.spatialstatistics.autocorrelation;
 import java.io.File;
 import java.util.logging.Logger;
 
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine.LocalStatistic;
 import org.geotools.process.spatialstatistics.core.DistanceFactory;
 import org.geotools.process.spatialstatistics.core.WeightMatrixBuilder;
 import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
@@ -53,6 +54,8 @@ public abstract class AbstractStatisticsOperation extends GeneralOperation {
 
     private File spatialWeightsFile = null;
 
+    private int permutations = 0;
+
     protected final DistanceFactory factory = DistanceFactory.newInstance();
 
     public WeightMatrixBuilder getSwMatrix() {
@@ -114,4 +117,26 @@ public abstract class AbstractStatisticsOperation extends GeneralOperation {
     public void setSelfNeighbors(boolean selfNeighbors) {
         this.selfNeighbors = selfNeighbors;
     }
+
+    public int getPermutations() {
+        return permutations;
+    }
+
+    /**
+     * Number of conditional permutations for the pseudo p-values of the local indicators, 0 uses the analytical p-values.
+     */
+    public void setPermutations(int permutations) {
+        this.permutations = permutations;
+    }
+
+    protected LocalPermutationEngine runPermutationTest(LocalStatistic statistic) {
+        if (permutations <= 0) {
+            return null;
+        }
+
+        LocalPermutationEngine permutation = new LocalPermutationEngine(swMatrix);
+        permutation.setPermutations(permutations);
+        permutation.run(statistic);
+        return permutation;
+    }
 }
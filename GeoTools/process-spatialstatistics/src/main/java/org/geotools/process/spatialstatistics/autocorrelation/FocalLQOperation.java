@@ -84,6 +84,7 @@ public class FocalLQOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.buildWeightMatrix(inputFeatures, xField, yField);
 
         int featureCount = swMatrix.getEvents().size();
@@ -98,6 +99,8 @@ public class FocalLQOperation extends AbstractStatisticsOperation {
         final double dXY = swMatrix.sumX / swMatrix.sumY;
 
         // Calculate LQ for each feature i.
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
         for (int i = 0; i < featureCount; i++) {
             SpatialEvent source = swMatrix.getEvents().get(i);
 
@@ -105,14 +108,16 @@ public class FocalLQOperation extends AbstractStatisticsOperation {
             double sumX = 0.0;
             double sumY = 0.0;
 
-            // Look for local neighbors
-            for (int j = 0; j < featureCount; j++) {
-                SpatialEvent target = swMatrix.getEvents().get(j);
-                double wij = swMatrix.getWeight(source, target);
-                if (wij == 0) {
-                    continue;
-                }
+            // The focal feature belongs to its own neighborhood if its self weight is not zero
+            if (swMatrix.getWeight(source, source) != 0) {
+                sumX += source.xVal;
+                sumY += source.yVal;
+            }
 
+            // Look for local neighbors
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
                 sumX += target.xVal;
                 sumY += target.yVal;
             }
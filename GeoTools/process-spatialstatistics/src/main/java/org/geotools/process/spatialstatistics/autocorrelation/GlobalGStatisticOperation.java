@@ -57,6 +57,7 @@ public class GlobalGStatisticOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -68,21 +69,27 @@ public class GlobalGStatisticOperation extends AbstractStatisticsOperation {
 
         double n = swMatrix.getEvents().size();
 
-        for (SpatialEvent source : swMatrix.getEvents()) {
+        // sum of xi * xj over all pairs (i != j unless self neighbors)
+        tpSum = Math.pow(swMatrix.sumX, 2.0);
+        if (!isSelfNeighbors()) {
+            tpSum -= swMatrix.sumX2;
+        }
+
+        int featureCount = swMatrix.getEvents().size();
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
             double jwijSum = 0.0;
             double jwjiSum = 0.0;
 
-            for (SpatialEvent target : swMatrix.getEvents()) {
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
-
-                tpSum += source.xVal * target.xVal;
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                int j = neighbors[k];
+                SpatialEvent target = swMatrix.getEvents().get(j);
 
-                double wij = swMatrix.getWeight(source, target);
-                double wji = wij;
-                wij = swMatrix.standardizeWeight(source, wij);
-                wji = swMatrix.standardizeWeight(target, wji);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
+                double wji = swMatrix.standardizeWeight(j, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -51,6 +51,7 @@ public class GlobalGearysCOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -64,7 +65,11 @@ public class GlobalGearysCOperation extends AbstractStatisticsOperation {
         double n = swMatrix.getEvents().size();
         double meanX = swMatrix.sumX / n;
 
-        for (SpatialEvent source : swMatrix.getEvents()) {
+        int featureCount = swMatrix.getEvents().size();
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
             double jwijSum = 0.0;
             double jwjiSum = 0.0;
 
@@ -72,15 +77,13 @@ public class GlobalGearysCOperation extends AbstractStatisticsOperation {
             m2 += Math.pow(zi, 2.0);
             m4 += Math.pow(zi, 4.0);
 
-            for (SpatialEvent target : swMatrix.getEvents()) {
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                int j = neighbors[k];
+                SpatialEvent target = swMatrix.getEvents().get(j);
 
-                double wij = swMatrix.getWeight(source, target);
-                double wji = wij;
-                wij = swMatrix.standardizeWeight(source, wij);
-                wji = swMatrix.standardizeWeight(target, wji);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
+                double wji = swMatrix.standardizeWeight(j, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -50,6 +50,7 @@ public class GlobalLeesLOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, xField, yField);
 
@@ -63,7 +64,11 @@ public class GlobalLeesLOperation extends AbstractStatisticsOperation {
         double meanX = swMatrix.sumX / n;
         double meanY = swMatrix.sumY / n;
 
-        for (SpatialEvent source : swMatrix.getEvents()) {
+        int featureCount = swMatrix.getEvents().size();
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
             double jwijSum = 0.0;
             double zxjWSum = 0.0;
             double zyjWSum = 0.0;
@@ -73,13 +78,11 @@ public class GlobalLeesLOperation extends AbstractStatisticsOperation {
             zxiSum2 += Math.pow(zxi, 2.0);
             zyiSum2 += Math.pow(zyi, 2.0);
 
-            for (SpatialEvent target : swMatrix.getEvents()) {
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -50,6 +50,7 @@ public class GlobalLeesSOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -61,20 +62,22 @@ public class GlobalLeesSOperation extends AbstractStatisticsOperation {
         double n = swMatrix.getEvents().size();
         double meanX = swMatrix.sumX / n;
 
-        for (SpatialEvent source : swMatrix.getEvents()) {
+        int featureCount = swMatrix.getEvents().size();
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
             double jwijSum = 0.0;
             double zjWSum = 0.0;
 
             double zi = source.xVal - meanX;
             ziSum2 += Math.pow(zi, 2.0);
 
-            for (SpatialEvent target : swMatrix.getEvents()) {
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine.LocalStatistic;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.FormatUtils;
 import org.geotools.process.spatialstatistics.core.SSUtils;
@@ -48,6 +49,8 @@ public class LocalGStatisticOperation extends AbstractStatisticsOperation {
 
     private double[] dcGiZScore;
 
+    private double[] dcPValue;
+
     private double[] dcMean;
 
     private double[] dcVar;
@@ -65,6 +68,7 @@ public class LocalGStatisticOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -89,24 +93,21 @@ public class LocalGStatisticOperation extends AbstractStatisticsOperation {
         dcVar = new double[featureCount];
 
         // calculate Gi* for each feature i.
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
         for (int i = 0; i < featureCount; i++) {
-            SpatialEvent source = swMatrix.getEvents().get(i);
-
             // initialize working variables.
             double localSum = 0.0;
             double wijSum = 0.0;
             double wij2Sum = 0.0;
 
             // look for i's local neighbors
-            for (int j = 0; j < featureCount; j++) {
-                SpatialEvent target = swMatrix.getEvents().get(j);
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
                 // calculate the weight (wij)
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -130,6 +131,24 @@ public class LocalGStatisticOperation extends AbstractStatisticsOperation {
             }
         }
 
+        // conditional permutation inference, Gi* is monotone in the weighted local sum
+        final double[] x = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            x[i] = swMatrix.getEvents().get(i).xVal;
+        }
+
+        LocalPermutationEngine permutation = runPermutationTest(new LocalStatistic() {
+            @Override
+            public double evaluate(int i, int[] neighbors, double[] weights, int count) {
+                double localSum = 0.0;
+                for (int k = 0; k < count; k++) {
+                    localSum += weights[k] * x[neighbors[k]];
+                }
+                return localSum;
+            }
+        });
+        dcPValue = permutation == null ? null : permutation.getPValues();
+
         return buildFeatureCollection(inputFeatures);
     }
 
@@ -166,6 +185,8 @@ public class LocalGStatisticOperation extends AbstractStatisticsOperation {
                 if (Double.isNaN(zScore) || Double.isInfinite(zScore)) {
                     zScore = 0.0;
                     pValue = 1.0;
+                } else if (dcPValue != null) {
+                    pValue = Double.isNaN(dcPValue[idx]) ? 1.0 : dcPValue[idx];
                 } else {
                     pValue = SSUtils.zProb(zScore, StatEnum.BOTH);
                 }
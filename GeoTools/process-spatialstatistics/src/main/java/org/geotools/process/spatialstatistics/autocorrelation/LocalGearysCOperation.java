@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine.LocalStatistic;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.FormatUtils;
 import org.geotools.process.spatialstatistics.core.SSUtils;
@@ -52,6 +53,8 @@ public class LocalGearysCOperation extends AbstractStatisticsOperation {
 
     private double[] dcZScore;
 
+    private double[] dcPValue;
+
     public LocalGearysCOperation() {
         // Default Setting
         this.setDistanceType(DistanceMethod.Euclidean);
@@ -73,6 +76,7 @@ public class LocalGearysCOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -96,6 +100,9 @@ public class LocalGearysCOperation extends AbstractStatisticsOperation {
         // calculate local index for each feature i.
         dcIndex = new double[featureCount];
         dcZScore = new double[featureCount];
+
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
         for (int i = 0; i < featureCount; i++) {
             SpatialEvent source = swMatrix.getEvents().get(i);
 
@@ -105,15 +112,12 @@ public class LocalGearysCOperation extends AbstractStatisticsOperation {
             double wij2Sum = 0.0;
 
             // look for i's local neighbors
-            for (int j = 0; j < featureCount; j++) {
-                SpatialEvent target = swMatrix.getEvents().get(j);
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
                 // calculate the weight (wij)
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -143,6 +147,26 @@ public class LocalGearysCOperation extends AbstractStatisticsOperation {
             }
         }
 
+        // conditional permutation inference
+        final double[] x = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            x[i] = swMatrix.getEvents().get(i).xVal;
+        }
+
+        final double variance = m2;
+        LocalPermutationEngine permutation = runPermutationTest(new LocalStatistic() {
+            @Override
+            public double evaluate(int i, int[] neighbors, double[] weights, int count) {
+                double localDevSum = 0.0;
+                for (int k = 0; k < count; k++) {
+                    double ijxd = x[i] - x[neighbors[k]];
+                    localDevSum += weights[k] * ijxd * ijxd;
+                }
+                return localDevSum / variance;
+            }
+        });
+        dcPValue = permutation == null ? null : permutation.getPValues();
+
         return buildFeatureCollection(inputFeatures);
     }
 
@@ -180,6 +204,8 @@ public class LocalGearysCOperation extends AbstractStatisticsOperation {
                     localIndex = 0.0;
                     zScore = 0.0;
                     pValue = 1.0;
+                } else if (dcPValue != null) {
+                    pValue = Double.isNaN(dcPValue[idx]) ? 1.0 : dcPValue[idx];
                 } else {
                     pValue = SSUtils.zProb(zScore, StatEnum.BOTH);
                 }
@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine.LocalStatistic;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.FormatUtils;
 import org.geotools.process.spatialstatistics.core.SSUtils;
@@ -50,6 +51,8 @@ public class LocalLeesLOperation extends AbstractStatisticsOperation {
 
     private double[] dcZScore;
 
+    private double[] dcPValue;
+
     public LocalLeesLOperation() {
         // Default Setting
         this.setDistanceType(DistanceMethod.Euclidean);
@@ -71,6 +74,7 @@ public class LocalLeesLOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, xField, yField);
 
@@ -84,16 +88,11 @@ public class LocalLeesLOperation extends AbstractStatisticsOperation {
         double wij2Sum = 0.0;
 
         // calculate deviation from the mean sums.
-        for (SpatialEvent source : swMatrix.getEvents()) {
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
             mx2 += Math.pow(source.xVal - meanX, 2.0);
             my2 += Math.pow(source.yVal - meanY, 2.0);
-            double jwijSum = 0.0;
-            for (SpatialEvent target : swMatrix.getEvents()) {
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
-                jwijSum += swMatrix.getWeight(source, target);
-            }
+            double jwijSum = swMatrix.getRowSum(i);
             wij2Sum += Math.pow(jwijSum, 2);
         }
 
@@ -103,23 +102,21 @@ public class LocalLeesLOperation extends AbstractStatisticsOperation {
         // calculate local index for each feature i.
         dcIndex = new double[featureCount];
         dcZScore = new double[featureCount];
-        for (int i = 0; i < featureCount; i++) {
-            SpatialEvent source = swMatrix.getEvents().get(i);
 
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
+        for (int i = 0; i < featureCount; i++) {
             // initialize working variables.
             double zxjWSum = 0.0;
             double zyjWSum = 0.0;
 
             // look for i's local neighbors
-            for (int j = 0; j < featureCount; j++) {
-                SpatialEvent target = swMatrix.getEvents().get(j);
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
                 // calculate the weight (dWij)
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -145,6 +142,36 @@ public class LocalLeesLOperation extends AbstractStatisticsOperation {
             }
         }
 
+        // conditional permutation inference, (x, y) pairs are permuted together
+        final double[] zx = new double[featureCount];
+        final double[] zy = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
+            zx[i] = source.xVal - meanX;
+            zy[i] = source.yVal - meanY;
+        }
+
+        final double factor = (Math.pow(n, 2) / wij2Sum) / (mx2sqr * my2sqr);
+        LocalPermutationEngine permutation = runPermutationTest(new LocalStatistic() {
+            @Override
+            public double evaluate(int i, int[] neighbors, double[] weights, int count) {
+                double zxjWSum = 0.0;
+                double zyjWSum = 0.0;
+                for (int k = 0; k < count; k++) {
+                    zxjWSum += weights[k] * zx[neighbors[k]];
+                    zyjWSum += weights[k] * zy[neighbors[k]];
+                }
+                return factor * zxjWSum * zyjWSum;
+            }
+        });
+        if (permutation == null) {
+            dcPValue = null;
+        } else {
+            // no analytical variance yet: use the permutation z-scores
+            dcPValue = permutation.getPValues();
+            dcZScore = permutation.getZScores();
+        }
+
         return buildFeatureCollection(inputFeatures);
     }
 
@@ -182,6 +209,8 @@ public class LocalLeesLOperation extends AbstractStatisticsOperation {
                     localIndex = 0.0;
                     zScore = 0.0;
                     pValue = 1.0;
+                } else if (dcPValue != null) {
+                    pValue = Double.isNaN(dcPValue[idx]) ? 1.0 : dcPValue[idx];
                 } else {
                     pValue = SSUtils.zProb(zScore, StatEnum.BOTH);
                 }
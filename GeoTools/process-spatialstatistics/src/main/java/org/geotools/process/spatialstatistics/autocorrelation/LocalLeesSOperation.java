@@ -71,6 +71,7 @@ public class LocalLeesSOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -82,37 +83,30 @@ public class LocalLeesSOperation extends AbstractStatisticsOperation {
         double wij2Sum = 0.0;
 
         // calculate deviation from the mean sums.
-        for (SpatialEvent source : swMatrix.getEvents()) {
+        for (int i = 0; i < featureCount; i++) {
+            SpatialEvent source = swMatrix.getEvents().get(i);
             m2 += Math.pow(source.xVal - meanX, 2.0);
-            double jwijSum = 0.0;
-            for (SpatialEvent target : swMatrix.getEvents()) {
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
-                jwijSum += swMatrix.getWeight(source, target);
-            }
+            double jwijSum = swMatrix.getRowSum(i);
             wij2Sum += Math.pow(jwijSum, 2);
         }
 
         // calculate local index for each feature i.
         dcIndex = new double[featureCount];
         dcZScore = new double[featureCount];
-        for (int i = 0; i < featureCount; i++) {
-            SpatialEvent source = swMatrix.getEvents().get(i);
 
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
+        for (int i = 0; i < featureCount; i++) {
             // initialize working variables.
             double zxjWSum = 0.0;
 
             // look for i's local neighbors
-            for (int j = 0; j < featureCount; j++) {
-                SpatialEvent target = swMatrix.getEvents().get(j);
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
                 // calculate the weight (dWij)
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
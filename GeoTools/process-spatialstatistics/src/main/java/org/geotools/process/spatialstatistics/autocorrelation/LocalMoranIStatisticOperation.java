@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine.LocalStatistic;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.FormatUtils;
 import org.geotools.process.spatialstatistics.core.SSUtils;
@@ -51,6 +52,8 @@ public class LocalMoranIStatisticOperation extends AbstractStatisticsOperation {
 
     private double[] dcZScore;
 
+    private double[] dcPValue;
+
     private String[] moranBins;
 
     public LocalMoranIStatisticOperation() {
@@ -78,6 +81,7 @@ public class LocalMoranIStatisticOperation extends AbstractStatisticsOperation {
         swMatrix = new WeightMatrixBuilder(getSpatialConceptType(), getStandardizationType());
         swMatrix.setDistanceMethod(getDistanceType());
         swMatrix.setDistanceBandWidth(getDistanceBand());
+        swMatrix.setSpatialWeightsFile(getSpatialWeightsFile());
         swMatrix.setSelfNeighbors(isSelfNeighbors());
         swMatrix.buildWeightMatrix(inputFeatures, inputField);
 
@@ -102,6 +106,9 @@ public class LocalMoranIStatisticOperation extends AbstractStatisticsOperation {
         dcIndex = new double[featureCount];
         dcZScore = new double[featureCount];
         moranBins = new String[featureCount];
+
+        int[] neighbors = new int[swMatrix.getMaxNeighbors()];
+        double[] weights = new double[neighbors.length];
         for (int i = 0; i < featureCount; i++) {
             SpatialEvent source = swMatrix.getEvents().get(i);
 
@@ -113,15 +120,12 @@ public class LocalMoranIStatisticOperation extends AbstractStatisticsOperation {
             int numNeighbors = 0;
 
             // look for i's local neighbors
-            for (int j = 0; j < featureCount; j++) {
-                SpatialEvent target = swMatrix.getEvents().get(j);
-                if (!isSelfNeighbors() && source.id == target.id) {
-                    continue;
-                }
+            int count = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < count; k++) {
+                SpatialEvent target = swMatrix.getEvents().get(neighbors[k]);
 
                 // calculate the weight (wij)
-                double wij = swMatrix.getWeight(source, target);
-                wij = swMatrix.standardizeWeight(source, wij);
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
                 if (wij == 0) {
                     continue;
                 }
@@ -162,6 +166,25 @@ public class LocalMoranIStatisticOperation extends AbstractStatisticsOperation {
             }
         }
 
+        // conditional permutation inference
+        final double[] zx = new double[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            zx[i] = swMatrix.getEvents().get(i).xVal - meanX;
+        }
+
+        final double variance = m2;
+        LocalPermutationEngine permutation = runPermutationTest(new LocalStatistic() {
+            @Override
+            public double evaluate(int i, int[] neighbors, double[] weights, int count) {
+                double zxjWSum = 0.0;
+                for (int k = 0; k < count; k++) {
+                    zxjWSum += weights[k] * zx[neighbors[k]];
+                }
+                return (zx[i] / variance) * zxjWSum;
+            }
+        });
+        dcPValue = permutation == null ? null : permutation.getPValues();
+
         return buildFeatureCollection(inputFeatures);
     }
 
@@ -204,6 +227,8 @@ public class LocalMoranIStatisticOperation extends AbstractStatisticsOperation {
                     zScore = 0.0;
                     pValue = 1.0;
                     coType = "";
+                } else if (dcPValue != null) {
+                    pValue = Double.isNaN(dcPValue[idx]) ? 1.0 : dcPValue[idx];
                 } else {
                     pValue = SSUtils.zProb(zScore, StatEnum.BOTH);
                 }
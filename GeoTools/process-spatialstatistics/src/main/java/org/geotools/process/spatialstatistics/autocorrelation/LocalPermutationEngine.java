@@ -0,0 +1,247 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.autocorrelation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
+import org.geotools.process.spatialstatistics.core.WeightMatrixBuilder;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Conditional permutation inference for local indicators of spatial association. <br>
+ * For each feature i the value of i is held fixed and its neighbors are replaced by a random sample (without replacement) of the other features.
+ * The pseudo p-value is (M + 1) / (R + 1), where R is the number of permutations and M the number of permuted statistics as extreme as the observed
+ * one (folded). <br>
+ * Features are processed in chunks by one worker per core. Each chunk has its own random stream split from the seed, so the results do not depend
+ * on the number of threads.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class LocalPermutationEngine {
+    protected static final Logger LOGGER = Logging.getLogger(LocalPermutationEngine.class);
+
+    static final int CHUNK_SIZE = 64;
+
+    /**
+     * Local statistic of feature i, evaluated with the given neighbor indexes and standardized weights.
+     */
+    public interface LocalStatistic {
+        double evaluate(int i, int[] neighbors, double[] weights, int count);
+    }
+
+    private final WeightMatrixBuilder swMatrix;
+
+    private int permutations = 999;
+
+    private long seed = 12345L;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private double[] pValues;
+
+    private double[] zScores;
+
+    public LocalPermutationEngine(WeightMatrixBuilder swMatrix) {
+        this.swMatrix = swMatrix;
+    }
+
+    public int getPermutations() {
+        return permutations;
+    }
+
+    public void setPermutations(int permutations) {
+        this.permutations = permutations;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Pseudo p-values of the last run.
+     */
+    public double[] getPValues() {
+        return pValues;
+    }
+
+    /**
+     * Z-scores of the observed statistics against the mean and standard deviation of the permuted statistics.
+     */
+    public double[] getZScores() {
+        return zScores;
+    }
+
+    public void run(final LocalStatistic statistic) {
+        final int size = swMatrix.getEvents().size();
+        pValues = new double[size];
+        zScores = new double[size];
+        if (size < 2 || permutations <= 0) {
+            Arrays.fill(pValues, Double.NaN);
+            Arrays.fill(zScores, Double.NaN);
+            return;
+        }
+
+        // row sums are computed lazily, compute them before the workers share the matrix
+        swMatrix.getRowSum(0);
+
+        // one random stream per chunk
+        final int chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final SplittableRandom[] streams = new SplittableRandom[chunkCount];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int c = 0; c < chunkCount; c++) {
+            streams[c] = root.split();
+        }
+
+        final AtomicInteger nextChunk = new AtomicInteger(0);
+        final int workers = Math.max(1, Math.min(threadCount, chunkCount));
+
+        List<PartialPermutation> tasks = new ArrayList<PartialPermutation>();
+        for (int t = 0; t < workers; t++) {
+            tasks.add(new PartialPermutation(statistic, streams, nextChunk));
+        }
+        ParallelExecutor.execute(tasks);
+    }
+
+    final class PartialPermutation implements Runnable {
+        private final LocalStatistic statistic;
+
+        private final SplittableRandom[] streams;
+
+        private final AtomicInteger nextChunk;
+
+        public PartialPermutation(LocalStatistic statistic, SplittableRandom[] streams,
+                AtomicInteger nextChunk) {
+            this.statistic = statistic;
+            this.streams = streams;
+            this.nextChunk = nextChunk;
+        }
+
+        public void run() {
+            final int size = swMatrix.getEvents().size();
+            final int maxNeighbors = swMatrix.getMaxNeighbors();
+
+            int[] neighbors = new int[maxNeighbors];
+            double[] weights = new double[maxNeighbors];
+            int[] sample = new int[maxNeighbors];
+
+            // indexes of the other features, shuffled in place and restored after each draw
+            int[] pool = new int[size - 1];
+            for (int k = 0; k < pool.length; k++) {
+                pool[k] = k;
+            }
+            int[] swaps = new int[maxNeighbors];
+
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < streams.length) {
+                SplittableRandom random = streams[chunk];
+                int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+                for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                    permute(i, random, neighbors, weights, sample, pool, swaps);
+                }
+            }
+        }
+
+        private void permute(int i, SplittableRandom random, int[] neighbors, double[] weights,
+                int[] sample, int[] pool, int[] swaps) {
+            // neighbors and standardized weights are fetched once per feature
+            int count = 0;
+            int length = swMatrix.getNeighbors(i, neighbors, weights);
+            for (int k = 0; k < length; k++) {
+                double wij = swMatrix.standardizeWeight(i, weights[k]);
+                if (wij == 0) {
+                    continue;
+                }
+                neighbors[count] = neighbors[k];
+                weights[count] = wij;
+                count++;
+            }
+
+            double observed = statistic.evaluate(i, neighbors, weights, count);
+            if (Double.isNaN(observed) || Double.isInfinite(observed)) {
+                pValues[i] = Double.NaN;
+                zScores[i] = Double.NaN;
+                return;
+            }
+
+            int larger = 0;
+            double sum = 0.0;
+            double sum2 = 0.0;
+            for (int r = 0; r < permutations; r++) {
+                // partial Fisher-Yates over the other features, i itself stays in place
+                int draws = 0;
+                for (int k = 0; k < count; k++) {
+                    if (neighbors[k] == i) {
+                        sample[k] = i;
+                        continue;
+                    }
+
+                    int pick = draws + random.nextInt(pool.length - draws);
+                    int value = pool[pick];
+                    pool[pick] = pool[draws];
+                    pool[draws] = value;
+                    swaps[draws++] = pick;
+
+                    sample[k] = value < i ? value : value + 1;
+                }
+
+                double permuted = statistic.evaluate(i, sample, weights, count);
+                if (permuted >= observed) {
+                    larger++;
+                }
+                sum += permuted;
+                sum2 += permuted * permuted;
+
+                // undo the swaps so the pool is the identity again
+                for (int d = draws - 1; d >= 0; d--) {
+                    int pick = swaps[d];
+                    int value = pool[pick];
+                    pool[pick] = pool[d];
+                    pool[d] = value;
+                }
+            }
+
+            if (permutations - larger < larger) {
+                larger = permutations - larger;
+            }
+            pValues[i] = (larger + 1.0) / (permutations + 1.0);
+
+            double mean = sum / permutations;
+            double stdDev = Math.sqrt(Math.max(0.0, (sum2 / permutations) - (mean * mean)));
+            zScores[i] = stdDev == 0 ? Double.NaN : (observed - mean) / stdDev;
+        }
+    }
+}
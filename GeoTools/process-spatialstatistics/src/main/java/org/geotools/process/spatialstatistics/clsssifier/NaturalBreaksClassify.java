@@ -16,8 +16,6 @@
  */
 package org.geotools.process.spatialstatistics.clsssifier;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
 import org.geotools.coverage.grid.GridCoverage2D;
@@ -31,9 +29,15 @@ import org.geotools.util.logging.Logging;
 /**
  * The NaturalBreaks uses a statistical formula to determine natural clusters of attribute values. The formula is known as Jenk's method. This
  * attempts to minimize the variance within a class and to maximize the variance between classes.
+ * <p>
+ * The optimal breaks are found by Fisher's dynamic programming over the sorted distinct values weighted by their frequencies. Each class row of the
+ * table is filled by divide and conquer over the monotone split index, O(k * m * log m) for k classes and m distinct values. The backtrack table
+ * holds k * m indexes, so if there are more distinct values than the sample size, or than {@link #MAX_SAMPLE_SIZE} without a sample size, the
+ * breaks are calculated from evenly spaced quantiles of the values.
  * 
  * @author Minpa Lee, MangoSystem
- * 
+ * @reference Fisher, W. D. (1958) On grouping for maximum homogeneity.
+ * @reference Wang, H. and Song, M. (2011) Ckmeans.1d.dp: optimal k-means clustering in one dimension by dynamic programming.
  * @source $URL$
  */
 public class NaturalBreaksClassify extends DataClassify {
@@ -41,11 +45,30 @@ public class NaturalBreaksClassify extends DataClassify {
 
     static final String sMethodName = "Natural Breaks(Jenks)";
 
+    /** sample size for interactive use, e.g. styling */
+    public static final int DEFAULT_SAMPLE_SIZE = 10000;
+
+    /** upper bound of the distinct values, the backtrack table of 12 classes then takes about 5 MB */
+    public static final int MAX_SAMPLE_SIZE = 100000;
+
+    private int sampleSize = 0;
+
     @Override
     public String getMethodName() {
         return sMethodName;
     }
 
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @param sampleSize maximum number of distinct values used to calculate the breaks, 0 to use up to {@link #MAX_SAMPLE_SIZE} values
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
     @Override
     public Double[] classify(double[] arrayValues, int[] arrayFrequencies, int binCount) {
         initializeClassBreaks(binCount);
@@ -54,18 +77,7 @@ public class NaturalBreaksClassify extends DataClassify {
             return classBreaks;
         }
 
-        double sumOfVal = 0.0;
-        int count = 0;
-        List<ValuePair> valuePairs = new ArrayList<ValuePair>();
-        for (int index = 0; index < arrayFrequencies.length; index++) {
-            ValuePair vp = new ValuePair(arrayValues[index], arrayFrequencies[index]);
-            valuePairs.add(vp);
-
-            count += vp.frequency;
-            sumOfVal += vp.value * vp.frequency;
-        }
-
-        calculateJenksBreaks(valuePairs, sumOfVal / count, binCount);
+        calculateJenksBreaks(arrayValues, arrayFrequencies, binCount);
 
         return classBreaks;
     }
@@ -77,16 +89,7 @@ public class NaturalBreaksClassify extends DataClassify {
 
         DataHistogram histo = new HistogramFeatures();
         if (histo.calculateHistogram(inputFeatures, propertyName)) {
-            final double mean = histo.getMean();
-            final double[] arrayValues = histo.getArrayValues();
-            final int[] arrayFrequencies = histo.getArrayFrequencies();
-
-            List<ValuePair> valuePairs = new ArrayList<ValuePair>();
-            for (int index = 0; index < arrayFrequencies.length; index++) {
-                valuePairs.add(new ValuePair(arrayValues[index], arrayFrequencies[index]));
-            }
-
-            calculateJenksBreaks(valuePairs, mean, binCount);
+            calculateJenksBreaks(histo.getArrayValues(), histo.getArrayFrequencies(), binCount);
         }
 
         return classBreaks;
@@ -99,402 +102,168 @@ public class NaturalBreaksClassify extends DataClassify {
         final double noDataValue = RasterHelper.getNoDataValue(inputGc);
         DataHistogram histo = new HistogramGridCoverage();
         if (histo.calculateHistogram(inputGc, bandIndex, noDataValue)) {
-            final double mean = histo.getMean();
-            final double[] arrayValues = histo.getArrayValues();
-            final int[] arrayFrequencies = histo.getArrayFrequencies();
-
-            List<ValuePair> valuePairs = new ArrayList<ValuePair>();
-            for (int index = 0; index < arrayFrequencies.length; index++) {
-                valuePairs.add(new ValuePair(arrayValues[index], arrayFrequencies[index]));
-            }
-
-            calculateJenksBreaks(valuePairs, mean, binCount);
+            calculateJenksBreaks(histo.getArrayValues(), histo.getArrayFrequencies(), binCount);
         }
 
         return classBreaks;
     }
 
-    public boolean calculateJenksBreaks(List<ValuePair> valuePairs, double mean, int numOfClass) {
-        if (numOfClass >= valuePairs.size()) {
-            classBreaks = new Double[valuePairs.size()];
-            for (int index = 0; index < valuePairs.size(); index++) {
-                classBreaks[index] = valuePairs.get(index).value;
+    /**
+     * Calculates the class breaks of sorted distinct values and their frequencies.
+     */
+    public boolean calculateJenksBreaks(double[] values, int[] frequencies, int numOfClass) {
+        final int limit = sampleSize > 0 ? Math.min(sampleSize, MAX_SAMPLE_SIZE) : MAX_SAMPLE_SIZE;
+        if (values.length > limit) {
+            double[][] sample = sampleQuantiles(values, frequencies, limit);
+            values = sample[0];
+            frequencies = new int[sample[1].length];
+            for (int index = 0; index < frequencies.length; index++) {
+                frequencies[index] = (int) sample[1][index];
             }
-            return true;
         }
 
-        // 1. calculate mean & the sum of squared deviations from the array mean (SDAM).
-        double[] ldSDAM = new double[1];
-
-        double[] finalGVF = new double[1];
-        double[] newGVF = new double[1];
-
-        // Calculate the sum of squared deviations from the array mean (SDAM).
-        ldSDAM[0] = calculateSDAM(valuePairs, mean);
-
-        int[] initClass = new int[numOfClass - 1];
-        int numOfElement = valuePairs.size() / numOfClass;
-        for (int index = 0; index < initClass.length; index++) {
-            if (index == 0) {
-                initClass[index] = numOfElement - 1;
-            } else {
-                initClass[index] = initClass[index - 1] + numOfElement;
+        final int m = values.length;
+        if (numOfClass >= m) {
+            classBreaks = new Double[m];
+            for (int index = 0; index < m; index++) {
+                classBreaks[index] = Double.valueOf(values[index]);
             }
+            return true;
         }
 
-        DataClass[] ldaSDCM_Parciales = new DataClass[initClass.length + 1];
-        DataClass[] ldaSDCM_Validos = new DataClass[initClass.length + 1];
-
-        if (!calculateGVF(valuePairs, ldaSDCM_Parciales, initClass, ldSDAM[0], finalGVF, -1,
-                false)) {
-            calculateJenksBreaks(valuePairs, mean, valuePairs.size());
-            return false;
+        // weighted prefix sums of values shifted by the first value, for numerical stability
+        final double shift = values[0];
+        final double[] sumW = new double[m + 1];
+        final double[] sumX = new double[m + 1];
+        final double[] sumXX = new double[m + 1];
+        for (int index = 0; index < m; index++) {
+            final double w = frequencies[index];
+            final double x = values[index] - shift;
+            sumW[index + 1] = sumW[index] + w;
+            sumX[index + 1] = sumX[index] + w * x;
+            sumXX[index + 1] = sumXX[index] + w * x * x;
         }
 
-        ldaSDCM_Validos = getArray(ldaSDCM_Parciales);
-
-        boolean lbMoverADerecha;
-        boolean lbMoverAIzquierda;
-        boolean lbIntentarDesplazamiento;
-        int llIndiceRupturaOriginal;
-
-        final int maxIteration = 100;
-        double currentGVF = finalGVF[0];
-
-        int i;
-        for (int iter = 1; iter <= maxIteration; iter++) {
-            for (i = 0; i < initClass.length; i++) {
-                lbMoverADerecha = false;
-                lbMoverAIzquierda = false;
-                llIndiceRupturaOriginal = initClass[i];
-                ldaSDCM_Validos = getArray(ldaSDCM_Parciales);
-
-                lbIntentarDesplazamiento = false;
-
-                if (i == (initClass.length - 1)) {
-                    if ((initClass[i] + 1) < valuePairs.size()) {
-                        lbIntentarDesplazamiento = true;
-                    }
-                } else {
-                    if ((initClass[i] + 1) < initClass[i + 1]) {
-                        lbIntentarDesplazamiento = true;
-                    }
-                }
-
-                if (lbIntentarDesplazamiento) {
-                    initClass[i] = initClass[i] + 1;
-
-                    if (!calculateGVF(valuePairs, ldaSDCM_Parciales, initClass, ldSDAM[0], newGVF,
-                            i, false)) {
-                        return false;
-                    }
-
-                    if (newGVF[0] > finalGVF[0]) {
-                        lbMoverADerecha = true;
-                        ldaSDCM_Validos = getArray(ldaSDCM_Parciales);
-                    } else {
-                        initClass[i] = llIndiceRupturaOriginal;
-                        ldaSDCM_Parciales = getArray(ldaSDCM_Validos);
-                    }
-                }
-
-                lbIntentarDesplazamiento = false;
-
-                if (!lbMoverADerecha) {
-                    if (i == 0) {
-                        if ((initClass[i] - 1) >= 0) {
-                            lbIntentarDesplazamiento = true;
-                        }
-                    } else {
-                        if ((initClass[i] - 1) > initClass[i - 1]) {
-                            lbIntentarDesplazamiento = true;
-                        }
-                    }
-                }
-
-                if (lbIntentarDesplazamiento) {
-                    initClass[i] = initClass[i] - 1;
-
-                    if (!calculateGVF(valuePairs, ldaSDCM_Parciales, initClass, ldSDAM[0], newGVF,
-                            i, true)) {
-                        return false;
-                    }
-
-                    if (newGVF[0] > finalGVF[0]) {
-                        lbMoverAIzquierda = true;
-                        ldaSDCM_Validos = getArray(ldaSDCM_Parciales);
-                    } else {
-                        initClass[i] = llIndiceRupturaOriginal;
-                        ldaSDCM_Parciales = getArray(ldaSDCM_Validos);
-                    }
-                }
-
-                lbIntentarDesplazamiento = false;
-
-                if (lbMoverAIzquierda || lbMoverADerecha) {
-                    finalGVF[0] = newGVF[0];
-
-                    boolean exit = false;
-
-                    while (!exit) {
-                        llIndiceRupturaOriginal = initClass[i];
-
-                        if (lbMoverADerecha) {
-                            if (i == (initClass.length - 1)) {
-                                if ((initClass[i] + 1) >= valuePairs.size()) {
-                                    exit = true;
-                                }
-                            } else {
-                                if ((initClass[i] + 1) >= initClass[i + 1]) {
-                                    exit = true;
-                                }
-                            }
-
-                            initClass[i] = initClass[i] + 1;
-                        } else {
-                            if (i == 0) {
-                                if ((initClass[i] - 1) < 0) {
-                                    exit = true;
-                                }
-                            } else {
-                                if ((initClass[i] - 1) <= initClass[i - 1]) {
-                                    exit = true;
-                                }
-                            }
-                            initClass[i] = initClass[i] - 1;
-                        }
-
-                        if (!calculateGVF(valuePairs, ldaSDCM_Parciales, initClass, ldSDAM[0],
-                                newGVF, i, lbMoverAIzquierda)) {
-                            return false;
-                        }
-
-                        if (newGVF[0] < finalGVF[0]) {
-                            initClass[i] = llIndiceRupturaOriginal;
-                            ldaSDCM_Parciales = getArray(ldaSDCM_Validos);
-                            exit = true;
-                        } else {
-                            finalGVF[0] = newGVF[0];
-                            ldaSDCM_Validos = getArray(ldaSDCM_Parciales);
-                        }
-                    }
-                }
-            }
+        // cost[c][i]: minimum sum of squared deviations of values 0..i in c + 1 classes
+        // first[c][i]: index of the first value of the last class
+        double[] previous = new double[m];
+        double[] current = new double[m];
+        int[][] first = new int[numOfClass][m];
 
-            if (finalGVF[0] <= currentGVF) {
-                i = maxIteration + 1;
-            }
+        for (int i = 0; i < m; i++) {
+            previous[i] = withinSS(sumW, sumX, sumXX, 0, i);
+        }
 
-            currentGVF = finalGVF[0];
+        for (int c = 1; c < numOfClass; c++) {
+            fillRow(previous, current, first[c], sumW, sumX, sumXX, c, c, m - 1, c, m - 1);
+            double[] tmp = previous;
+            previous = current;
+            current = tmp;
         }
 
+        // backtrack the upper value of each class
         initializeClassBreaks(numOfClass);
-
-        classBreaks[0] = Double.valueOf(valuePairs.get(0).value);
-        classBreaks[classBreaks.length - 1] = Double
-                .valueOf(valuePairs.get(valuePairs.size() - 1).value);
-
-        double[] mdaValInit = new double[initClass.length];
-        for (int index = 0; index < mdaValInit.length; index++) {
-            if (initClass[index] == -1) {
-                initClass[index] = 1;
-            }
-
-            if (initClass[index] > valuePairs.size() - 1) {
-                initClass[index] = valuePairs.size() - 1;
-            }
-
-            classBreaks[index + 1] = Double.valueOf(valuePairs.get(initClass[index]).value);
-
-            if ((initClass[index] + 1) < valuePairs.size()) {
-                mdaValInit[index] = valuePairs.get(initClass[index] + 1).value;
-            } else {
-                mdaValInit[index] = valuePairs.get(initClass[index]).value;
-            }
+        classBreaks[0] = Double.valueOf(values[0]);
+        classBreaks[numOfClass] = Double.valueOf(values[m - 1]);
+
+        int last = m - 1;
+        for (int c = numOfClass - 1; c > 0; c--) {
+            int start = first[c][last];
+            classBreaks[c] = Double.valueOf(values[start - 1]);
+            last = start - 1;
         }
 
-        ldaSDCM_Validos = null;
-        ldaSDCM_Parciales = null;
-
         return true;
     }
 
-    private DataClass[] getArray(DataClass[] dataClass) {
-        DataClass[] aux = new DataClass[dataClass.length];
-
-        for (int i = 0; i < dataClass.length; i++) {
-            aux[i] = new DataClass();
-            aux[i].Mean = dataClass[i].Mean;
-            aux[i].Count = dataClass[i].Count;
-            aux[i].SDCM = dataClass[i].SDCM;
-            aux[i].SumOfSquaredTotal = dataClass[i].SumOfSquaredTotal;
-            aux[i].SumOfTotal = dataClass[i].SumOfTotal;
-        }
-
-        return aux;
-    }
-
-    private double calculateSDAM(List<ValuePair> valuePairs, double mean) {
-        double rdSDAM = 0;
-        for (ValuePair vp : valuePairs) {
-            rdSDAM += Math.pow((vp.value - mean), 2) * vp.frequency;
-        }
-        return rdSDAM;
-    }
-
-    private boolean calculateGVF(List<ValuePair> valuePairs, DataClass[] dataClass,
-            int[] rlaIndicesRuptura, double vdSDAM, double[] rdGVF, int vlIndiceRupturaActual,
-            boolean vbDesplazAIzquierda) {
-        int i;
-
-        if (vlIndiceRupturaActual == -1) {
-            for (i = 0; i < rlaIndicesRuptura.length; i++) {
-                if (i == 0) {
-                    if (!getDataClass(valuePairs, 0, rlaIndicesRuptura[i], dataClass, i)) {
-                        return false;
-                    }
-                } else {
-                    if (!getDataClass(valuePairs, rlaIndicesRuptura[i - 1] + 1,
-                            rlaIndicesRuptura[i], dataClass, i)) {
-                        return false;
-                    }
+    /**
+     * Fills cost[c][lo..hi] knowing that the optimal first index of the last class lies in [optLo, optHi].
+     */
+    private void fillRow(double[] previous, double[] current, int[] first, double[] sumW,
+            double[] sumX, double[] sumXX, int c, int lo, int hi, int optLo, int optHi) {
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+
+            double best = Double.MAX_VALUE;
+            int bestIndex = Math.max(c, optLo);
+            final int to = Math.min(mid, optHi);
+            for (int j = Math.max(c, optLo); j <= to; j++) {
+                double cost = previous[j - 1] + withinSS(sumW, sumX, sumXX, j, mid);
+                if (cost < best) {
+                    best = cost;
+                    bestIndex = j;
                 }
             }
-
-            if (!getDataClass(valuePairs, rlaIndicesRuptura[rlaIndicesRuptura.length - 1] + 1,
-                    valuePairs.size() - 1, dataClass, dataClass.length - 1)) {
-                return false;
-            }
-        } else {
-            i = vlIndiceRupturaActual;
-
-            if (vbDesplazAIzquierda) {
-                if (!recalculateDataClass(dataClass, i, valuePairs, rlaIndicesRuptura[i] + 1,
-                        vdSDAM, false)) {
-                    return false;
-                }
-
-                if (!recalculateDataClass(dataClass, i + 1, valuePairs, rlaIndicesRuptura[i] + 1,
-                        vdSDAM, true)) {
-                    return false;
-                }
+            current[mid] = best;
+            first[mid] = bestIndex;
+
+            // recurse into the smaller half, loop on the other
+            if (mid - lo < hi - mid) {
+                fillRow(previous, current, first, sumW, sumX, sumXX, c, lo, mid - 1, optLo,
+                        bestIndex);
+                lo = mid + 1;
+                optLo = bestIndex;
             } else {
-                if (!recalculateDataClass(dataClass, i, valuePairs, rlaIndicesRuptura[i], vdSDAM,
-                        true)) {
-                    return false;
-                }
-
-                if (!recalculateDataClass(dataClass, i + 1, valuePairs, rlaIndicesRuptura[i],
-                        vdSDAM, false)) {
-                    return false;
-                }
+                fillRow(previous, current, first, sumW, sumX, sumXX, c, mid + 1, hi, bestIndex,
+                        optHi);
+                hi = mid - 1;
+                optHi = bestIndex;
             }
         }
-
-        double ldSDCM_aux = 0;
-        for (i = 0; i < dataClass.length; i++) {
-            ldSDCM_aux += dataClass[i].SDCM;
-        }
-
-        rdGVF[0] = (vdSDAM - ldSDCM_aux) / vdSDAM;
-
-        return true;
     }
 
-    private boolean getDataClass(List<ValuePair> valuePairs, int limitInf, int limitSup,
-            DataClass[] dataClass, int clsIndex) {
-        if (limitInf < 0) {
-            return false;
-        }
-
-        if (limitSup > valuePairs.size()) {
-            return false;
+    /**
+     * Sum of squared deviations from the class mean of the values from..to.
+     */
+    private static double withinSS(double[] sumW, double[] sumX, double[] sumXX, int from, int to) {
+        final double w = sumW[to + 1] - sumW[from];
+        if (w <= 0) {
+            return 0;
         }
 
-        if (limitSup < limitInf) {
-            return false;
-        }
-
-        dataClass[clsIndex] = new DataClass();
+        final double x = sumX[to + 1] - sumX[from];
+        return Math.max(0, (sumXX[to + 1] - sumXX[from]) - (x * x) / w);
+    }
 
-        for (int i = limitInf; i < (limitSup + 1); i++) {
-            dataClass[clsIndex].Count += valuePairs.get(i).frequency;
-            dataClass[clsIndex].SumOfTotal += valuePairs.get(i).getMultiValue();
-            dataClass[clsIndex].SumOfSquaredTotal += (Math.pow(valuePairs.get(i).getMultiValue(),
-                    2));
+    /**
+     * Reduces the distinct values to at most sampleSize evenly spaced quantiles, each with the frequency of the values it represents.
+     */
+    static double[][] sampleQuantiles(double[] values, int[] frequencies, int sampleSize) {
+        long total = 0;
+        for (int frequency : frequencies) {
+            total += frequency;
         }
 
-        dataClass[clsIndex].Mean = dataClass[clsIndex].SumOfTotal / dataClass[clsIndex].Count;
-        dataClass[clsIndex].SDCM = (dataClass[clsIndex].SumOfSquaredTotal)
-                - (2 * dataClass[clsIndex].Mean * dataClass[clsIndex].SumOfTotal)
-                + (dataClass[clsIndex].Count * Math.pow(dataClass[clsIndex].Mean, 2));
+        double[] sampleValues = new double[sampleSize];
+        double[] sampleFrequencies = new double[sampleSize];
 
-        return true;
-    }
-
-    private boolean recalculateDataClass(DataClass[] dataClass, int idxCls,
-            List<ValuePair> valuePairs, int idxVp, double vdSDAM, boolean vbAnyadir) {
-        try {
-            if (idxVp > valuePairs.size() - 1) {
-                return true;
+        int count = 0;
+        int index = 0;
+        long cumulative = frequencies[0];
+        for (int k = 0; k < sampleSize; k++) {
+            // rank of the k-th quantile
+            long rank = (long) ((k + 0.5) * total / sampleSize);
+            while (cumulative <= rank && index < values.length - 1) {
+                index++;
+                cumulative += frequencies[index];
             }
 
-            final double multi = valuePairs.get(idxVp).getMultiValue();
-            final int frequency = valuePairs.get(idxVp).frequency;
-
-            if (vbAnyadir) {
-                dataClass[idxCls].SumOfTotal += multi;
-                dataClass[idxCls].SumOfSquaredTotal += Math.pow(multi, 2);
-                dataClass[idxCls].Count += frequency;
+            if (count > 0 && sampleValues[count - 1] == values[index]) {
+                sampleFrequencies[count - 1]++;
             } else {
-                dataClass[idxCls].SumOfTotal -= multi;
-                dataClass[idxCls].SumOfSquaredTotal -= Math.pow(multi, 2);
-                dataClass[idxCls].Count -= frequency;
-            }
-
-            if (dataClass[idxCls].Count <= 0) {
-                dataClass[idxCls].Count = 1;
+                sampleValues[count] = values[index];
+                sampleFrequencies[count] = 1;
+                count++;
             }
-
-            dataClass[idxCls].Mean = dataClass[idxCls].SumOfTotal / dataClass[idxCls].Count;
-
-            dataClass[idxCls].SDCM = (dataClass[idxCls].SumOfSquaredTotal)
-                    - (2 * dataClass[idxCls].Mean * dataClass[idxCls].SumOfTotal)
-                    + (dataClass[idxCls].Count * Math.pow(dataClass[idxCls].Mean, 2));
-        } catch (Exception e) {
-            return false;
-        }
-
-        return true;
-    }
-
-    final class DataClass {
-        public long Count;
-
-        public double Mean;
-
-        public double SumOfTotal;
-
-        public double SumOfSquaredTotal;
-
-        public double SDCM;
-    }
-
-    final class ValuePair {
-        public double value;
-
-        public int frequency;
-
-        public double getMultiValue() {
-            return value * frequency;
         }
 
-        public ValuePair() {
-        }
+        // keep the extremes so the first and last break are the data range
+        sampleValues[0] = values[0];
+        sampleValues[count - 1] = values[values.length - 1];
 
-        public ValuePair(double value, int frequency) {
-            this.value = value;
-            this.frequency = frequency;
-        }
+        double[][] sample = new double[2][count];
+        System.arraycopy(sampleValues, 0, sample[0], 0, count);
+        System.arraycopy(sampleFrequencies, 0, sample[1], 0, count);
+        return sample;
     }
 }
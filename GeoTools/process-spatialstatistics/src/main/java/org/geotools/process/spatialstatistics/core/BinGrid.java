@@ -0,0 +1,163 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.core;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Sparse grid of bin values: an open addressing hash map from the (row, column) key of a bin to the sum of its values, in primitive arrays.
+ * Only the bins which received a value use memory, whatever the size of the grid.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ *
+ */
+public class BinGrid {
+    protected static final Logger LOGGER = Logging.getLogger(BinGrid.class);
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+
+    private double[] values;
+
+    private int size = 0;
+
+    public BinGrid() {
+        this(64);
+    }
+
+    public BinGrid(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Key of a bin, ordered by row and then by column.
+     */
+    public static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    public static int row(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int col(long key) {
+        return (int) key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        // murmur3 finalizer
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        final int mask = keys.length - 1;
+        int slot = (int) h & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Adds the value to the bin.
+     */
+    public void add(int row, int col, double value) {
+        final long key = key(row, col);
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+        } else {
+            values[slot] += value;
+        }
+    }
+
+    /**
+     * Returns the value of the bin, null if the bin received no value.
+     */
+    public Double get(int row, int col) {
+        return get(key(row, col));
+    }
+
+    public Double get(long key) {
+        int slot = slot(key);
+        return keys[slot] == EMPTY ? null : Double.valueOf(values[slot]);
+    }
+
+    /**
+     * Returns the value of the bin, or the default value if the bin received no value.
+     */
+    public double get(long key, double defaultValue) {
+        int slot = slot(key);
+        return keys[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of all bins which received a value, ordered by row and then by column.
+     */
+    public long[] getSortedKeys() {
+        long[] sorted = new long[size];
+        int index = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                sorted[index++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -16,9 +16,7 @@
  */
 package org.geotools.process.spatialstatistics.core;
 
-import java.util.Iterator;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 import javax.media.jai.PlanarImage;
@@ -26,6 +24,7 @@ import javax.media.jai.iterator.RectIter;
 import javax.media.jai.iterator.RectIterFactory;
 
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.process.ProcessException;
 import org.geotools.util.logging.Logging;
 
 /**
@@ -62,26 +61,21 @@ public class HistogramGridCoverage extends DataHistogram {
             throw new ArrayIndexOutOfBoundsException("Process failed during execution");
         }
 
-        SortedMap<Double, Integer> valueCountsMap = new TreeMap<Double, Integer>();
-
-        // 1. Iteration
+        // 1. Iteration: count the distinct values, the memory depends on their number only
         PlanarImage inputImage = (PlanarImage) coverage.getRenderedImage();
         RectIter readIter = RectIterFactory.create(inputImage, inputImage.getBounds());
 
+        ValueCounts valueCounts = new ValueCounts();
+        long total = 0;
+
         readIter.startLines();
         while (!readIter.finishedLines()) {
             readIter.startPixels();
             while (!readIter.finishedPixels()) {
                 double sampleValue = readIter.getSampleDouble(bandIndex);
                 if (!SSUtils.compareDouble(noData, sampleValue)) {
-                    if (valueCountsMap.containsKey(sampleValue)) {
-                        int cnt = valueCountsMap.get(sampleValue);
-                        valueCountsMap.put(sampleValue, new Integer(cnt + 1));
-                    } else {
-                        valueCountsMap.put(sampleValue, new Integer(1));
-                    }
-
-                    count++;
+                    valueCounts.increment(sampleValue);
+                    total++;
                     sumOfVals += sampleValue;
                 }
                 readIter.nextPixel();
@@ -89,23 +83,103 @@ public class HistogramGridCoverage extends DataHistogram {
             readIter.nextLine();
         }
 
-        if (valueCountsMap.size() == 0) {
+        if (total == 0) {
             return false;
         }
 
-        doubleArrayValues = new double[valueCountsMap.size()];
-        longArrayFrequencies = new int[valueCountsMap.size()];
+        if (total > Integer.MAX_VALUE) {
+            throw new ProcessException("Too many cells for a histogram: " + total);
+        }
+        count = (int) total;
 
-        Iterator<Double> iterator = valueCountsMap.keySet().iterator();
-        int k = 0;
-        while (iterator.hasNext()) {
-            final double key = iterator.next();
-            doubleArrayValues[k] = key;
-            longArrayFrequencies[k] = valueCountsMap.get(key);
-            k++;
+        doubleArrayValues = valueCounts.sortedValues();
+        longArrayFrequencies = new int[doubleArrayValues.length];
+        for (int k = 0; k < doubleArrayValues.length; k++) {
+            longArrayFrequencies[k] = (int) valueCounts.get(doubleArrayValues[k]);
         }
 
         return true;
     }
 
+    /**
+     * Open addressing map from a distinct value to its frequency.
+     */
+    static final class ValueCounts {
+        private long[] keys = new long[1024];
+
+        private long[] counts = new long[1024];
+
+        private int size = 0;
+
+        void increment(double value) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+
+            long key = Double.doubleToLongBits(value);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            counts[slot] = 1;
+            size++;
+        }
+
+        long get(double value) {
+            long key = Double.doubleToLongBits(value);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    return counts[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        // in the order of Double.compareTo, as the keys of a TreeMap
+        double[] sortedValues() {
+            double[] values = new double[size];
+            int index = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (counts[slot] != 0) {
+                    values[index++] = Double.longBitsToDouble(keys[slot]);
+                }
+            }
+            Arrays.sort(values);
+            return values;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+
+            keys = new long[capacity];
+            counts = new long[capacity];
+            int mask = capacity - 1;
+            for (int index = 0; index < oldKeys.length; index++) {
+                if (oldCounts[index] != 0) {
+                    int slot = hash(oldKeys[index]) & mask;
+                    while (counts[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[index];
+                    counts[slot] = oldCounts[index];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
 }
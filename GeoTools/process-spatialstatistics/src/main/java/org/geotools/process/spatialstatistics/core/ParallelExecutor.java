@@ -0,0 +1,166 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.geotools.process.ProcessException;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Runs the workers of a parallel operation and waits for all of them. <br>
+ * The first failure of a worker is rethrown to the caller, unchecked exceptions and errors as they are, and the other workers are
+ * cancelled. Failures of workers which had already completed are added to it as suppressed exceptions. If the caller is interrupted while waiting, the workers are cancelled, the interrupt flag is restored and a
+ * {@link ProcessException} is thrown. <br>
+ * The static methods use a shared pool of daemon threads which grows on demand, so that nested parallel operations never wait for each
+ * other. An instance owns a fixed pool for operations which run many short batches, it must be shut down by its owner.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class ParallelExecutor {
+    protected static final Logger LOGGER = Logging.getLogger(ParallelExecutor.class);
+
+    private static final ExecutorService SHARED = Executors
+            .newCachedThreadPool(new DaemonThreadFactory("SpatialStatistics-Worker"));
+
+    private final ExecutorService executor;
+
+    private final int threadCount;
+
+    public ParallelExecutor(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        this.executor = Executors.newFixedThreadPool(this.threadCount,
+                new DaemonThreadFactory("SpatialStatistics-Batch"));
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Returns the number of workers for the units of work: one per processor, but at least one and at most one per given number of
+     * units.
+     */
+    public static int getWorkers(int units, int unitsPerWorker) {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(processors, units / Math.max(1, unitsPerWorker)));
+    }
+
+    /**
+     * Runs the workers on the shared pool, a single worker runs on the calling thread.
+     */
+    public static void execute(List<? extends Runnable> workers) {
+        invokeAll(SHARED, workers);
+    }
+
+    /**
+     * Runs the workers on the pool of this executor, a single worker runs on the calling thread.
+     */
+    public void invokeAll(List<? extends Runnable> workers) {
+        invokeAll(executor, workers);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static void invokeAll(ExecutorService executor, List<? extends Runnable> workers) {
+        if (workers.size() == 1) {
+            workers.get(0).run();
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(workers.size());
+        try {
+            for (Runnable worker : workers) {
+                futures.add(executor.submit(worker));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            addFailures(cause, futures);
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ProcessException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessException("Interrupted while waiting for the workers", e);
+        } finally {
+            // no-op for the completed workers
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    // the failures of the other workers which completed before they were cancelled
+    private static void addFailures(Throwable failure, List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (!future.isDone() || future.isCancelled()) {
+                continue;
+            }
+
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() != failure) {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger number = new AtomicInteger(1);
+
+        private final String prefix;
+
+        public DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + number.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
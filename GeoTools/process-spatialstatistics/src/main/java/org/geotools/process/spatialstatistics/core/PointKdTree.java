@@ -0,0 +1,294 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.core;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Static 2D KD-tree of points held in primitive arrays. <br>
+ * The tree is implicit: each range of the point arrays is split at its median, along the axis with the larger spread. Searches return the
+ * indexes of the points in the input arrays into a reusable {@link Neighbors} buffer, so no objects are created per query. The tree is
+ * immutable after construction and may be searched from several threads, each with its own buffer.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class PointKdTree {
+    protected static final Logger LOGGER = Logging.getLogger(PointKdTree.class);
+
+    static final int LEAF_SIZE = 8;
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    private final int[] ids;
+
+    // split axis of the node at the median of each range, 0 = x, 1 = y
+    private final byte[] axes;
+
+    public PointKdTree(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y must have the same length!");
+        }
+
+        final int size = x.length;
+        this.xs = x.clone();
+        this.ys = y.clone();
+        this.ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        this.axes = new byte[size];
+
+        build(0, size);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    private void build(int lo, int hi) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        final int axis = (maxX - minX) >= (maxY - minY) ? 0 : 1;
+        final int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis == 0 ? xs : ys);
+        axes[mid] = (byte) axis;
+
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    // quickselect: moves the k-th smallest value of the range to k
+    private void select(int left, int right, int k, double[] values) {
+        while (right > left) {
+            final double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        double tx = xs[i];
+        xs[i] = xs[j];
+        xs[j] = tx;
+
+        double ty = ys[i];
+        ys[i] = ys[j];
+        ys[j] = ty;
+
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+
+    /**
+     * Finds the k nearest points within the maximum distance, or all points within the maximum distance when k is 0.
+     *
+     * @param neighbors buffer which receives the result, cleared first
+     */
+    public void search(double x, double y, int k, double maxDistance, Neighbors neighbors) {
+        if (Double.isNaN(maxDistance)) {
+            maxDistance = Double.POSITIVE_INFINITY;
+        }
+
+        neighbors.reset(k, maxDistance * maxDistance);
+        search(0, ids.length, x, y, neighbors);
+    }
+
+    /**
+     * Finds all points within the distance.
+     */
+    public void searchRadius(double x, double y, double distance, Neighbors neighbors) {
+        search(x, y, 0, distance, neighbors);
+    }
+
+    private void search(int lo, int hi, double x, double y, Neighbors neighbors) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                final double dx = xs[i] - x;
+                final double dy = ys[i] - y;
+                neighbors.add(ids[i], dx * dx + dy * dy);
+            }
+            return;
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        final double dx = xs[mid] - x;
+        final double dy = ys[mid] - y;
+        neighbors.add(ids[mid], dx * dx + dy * dy);
+
+        // signed distance from the query point to the splitting line
+        final double delta = axes[mid] == 0 ? x - xs[mid] : y - ys[mid];
+        if (delta < 0) {
+            search(lo, mid, x, y, neighbors);
+            if (delta * delta <= neighbors.bound()) {
+                search(mid + 1, hi, x, y, neighbors);
+            }
+        } else {
+            search(mid + 1, hi, x, y, neighbors);
+            if (delta * delta <= neighbors.bound()) {
+                search(lo, mid, x, y, neighbors);
+            }
+        }
+    }
+
+    /**
+     * Reusable search result: the indexes of the found points and their squared distances, in no particular order.
+     */
+    public static final class Neighbors {
+        private int[] indexes = new int[16];
+
+        private double[] distances = new double[16];
+
+        private int size = 0;
+
+        private int k = 0;
+
+        private double maxDistanceSq = Double.POSITIVE_INFINITY;
+
+        void reset(int k, double maxDistanceSq) {
+            this.k = Math.max(0, k);
+            this.maxDistanceSq = maxDistanceSq;
+            this.size = 0;
+
+            if (this.k > indexes.length) {
+                indexes = new int[this.k];
+                distances = new double[this.k];
+            }
+        }
+
+        // squared distance beyond which no point can enter the result
+        double bound() {
+            return k > 0 && size == k ? distances[0] : maxDistanceSq;
+        }
+
+        void add(int index, double distanceSq) {
+            if (distanceSq > maxDistanceSq) {
+                return;
+            }
+
+            if (k == 0) {
+                if (size == indexes.length) {
+                    indexes = Arrays.copyOf(indexes, size * 2);
+                    distances = Arrays.copyOf(distances, size * 2);
+                }
+                indexes[size] = index;
+                distances[size] = distanceSq;
+                size++;
+            } else if (size < k) {
+                // max-heap on the distance
+                int child = size++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (distances[parent] >= distanceSq) {
+                        break;
+                    }
+                    indexes[child] = indexes[parent];
+                    distances[child] = distances[parent];
+                    child = parent;
+                }
+                indexes[child] = index;
+                distances[child] = distanceSq;
+            } else if (distanceSq < distances[0]) {
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distanceSq) {
+                        break;
+                    }
+                    indexes[parent] = indexes[child];
+                    distances[parent] = distances[child];
+                    parent = child;
+                }
+                indexes[parent] = index;
+                distances[parent] = distanceSq;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Index of the i-th found point in the arrays of the tree.
+         */
+        public int getIndex(int i) {
+            return indexes[i];
+        }
+
+        public double getDistanceSq(int i) {
+            return distances[i];
+        }
+
+        /**
+         * Squared distance of the farthest found point, 0 if nothing was found.
+         */
+        public double getFarthestDistanceSq() {
+            if (k > 0) {
+                return size == 0 ? 0 : distances[0];
+            }
+
+            double farthest = 0;
+            for (int i = 0; i < size; i++) {
+                farthest = Math.max(farthest, distances[i]);
+            }
+            return farthest;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.core;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Mergeable quantile sketch with bounded memory. <br>
+ * The first {@link #EXACT_CAPACITY} values are kept as they are and their quantiles are exact. Beyond that the values are counted in
+ * logarithmic buckets, so that every quantile is estimated within the relative accuracy (1% by default). At most {@link #MAX_BINS} buckets
+ * are kept per sign, the buckets of the smallest magnitudes are collapsed when more would be needed.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class QuantileSketch {
+    protected static final Logger LOGGER = Logging.getLogger(QuantileSketch.class);
+
+    static final int EXACT_CAPACITY = 4096;
+
+    static final int MAX_BINS = 2048;
+
+    // magnitudes below this value are counted as zero
+    static final double MIN_MAGNITUDE = 1.0e-300;
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private double[] exact = new double[64];
+
+    private int exactSize = 0;
+
+    private boolean exactMode = true;
+
+    private final BinStore positive = new BinStore();
+
+    private final BinStore negative = new BinStore();
+
+    private long zeroCount = 0;
+
+    private long count = 0;
+
+    private double minValue = Double.POSITIVE_INFINITY;
+
+    private double maxValue = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(0.01);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1!");
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns true while all values are kept and the quantiles are exact.
+     */
+    public boolean isExact() {
+        return exactMode;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        count++;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+
+        if (exactMode) {
+            if (exactSize < EXACT_CAPACITY) {
+                if (exactSize == exact.length) {
+                    exact = Arrays.copyOf(exact, Math.min(EXACT_CAPACITY, exactSize * 2));
+                }
+                exact[exactSize++] = value;
+                return;
+            }
+            spill();
+        }
+
+        addToBins(value, 1);
+    }
+
+    private void spill() {
+        for (int i = 0; i < exactSize; i++) {
+            addToBins(exact[i], 1);
+        }
+        exact = null;
+        exactSize = 0;
+        exactMode = false;
+    }
+
+    private void addToBins(double value, long n) {
+        if (value > MIN_MAGNITUDE) {
+            positive.add(index(value), n);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.add(index(-value), n);
+        } else {
+            zeroCount += n;
+        }
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double binValue(int index) {
+        return 2.0 * Math.pow(gamma, index) / (gamma + 1.0);
+    }
+
+    /**
+     * Adds the values of the other sketch, which must have the same relative accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches of different accuracy can't be merged!");
+        }
+
+        if (other.exactMode) {
+            // values of the other sketch, as if they were added to this one
+            for (int i = 0; i < other.exactSize; i++) {
+                add(other.exact[i]);
+            }
+            return;
+        }
+
+        if (exactMode) {
+            spill();
+        }
+
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        minValue = Math.min(minValue, other.minValue);
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+
+    /**
+     * Returns the quantile of the values, NaN if no value was added.
+     *
+     * @param quantile between 0 and 1
+     */
+    public double getQuantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        quantile = Math.max(0.0, Math.min(1.0, quantile));
+        if (exactMode) {
+            // linear interpolation between the closest ranks
+            double[] values = Arrays.copyOf(exact, exactSize);
+            Arrays.sort(values);
+
+            double position = quantile * (exactSize - 1);
+            int lower = (int) Math.floor(position);
+            int upper = Math.min(lower + 1, exactSize - 1);
+            return values[lower] + (position - lower) * (values[upper] - values[lower]);
+        }
+
+        final long rank = (long) Math.floor(quantile * (count - 1));
+        double value;
+
+        long seen = negative.total;
+        if (rank < seen) {
+            // largest magnitudes first
+            value = -binValue(negative.findFromHigh(rank));
+        } else if (rank < seen + zeroCount) {
+            value = 0.0;
+        } else {
+            value = binValue(positive.findFromLow(rank - seen - zeroCount));
+        }
+
+        return Math.max(minValue, Math.min(maxValue, value));
+    }
+
+    /**
+     * Bucket counts of one sign, indexed by the logarithm of the magnitude.
+     */
+    static final class BinStore {
+        long[] counts = null;
+
+        // bucket index of counts[0]
+        int offset = 0;
+
+        long total = 0;
+
+        void add(int index, long n) {
+            if (counts == null) {
+                counts = new long[64];
+                offset = index - 32;
+            }
+
+            if (index < offset || index >= offset + counts.length) {
+                extend(index);
+            }
+
+            // indexes below the collapsed range go to the lowest bucket
+            counts[Math.max(index, offset) - offset] += n;
+            total += n;
+        }
+
+        private void extend(int index) {
+            int lo = Math.min(offset, index);
+            int hi = Math.max(offset + counts.length - 1, index);
+
+            // room to grow on the side of the new index
+            int pad = (hi - lo + 1) / 2;
+            int newLo = index < offset ? lo - pad : lo;
+            int newHi = index < offset ? hi : hi + pad;
+
+            // collapse the smallest magnitudes beyond the limit
+            newLo = Math.max(newLo, newHi - MAX_BINS + 1);
+
+            long[] newCounts = new long[newHi - newLo + 1];
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    newCounts[Math.max(offset + i, newLo) - newLo] += counts[i];
+                }
+            }
+
+            counts = newCounts;
+            offset = newLo;
+        }
+
+        void merge(BinStore other) {
+            if (other.counts == null) {
+                return;
+            }
+
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        int findFromLow(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + counts.length - 1;
+        }
+
+        int findFromHigh(long rank) {
+            long seen = 0;
+            for (int i = counts.length - 1; i >= 0; i--) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+    }
+}
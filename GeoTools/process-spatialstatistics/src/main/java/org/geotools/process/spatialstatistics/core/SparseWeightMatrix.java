@@ -0,0 +1,269 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.core;
+
+import java.util.Arrays;
+
+/**
+ * Spatial weights stored in compressed sparse row (CSR) form. <br>
+ * Row i holds the neighbors of event i: the column indices are stored in {@code columns[rowOffsets[i]..rowOffsets[i+1])} in ascending order
+ * and the matching weights in the same range of {@code weights}.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class SparseWeightMatrix {
+
+    private final int size;
+
+    private final int[] rowOffsets;
+
+    private final int[] columns;
+
+    private final double[] weights;
+
+    private final double[] rowSums;
+
+    private final int maxRowLength;
+
+    public SparseWeightMatrix(int size, int[] rowOffsets, int[] columns, double[] weights) {
+        if (rowOffsets.length != size + 1) {
+            throw new IllegalArgumentException("rowOffsets length must be size + 1!");
+        }
+
+        this.size = size;
+        this.rowOffsets = rowOffsets;
+        this.columns = columns;
+        this.weights = weights;
+        this.rowSums = new double[size];
+
+        int maxLength = 0;
+        for (int row = 0; row < size; row++) {
+            double rowSum = 0.0;
+            for (int k = rowOffsets[row]; k < rowOffsets[row + 1]; k++) {
+                rowSum += weights[k];
+            }
+            rowSums[row] = rowSum;
+            maxLength = Math.max(maxLength, rowOffsets[row + 1] - rowOffsets[row]);
+        }
+        this.maxRowLength = maxLength;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getNonZeroCount() {
+        return rowOffsets[size];
+    }
+
+    public int getMaxRowLength() {
+        return maxRowLength;
+    }
+
+    public int getRowStart(int row) {
+        return rowOffsets[row];
+    }
+
+    public int getRowEnd(int row) {
+        return rowOffsets[row + 1];
+    }
+
+    public int getRowLength(int row) {
+        return rowOffsets[row + 1] - rowOffsets[row];
+    }
+
+    public int getColumn(int offset) {
+        return columns[offset];
+    }
+
+    public double getWeight(int offset) {
+        return weights[offset];
+    }
+
+    public double getRowSum(int row) {
+        return rowSums[row];
+    }
+
+    /**
+     * Copies the neighbors of the given row into the buffers and returns the number of neighbors.
+     */
+    public int getRow(int row, int[] columnBuffer, double[] weightBuffer) {
+        final int start = rowOffsets[row];
+        final int length = rowOffsets[row + 1] - start;
+        System.arraycopy(columns, start, columnBuffer, 0, length);
+        System.arraycopy(weights, start, weightBuffer, 0, length);
+        return length;
+    }
+
+    public boolean isNeighbor(int row, int column) {
+        return indexOf(row, column) >= 0;
+    }
+
+    public double getWeight(int row, int column) {
+        int offset = indexOf(row, column);
+        return offset < 0 ? 0.0 : weights[offset];
+    }
+
+    private int indexOf(int row, int column) {
+        int offset = Arrays.binarySearch(columns, rowOffsets[row], rowOffsets[row + 1], column);
+        return offset < 0 ? -1 : offset;
+    }
+
+    /**
+     * Collects (row, column, weight) entries in any order and builds the CSR arrays. If the same (row, column) pair is added more than once, the
+     * last weight wins. A builder created without a size accepts any row index and is sized when {@link #build(int)} is called.
+     */
+    public static class Builder {
+
+        private final int size;
+
+        private int maxRow = -1;
+
+        private int[] rows;
+
+        private int[] columns;
+
+        private double[] weights;
+
+        private int count = 0;
+
+        public Builder() {
+            this(-1, 64);
+        }
+
+        public Builder(int size) {
+            this(size, Math.max(16, size * 4));
+        }
+
+        public Builder(int size, int capacity) {
+            this.size = size;
+            this.rows = new int[capacity];
+            this.columns = new int[capacity];
+            this.weights = new double[capacity];
+        }
+
+        public int getEntryCount() {
+            return count;
+        }
+
+        public void add(int row, int column, double weight) {
+            if (row < 0 || (size >= 0 && row >= size) || column < 0) {
+                throw new IllegalArgumentException("Row or column index out of range!");
+            }
+
+            if (count == rows.length) {
+                int capacity = rows.length + (rows.length >> 1) + 1;
+                rows = Arrays.copyOf(rows, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+
+            rows[count] = row;
+            columns[count] = column;
+            weights[count] = weight;
+            maxRow = Math.max(maxRow, row);
+            count++;
+        }
+
+        public SparseWeightMatrix build() {
+            return build(size >= 0 ? size : maxRow + 1);
+        }
+
+        public SparseWeightMatrix build(int size) {
+            if (size <= maxRow) {
+                throw new IllegalArgumentException("Size must be greater than the largest row index!");
+            }
+
+            // counting sort by row, stable with respect to insertion order
+            int[] rowOffsets = new int[size + 1];
+            for (int k = 0; k < count; k++) {
+                rowOffsets[rows[k] + 1]++;
+            }
+            for (int row = 0; row < size; row++) {
+                rowOffsets[row + 1] += rowOffsets[row];
+            }
+
+            int[] next = Arrays.copyOf(rowOffsets, size);
+            int[] sortedColumns = new int[count];
+            double[] sortedWeights = new double[count];
+            for (int k = 0; k < count; k++) {
+                int pos = next[rows[k]]++;
+                sortedColumns[pos] = columns[k];
+                sortedWeights[pos] = weights[k];
+            }
+
+            // sort each row by column and drop duplicated columns
+            int nnz = 0;
+            int rowStart = 0;
+            for (int row = 0; row < size; row++) {
+                int start = rowStart;
+                int end = rowOffsets[row + 1];
+                rowStart = end;
+
+                sortRow(sortedColumns, sortedWeights, start, end);
+
+                rowOffsets[row] = nnz;
+                for (int k = start; k < end; k++) {
+                    if (k + 1 < end && sortedColumns[k + 1] == sortedColumns[k]) {
+                        continue; // keep the last one
+                    }
+                    sortedColumns[nnz] = sortedColumns[k];
+                    sortedWeights[nnz] = sortedWeights[k];
+                    nnz++;
+                }
+            }
+            rowOffsets[size] = nnz;
+
+            if (nnz < count) {
+                sortedColumns = Arrays.copyOf(sortedColumns, nnz);
+                sortedWeights = Arrays.copyOf(sortedWeights, nnz);
+            }
+
+            return new SparseWeightMatrix(size, rowOffsets, sortedColumns, sortedWeights);
+        }
+
+        private void sortRow(int[] cols, double[] values, int start, int end) {
+            boolean sorted = true;
+            for (int k = start + 1; k < end; k++) {
+                if (cols[k - 1] > cols[k]) {
+                    sorted = false;
+                    break;
+                }
+            }
+
+            if (sorted) {
+                return;
+            }
+
+            // sort (column, position) pairs packed into a long: stable for equal columns
+            final int length = end - start;
+            long[] keys = new long[length];
+            for (int k = 0; k < length; k++) {
+                keys[k] = ((long) cols[start + k] << 32) | k;
+            }
+            Arrays.sort(keys);
+
+            double[] rowValues = Arrays.copyOfRange(values, start, end);
+            for (int k = 0; k < length; k++) {
+                cols[start + k] = (int) (keys[k] >>> 32);
+                values[start + k] = rowValues[(int) (keys[k] & 0xFFFFFFFFL)];
+            }
+        }
+    }
+}
@@ -16,12 +16,13 @@
  */
 package org.geotools.process.spatialstatistics.core;
 
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
-import javax.media.jai.PlanarImage;
-import javax.media.jai.iterator.RectIter;
-import javax.media.jai.iterator.RectIterFactory;
-
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
@@ -58,7 +59,18 @@ public class StatisticsVisitor {
 
     public StatisticsVisitor(SimpleFeatureType schema, String propertyName)
             throws IllegalFilterException {
-        init(schema, schema.getDescriptor(FeatureTypes.validateProperty(schema, propertyName)));
+        this(schema, propertyName, false);
+    }
+
+    /**
+     * @param computeQuantiles true to estimate the median and quantiles of a numeric property, the values are then accumulated as doubles
+     */
+    public StatisticsVisitor(SimpleFeatureType schema, String propertyName,
+            boolean computeQuantiles) throws IllegalFilterException {
+        AttributeDescriptor attributeType = schema.getDescriptor(FeatureTypes.validateProperty(
+                schema, propertyName));
+        expression = ff.property(attributeType.getLocalName());
+        strategy = createStrategy(attributeType.getType().getBinding(), computeQuantiles);
     }
 
     public StatisticsVisitor(SimpleFeatureType schema, int attrIndex) throws IllegalFilterException {
@@ -73,11 +85,13 @@ public class StatisticsVisitor {
 
     private void init(SimpleFeatureType schema, AttributeDescriptor attributeType) {
         expression = ff.property(attributeType.getLocalName());
-        strategy = createStrategy(attributeType.getType().getBinding());
+        strategy = createStrategy(attributeType.getType().getBinding(), false);
     }
 
-    private static StatisticsStrategy createStrategy(Class<?> type) {
-        if (type == Integer.class) {
+    private static StatisticsStrategy createStrategy(Class<?> type, boolean computeQuantiles) {
+        if (computeQuantiles && Number.class.isAssignableFrom(type)) {
+            return new DoubleStrategy(true);
+        } else if (type == Integer.class) {
             return new IntegerStrategy();
         } else if (type == Long.class) {
             return new LongStrategy();
@@ -105,18 +119,73 @@ public class StatisticsVisitor {
     public void visit(GridCoverage2D inputCoverage, Integer bandIndex) {
         reset();
 
-        PlanarImage inputImage = (PlanarImage) inputCoverage.getRenderedImage();
-        RectIter readIter = RectIterFactory.create(inputImage, inputImage.getBounds());
+        if (strategy == null) {
+            strategy = new DoubleStrategy();
+        }
 
-        readIter.startLines();
-        while (!readIter.finishedLines()) {
-            readIter.startPixels();
-            while (!readIter.finishedPixels()) {
-                double sampleValue = readIter.getSampleDouble(bandIndex);
-                visit(Double.valueOf(sampleValue));
-                readIter.nextPixel();
+        final RenderedImage image = inputCoverage.getRenderedImage();
+        final int tileRows = image.getNumYTiles();
+        final int workers = ParallelExecutor.getWorkers(tileRows, 1);
+
+        // contiguous tile rows per worker, merged in order so that first and last follow the pixels
+        List<PartialVisitor> tasks = new ArrayList<PartialVisitor>();
+        for (int t = 0; t < workers; t++) {
+            PartialVisitor task = new PartialVisitor(image, bandIndex.intValue(), tileRows * t
+                    / workers, tileRows * (t + 1) / workers, strategy.newInstance());
+            tasks.add(task);
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        for (PartialVisitor task : tasks) {
+            strategy.merge(task.strategy);
+        }
+    }
+
+    final class PartialVisitor implements Runnable {
+        private final RenderedImage image;
+
+        private final int bandIndex;
+
+        private final int firstRow;
+
+        private final int lastRow;
+
+        final StatisticsStrategy strategy;
+
+        public PartialVisitor(RenderedImage image, int bandIndex, int firstRow, int lastRow,
+                StatisticsStrategy strategy) {
+            this.image = image;
+            this.bandIndex = bandIndex;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.strategy = strategy;
+        }
+
+        public void run() {
+            final Rectangle bounds = new Rectangle(image.getMinX(), image.getMinY(),
+                    image.getWidth(), image.getHeight());
+            final Raster[] tiles = new Raster[image.getNumXTiles()];
+
+            double[] samples = null;
+            for (int row = firstRow; row < lastRow; row++) {
+                final int tileY = image.getMinTileY() + row;
+                for (int col = 0; col < tiles.length; col++) {
+                    tiles[col] = image.getTile(image.getMinTileX() + col, tileY);
+                }
+
+                // pixel rows across the tiles, in the order of the image
+                Rectangle rowBounds = tiles[0].getBounds().intersection(bounds);
+                for (int y = rowBounds.y; y < rowBounds.y + rowBounds.height; y++) {
+                    for (Raster tile : tiles) {
+                        Rectangle rect = tile.getBounds().intersection(bounds);
+                        samples = tile.getSamples(rect.x, y, rect.width, 1, bandIndex, samples);
+                        for (int i = 0; i < rect.width; i++) {
+                            strategy.add(samples[i]);
+                        }
+                    }
+                }
             }
-            readIter.nextLine();
         }
     }
 
@@ -139,11 +208,37 @@ public class StatisticsVisitor {
 
     public void visit(Object value) {
         if (strategy == null) {
-            strategy = createStrategy(value.getClass());
+            strategy = createStrategy(value.getClass(), false);
         }
         strategy.add(value);
     }
 
+    public void visit(double value) {
+        if (strategy == null) {
+            strategy = new DoubleStrategy();
+        }
+        strategy.add(value);
+    }
+
+    public void visit(int value) {
+        if (strategy == null) {
+            strategy = new IntegerStrategy();
+        }
+        strategy.add(value);
+    }
+
+    /**
+     * Adds the values visited by the other visitor, e.g. by another thread.
+     */
+    public void merge(StatisticsVisitor other) {
+        if (other.strategy == null) {
+            return;
+        } else if (strategy == null) {
+            strategy = other.strategy.newInstance();
+        }
+        strategy.merge(other.strategy);
+    }
+
     public StatisticsVisitorResult getResult() {
         return strategy == null ? new StatisticsVisitorResult() : strategy.getResult();
     }
@@ -151,6 +246,21 @@ public class StatisticsVisitor {
     public interface StatisticsStrategy {
         public void add(Object value);
 
+        /**
+         * Adds a value without boxing it.
+         */
+        public void add(double value);
+
+        /**
+         * Adds the values of another strategy of the same type.
+         */
+        public void merge(StatisticsStrategy other);
+
+        /**
+         * Creates an empty strategy with the same settings.
+         */
+        public StatisticsStrategy newInstance();
+
         public StatisticsVisitorResult getResult();
 
         public void setNoData(Number noData);
@@ -158,6 +268,14 @@ public class StatisticsVisitor {
         public void reset();
     }
 
+    static StatisticsStrategy checkType(StatisticsStrategy strategy, StatisticsStrategy other) {
+        if (other.getClass() != strategy.getClass()) {
+            throw new IllegalArgumentException("Can't merge " + other.getClass().getSimpleName()
+                    + " into " + strategy.getClass().getSimpleName());
+        }
+        return other;
+    }
+
     public static class DoubleStrategy implements StatisticsStrategy {
 
         Double noData = null;
@@ -170,6 +288,10 @@ public class StatisticsVisitor {
 
         Object lastValue = null;
 
+        double firstNumber = 0.0d;
+
+        double lastNumber = 0.0d;
+
         double minVal = Double.MAX_VALUE;
 
         double maxVal = Double.MIN_VALUE;
@@ -178,6 +300,21 @@ public class StatisticsVisitor {
 
         double sumOfSqrs = 0.0d;
 
+        QuantileSketch quantiles = null;
+
+        public DoubleStrategy() {
+            this(false);
+        }
+
+        /**
+         * @param computeQuantiles true to estimate the median and quantiles with a {@link QuantileSketch}
+         */
+        public DoubleStrategy(boolean computeQuantiles) {
+            if (computeQuantiles) {
+                quantiles = new QuantileSketch();
+            }
+        }
+
         @Override
         public void add(Object value) {
             if (value == null) {
@@ -186,17 +323,34 @@ public class StatisticsVisitor {
             }
 
             // for BigDecimal, Double...
-            double curVal = Double.valueOf(value.toString());
+            double curVal = value instanceof Number ? ((Number) value).doubleValue() : Double
+                    .valueOf(value.toString());
+            if (accept(curVal)) {
+                if (count == 1) {
+                    firstValue = value;
+                }
+                lastValue = value;
+            }
+        }
+
+        @Override
+        public void add(double value) {
+            if (accept(value)) {
+                lastValue = null;
+            }
+        }
+
+        private boolean accept(double curVal) {
             if (Double.isNaN(curVal) || Double.isInfinite(curVal)) {
                 invalidCount++;
-                return;
+                return false;
             } else if (noData != null && SSUtils.compareDouble(curVal, noData)) {
                 invalidCount++;
-                return;
+                return false;
             }
 
-            if (firstValue == null) {
-                firstValue = value;
+            if (count == 0) {
+                firstNumber = curVal;
             }
 
             sumOfVals += curVal;
@@ -205,22 +359,61 @@ public class StatisticsVisitor {
             maxVal = Math.max(maxVal, curVal);
             minVal = Math.min(minVal, curVal);
 
-            lastValue = value;
+            if (quantiles != null) {
+                quantiles.add(curVal);
+            }
+
+            lastNumber = curVal;
 
             count++;
+            return true;
+        }
+
+        @Override
+        public void merge(StatisticsStrategy other) {
+            DoubleStrategy ds = (DoubleStrategy) checkType(this, other);
+            if (ds.count > 0) {
+                if (count == 0) {
+                    firstValue = ds.firstValue;
+                    firstNumber = ds.firstNumber;
+                }
+                lastValue = ds.lastValue;
+                lastNumber = ds.lastNumber;
+
+                sumOfVals += ds.sumOfVals;
+                sumOfSqrs += ds.sumOfSqrs;
+                maxVal = Math.max(maxVal, ds.maxVal);
+                minVal = Math.min(minVal, ds.minVal);
+                if (quantiles != null && ds.quantiles != null) {
+                    quantiles.merge(ds.quantiles);
+                }
+                count += ds.count;
+            }
+            invalidCount += ds.invalidCount;
+        }
+
+        @Override
+        public StatisticsStrategy newInstance() {
+            DoubleStrategy ds = new DoubleStrategy(quantiles != null);
+            ds.noData = noData;
+            return ds;
         }
 
         @Override
         public StatisticsVisitorResult getResult() {
             StatisticsVisitorResult sr = new StatisticsVisitorResult();
-            sr.setFirstValue(firstValue);
-            sr.setLastValue(lastValue);
+            if (count > 0) {
+                // values of the primitive path are boxed only here
+                sr.setFirstValue(firstValue == null ? Double.valueOf(firstNumber) : firstValue);
+                sr.setLastValue(lastValue == null ? Double.valueOf(lastNumber) : lastValue);
+            }
             sr.setCount(count);
 
             sr.setMinimum(minVal);
             sr.setMaximum(maxVal);
             sr.setSum(sumOfVals);
             sr.setNoData(noData);
+            sr.setQuantiles(quantiles);
 
             if (count > 0) {
                 // Population Standard Deviation
@@ -234,9 +427,13 @@ public class StatisticsVisitor {
         public void reset() {
             count = invalidCount = 0;
             firstValue = lastValue = null;
+            firstNumber = lastNumber = 0.0d;
             minVal = Double.MAX_VALUE;
             maxVal = Double.MIN_VALUE;
             sumOfVals = sumOfSqrs = 0.0d;
+            if (quantiles != null) {
+                quantiles = new QuantileSketch(quantiles.getRelativeAccuracy());
+            }
         }
 
         @Override
@@ -257,6 +454,10 @@ public class StatisticsVisitor {
 
         Object lastValue = null;
 
+        float firstNumber = 0;
+
+        float lastNumber = 0;
+
         float minVal = Float.MAX_VALUE;
 
         float maxVal = Float.MIN_VALUE;
@@ -272,17 +473,32 @@ public class StatisticsVisitor {
                 return;
             }
 
-            float curVal = ((Float) value).floatValue();
+            if (accept(((Number) value).floatValue())) {
+                if (count == 1) {
+                    firstValue = value;
+                }
+                lastValue = value;
+            }
+        }
+
+        @Override
+        public void add(double value) {
+            if (accept((float) value)) {
+                lastValue = null;
+            }
+        }
+
+        private boolean accept(float curVal) {
             if (Float.isNaN(curVal) || Float.isInfinite(curVal)) {
                 invalidCount++;
-                return;
+                return false;
             } else if (noData != null && SSUtils.compareFloat(curVal, noData)) {
                 invalidCount++;
-                return;
+                return false;
             }
 
-            if (firstValue == null) {
-                firstValue = value;
+            if (count == 0) {
+                firstNumber = curVal;
             }
 
             sumOfVals += curVal;
@@ -291,16 +507,46 @@ public class StatisticsVisitor {
             maxVal = Math.max(maxVal, curVal);
             minVal = Math.min(minVal, curVal);
 
-            lastValue = value;
+            lastNumber = curVal;
 
             count++;
+            return true;
+        }
+
+        @Override
+        public void merge(StatisticsStrategy other) {
+            FloatStrategy ds = (FloatStrategy) checkType(this, other);
+            if (ds.count > 0) {
+                if (count == 0) {
+                    firstValue = ds.firstValue;
+                    firstNumber = ds.firstNumber;
+                }
+                lastValue = ds.lastValue;
+                lastNumber = ds.lastNumber;
+
+                sumOfVals += ds.sumOfVals;
+                sumOfSqrs += ds.sumOfSqrs;
+                maxVal = Math.max(maxVal, ds.maxVal);
+                minVal = Math.min(minVal, ds.minVal);
+                count += ds.count;
+            }
+            invalidCount += ds.invalidCount;
+        }
+
+        @Override
+        public StatisticsStrategy newInstance() {
+            FloatStrategy ds = new FloatStrategy();
+            ds.noData = noData;
+            return ds;
         }
 
         @Override
         public StatisticsVisitorResult getResult() {
             StatisticsVisitorResult sr = new StatisticsVisitorResult();
-            sr.setFirstValue(firstValue);
-            sr.setLastValue(lastValue);
+            if (count > 0) {
+                sr.setFirstValue(firstValue == null ? Float.valueOf(firstNumber) : firstValue);
+                sr.setLastValue(lastValue == null ? Float.valueOf(lastNumber) : lastValue);
+            }
             sr.setCount(count);
 
             sr.setMinimum(minVal);
@@ -320,6 +566,7 @@ public class StatisticsVisitor {
         public void reset() {
             count = invalidCount = 0;
             firstValue = lastValue = null;
+            firstNumber = lastNumber = 0;
             minVal = Float.MAX_VALUE;
             maxVal = Float.MIN_VALUE;
             sumOfVals = sumOfSqrs = 0.0d;
@@ -343,6 +590,10 @@ public class StatisticsVisitor {
 
         Object lastValue = null;
 
+        long firstNumber = 0;
+
+        long lastNumber = 0;
+
         long minVal = Long.MAX_VALUE;
 
         long maxVal = Long.MIN_VALUE;
@@ -358,14 +609,34 @@ public class StatisticsVisitor {
                 return;
             }
 
-            long curVal = ((Long) value).longValue();
-            if (noData != null && curVal == noData) {
+            if (accept(((Number) value).longValue())) {
+                if (count == 1) {
+                    firstValue = value;
+                }
+                lastValue = value;
+            }
+        }
+
+        @Override
+        public void add(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
                 invalidCount++;
                 return;
             }
 
-            if (firstValue == null) {
-                firstValue = value;
+            if (accept((long) value)) {
+                lastValue = null;
+            }
+        }
+
+        private boolean accept(long curVal) {
+            if (noData != null && curVal == noData) {
+                invalidCount++;
+                return false;
+            }
+
+            if (count == 0) {
+                firstNumber = curVal;
             }
 
             sumOfVals += curVal;
@@ -374,16 +645,46 @@ public class StatisticsVisitor {
             maxVal = Math.max(maxVal, curVal);
             minVal = Math.min(minVal, curVal);
 
-            lastValue = value;
+            lastNumber = curVal;
 
             count++;
+            return true;
+        }
+
+        @Override
+        public void merge(StatisticsStrategy other) {
+            LongStrategy ds = (LongStrategy) checkType(this, other);
+            if (ds.count > 0) {
+                if (count == 0) {
+                    firstValue = ds.firstValue;
+                    firstNumber = ds.firstNumber;
+                }
+                lastValue = ds.lastValue;
+                lastNumber = ds.lastNumber;
+
+                sumOfVals += ds.sumOfVals;
+                sumOfSqrs += ds.sumOfSqrs;
+                maxVal = Math.max(maxVal, ds.maxVal);
+                minVal = Math.min(minVal, ds.minVal);
+                count += ds.count;
+            }
+            invalidCount += ds.invalidCount;
+        }
+
+        @Override
+        public StatisticsStrategy newInstance() {
+            LongStrategy ds = new LongStrategy();
+            ds.noData = noData;
+            return ds;
         }
 
         @Override
         public StatisticsVisitorResult getResult() {
             StatisticsVisitorResult sr = new StatisticsVisitorResult();
-            sr.setFirstValue(firstValue);
-            sr.setLastValue(lastValue);
+            if (count > 0) {
+                sr.setFirstValue(firstValue == null ? Long.valueOf(firstNumber) : firstValue);
+                sr.setLastValue(lastValue == null ? Long.valueOf(lastNumber) : lastValue);
+            }
             sr.setCount(count);
 
             sr.setMinimum(minVal);
@@ -403,6 +704,7 @@ public class StatisticsVisitor {
         public void reset() {
             count = invalidCount = 0;
             firstValue = lastValue = null;
+            firstNumber = lastNumber = 0;
             minVal = Long.MAX_VALUE;
             maxVal = Long.MIN_VALUE;
             sumOfVals = sumOfSqrs = 0.0d;
@@ -426,6 +728,10 @@ public class StatisticsVisitor {
 
         Object lastValue = null;
 
+        int firstNumber = 0;
+
+        int lastNumber = 0;
+
         int minVal = Integer.MAX_VALUE;
 
         int maxVal = Integer.MIN_VALUE;
@@ -441,14 +747,34 @@ public class StatisticsVisitor {
                 return;
             }
 
-            int curVal = ((Integer) value).intValue();
-            if (noData != null && curVal == noData) {
+            if (accept(((Number) value).intValue())) {
+                if (count == 1) {
+                    firstValue = value;
+                }
+                lastValue = value;
+            }
+        }
+
+        @Override
+        public void add(double value) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
                 invalidCount++;
                 return;
             }
 
-            if (firstValue == null) {
-                firstValue = value;
+            if (accept((int) value)) {
+                lastValue = null;
+            }
+        }
+
+        private boolean accept(int curVal) {
+            if (noData != null && curVal == noData) {
+                invalidCount++;
+                return false;
+            }
+
+            if (count == 0) {
+                firstNumber = curVal;
             }
 
             sumOfVals += curVal;
@@ -457,16 +783,46 @@ public class StatisticsVisitor {
             maxVal = Math.max(maxVal, curVal);
             minVal = Math.min(minVal, curVal);
 
-            lastValue = value;
+            lastNumber = curVal;
 
             count++;
+            return true;
+        }
+
+        @Override
+        public void merge(StatisticsStrategy other) {
+            IntegerStrategy ds = (IntegerStrategy) checkType(this, other);
+            if (ds.count > 0) {
+                if (count == 0) {
+                    firstValue = ds.firstValue;
+                    firstNumber = ds.firstNumber;
+                }
+                lastValue = ds.lastValue;
+                lastNumber = ds.lastNumber;
+
+                sumOfVals += ds.sumOfVals;
+                sumOfSqrs += ds.sumOfSqrs;
+                maxVal = Math.max(maxVal, ds.maxVal);
+                minVal = Math.min(minVal, ds.minVal);
+                count += ds.count;
+            }
+            invalidCount += ds.invalidCount;
+        }
+
+        @Override
+        public StatisticsStrategy newInstance() {
+            IntegerStrategy ds = new IntegerStrategy();
+            ds.noData = noData;
+            return ds;
         }
 
         @Override
         public StatisticsVisitorResult getResult() {
             StatisticsVisitorResult sr = new StatisticsVisitorResult();
-            sr.setFirstValue(firstValue);
-            sr.setLastValue(lastValue);
+            if (count > 0) {
+                sr.setFirstValue(firstValue == null ? Integer.valueOf(firstNumber) : firstValue);
+                sr.setLastValue(lastValue == null ? Integer.valueOf(lastNumber) : lastValue);
+            }
             sr.setCount(count);
 
             sr.setMinimum(minVal);
@@ -486,6 +842,7 @@ public class StatisticsVisitor {
         public void reset() {
             count = invalidCount = 0;
             firstValue = lastValue = null;
+            firstNumber = lastNumber = 0;
             minVal = Integer.MAX_VALUE;
             maxVal = Integer.MIN_VALUE;
             sumOfVals = sumOfSqrs = 0.0d;
@@ -530,6 +887,31 @@ public class StatisticsVisitor {
             count++;
         }
 
+        @Override
+        public void add(double value) {
+            add(Double.valueOf(value));
+        }
+
+        @Override
+        public void merge(StatisticsStrategy other) {
+            StringStrategy ss = (StringStrategy) checkType(this, other);
+            if (ss.count > 0) {
+                if (count == 0) {
+                    firstValue = ss.firstValue;
+                }
+                lastValue = ss.lastValue;
+                count += ss.count;
+            }
+            invalidCount += ss.invalidCount;
+        }
+
+        @Override
+        public StatisticsStrategy newInstance() {
+            StringStrategy ss = new StringStrategy();
+            ss.noData = noData;
+            return ss;
+        }
+
         @Override
         public StatisticsVisitorResult getResult() {
             StatisticsVisitorResult sr = new StatisticsVisitorResult();
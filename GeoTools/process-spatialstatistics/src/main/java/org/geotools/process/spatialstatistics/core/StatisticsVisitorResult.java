@@ -51,6 +51,8 @@ public class StatisticsVisitorResult {
 
     Object noData;
 
+    QuantileSketch quantiles = null;
+
     public Object getNoData() {
         return noData;
     }
@@ -146,6 +148,28 @@ public class StatisticsVisitorResult {
         this.invalidCount = invalidCount;
     }
 
+    public QuantileSketch getQuantiles() {
+        return quantiles;
+    }
+
+    public void setQuantiles(QuantileSketch quantiles) {
+        this.quantiles = quantiles;
+    }
+
+    /**
+     * Returns the median, NaN if the quantiles were not computed.
+     */
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+
+    /**
+     * Returns the quantile (0 - 1) of the values, NaN if the quantiles were not computed.
+     */
+    public double getQuantile(double quantile) {
+        return quantiles == null ? Double.NaN : quantiles.getQuantile(quantile);
+    }
+
     public Object getValue(StaticsType resultType) {
         switch (resultType) {
         case Count:
@@ -160,6 +184,8 @@ public class StatisticsVisitorResult {
             return getMean();
         case Minimum:
             return getMinimum();
+        case Median:
+            return getMedian();
         case Range:
             return getRange();
         case StandardDeviation:
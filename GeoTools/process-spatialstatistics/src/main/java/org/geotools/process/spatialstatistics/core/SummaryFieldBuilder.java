@@ -43,8 +43,8 @@ public class SummaryFieldBuilder {
         return INSTANCE;
     }
 
-    // FIRST, LAST, SUM, MEAN, MIN, MAX, RANGE, STD, VAR, COUNT
-    // FIRST(Fst), LAST(Lst), SUM, MEAN(Avg, Average), MIN(Minimum),
+    // FIRST, LAST, SUM, MEAN, MEDIAN, MIN, MAX, RANGE, STD, VAR, COUNT
+    // FIRST(Fst), LAST(Lst), SUM, MEAN(Avg, Average), MEDIAN(Med), MIN(Minimum),
     // MAX(Maximum), RANGE, STD(StandardDeviation), VAR(Variance), COUNT(Cnt)
 
     public List<StatisticsField> buildFields(SimpleFeatureType srcType, String summaryFields,
@@ -93,6 +93,8 @@ public class SummaryFieldBuilder {
             } else if (statType.contains("MEAN") || statType.contains("AVE")
                     || statType.contains("AVG")) {
                 staticsType = StaticsType.Mean;
+            } else if (statType.contains("MED")) {
+                staticsType = StaticsType.Median;
             } else if (statType.contains("MIN")) {
                 staticsType = StaticsType.Minimum;
             } else if (statType.contains("MAX")) {
@@ -147,6 +149,8 @@ public class SummaryFieldBuilder {
             } else if (statType.contains("MEAN") || statType.contains("AVE")
                     || statType.contains("AVG")) {
                 targetField = String.format("avg_%s", sourceField);
+            } else if (statType.contains("MED")) {
+                targetField = String.format("med_%s", sourceField);
             } else if (statType.contains("MIN")) {
                 targetField = String.format("min_%s", sourceField);
             } else if (statType.contains("MAX")) {
@@ -16,17 +16,30 @@
  */
 package org.geotools.process.spatialstatistics.core;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Hashtable;
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +48,12 @@ import org.geotools.util.logging.Logging;
 
 /**
  * SpatialWeightMatrixResult
+ * <p>
+ * Feature IDs are interned to dense int indexes and the neighbors are kept in a {@link SparseWeightMatrix} (primitive CSR arrays) in that
+ * index space. The ID based methods are a view on top of the index based storage.
+ * <p>
+ * Besides the text SWM-like format, the matrix can be saved to a compact binary format (header, id table, CSR offsets/indices/values) which
+ * is opened through a memory mapped buffer by {@link #load(File, Charset)}.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -47,17 +66,49 @@ public class WeightMatrix {
 
     private final String space = " ";
 
+    // binary format: magic 'GXTW', version
+    static final int BINARY_MAGIC = 0x47585457;
+
+    static final int BINARY_VERSION = 1;
+
+    private static final byte ID_STRING = 0;
+
+    private static final byte ID_INTEGER = 1;
+
+    private static final byte ID_LONG = 2;
+
+    /**
+     * System property naming the directory of the spatial weights files which the processes may read and write.
+     */
+    public static final String WEIGHTS_DIRECTORY =
+            "org.geotools.process.spatialstatistics.weightsDirectory";
+
     private String uniqueField;
 
     private String typeName;
 
     private SpatialWeightMatrixType spatialWeightMatrixType = SpatialWeightMatrixType.Distance;
 
-    // primaryID, <secondaryID, distance>
-    private LinkedHashMap<Object, Hashtable<Object, Double>> items;
+    // feature ID <-> dense index
+    private final List<Object> ids = new ArrayList<Object>();
+
+    private final Map<Object, Integer> idIndex = new HashMap<Object, Integer>();
+
+    // indexes visited as primary, in visiting order
+    private int[] primaryOrder = new int[16];
+
+    private int primaryCount = 0;
+
+    private final BitSet primaries = new BitSet();
+
+    // pending (primary, secondary, distance) entries, null after compaction
+    private SparseWeightMatrix.Builder builder;
+
+    // compacted neighbors, null if there are pending entries
+    private SparseWeightMatrix matrix;
 
     public int getFeatureCount() {
-        return this.items.size();
+        return this.primaryCount;
     }
 
     public String getUniqueField() {
@@ -88,17 +139,56 @@ public class WeightMatrix {
         this.spatialWeightMatrixType = spatialWeightMatrixType;
     }
 
-    public LinkedHashMap<Object, Hashtable<Object, Double>> getItems() {
-        return items;
+    public WeightMatrix(SpatialWeightMatrixType spatialWeightMatrixType) {
+        this.setSpatialWeightMatrixType(spatialWeightMatrixType);
+        this.builder = new SparseWeightMatrix.Builder();
     }
 
-    public void setItems(LinkedHashMap<Object, Hashtable<Object, Double>> items) {
-        this.items = items;
+    /**
+     * Returns the number of interned feature IDs (primary and secondary).
+     */
+    public int getIndexCount() {
+        return ids.size();
     }
 
-    public WeightMatrix(SpatialWeightMatrixType spatialWeightMatrixType) {
-        this.setSpatialWeightMatrixType(spatialWeightMatrixType);
-        this.setItems(new LinkedHashMap<Object, Hashtable<Object, Double>>());
+    /**
+     * Returns the dense index of the feature ID, or -1 if the ID is unknown.
+     */
+    public int indexOf(Object id) {
+        Integer index = idIndex.get(id);
+        return index == null ? -1 : index.intValue();
+    }
+
+    public Object getID(int index) {
+        return ids.get(index);
+    }
+
+    /**
+     * Returns the primary indexes in visiting order.
+     */
+    public int[] getPrimaryIndexes() {
+        return Arrays.copyOf(primaryOrder, primaryCount);
+    }
+
+    /**
+     * Returns the neighbors as CSR arrays in the dense index space. The values are the visited distances (1.0 for contiguity).
+     */
+    public SparseWeightMatrix getSparseMatrix() {
+        if (matrix == null) {
+            matrix = builder.build(ids.size());
+            builder = null;
+        }
+        return matrix;
+    }
+
+    private int intern(Object id) {
+        Integer index = idIndex.get(id);
+        if (index == null) {
+            index = Integer.valueOf(ids.size());
+            ids.add(id);
+            idIndex.put(id, index);
+        }
+        return index.intValue();
     }
 
     public void setupVariables(String typeName, String uniqueField) {
@@ -111,10 +201,33 @@ public class WeightMatrix {
     }
 
     public void visit(Object primaryID, Object secondaryID, Double distance) {
-        if (!items.containsKey(primaryID)) {
-            items.put(primaryID, new Hashtable<Object, Double>());
+        addNeighbor(intern(primaryID), intern(secondaryID), distance.doubleValue());
+    }
+
+    /**
+     * Adds a neighbor by dense index. The indexes must have been interned by {@link #visit(Object, Object, Double)}.
+     */
+    public void addNeighbor(int primary, int secondary, double distance) {
+        if (builder == null) {
+            // reopen the compacted matrix
+            builder = new SparseWeightMatrix.Builder(-1, Math.max(64, matrix.getNonZeroCount()));
+            for (int row = 0; row < matrix.size(); row++) {
+                for (int k = matrix.getRowStart(row); k < matrix.getRowEnd(row); k++) {
+                    builder.add(row, matrix.getColumn(k), matrix.getWeight(k));
+                }
+            }
+            matrix = null;
         }
-        items.get(primaryID).put(secondaryID, distance);
+
+        if (!primaries.get(primary)) {
+            primaries.set(primary);
+            if (primaryCount == primaryOrder.length) {
+                primaryOrder = Arrays.copyOf(primaryOrder, primaryCount + (primaryCount >> 1) + 1);
+            }
+            primaryOrder[primaryCount++] = primary;
+        }
+
+        builder.add(primary, secondary, distance);
     }
 
     public boolean isNeighbor(SpatialEvent source, SpatialEvent target) {
@@ -122,10 +235,18 @@ public class WeightMatrix {
     }
 
     public boolean isNeighbor(Object primaryID, Object secondaryID) {
-        if (items.containsKey(primaryID)) {
-            return items.get(primaryID).containsKey(secondaryID);
+        int primary = indexOf(primaryID);
+        if (primary < 0 || !primaries.get(primary)) {
+            return false;
         }
-        return false;
+
+        int secondary = indexOf(secondaryID);
+        return secondary >= 0 && isNeighbor(primary, secondary);
+    }
+
+    public boolean isNeighbor(int primary, int secondary) {
+        SparseWeightMatrix sparse = getSparseMatrix();
+        return primary < sparse.size() && sparse.isNeighbor(primary, secondary);
     }
 
     public double getWeight(SpatialEvent source, SpatialEvent target) {
@@ -144,12 +265,358 @@ public class WeightMatrix {
         }
     }
 
+    /**
+     * Replaces the content of this matrix with the given ids and neighbors. Every row with at least one neighbor becomes a primary.
+     */
+    public void setSparseMatrix(List<?> featureIDs, SparseWeightMatrix neighbors) {
+        if (featureIDs.size() != neighbors.size()) {
+            throw new IllegalArgumentException("The number of ids must be the matrix size!");
+        }
+
+        clear();
+        for (Object id : featureIDs) {
+            intern(id);
+        }
+
+        primaryOrder = new int[Math.max(16, neighbors.size())];
+        for (int row = 0; row < neighbors.size(); row++) {
+            if (neighbors.getRowLength(row) > 0) {
+                primaries.set(row);
+                primaryOrder[primaryCount++] = row;
+            }
+        }
+
+        this.builder = null;
+        this.matrix = neighbors;
+    }
+
+    private void clear() {
+        ids.clear();
+        idIndex.clear();
+        primaries.clear();
+        primaryOrder = new int[16];
+        primaryCount = 0;
+        builder = new SparseWeightMatrix.Builder();
+        matrix = null;
+    }
+
+    /**
+     * Loads a binary or text spatial weights file into this matrix. The format is detected from the file header.
+     */
     public boolean load(File swmFile, Charset charset) {
-        // TODO code here
+        if (swmFile == null || !swmFile.isFile()) {
+            LOGGER.log(Level.WARNING, "Spatial weights file does not exist: " + swmFile);
+            return false;
+        }
 
+        try {
+            if (isBinary(swmFile)) {
+                readBinary(swmFile);
+            } else {
+                readText(swmFile, charset == null ? Charset.defaultCharset() : charset);
+            }
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e.getMessage(), e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Invalid spatial weights file: " + swmFile, e);
+        }
+
+        clear();
         return false;
     }
 
+    /**
+     * Resolves the name of a spatial weights file in the directory of the {@link #WEIGHTS_DIRECTORY} system property.
+     * 
+     * @throws IllegalArgumentException if the directory is not configured or the file is outside of it
+     */
+    public static File resolveWeightsFile(String fileName) {
+        String directory = System.getProperty(WEIGHTS_DIRECTORY);
+        if (directory == null || directory.trim().isEmpty()) {
+            throw new IllegalArgumentException("Spatial weights files are disabled, set the "
+                    + WEIGHTS_DIRECTORY + " system property to the weights directory!");
+        }
+
+        try {
+            File root = new File(directory.trim()).getCanonicalFile();
+            File swmFile = new File(root, fileName).getCanonicalFile();
+            if (swmFile.equals(root) || !swmFile.toPath().startsWith(root.toPath())) {
+                throw new IllegalArgumentException("Spatial weights file is outside of "
+                        + WEIGHTS_DIRECTORY + ": " + fileName);
+            }
+            return swmFile;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid spatial weights file: " + fileName, e);
+        }
+    }
+
+    public static boolean isBinary(File swmFile) throws IOException {
+        if (swmFile.length() < 8) {
+            return false;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(swmFile, "r");
+        try {
+            return raf.readInt() == BINARY_MAGIC;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Saves the matrix in the binary format: header, id table, primary order and CSR offsets/indices/values.
+     */
+    public void saveBinary(File outputFile) throws IOException {
+        SparseWeightMatrix sparse = getSparseMatrix();
+
+        byte idType = ID_INTEGER;
+        for (Object id : ids) {
+            if (id instanceof Integer) {
+                continue;
+            } else if (id instanceof Long && idType != ID_STRING) {
+                idType = ID_LONG;
+            } else {
+                idType = ID_STRING;
+                break;
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(outputFile), 65536));
+        try {
+            // header
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+            out.writeInt(spatialWeightMatrixType.ordinal());
+            writeString(out, typeName);
+            writeString(out, uniqueField);
+
+            // id table
+            out.writeInt(ids.size());
+            out.writeByte(idType);
+            for (Object id : ids) {
+                if (idType == ID_INTEGER) {
+                    out.writeInt(((Integer) id).intValue());
+                } else if (idType == ID_LONG) {
+                    out.writeLong(((Number) id).longValue());
+                } else {
+                    writeString(out, id.toString());
+                }
+            }
+
+            // primary order
+            out.writeInt(primaryCount);
+            for (int i = 0; i < primaryCount; i++) {
+                out.writeInt(primaryOrder[i]);
+            }
+
+            // CSR offsets, indices, values
+            out.writeInt(sparse.getNonZeroCount());
+            for (int row = 0; row <= sparse.size(); row++) {
+                out.writeInt(row < sparse.size() ? sparse.getRowStart(row) : sparse
+                        .getNonZeroCount());
+            }
+            for (int k = 0; k < sparse.getNonZeroCount(); k++) {
+                out.writeInt(sparse.getColumn(k));
+            }
+            for (int k = 0; k < sparse.getNonZeroCount(); k++) {
+                out.writeDouble(sparse.getWeight(k));
+            }
+            out.flush();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private void readBinary(File swmFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(swmFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // header
+            if (buffer.getInt() != BINARY_MAGIC) {
+                throw new IOException("Not a binary spatial weights file: " + swmFile);
+            }
+
+            int version = buffer.getInt();
+            if (version != BINARY_VERSION) {
+                throw new IOException("Unsupported spatial weights file version: " + version);
+            }
+
+            int matrixType = buffer.getInt();
+            if (matrixType < 0 || matrixType >= SpatialWeightMatrixType.values().length) {
+                throw new IOException("Invalid spatial weights matrix type: " + matrixType);
+            }
+
+            clear();
+            setSpatialWeightMatrixType(SpatialWeightMatrixType.values()[matrixType]);
+            setTypeName(readString(buffer));
+            setUniqueField(readString(buffer));
+
+            // id table, every id takes at least 4 bytes
+            int idCount = readCount(buffer, 4, "id");
+            byte idType = buffer.get();
+            if (idType != ID_STRING && idType != ID_INTEGER && idType != ID_LONG) {
+                throw new IOException("Invalid spatial weights id type: " + idType);
+            }
+
+            List<Object> featureIDs = new ArrayList<Object>(idCount);
+            for (int i = 0; i < idCount; i++) {
+                if (idType == ID_INTEGER) {
+                    featureIDs.add(Integer.valueOf(buffer.getInt()));
+                } else if (idType == ID_LONG) {
+                    featureIDs.add(Long.valueOf(buffer.getLong()));
+                } else {
+                    featureIDs.add(readString(buffer));
+                }
+            }
+
+            // primary order
+            int[] primaryIndexes = new int[readCount(buffer, 4, "primary")];
+            bulkGet(buffer, primaryIndexes);
+            for (int primary : primaryIndexes) {
+                checkIndex(primary, idCount, "primary");
+            }
+
+            // CSR offsets, indices, values: (idCount + 1) * 4 + nnz * 12 bytes
+            int nnz = readCount(buffer, 12, "neighbor");
+            if (buffer.remaining() - (long) nnz * 12 < (idCount + 1L) * 4) {
+                throw new IOException("Truncated spatial weights file: " + swmFile);
+            }
+
+            int[] rowOffsets = new int[idCount + 1];
+            int[] columns = new int[nnz];
+            double[] values = new double[nnz];
+            bulkGet(buffer, rowOffsets);
+            bulkGet(buffer, columns);
+            buffer.asDoubleBuffer().get(values);
+
+            if (rowOffsets[0] != 0 || rowOffsets[idCount] != nnz) {
+                throw new IOException("Invalid spatial weights row offsets: " + swmFile);
+            }
+            for (int row = 0; row < idCount; row++) {
+                if (rowOffsets[row] > rowOffsets[row + 1]) {
+                    throw new IOException("Invalid spatial weights row offsets: " + swmFile);
+                }
+            }
+            for (int column : columns) {
+                checkIndex(column, idCount, "neighbor");
+            }
+
+            setSparseMatrix(featureIDs, new SparseWeightMatrix(idCount, rowOffsets, columns,
+                    values));
+
+            // restore the saved primary order
+            primaryCount = primaryIndexes.length;
+            primaryOrder = primaryIndexes.length == 0 ? new int[16] : primaryIndexes;
+            primaries.clear();
+            for (int primary : primaryIndexes) {
+                primaries.set(primary);
+            }
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    // a count of entries of at least entrySize bytes each, which must fit in the rest of the file
+    private int readCount(ByteBuffer buffer, int entrySize, String name) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * entrySize > buffer.remaining()) {
+            throw new IOException("Invalid spatial weights " + name + " count: " + count);
+        }
+        return count;
+    }
+
+    private void checkIndex(int index, int idCount, String name) throws IOException {
+        if (index < 0 || index >= idCount) {
+            throw new IOException("Invalid spatial weights " + name + " index: " + index);
+        }
+    }
+
+    private void bulkGet(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * 4);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        } else if (length > buffer.remaining()) {
+            throw new IOException("Invalid spatial weights string length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readText(File swmFile, Charset charset) throws IOException {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(swmFile),
+                    charset));
+
+            // header : 0 25 seoul_series sgg_cd
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Empty spatial weights file: " + swmFile);
+            }
+
+            clear();
+            String[] header = line.trim().split("\\s+");
+            if (header.length > 2) {
+                setTypeName(header[2]);
+            }
+            setUniqueField(header.length > 3 ? header[3] : null);
+
+            // contiguity: "id count" followed by the neighbor line, distance: "id id distance"
+            SpatialWeightMatrixType type = null;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                String[] tokens = line.split("\\s+");
+                if (type == null) {
+                    type = tokens.length == 2 ? SpatialWeightMatrixType.Contiguity
+                            : SpatialWeightMatrixType.Distance;
+                    setSpatialWeightMatrixType(type);
+                }
+
+                if (type == SpatialWeightMatrixType.Contiguity) {
+                    String primaryID = tokens[0];
+                    int count = Integer.parseInt(tokens[1]);
+                    String neighbors = reader.readLine();
+                    if (count == 0 || neighbors == null || neighbors.trim().isEmpty()) {
+                        continue;
+                    }
+
+                    for (String secondaryID : neighbors.trim().split("\\s+")) {
+                        visit(primaryID, secondaryID);
+                    }
+                } else {
+                    visit(tokens[0], tokens[1], Double.valueOf(tokens[2]));
+                }
+            }
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
     private void writeContiguity(File outputFile, Charset charset) throws IOException {
         BufferedWriter writer = null;
         try {
@@ -164,22 +631,23 @@ public class WeightMatrix {
             writer.write(sb.append(newLine).toString());
 
             // matrix
-            for (Entry<Object, Hashtable<Object, Double>> entry : items.entrySet()) {
-                Object primaryID = entry.getKey();
-                int count = entry.getValue().size();
+            SparseWeightMatrix sparse = getSparseMatrix();
+            for (int i = 0; i < primaryCount; i++) {
+                int primary = primaryOrder[i];
+                int count = sparse.getRowLength(primary);
 
                 // 11170 7
                 sb.setLength(0);
-                sb.append(primaryID.toString()).append(space).append(count);
+                sb.append(ids.get(primary).toString()).append(space).append(count);
                 writer.write(sb.append(newLine).toString());
 
                 // 11440 11590 11140 11200 11650 11560 11680
                 sb.setLength(0);
-                for (Entry<Object, Double> second : entry.getValue().entrySet()) {
+                for (int k = sparse.getRowStart(primary); k < sparse.getRowEnd(primary); k++) {
                     if (sb.length() > 0) {
                         sb.append(space);
                     }
-                    sb.append(second.getKey().toString());
+                    sb.append(ids.get(sparse.getColumn(k)).toString());
                 }
                 writer.write(sb.append(newLine).toString());
             }
@@ -205,14 +673,16 @@ public class WeightMatrix {
             writer.write(sb.append(newLine).toString());
 
             // matrix
-            for (Entry<Object, Hashtable<Object, Double>> entry : items.entrySet()) {
-                Object primaryID = entry.getKey();
-                for (Entry<Object, Double> second : entry.getValue().entrySet()) {
+            SparseWeightMatrix sparse = getSparseMatrix();
+            for (int i = 0; i < primaryCount; i++) {
+                int primary = primaryOrder[i];
+                String primaryID = ids.get(primary).toString();
+                for (int k = sparse.getRowStart(primary); k < sparse.getRowEnd(primary); k++) {
                     // 11545 11620 4029.25183
                     sb.setLength(0);
-                    sb.append(primaryID.toString()).append(space);
-                    sb.append(second.getKey().toString()).append("         ");
-                    sb.append(second.getValue());
+                    sb.append(primaryID).append(space);
+                    sb.append(ids.get(sparse.getColumn(k)).toString()).append("         ");
+                    sb.append(sparse.getWeight(k));
                     writer.write(sb.append(newLine).toString());
                 }
             }
@@ -16,14 +16,21 @@
  */
 package org.geotools.process.spatialstatistics.core;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.process.spatialstatistics.core.AbstractWeightMatrix.SpatialWeightMatrixType;
 import org.geotools.process.spatialstatistics.enumeration.ContiguityType;
 import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
 import org.geotools.process.spatialstatistics.enumeration.SpatialConcept;
@@ -31,7 +38,9 @@ import org.geotools.process.spatialstatistics.enumeration.StandardizationMethod;
 import org.geotools.util.factory.GeoTools;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.expression.Expression;
@@ -66,7 +75,10 @@ public class WeightMatrixBuilder {
 
     private double exponent = 1.0; // 1 or 2
 
-    private Hashtable<Object, Double> rowSum = new Hashtable<Object, Double>();
+    private double[] rowSums;
+
+    // event ID -> event index, built on demand for the SpatialEvent based methods
+    private Map<Object, Integer> eventIndex;
 
     private double distanceBandWidth = 0;
 
@@ -76,12 +88,18 @@ public class WeightMatrixBuilder {
 
     private WeightMatrix weightMatrix;
 
+    // null for distance decay concepts, whose weights are evaluated on the fly
+    private SparseWeightMatrix sparseMatrix;
+
     private StandardizationMethod standardizationMethod = StandardizationMethod.None;
 
     private boolean selfNeighbors = false;
 
     private DistanceFactory factory = DistanceFactory.newInstance();
 
+    // the file to load with the WeightsFromFile concept, the other concepts save their weights to it
+    private File spatialWeightsFile = null;
+
     public WeightMatrixBuilder() {
 
     }
@@ -124,10 +142,22 @@ public class WeightMatrixBuilder {
         this.selfNeighbors = selfNeighbors;
     }
 
+    public File getSpatialWeightsFile() {
+        return spatialWeightsFile;
+    }
+
+    public void setSpatialWeightsFile(File spatialWeightsFile) {
+        this.spatialWeightsFile = spatialWeightsFile;
+    }
+
     public WeightMatrix getWeightMatrix() {
         return weightMatrix;
     }
 
+    public SparseWeightMatrix getSparseWeightMatrix() {
+        return sparseMatrix;
+    }
+
     public double getMeanX() {
         return this.sumX / this.getEvents().size();
     }
@@ -165,7 +195,11 @@ public class WeightMatrixBuilder {
             Expression yField) {
         this.events = loadEvents(inputFeatures, xField, yField);
 
-        if (isContiguity) {
+        List<Object> keys = null;
+        if (spatialConcept == SpatialConcept.WeightsFromFile) {
+            weightMatrix = loadWeightMatrix();
+            keys = loadKeys(inputFeatures, weightMatrix.getUniqueField());
+        } else if (isContiguity) {
             WeightMatrixContiguity contiguity = new WeightMatrixContiguity();
             contiguity.setSelfNeighbors(isSelfNeighbors());
             if (spatialConcept == SpatialConcept.ContiguityEdgesNodes) {
@@ -196,60 +230,297 @@ public class WeightMatrixBuilder {
             }
         }
 
+        // build the neighbor lists once, the operations only iterate them
+        this.sparseMatrix = buildSparseMatrix(keys);
+        this.rowSums = null;
+        this.eventIndex = null;
+
         if (standardizationMethod == StandardizationMethod.Row) {
-            calculateRowSum();
+            calculateRowSums();
+        }
+
+        if (spatialConcept != SpatialConcept.WeightsFromFile && spatialWeightsFile != null) {
+            saveWeightMatrix(inputFeatures);
         }
 
         return weightMatrix;
     }
 
+    /**
+     * Saves the raw weights in the binary format, so that later runs over the same features can load them with the WeightsFromFile concept
+     * instead of building the neighbors again.
+     */
+    private void saveWeightMatrix(SimpleFeatureCollection inputFeatures) {
+        if (sparseMatrix == null) {
+            LOGGER.log(Level.WARNING, "Distance decay weights of " + spatialConcept
+                    + " are not saved, every pair of features is a neighbor!");
+            return;
+        }
+
+        List<Object> ids = new ArrayList<Object>(events.size());
+        for (SpatialEvent event : events) {
+            ids.add(event.id);
+        }
+
+        SpatialWeightMatrixType matrixType = SpatialWeightMatrixType.Distance;
+        if (weightMatrix != null) {
+            matrixType = weightMatrix.getSpatialWeightMatrixType();
+        }
+        WeightMatrix matrix = new WeightMatrix(matrixType);
+        matrix.setupVariables(inputFeatures.getSchema().getTypeName(), null);
+        matrix.setSparseMatrix(ids, sparseMatrix);
+        try {
+            matrix.saveBinary(spatialWeightsFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not save spatial weights file: "
+                    + spatialWeightsFile.getPath(), e);
+        }
+    }
+
     public double getWeight(SpatialEvent source, SpatialEvent target) {
         double weight = 0.0; // default
 
         if (isContiguity) {
             weight = weightMatrix.isNeighbor(source.id, target.id) ? 1.0 : 0.0;
+        } else if (spatialConcept == SpatialConcept.WeightsFromFile) {
+            weight = sparseMatrix.getWeight(indexOf(source), indexOf(target));
+        } else if (spatialConcept == SpatialConcept.KNearestNeighbors) {
+            weight = weightMatrix.isNeighbor(source.id, target.id) ? 1.0 : 0.0;
         } else {
-            double dist = factory.getDistance(source, target);
-            if (spatialConcept == SpatialConcept.InverseDistance) {
-                weight = dist <= 1.0 ? 1.0 : 1.0 / (Math.pow(dist, exponent)); // beta = 1
-            } else if (spatialConcept == SpatialConcept.InverseDistanceSquared) {
-                weight = dist <= 1.0 ? 1.0 : 1.0 / (Math.pow(dist, exponent)); // beta = 2
-            } else if (spatialConcept == SpatialConcept.FixedDistance) {
-                weight = dist <= distanceBandWidth ? 1.0 : 0.0;
-            } else if (spatialConcept == SpatialConcept.ZoneOfIndifference) {
-                weight = dist > distanceBandWidth ? 1.0 / ((dist - distanceBandWidth) + 1) : 1.0;
-            } else if (spatialConcept == SpatialConcept.KNearestNeighbors) {
-                weight = weightMatrix.isNeighbor(source.id, target.id) ? 1.0 : 0.0;
+            weight = getDistanceWeight(factory.getDistance(source, target));
+        }
+
+        return weight;
+    }
+
+    private double getDistanceWeight(double dist) {
+        if (spatialConcept == SpatialConcept.InverseDistance) {
+            return dist <= 1.0 ? 1.0 : 1.0 / (Math.pow(dist, exponent)); // beta = 1
+        } else if (spatialConcept == SpatialConcept.InverseDistanceSquared) {
+            return dist <= 1.0 ? 1.0 : 1.0 / (Math.pow(dist, exponent)); // beta = 2
+        } else if (spatialConcept == SpatialConcept.FixedDistance) {
+            return dist <= distanceBandWidth ? 1.0 : 0.0;
+        } else if (spatialConcept == SpatialConcept.ZoneOfIndifference) {
+            return dist > distanceBandWidth ? 1.0 / ((dist - distanceBandWidth) + 1) : 1.0;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Returns the maximum number of neighbors of any event, i.e. the buffer size required by {@link #getNeighbors(int, int[], double[])}.
+     */
+    public int getMaxNeighbors() {
+        if (sparseMatrix != null) {
+            return sparseMatrix.getMaxRowLength();
+        }
+        return events.size();
+    }
+
+    /**
+     * Copies the neighbor indexes and raw (unstandardized) weights of the event at the given index into the buffers and returns the neighbor
+     * count. Only non-zero weights are returned, and the event itself is returned only if self neighbors are enabled.
+     */
+    public int getNeighbors(int index, int[] columns, double[] weights) {
+        if (sparseMatrix != null) {
+            return sparseMatrix.getRow(index, columns, weights);
+        }
+
+        // distance decay: every event is a potential neighbor
+        final SpatialEvent source = events.get(index);
+        final int size = events.size();
+
+        int count = 0;
+        for (int j = 0; j < size; j++) {
+            if (!selfNeighbors && index == j) {
+                continue;
+            }
+
+            double weight = getDistanceWeight(factory.getDistance(source, events.get(j)));
+            if (weight != 0) {
+                columns[count] = j;
+                weights[count] = weight;
+                count++;
             }
         }
+        return count;
+    }
+
+    public double getRowSum(int index) {
+        if (rowSums == null) {
+            calculateRowSums();
+        }
+        return rowSums[index];
+    }
 
+    public double standardizeWeight(int index, double weight) {
+        if (standardizationMethod == StandardizationMethod.Row) {
+            double rowSum = getRowSum(index);
+            return rowSum == 0 ? 0.0 : weight / rowSum;
+        }
         return weight;
     }
 
     public double standardizeWeight(SpatialEvent source, double weight) {
         if (standardizationMethod == StandardizationMethod.Row) {
-            Double rowSum = this.rowSum.get(source.id);
-            return rowSum == 0 ? 0.0 : weight / rowSum;
+            return standardizeWeight(indexOf(source), weight);
         }
         return weight;
     }
 
-    private void calculateRowSum() {
-        this.rowSum.clear();
-        for (SpatialEvent current : events) {
-            this.rowSum.put(current.id, getRowSum(current));
+    private int indexOf(SpatialEvent event) {
+        if (eventIndex == null) {
+            eventIndex = new HashMap<Object, Integer>(events.size() * 2);
+            for (int i = 0; i < events.size(); i++) {
+                eventIndex.put(events.get(i).id, Integer.valueOf(i));
+            }
+        }
+        return eventIndex.get(event.id).intValue();
+    }
+
+    private void calculateRowSums() {
+        final int size = events.size();
+        rowSums = new double[size];
+
+        if (sparseMatrix != null) {
+            for (int i = 0; i < size; i++) {
+                rowSums[i] = sparseMatrix.getRowSum(i);
+            }
+            return;
         }
+
+        int[] columns = new int[size];
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            int count = getNeighbors(i, columns, weights);
+            double sum = 0.0;
+            for (int k = 0; k < count; k++) {
+                sum += weights[k];
+            }
+            rowSums[i] = sum;
+        }
+    }
+
+    private SparseWeightMatrix buildSparseMatrix(List<Object> keys) {
+        if (spatialConcept == SpatialConcept.WeightsFromFile) {
+            return buildNeighborMatrix(keys);
+        } else if (isContiguity || spatialConcept == SpatialConcept.KNearestNeighbors) {
+            List<Object> ids = new ArrayList<Object>(events.size());
+            for (SpatialEvent event : events) {
+                ids.add(event.id);
+            }
+            return buildNeighborMatrix(ids);
+        } else if (spatialConcept == SpatialConcept.FixedDistance) {
+            return buildFixedDistanceMatrix();
+        } else if (spatialConcept == SpatialConcept.InverseDistance
+                || spatialConcept == SpatialConcept.InverseDistanceSquared
+                || spatialConcept == SpatialConcept.ZoneOfIndifference) {
+            // distance decay weights are non-zero for every pair
+            return null;
+        }
+
+        return new SparseWeightMatrix.Builder(events.size(), 0).build();
     }
 
-    private double getRowSum(SpatialEvent source) {
-        double rowSum = 0.0;
-        for (SpatialEvent current : events) {
-            if (!selfNeighbors && source.id == current.id) {
+    private SparseWeightMatrix buildNeighborMatrix(List<Object> keys) {
+        final int size = events.size();
+
+        // map the weight matrix index space to the event index space
+        SparseWeightMatrix neighbors = weightMatrix.getSparseMatrix();
+        int[] rowOf = new int[size];
+        int[] eventOf = new int[weightMatrix.getIndexCount()];
+        Arrays.fill(eventOf, -1);
+        for (int i = 0; i < size; i++) {
+            Object key = keys.get(i);
+            rowOf[i] = weightMatrix.indexOf(key);
+            if (rowOf[i] < 0 && key != null) {
+                // text weights files hold the ids as strings
+                rowOf[i] = weightMatrix.indexOf(key.toString());
+            }
+
+            if (rowOf[i] >= 0) {
+                eventOf[rowOf[i]] = i;
+            }
+        }
+
+        SparseWeightMatrix.Builder builder = new SparseWeightMatrix.Builder(size,
+                Math.max(16, neighbors.getNonZeroCount()));
+        for (int i = 0; i < size; i++) {
+            final int row = rowOf[i];
+            if (row < 0) {
                 continue;
             }
-            rowSum += getWeight(source, current);
+
+            for (int k = neighbors.getRowStart(row); k < neighbors.getRowEnd(row); k++) {
+                int j = eventOf[neighbors.getColumn(k)];
+                if (j < 0 || (!selfNeighbors && i == j)) {
+                    continue;
+                }
+                builder.add(i, j, 1.0);
+            }
+        }
+
+        return builder.build();
+    }
+
+    private SparseWeightMatrix buildFixedDistanceMatrix() {
+        final int size = events.size();
+
+        STRtree spatialIndex = new STRtree();
+        for (int i = 0; i < size; i++) {
+            spatialIndex.insert(new Envelope(events.get(i).coordinate), Integer.valueOf(i));
+        }
+
+        SparseWeightMatrix.Builder builder = new SparseWeightMatrix.Builder(size);
+        Envelope queryEnv = new Envelope();
+        for (int i = 0; i < size; i++) {
+            SpatialEvent source = events.get(i);
+            queryEnv.init(source.coordinate);
+            queryEnv.expandBy(distanceBandWidth);
+
+            for (Object item : spatialIndex.query(queryEnv)) {
+                int j = ((Integer) item).intValue();
+                if (!selfNeighbors && i == j) {
+                    continue;
+                }
+
+                double weight = getDistanceWeight(factory.getDistance(source, events.get(j)));
+                if (weight != 0) {
+                    builder.add(i, j, weight);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    private WeightMatrix loadWeightMatrix() {
+        if (spatialWeightsFile == null) {
+            throw new IllegalArgumentException("Spatial weights file is required!");
+        }
+
+        WeightMatrix matrix = new WeightMatrix(SpatialWeightMatrixType.Distance);
+        if (!matrix.load(spatialWeightsFile, Charset.defaultCharset())) {
+            throw new IllegalArgumentException("Could not load spatial weights file: "
+                    + spatialWeightsFile.getPath());
+        }
+        return matrix;
+    }
+
+    private List<Object> loadKeys(SimpleFeatureCollection features, String uniqueField) {
+        uniqueField = FeatureTypes.validateProperty(features.getSchema(), uniqueField);
+        boolean useFID = uniqueField == null || features.getSchema().indexOf(uniqueField) == -1;
+
+        List<Object> keys = new ArrayList<Object>(events.size());
+        SimpleFeatureIterator featureIter = features.features();
+        try {
+            while (featureIter.hasNext()) {
+                SimpleFeature feature = featureIter.next();
+                keys.add(useFID ? feature.getID() : feature.getAttribute(uniqueField));
+            }
+        } finally {
+            featureIter.close();
         }
-        return rowSum;
+        return keys;
     }
 
     private double getValue(SimpleFeature feature, Expression expression) {
@@ -16,8 +16,15 @@
  */
 package org.geotools.process.spatialstatistics.distribution;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
+import org.geotools.util.logging.Logging;
 
 /**
  * Abstract Distribution Visitor
@@ -27,6 +34,8 @@ import java.util.LinkedHashMap;
  * @source $URL$
  */
 public abstract class AbstractDistributionVisitor {
+    protected static final Logger LOGGER = Logging.getLogger(AbstractDistributionVisitor.class);
+
     protected static final String CASE_ALL = "ALL";
 
     @SuppressWarnings("rawtypes")
@@ -37,4 +46,46 @@ public abstract class AbstractDistributionVisitor {
         return resuleMap;
     }
 
+    /**
+     * Runs the task for the result of each case, side by side on all processors.
+     */
+    protected void computeCases(CaseTask task) {
+        computeCases(resuleMap.values().toArray(), task);
+    }
+
+    protected void computeCases(Object[] cases, CaseTask task) {
+        final AtomicInteger next = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(cases.length, 1);
+
+        List<PartialCases> tasks = new ArrayList<PartialCases>();
+        for (int t = 0; t < workers; t++) {
+            tasks.add(new PartialCases(cases, task, next));
+        }
+        ParallelExecutor.execute(tasks);
+    }
+
+    protected interface CaseTask {
+        void compute(int index, Object result);
+    }
+
+    static final class PartialCases implements Runnable {
+        private final Object[] cases;
+
+        private final CaseTask task;
+
+        private final AtomicInteger next;
+
+        public PartialCases(Object[] cases, CaseTask task, AtomicInteger next) {
+            this.cases = cases;
+            this.task = task;
+            this.next = next;
+        }
+
+        public void run() {
+            int k;
+            while ((k = next.getAndIncrement()) < cases.length) {
+                task.compute(k, cases[k]);
+            }
+        }
+    }
 }
@@ -17,58 +17,72 @@
 package org.geotools.process.spatialstatistics.distribution;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
 import org.geotools.util.factory.GeoTools;
+import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 
 /**
- * CentralFeature
+ * CentralFeature <br>
+ * The central event has the smallest sum of weighted distances to all other events. Instead of scoring every event against every other
+ * event, the candidates are pruned with lower bounds from grids of increasing resolution: the weighted distances to the events of a cell are
+ * never less than the total weight of the cell times the distance to its weighted centroid. Only the remaining candidates are scored, in
+ * parallel, and the result is the same event as the exhaustive search.
  * 
  * @author Minpa Lee, MangoSystem
  * 
  * @source $URL$
  */
 public class CentralFeature {
+    protected static final Logger LOGGER = Logging.getLogger(CentralFeature.class);
 
-    class Event {
-        int oid;
+    // below this number of events every event is scored
+    static final int MIN_PRUNING_SIZE = 256;
 
-        public double x;
+    // number of candidates scored per worker between two checks of the bounds
+    static final int BLOCK_SIZE = 64;
 
-        public double y;
+    // relative slack of the lower bounds against rounding errors
+    static final double TOLERANCE = 1.0e-8;
 
-        public double weight = 1.0;
-
-        public double potential = 0.0;
+    private DistanceMethod distanceMethod = DistanceMethod.Euclidean;
 
-        public Event() {
-        }
+    private int numFeatures = 0;
 
-        public Event(int oid, double x, double y, double weight, double potential) {
-            this.oid = oid;
-            this.x = x;
-            this.y = y;
-            this.weight = weight;
-            this.potential = potential;
-        }
-    }
+    private double[] xs = new double[64];
 
-    private DistanceMethod distanceMethod = DistanceMethod.Euclidean;
+    private double[] ys = new double[64];
 
-    private int numFeatures = 0;
+    private double[] weights = new double[64];
 
-    private List<Event> events = new ArrayList<Event>();
+    private double[] potentials = new double[64];
 
     private GeometryFactory gf = JTSFactoryFinder.getGeometryFactory(GeoTools.getDefaultHints());
 
     public void addValue(Coordinate coordinate, double weight, double potential) {
-        events.add(new Event(numFeatures, coordinate.x, coordinate.y, weight, potential));
+        if (numFeatures == xs.length) {
+            int capacity = numFeatures * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            potentials = Arrays.copyOf(potentials, capacity);
+        }
+
+        xs[numFeatures] = coordinate.x;
+        ys[numFeatures] = coordinate.y;
+        weights[numFeatures] = weight;
+        potentials[numFeatures] = potential;
         numFeatures++;
     }
 
@@ -76,36 +90,157 @@ public class CentralFeature {
         addValue(point.getCoordinate(), weight, potential);
     }
 
+    public int size() {
+        return numFeatures;
+    }
+
     public Point getCentralEvent() {
-        double minDistance = Double.MAX_VALUE;
-        Event centralEvent = new Event();
-
-        for (Event ce : events) {
-            double curDistance = 0d;
-            for (Event de : events) {
-                double dij = 0d;
-                if (ce.oid == de.oid) {
-                    dij = ce.potential;
-                } else {
-                    switch (distanceMethod) {
-                    case Euclidean:
-                        dij = SSUtils.getEuclideanDistance(ce.x, ce.y, de.x, de.y);
-                        break;
-                    case Manhattan:
-                        dij = SSUtils.getManhattanDistance(ce.x, ce.y, de.x, de.y);
-                        break;
+        return getCentralEvent(true);
+    }
+
+    Point getCentralEvent(boolean parallel) {
+        int index = getCentralIndex(parallel);
+        if (index == -1) {
+            return gf.createPoint(new Coordinate(0d, 0d));
+        }
+        return gf.createPoint(new Coordinate(xs[index], ys[index]));
+    }
+
+    private int getCentralIndex(boolean parallel) {
+        final int size = numFeatures;
+        final int workers = parallel ? ParallelExecutor.getWorkers(size, BLOCK_SIZE) : 1;
+
+        int[] candidates = new int[size];
+        for (int i = 0; i < size; i++) {
+            candidates[i] = i;
+        }
+
+        double[] bounds = null;
+        Best best = new Best();
+
+        if (size >= MIN_PRUNING_SIZE && isBounded()) {
+            // coarse to fine grids, while a grid has fewer cells than events
+            for (int gridSize = 16; gridSize * gridSize * 4 <= size
+                    && candidates.length > BLOCK_SIZE * workers; gridSize *= 4) {
+                bounds = evaluate(candidates, 0, candidates.length, new CellGrid(gridSize),
+                        workers);
+
+                // the candidate with the lowest bound gives the first exact score
+                int lowest = 0;
+                for (int k = 1; k < bounds.length; k++) {
+                    if (bounds[k] < bounds[lowest]) {
+                        lowest = k;
+                    }
+                }
+                best.offer(candidates[lowest], getScore(candidates[lowest]));
+
+                int count = 0;
+                for (int k = 0; k < candidates.length; k++) {
+                    if (bounds[k] <= best.score) {
+                        candidates[count] = candidates[k];
+                        bounds[count++] = bounds[k];
                     }
                 }
-                curDistance += (dij * de.weight);
+                candidates = Arrays.copyOf(candidates, count);
+                bounds = Arrays.copyOf(bounds, count);
+            }
+        }
+
+        if (bounds != null) {
+            sortByBounds(candidates, bounds);
+        }
+
+        // score the candidates, in the order of their lower bound if any
+        final int blockSize = BLOCK_SIZE * workers;
+        for (int start = 0; start < candidates.length; start += blockSize) {
+            if (bounds != null && bounds[start] > best.score) {
+                break;
+            }
+
+            final int end = Math.min(candidates.length, start + blockSize);
+            double[] scores = evaluate(candidates, start, end, null, workers);
+            for (int k = start; k < end; k++) {
+                best.offer(candidates[k], scores[k - start]);
             }
+        }
+
+        return best.index;
+    }
 
-            if (minDistance > curDistance) {
-                minDistance = curDistance;
-                centralEvent = ce;
+    // the bounds only hold for finite, non-negative weights
+    private boolean isBounded() {
+        for (int i = 0; i < numFeatures; i++) {
+            if (!(weights[i] >= 0) || Double.isInfinite(weights[i])
+                    || Double.isNaN(potentials[i]) || Double.isInfinite(potentials[i])
+                    || Double.isNaN(xs[i]) || Double.isInfinite(xs[i]) || Double.isNaN(ys[i])
+                    || Double.isInfinite(ys[i])) {
+                return false;
             }
         }
+        return true;
+    }
+
+    private void sortByBounds(int[] candidates, final double[] bounds) {
+        Integer[] order = new Integer[candidates.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = Integer.valueOf(k);
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(bounds[o1.intValue()], bounds[o2.intValue()]);
+            }
+        });
+
+        int[] sortedCandidates = new int[candidates.length];
+        double[] sortedBounds = new double[bounds.length];
+        for (int k = 0; k < order.length; k++) {
+            sortedCandidates[k] = candidates[order[k].intValue()];
+            sortedBounds[k] = bounds[order[k].intValue()];
+        }
+
+        System.arraycopy(sortedCandidates, 0, candidates, 0, candidates.length);
+        System.arraycopy(sortedBounds, 0, bounds, 0, bounds.length);
+    }
+
+    // exact scores, or lower bounds if a grid is given, of candidates[start, end)
+    private double[] evaluate(int[] candidates, int start, int end, CellGrid grid, int workers) {
+        final double[] results = new double[end - start];
+        final AtomicInteger next = new AtomicInteger(0);
+
+        workers = Math.max(1, Math.min(workers, results.length / 16));
+
+        List<PartialScore> tasks = new ArrayList<PartialScore>();
+        for (int t = 0; t < workers; t++) {
+            tasks.add(new PartialScore(candidates, start, results, grid, next));
+        }
+        ParallelExecutor.execute(tasks);
+
+        return results;
+    }
+
+    private double getScore(int ce) {
+        final double x = xs[ce];
+        final double y = ys[ce];
+
+        double curDistance = 0d;
+        for (int de = 0; de < numFeatures; de++) {
+            double dij = ce == de ? potentials[ce] : getDistance(x, y, xs[de], ys[de]);
+            curDistance += (dij * weights[de]);
+        }
+        return curDistance;
+    }
 
-        return gf.createPoint(new Coordinate(centralEvent.x, centralEvent.y));
+    private double getDistance(double x1, double y1, double x2, double y2) {
+        switch (distanceMethod) {
+        case Euclidean:
+            return SSUtils.getEuclideanDistance(x1, y1, x2, y2);
+        case Manhattan:
+            return SSUtils.getManhattanDistance(x1, y1, x2, y2);
+        default:
+            return 0d;
+        }
     }
 
     public DistanceMethod getDistanceMethod() {
@@ -115,4 +250,119 @@ public class CentralFeature {
     public void setDistanceMethod(DistanceMethod distanceMethod) {
         this.distanceMethod = distanceMethod;
     }
-}
\ No newline at end of file
+
+    /**
+     * Smallest score so far, the first event wins a tie as in the exhaustive search.
+     */
+    static final class Best {
+        int index = -1;
+
+        double score = Double.MAX_VALUE;
+
+        void offer(int candidate, double candidateScore) {
+            if (candidateScore < score || (candidateScore == score && candidate < index)) {
+                index = candidate;
+                score = candidateScore;
+            }
+        }
+    }
+
+    /**
+     * Total weight and weighted centroid of the events in each non-empty cell of a regular grid.
+     */
+    final class CellGrid {
+        private double[] cx;
+
+        private double[] cy;
+
+        private double[] cw;
+
+        CellGrid(int gridSize) {
+            double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < numFeatures; i++) {
+                minX = Math.min(minX, xs[i]);
+                maxX = Math.max(maxX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+
+            final double width = (maxX - minX) / gridSize;
+            final double height = (maxY - minY) / gridSize;
+
+            final int cells = gridSize * gridSize;
+            double[] sumW = new double[cells];
+            double[] sumX = new double[cells];
+            double[] sumY = new double[cells];
+            for (int i = 0; i < numFeatures; i++) {
+                int col = width > 0 ? Math.min(gridSize - 1, (int) ((xs[i] - minX) / width)) : 0;
+                int row = height > 0 ? Math.min(gridSize - 1, (int) ((ys[i] - minY) / height))
+                        : 0;
+                int cell = row * gridSize + col;
+                sumW[cell] += weights[i];
+                sumX[cell] += weights[i] * xs[i];
+                sumY[cell] += weights[i] * ys[i];
+            }
+
+            int count = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                if (sumW[cell] > 0) {
+                    count++;
+                }
+            }
+
+            cx = new double[count];
+            cy = new double[count];
+            cw = new double[count];
+            count = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                if (sumW[cell] > 0) {
+                    cx[count] = sumX[cell] / sumW[cell];
+                    cy[count] = sumY[cell] / sumW[cell];
+                    cw[count++] = sumW[cell];
+                }
+            }
+        }
+
+        // by convexity of the distance, sum(w * d(p, e)) >= W * d(p, centroid) in each cell
+        double getLowerBound(int ce) {
+            final double x = xs[ce];
+            final double y = ys[ce];
+
+            double sum = 0d;
+            for (int k = 0; k < cw.length; k++) {
+                sum += cw[k] * getDistance(x, y, cx[k], cy[k]);
+            }
+            return sum - sum * TOLERANCE + potentials[ce] * weights[ce];
+        }
+    }
+
+    final class PartialScore implements Runnable {
+        private final int[] candidates;
+
+        private final int start;
+
+        private final double[] results;
+
+        private final CellGrid grid;
+
+        private final AtomicInteger next;
+
+        public PartialScore(int[] candidates, int start, double[] results, CellGrid grid,
+                AtomicInteger next) {
+            this.candidates = candidates;
+            this.start = start;
+            this.results = results;
+            this.grid = grid;
+            this.next = next;
+        }
+
+        public void run() {
+            int k;
+            while ((k = next.getAndIncrement()) < results.length) {
+                int ce = candidates[start + k];
+                results[k] = grid == null ? getScore(ce) : grid.getLowerBound(ce);
+            }
+        }
+    }
+}
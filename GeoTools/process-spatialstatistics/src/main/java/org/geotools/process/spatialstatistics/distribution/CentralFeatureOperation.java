@@ -17,8 +17,8 @@
 package org.geotools.process.spatialstatistics.distribution;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
@@ -105,14 +105,12 @@ public class CentralFeatureOperation extends AbstractDistributionOperator {
         SimpleFeatureType featureType = FeatureTypes.build(schema, TYPE_NAME);
         IFeatureInserter featureWriter = getFeatureWriter(featureType);
 
-        @SuppressWarnings("unchecked")
-        HashMap<Object, CentralFeature> resultMap = visitor.getResult();
+        Map<Object, Point> resultMap = visitor.getCentralEvents();
         Iterator<Object> iter = resultMap.keySet().iterator();
         try {
             while (iter.hasNext()) {
                 Object caseVal = iter.next();
-                CentralFeature cf = resultMap.get(caseVal);
-                Point cenPt = cf.getCentralEvent();
+                Point cenPt = resultMap.get(caseVal);
 
                 Filter filter = null;
                 Filter intersects = ff.intersects(ff.property(the_geom), ff.literal(cenPt));
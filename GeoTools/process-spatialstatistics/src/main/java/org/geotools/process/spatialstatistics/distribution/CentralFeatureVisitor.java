@@ -16,8 +16,17 @@
  */
 package org.geotools.process.spatialstatistics.distribution;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
 import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
+import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Point;
 
 /**
  * CentralFeature Visitor
@@ -27,6 +36,10 @@ import org.locationtech.jts.geom.Coordinate;
  * @source $URL$
  */
 public class CentralFeatureVisitor extends AbstractDistributionVisitor {
+    protected static final Logger LOGGER = Logging.getLogger(CentralFeatureVisitor.class);
+
+    // cases with at least this number of events use all processors each
+    static final int PARALLEL_CASE_SIZE = 4096;
 
     private DistanceMethod distanceMethod = DistanceMethod.Euclidean;
 
@@ -51,4 +64,43 @@ public class CentralFeatureVisitor extends AbstractDistributionVisitor {
 
         centeralFeature.addValue(coordinate, weightVal, pottentialVal);
     }
+
+    /**
+     * Returns the central event of each case, in the order of the cases. Large cases are scored one after another with all processors,
+     * small cases are scored side by side.
+     */
+    public Map<Object, Point> getCentralEvents() {
+        @SuppressWarnings("unchecked")
+        HashMap<Object, CentralFeature> cases = resuleMap;
+
+        final Map<Object, Point> centralEvents = new LinkedHashMap<Object, Point>();
+        final List<Object> smallCases = new ArrayList<Object>();
+        for (Map.Entry<Object, CentralFeature> entry : cases.entrySet()) {
+            centralEvents.put(entry.getKey(), null); // keeps the order of the cases
+            if (entry.getValue().size() >= PARALLEL_CASE_SIZE) {
+                centralEvents.put(entry.getKey(), entry.getValue().getCentralEvent(true));
+            } else {
+                smallCases.add(entry.getKey());
+            }
+        }
+
+        final CentralFeature[] features = new CentralFeature[smallCases.size()];
+        for (int k = 0; k < features.length; k++) {
+            features[k] = cases.get(smallCases.get(k));
+        }
+
+        final Point[] results = new Point[features.length];
+        computeCases(features, new CaseTask() {
+            @Override
+            public void compute(int index, Object result) {
+                results[index] = ((CentralFeature) result).getCentralEvent(false);
+            }
+        });
+
+        for (int k = 0; k < results.length; k++) {
+            centralEvents.put(smallCases.get(k), results[k]);
+        }
+
+        return centralEvents;
+    }
 }
@@ -16,9 +16,6 @@
  */
 package org.geotools.process.spatialstatistics.distribution;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.util.factory.GeoTools;
@@ -27,7 +24,8 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 
 /**
- * Median Center
+ * Median Center <br>
+ * The events are kept in primitive arrays for the Weiszfeld iterations, the attribute values go straight to their median visitors.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -50,37 +48,13 @@ public class MedianCenter {
 
     private Point medianCenter = null;
 
-    private List<Event> events = new ArrayList<Event>();
+    private final WeightedPoints points = new WeightedPoints(false);
+
+    private MedianVisitor[] attVisitors = null;
 
     private final GeometryFactory gf = JTSFactoryFinder.getGeometryFactory(GeoTools
             .getDefaultHints());
 
-    class Event {
-        public double x;
-
-        public double y;
-
-        public double weight;
-
-        public Number[] attVals;
-
-        public Event() {
-        }
-
-        public Event(double x, double y, double weight, Number[] attVals) {
-            this.x = x;
-            this.y = y;
-            this.weight = weight;
-            this.attVals = attVals;
-        }
-
-        public double getEuclideanDistance(Event other) {
-            double dx = this.x - other.x;
-            double dy = this.y - other.y;
-            return Math.sqrt((dx * dx) + (dy * dy));
-        }
-    }
-
     public void addValue(Coordinate coordinate, double weight, Number[] attVals) {
         weightSum += weight;
         sumX += coordinate.x * weight;
@@ -92,7 +66,20 @@ public class MedianCenter {
         maxX = Math.max(maxX, coordinate.x);
         maxY = Math.max(maxY, coordinate.y);
 
-        events.add(new Event(coordinate.x, coordinate.y, weight, attVals));
+        if (points.size == 0 && attVals != null) {
+            attVisitors = new MedianVisitor[attVals.length];
+            for (int k = 0; k < attVisitors.length; k++) {
+                attVisitors[k] = new MedianVisitor();
+            }
+        }
+
+        if (attVisitors != null && attVals != null) {
+            for (int k = 0; k < attVisitors.length; k++) {
+                attVisitors[k].visit(attVals[k]);
+            }
+        }
+
+        points.add(coordinate.x, coordinate.y, weight);
     }
 
     public Point getMedianCenter() {
@@ -103,12 +90,11 @@ public class MedianCenter {
         final int maxIters = 100; // maximum number of iterations
         final double tolerance = 0.000001;
 
-        Event med = new Event();
-        med.x = sumX / weightSum;
-        med.y = sumY / weightSum;
+        double medX = sumX / weightSum;
+        double medY = sumY / weightSum;
 
-        if (events.size() == 1) {
-            return gf.createPoint(new Coordinate(med.x, med.y));
+        if (points.size == 1) {
+            return gf.createPoint(new Coordinate(medX, medY));
         }
 
         double width = maxX - minX;
@@ -134,69 +120,61 @@ public class MedianCenter {
                 break;
             }
 
-            Event newCenter = evaluateDistance(med, extentArea);
+            double[] newCenter = evaluateDistance(medX, medY, extentArea);
 
-            boolean diffX = SSUtils.compareDouble(newCenter.x, med.x, tolerance);
-            boolean diffY = SSUtils.compareDouble(newCenter.y, med.y, tolerance);
+            boolean diffX = SSUtils.compareDouble(newCenter[0], medX, tolerance);
+            boolean diffY = SSUtils.compareDouble(newCenter[1], medY, tolerance);
             if (diffX && diffY) {
                 flag = false;
             } else {
-                med.x = newCenter.x;
-                med.y = newCenter.y;
+                medX = newCenter[0];
+                medY = newCenter[1];
             }
         }
 
-        medianCenter = gf.createPoint(new Coordinate(med.x, med.y));
+        medianCenter = gf.createPoint(new Coordinate(medX, medY));
 
         return medianCenter;
     }
 
     public Number[] getUnivariateMedian() {
-        Event initCe = events.get(0);
-        if (initCe.attVals == null) {
+        if (attVisitors == null) {
             return null;
         }
 
-        int size = initCe.attVals.length;
-        MedianVisitor[] visitor = new MedianVisitor[size];
-        for (int k = 0; k < visitor.length; k++) {
-            visitor[k] = new MedianVisitor();
-        }
-
-        for (Event ce : events) {
-            for (int k = 0; k < size; k++) {
-                visitor[k].visit(ce.attVals[k]);
-            }
-        }
-
-        Number[] medianValue = new Number[size];
-        for (int k = 0; k < visitor.length; k++) {
-            medianValue[k] = visitor[k].getMedian();
+        Number[] medianValue = new Number[attVisitors.length];
+        for (int k = 0; k < attVisitors.length; k++) {
+            medianValue[k] = attVisitors[k].getMedian();
         }
 
         return medianValue;
     }
 
-    private Event evaluateDistance(Event estimate, double maxK) {
+    private double[] evaluateDistance(double estimateX, double estimateY, double maxK) {
         double sumK = 0;
         double newXTop = 0;
         double newYTop = 0;
 
-        for (Event ce : events) {
-            final double dij = estimate.getEuclideanDistance(ce);
+        final double[] xs = points.xs;
+        final double[] ys = points.ys;
+        final double[] weights = points.weights;
+        for (int i = 0; i < points.size; i++) {
+            final double dx = estimateX - xs[i];
+            final double dy = estimateY - ys[i];
+            final double dij = Math.sqrt((dx * dx) + (dy * dy));
             double k = 0;
 
             if (dij == 0) {
-                k = ce.weight * maxK;
+                k = weights[i] * maxK;
             } else {
-                k = ce.weight / dij;
+                k = weights[i] / dij;
             }
 
             sumK += k;
-            newXTop += k * ce.x;
-            newYTop += k * ce.y;
+            newXTop += k * xs[i];
+            newYTop += k * ys[i];
         }
 
-        return new Event(newXTop / sumK, newYTop / sumK, 1.0, null);
+        return new double[] { newXTop / sumK, newYTop / sumK };
     }
-}
\ No newline at end of file
+}
@@ -111,6 +111,9 @@ public class MedianCenterOperation extends AbstractDistributionOperator {
             featureIter.close();
         }
 
+        // compute the cases side by side
+        visitor.compute();
+
         // build feature collection
         CoordinateReferenceSystem crs = schema.getCoordinateReferenceSystem();
         String geomName = schema.getGeometryDescriptor().getLocalName();
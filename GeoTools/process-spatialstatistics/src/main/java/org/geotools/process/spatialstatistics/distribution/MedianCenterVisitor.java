@@ -39,4 +39,16 @@ public class MedianCenterVisitor extends AbstractDistributionVisitor {
 
         medianCenter.addValue(coordinate, weightVal, attVals);
     }
+
+    /**
+     * Computes the median center of all cases, side by side on all processors.
+     */
+    public void compute() {
+        computeCases(new CaseTask() {
+            @Override
+            public void compute(int index, Object result) {
+                ((MedianCenter) result).getMedianCenter();
+            }
+        });
+    }
 }
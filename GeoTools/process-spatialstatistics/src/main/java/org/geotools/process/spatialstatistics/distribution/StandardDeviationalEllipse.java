@@ -33,7 +33,8 @@ import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Point;
 
 /**
- * StandardDistanceEllipse
+ * StandardDistanceEllipse <br>
+ * The events are kept in primitive arrays, or only as weighted sums in streaming mode.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -50,25 +51,19 @@ public class StandardDeviationalEllipse {
 
     private double weightSum = 0.0;
 
-    private List<Event> events = new ArrayList<Event>();
+    private final WeightedPoints points;
 
     private GeometryFactory gf = JTSFactoryFinder.getGeometryFactory(GeoTools.getDefaultHints());
 
-    class Event {
-        public double x;
-
-        public double y;
-
-        public double weight;
-
-        public Event() {
-        }
+    public StandardDeviationalEllipse() {
+        this(false);
+    }
 
-        public Event(double x, double y, double weight) {
-            this.x = x;
-            this.y = y;
-            this.weight = weight;
-        }
+    /**
+     * @param streaming if true, the events are not kept and the deviations are computed from the weighted sums in one pass
+     */
+    public StandardDeviationalEllipse(boolean streaming) {
+        this.points = new WeightedPoints(streaming);
     }
 
     public void addValue(Coordinate coordinate, double weight) {
@@ -78,7 +73,7 @@ public class StandardDeviationalEllipse {
         sumY += coordinate.y * weight;
         sumZ += coordinate.z * weight;
 
-        events.add(new Event(coordinate.x, coordinate.y, weight));
+        points.add(coordinate.x, coordinate.y, weight);
     }
 
     public double seX = 0;
@@ -100,13 +95,22 @@ public class StandardDeviationalEllipse {
 
         // Standard Ellipse
         double sigXY = 0, sigX = 0, sigY = 0;
-        for (Event ce : events) {
-            final double devX = ce.x - meanX;
-            final double devY = ce.y - meanY;
-
-            sigX += Math.pow(devX, 2.0) * ce.weight;
-            sigY += Math.pow(devY, 2.0) * ce.weight;
-            sigXY += devX * devY * ce.weight;
+        if (points.isStreaming()) {
+            sigX = points.getSigX();
+            sigY = points.getSigY();
+            sigXY = points.getSigXY();
+        } else {
+            final double[] xs = points.xs;
+            final double[] ys = points.ys;
+            final double[] weights = points.weights;
+            for (int i = 0; i < points.size; i++) {
+                final double devX = xs[i] - meanX;
+                final double devY = ys[i] - meanY;
+
+                sigX += Math.pow(devX, 2.0) * weights[i];
+                sigY += Math.pow(devY, 2.0) * weights[i];
+                sigXY += devX * devY * weights[i];
+            }
         }
 
         double denom = sigXY * 2.0;
@@ -67,6 +67,19 @@ public class StandardDeviationalEllipseOperation extends AbstractDistributionOpe
         this.stdDeviation = stdDeviation;
     }
 
+    private boolean streaming = false;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * If true, the events are not kept and the deviations are computed from weighted sums in one pass over the features.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public SimpleFeatureCollection execute(SimpleFeatureCollection features, String weightField,
             String caseField) throws IOException {
         SimpleFeatureType schema = features.getSchema();
@@ -78,6 +91,7 @@ public class StandardDeviationalEllipseOperation extends AbstractDistributionOpe
         Expression weightExpr = ff.property(weightField);
 
         StandardDeviationalEllipseVisitor visitor = new StandardDeviationalEllipseVisitor();
+        visitor.setStreaming(streaming);
         SimpleFeatureIterator featureIter = features.features();
         try {
             while (featureIter.hasNext()) {
@@ -101,6 +115,9 @@ public class StandardDeviationalEllipseOperation extends AbstractDistributionOpe
             featureIter.close();
         }
 
+        // compute the cases side by side
+        visitor.compute(stdDeviation);
+
         // build feature collection
         CoordinateReferenceSystem crs = schema.getCoordinateReferenceSystem();
         String geomName = schema.getGeometryDescriptor().getLocalName();
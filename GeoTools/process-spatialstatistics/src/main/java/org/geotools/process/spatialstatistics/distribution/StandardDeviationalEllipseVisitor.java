@@ -27,16 +27,41 @@ import org.locationtech.jts.geom.Coordinate;
  */
 public class StandardDeviationalEllipseVisitor extends AbstractDistributionVisitor {
 
+    private boolean streaming = false;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * If true, the events are not kept and the deviations are computed from weighted sums in one pass.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @SuppressWarnings("unchecked")
     public void visit(Coordinate coordinate, Object caseVal, double weightVal) {
         caseVal = caseVal == null ? CASE_ALL : caseVal;
         StandardDeviationalEllipse sde = (StandardDeviationalEllipse) resuleMap.get(caseVal);
 
         if (sde == null) {
-            sde = new StandardDeviationalEllipse();
+            sde = new StandardDeviationalEllipse(streaming);
             resuleMap.put(caseVal, sde);
         }
 
         sde.addValue(coordinate, weightVal);
     }
+
+    /**
+     * Computes the ellipse of all cases, side by side on all processors.
+     */
+    public void compute(final double stdDeviations) {
+        computeCases(new CaseTask() {
+            @Override
+            public void compute(int index, Object result) {
+                ((StandardDeviationalEllipse) result).calculateSDE(stdDeviations);
+            }
+        });
+    }
 }
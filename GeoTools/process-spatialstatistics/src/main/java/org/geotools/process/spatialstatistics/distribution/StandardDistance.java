@@ -16,9 +16,6 @@
  */
 package org.geotools.process.spatialstatistics.distribution;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.geotools.util.factory.GeoTools;
 import org.locationtech.jts.geom.Coordinate;
@@ -26,7 +23,8 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 
 /**
- * StandardDistance
+ * StandardDistance <br>
+ * The events are kept in primitive arrays, or only as weighted sums in streaming mode.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -46,25 +44,19 @@ public class StandardDistance {
 
     private double sdVal = Double.NaN;
 
-    private List<Event> events = new ArrayList<Event>();
+    private final WeightedPoints points;
 
     private GeometryFactory gf = JTSFactoryFinder.getGeometryFactory(GeoTools.getDefaultHints());
 
-    class Event {
-        public double x;
-
-        public double y;
-
-        public double weight;
-
-        public Event() {
-        }
+    public StandardDistance() {
+        this(false);
+    }
 
-        public Event(double x, double y, double weight) {
-            this.x = x;
-            this.y = y;
-            this.weight = weight;
-        }
+    /**
+     * @param streaming if true, the events are not kept and the deviations are computed from the weighted sums in one pass
+     */
+    public StandardDistance(boolean streaming) {
+        this.points = new WeightedPoints(streaming);
     }
 
     public void addValue(Coordinate coordinate, double weight) {
@@ -74,7 +66,7 @@ public class StandardDistance {
         sumY += coordinate.y * weight;
         sumZ += coordinate.z * weight;
 
-        events.add(new Event(coordinate.x, coordinate.y, weight));
+        points.add(coordinate.x, coordinate.y, weight);
 
         numFeatures++;
     }
@@ -85,11 +77,19 @@ public class StandardDistance {
             double meanY = sumY / weightSum;
 
             double sigXYSum = 0;
-            for (Event ce : events) {
-                final double devX = ce.x - meanX;
-                final double devY = ce.y - meanY;
-
-                sigXYSum += (Math.pow(devX, 2.0) * ce.weight) + (Math.pow(devY, 2.0) * ce.weight);
+            if (points.isStreaming()) {
+                sigXYSum = points.getSigX() + points.getSigY();
+            } else {
+                final double[] xs = points.xs;
+                final double[] ys = points.ys;
+                final double[] weights = points.weights;
+                for (int i = 0; i < points.size; i++) {
+                    final double devX = xs[i] - meanX;
+                    final double devY = ys[i] - meanY;
+
+                    sigXYSum += (Math.pow(devX, 2.0) * weights[i])
+                            + (Math.pow(devY, 2.0) * weights[i]);
+                }
             }
 
             sdVal = Math.sqrt(sigXYSum / weightSum) * standardDeviation;
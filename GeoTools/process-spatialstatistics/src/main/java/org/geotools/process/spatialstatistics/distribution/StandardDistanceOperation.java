@@ -65,6 +65,19 @@ public class StandardDistanceOperation extends AbstractDistributionOperator {
         this.stdDeviation = stdDeviation;
     }
 
+    private boolean streaming = false;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * If true, the events are not kept and the deviations are computed from weighted sums in one pass over the features.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public SimpleFeatureCollection execute(SimpleFeatureCollection features, String weightField,
             String caseField) throws IOException {
         SimpleFeatureType schema = features.getSchema();
@@ -76,6 +89,7 @@ public class StandardDistanceOperation extends AbstractDistributionOperator {
         Expression weightExpr = ff.property(weightField);
 
         StandardDistanceVisitor visitor = new StandardDistanceVisitor();
+        visitor.setStreaming(streaming);
         SimpleFeatureIterator featureIter = features.features();
         try {
             while (featureIter.hasNext()) {
@@ -99,6 +113,9 @@ public class StandardDistanceOperation extends AbstractDistributionOperator {
             featureIter.close();
         }
 
+        // compute the cases side by side
+        visitor.compute(stdDeviation);
+
         // build feature collection
         CoordinateReferenceSystem crs = schema.getCoordinateReferenceSystem();
         String geomName = schema.getGeometryDescriptor().getLocalName();
@@ -27,16 +27,41 @@ import org.locationtech.jts.geom.Coordinate;
  */
 public class StandardDistanceVisitor extends AbstractDistributionVisitor {
 
+    private boolean streaming = false;
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * If true, the events are not kept and the deviations are computed from weighted sums in one pass.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @SuppressWarnings("unchecked")
     public void visit(Coordinate coordinate, Object caseVal, double weightVal) {
         caseVal = caseVal == null ? CASE_ALL : caseVal;
         StandardDistance sd = (StandardDistance) resuleMap.get(caseVal);
 
         if (sd == null) {
-            sd = new StandardDistance();
+            sd = new StandardDistance(streaming);
             resuleMap.put(caseVal, sd);
         }
 
         sd.addValue(coordinate, weightVal);
     }
-}
\ No newline at end of file
+
+    /**
+     * Computes the standard distance of all cases, side by side on all processors.
+     */
+    public void compute(final double standardDeviation) {
+        computeCases(new CaseTask() {
+            @Override
+            public void compute(int index, Object result) {
+                ((StandardDistance) result).getStdDist(standardDeviation);
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.distribution;
+
+import java.util.Arrays;
+
+/**
+ * Coordinates and weights of the events of one case, in primitive arrays. <br>
+ * In streaming mode the events are not kept, only the weighted sums of the coordinates and of their squares and products, shifted to the
+ * first event to keep the precision of projected coordinates.
+ * 
+ * @author Minpa Lee, MangoSystem
+ * 
+ * @source $URL$
+ */
+final class WeightedPoints {
+    private final boolean streaming;
+
+    double[] xs;
+
+    double[] ys;
+
+    double[] weights;
+
+    int size = 0;
+
+    // streaming sums, relative to (shiftX, shiftY)
+    private double shiftX;
+
+    private double shiftY;
+
+    private double sumW = 0.0;
+
+    private double sumX = 0.0;
+
+    private double sumY = 0.0;
+
+    private double sumXX = 0.0;
+
+    private double sumYY = 0.0;
+
+    private double sumXY = 0.0;
+
+    WeightedPoints(boolean streaming) {
+        this.streaming = streaming;
+        if (!streaming) {
+            xs = new double[16];
+            ys = new double[16];
+            weights = new double[16];
+        }
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    void add(double x, double y, double weight) {
+        if (streaming) {
+            if (size == 0) {
+                shiftX = x;
+                shiftY = y;
+            }
+
+            final double dx = x - shiftX;
+            final double dy = y - shiftY;
+            sumW += weight;
+            sumX += dx * weight;
+            sumY += dy * weight;
+            sumXX += dx * dx * weight;
+            sumYY += dy * dy * weight;
+            sumXY += dx * dy * weight;
+        } else {
+            if (size == xs.length) {
+                int capacity = size * 2;
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            weights[size] = weight;
+        }
+        size++;
+    }
+
+    /**
+     * Weighted sum of the squared x deviations from the weighted mean, streaming mode only.
+     */
+    double getSigX() {
+        // cancellation may leave a tiny negative sum for (nearly) identical coordinates
+        return Math.max(0d, sumXX - sumX * sumX / sumW);
+    }
+
+    /**
+     * Weighted sum of the squared y deviations from the weighted mean, streaming mode only.
+     */
+    double getSigY() {
+        return Math.max(0d, sumYY - sumY * sumY / sumW);
+    }
+
+    /**
+     * Weighted sum of the products of the x and y deviations from the weighted mean, streaming mode only.
+     */
+    double getSigXY() {
+        return sumXY - sumX * sumY / sumW;
+    }
+}
@@ -72,5 +72,10 @@ public enum StaticsType {
     /**
      * Finds the number of values included in statistical calculations.
      */
-    Count
+    Count,
+
+    /**
+     * Finds the median of the values for the specified field, estimated with a relative error of 1% beyond 4096 values.
+     */
+    Median
 }
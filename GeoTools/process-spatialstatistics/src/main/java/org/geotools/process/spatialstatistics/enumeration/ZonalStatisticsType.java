@@ -58,5 +58,15 @@ public enum ZonalStatisticsType {
     /**
      * Finds the standard deviation on values of all cells in the value raster that belong to the same zone as the output cell.
      */
-    StdDev
+    StdDev,
+
+    /**
+     * Finds the median value of all cells in the value raster that belong to the same zone as the output cell.
+     */
+    Median,
+
+    /**
+     * Finds the value that occurs most often of all cells in the value raster that belong to the same zone as the output cell.
+     */
+    Majority
 }
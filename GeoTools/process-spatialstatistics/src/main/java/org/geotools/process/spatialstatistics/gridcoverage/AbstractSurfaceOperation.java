@@ -19,6 +19,11 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.media.jai.PlanarImage;
@@ -26,11 +31,16 @@ import javax.media.jai.PlanarImage;
 import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.util.logging.Logging;
+import org.jaitools.tiledimage.DiskMemImage;
 
 /**
  * Abstract Surface Operation
+ * <p>
+ * {@link #processSurface(DiskMemImage, double, WindowOperator)} evaluates a 3 x 3 window operator over all cells. Each output tile is read once
+ * from the input with a 1 pixel halo into a primitive buffer and written back as a whole; tiles are processed by one thread per core.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -73,6 +83,179 @@ public abstract class AbstractSurfaceOperation extends RasterProcessingOperation
         maxRow = bounds.y + image.getHeight();
     }
 
+    /**
+     * 3 x 3 window operator.
+     */
+    protected interface WindowOperator {
+        /**
+         * Evaluates the window of the center cell, NaN for NoData.
+         * 
+         * @param window the neighborhood in row-major order (a b c / d e f / g h i), multiplied by the z factor. NoData neighbors are assigned the
+         *        value of the center cell.
+         */
+        double evaluate(double[] window);
+    }
+
+    /**
+     * Evaluates the window operator over all cells of the surface initialized by {@link #initSurface(GridCoverage2D)} and writes the result to the
+     * output image, which must have the same grid.
+     */
+    protected void processSurface(final DiskMemImage outputImage, final double zFactor,
+            final WindowOperator operator) {
+        final int numXTiles = outputImage.getNumXTiles();
+        final int tileCount = numXTiles * outputImage.getNumYTiles();
+
+        final AtomicInteger nextTile = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(tileCount, 1);
+
+        List<PartialSurface> tasks = new ArrayList<PartialSurface>();
+        for (int t = 0; t < workers; t++) {
+            PartialSurface task = new PartialSurface(outputImage, numXTiles, tileCount, nextTile,
+                    zFactor, operator);
+            tasks.add(task);
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        for (PartialSurface task : tasks) {
+            if (task.minValue <= task.maxValue) {
+                updateStatistics(task.minValue);
+                updateStatistics(task.maxValue);
+            }
+        }
+    }
+
+    final class PartialSurface implements Runnable {
+        private final DiskMemImage oi;
+
+        private final int numXTiles;
+
+        private final int tileCount;
+
+        private final AtomicInteger nextTile;
+
+        private final double zFactor;
+
+        private final WindowOperator operator;
+
+        private final double[] window = new double[9];
+
+        private double[] buffer = new double[0];
+
+        private double[] output = new double[0];
+
+        private double[] samples = new double[0];
+
+        double minValue = Double.MAX_VALUE;
+
+        double maxValue = -Double.MAX_VALUE;
+
+        public PartialSurface(DiskMemImage oi, int numXTiles, int tileCount,
+                AtomicInteger nextTile, double zFactor, WindowOperator operator) {
+            this.oi = oi;
+            this.numXTiles = numXTiles;
+            this.tileCount = tileCount;
+            this.nextTile = nextTile;
+            this.zFactor = zFactor;
+            this.operator = operator;
+        }
+
+        public void run() {
+            int tile;
+            while ((tile = nextTile.getAndIncrement()) < tileCount) {
+                int tileX = oi.getMinTileX() + tile % numXTiles;
+                int tileY = oi.getMinTileY() + tile / numXTiles;
+                Rectangle rect = oi.getTileRect(tileX, tileY).intersection(oi.getBounds());
+                if (rect.isEmpty()) {
+                    continue;
+                }
+
+                process(rect);
+
+                WritableRaster raster = oi.getWritableTile(tileX, tileY);
+                try {
+                    raster.setSamples(rect.x, rect.y, rect.width, rect.height, 0, output);
+                } finally {
+                    oi.releaseWritableTile(tileX, tileY);
+                }
+            }
+        }
+
+        private void process(Rectangle rect) {
+            // the same cells in the input image, with a 1 pixel halo
+            final int startX = bounds.x + rect.x - oi.getMinX() - 1;
+            final int startY = bounds.y + rect.y - oi.getMinY() - 1;
+            final int stride = rect.width + 2;
+            final int length = rect.width * rect.height;
+
+            if (buffer.length < stride * (rect.height + 2)) {
+                buffer = new double[stride * (rect.height + 2)];
+            }
+            if (output.length < length) {
+                output = new double[length];
+            }
+            read(startX, startY, stride, rect.height + 2);
+
+            int index = 0;
+            for (int row = 1; row <= rect.height; row++) {
+                for (int col = 1; col <= rect.width; col++) {
+                    final int center = row * stride + col;
+                    final double z = buffer[center];
+                    if (Double.isNaN(z)) {
+                        output[index++] = NoData;
+                        continue;
+                    }
+
+                    // If any neighborhood cells are NoData, they are assigned the value of the
+                    // center cell
+                    int k = 0;
+                    for (int offset = center - stride - 1; k < 9; offset += stride) {
+                        for (int dx = 0; dx < 3; dx++, k++) {
+                            final double value = buffer[offset + dx];
+                            window[k] = Double.isNaN(value) ? z : value;
+                        }
+                    }
+
+                    final double value = operator.evaluate(window);
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        output[index++] = NoData;
+                    } else {
+                        output[index++] = value;
+                        minValue = Math.min(minValue, value);
+                        maxValue = Math.max(maxValue, value);
+                    }
+                }
+            }
+        }
+
+        private void read(int startX, int startY, int width, int height) {
+            Arrays.fill(buffer, 0, width * height, Double.NaN);
+
+            Rectangle halo = new Rectangle(startX, startY, width, height).intersection(bounds);
+            if (halo.isEmpty()) {
+                return;
+            }
+
+            if (samples.length < halo.width * halo.height) {
+                samples = new double[halo.width * halo.height];
+            }
+
+            Raster raster = image.getData(halo);
+            raster.getSamples(halo.x, halo.y, halo.width, halo.height, 0, samples);
+
+            int index = 0;
+            for (int y = halo.y; y < halo.y + halo.height; y++) {
+                int offset = (y - startY) * width + (halo.x - startX);
+                for (int x = 0; x < halo.width; x++) {
+                    final double value = samples[index++];
+                    if (!SSUtils.compareDouble(value, srcNoData)) {
+                        buffer[offset + x] = value * zFactor;
+                    }
+                }
+            }
+        }
+    }
+
     protected double[][] getSubMatrix(GridCoordinates2D pos, int width, int height) {
         return getSubMatrix(pos, width, height, 1.0);
     }
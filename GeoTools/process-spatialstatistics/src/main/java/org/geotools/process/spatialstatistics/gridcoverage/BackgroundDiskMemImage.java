@@ -0,0 +1,214 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.gridcoverage;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+import org.jaitools.tiledimage.DiskMemImage;
+
+/**
+ * DiskMemImage with a background value which is applied lazily, per tile, when the tile is first accessed. <br>
+ * Filling the whole image at once through {@code getData()} and {@code setData()} copies it into one contiguous raster; here only the tiles which
+ * are actually touched are filled, one at a time, so the image can be much larger than the heap.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class BackgroundDiskMemImage extends DiskMemImage {
+    protected static final Logger LOGGER = Logging.getLogger(BackgroundDiskMemImage.class);
+
+    private static final int NEW = 0;
+
+    private static final int FILLING = 1;
+
+    private static final int DONE = 2;
+
+    private final Object lock = new Object();
+
+    private final AtomicIntegerArray tileStates;
+
+    private volatile double[] background = null;
+
+    public BackgroundDiskMemImage(int minX, int minY, int width, int height, int tileGridXOffset,
+            int tileGridYOffset, SampleModel tileSampleModel, ColorModel colorModel) {
+        super(minX, minY, width, height, tileGridXOffset, tileGridYOffset, tileSampleModel,
+                colorModel);
+
+        this.tileStates = new AtomicIntegerArray(getNumXTiles() * getNumYTiles());
+    }
+
+    public double[] getBackground() {
+        return background == null ? null : background.clone();
+    }
+
+    /**
+     * Sets the background value of all bands.
+     */
+    public void setBackground(double value) {
+        double[] values = new double[getSampleModel().getNumBands()];
+        Arrays.fill(values, value);
+        setBackground(values);
+    }
+
+    /**
+     * Sets the background to the samples of the color in the color model of this image.
+     */
+    public void setBackground(Color color) {
+        ColorModel cm = getColorModel();
+        WritableRaster pixel = cm.createCompatibleWritableRaster(1, 1);
+        pixel.setDataElements(0, 0, cm.getDataElements(color.getRGB(), null));
+        setBackground(pixel.getPixel(0, 0, (double[]) null));
+    }
+
+    /**
+     * Sets the background value of each band. Tiles which were already accessed are filled immediately, the others when they are first accessed.
+     */
+    public void setBackground(double[] values) {
+        boolean zero = true;
+        for (double value : values) {
+            zero &= value == 0;
+        }
+
+        synchronized (lock) {
+            boolean touched = false;
+            for (int index = 0; index < tileStates.length() && !touched; index++) {
+                touched = tileStates.get(index) != NEW;
+            }
+
+            // new tiles are created with zero samples
+            this.background = zero && !touched ? null : values.clone();
+
+            if (background != null) {
+                for (int index = 0; index < tileStates.length(); index++) {
+                    if (tileStates.get(index) == DONE) {
+                        fill(getMinTileX() + index % getNumXTiles(),
+                                getMinTileY() + index / getNumXTiles());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        prepareTile(tileX, tileY);
+        return super.getTile(tileX, tileY);
+    }
+
+    @Override
+    public WritableRaster getWritableTile(int tileX, int tileY) {
+        prepareTile(tileX, tileY);
+        return super.getWritableTile(tileX, tileY);
+    }
+
+    @Override
+    public Raster getData() {
+        prepareTiles(getBounds());
+        return super.getData();
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        prepareTiles(rect);
+        return super.getData(rect);
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        prepareTiles(raster == null ? getBounds() : raster.getBounds());
+        return super.copyData(raster);
+    }
+
+    @Override
+    public void setData(Raster data) {
+        prepareTiles(data.getBounds());
+        super.setData(data);
+    }
+
+    private void prepareTiles(Rectangle rect) {
+        Rectangle region = rect.intersection(getBounds());
+        if (region.isEmpty()) {
+            return;
+        }
+
+        int minTileX = XToTileX(region.x);
+        int maxTileX = XToTileX(region.x + region.width - 1);
+        int minTileY = YToTileY(region.y);
+        int maxTileY = YToTileY(region.y + region.height - 1);
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                prepareTile(tileX, tileY);
+            }
+        }
+    }
+
+    private void prepareTile(int tileX, int tileY) {
+        int tileCol = tileX - getMinTileX();
+        int tileRow = tileY - getMinTileY();
+        if (tileCol < 0 || tileRow < 0 || tileCol >= getNumXTiles() || tileRow >= getNumYTiles()) {
+            return;
+        }
+
+        final int index = tileRow * getNumXTiles() + tileCol;
+        if (tileStates.get(index) == DONE) {
+            return;
+        }
+
+        synchronized (lock) {
+            // FILLING: re-entered by the fill of the same tile
+            if (tileStates.get(index) != NEW) {
+                return;
+            }
+
+            tileStates.set(index, FILLING);
+            if (background != null) {
+                fill(tileX, tileY);
+            }
+            tileStates.set(index, DONE);
+        }
+    }
+
+    private void fill(int tileX, int tileY) {
+        WritableRaster tile = super.getWritableTile(tileX, tileY);
+        if (tile == null) {
+            return;
+        }
+
+        try {
+            Rectangle rect = tile.getBounds().intersection(getBounds());
+            double[] row = new double[rect.width];
+            for (int band = 0; band < background.length; band++) {
+                Arrays.fill(row, background[band]);
+                for (int y = rect.y; y < rect.y + rect.height; y++) {
+                    tile.setSamples(rect.x, y, rect.width, 1, band, row);
+                }
+            }
+        } finally {
+            super.releaseWritableTile(tileX, tileY);
+        }
+    }
+}
@@ -265,8 +265,13 @@ public class FeaturesToRasterOperation extends RasterProcessingOperation {
 
         Dimension dim = RasterHelper.getDimension(Extent, CellSizeX, CellSizeY);
 
-        dmImage = new DiskMemImage(0, 0, dim.width, dim.height, 0, 0, smpModel, colorModel);
-        dmImage.setUseCommonCache(true);
+        BackgroundDiskMemImage bgImage = new BackgroundDiskMemImage(0, 0, dim.width, dim.height,
+                0, 0, smpModel, colorModel);
+        bgImage.setUseCommonCache(true);
+
+        // set nodata value, filled lazily per tile
+        bgImage.setBackground(valueToColor(NoData));
+        dmImage = bgImage;
 
         // create graphics
         g2D = dmImage.createGraphics();
@@ -274,10 +279,6 @@ public class FeaturesToRasterOperation extends RasterProcessingOperation {
         g2D.setPaintMode();
         g2D.setComposite(AlphaComposite.Src);
 
-        // set nodata value
-        g2D.setPaint(valueToColor(NoData));
-        g2D.fillRect(0, 0, dmImage.getWidth(), dmImage.getHeight());
-
         if (shapeType == SimpleShapeType.LINESTRING) {
             g2D.setStroke(new BasicStroke(1.1f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER,
                     10.0f));
@@ -111,8 +111,13 @@ public class GeometryToRasterOperation extends RasterProcessingOperation {
 
         Dimension dim = RasterHelper.getDimension(Extent, CellSizeX, CellSizeY);
 
-        dmImage = new DiskMemImage(0, 0, dim.width, dim.height, 0, 0, smpModel, colorModel);
-        dmImage.setUseCommonCache(true);
+        BackgroundDiskMemImage bgImage = new BackgroundDiskMemImage(0, 0, dim.width, dim.height,
+                0, 0, smpModel, colorModel);
+        bgImage.setUseCommonCache(true);
+
+        // set nodata value, filled lazily per tile
+        bgImage.setBackground(valueToColor(NoData));
+        dmImage = bgImage;
 
         // create graphics
         g2D = dmImage.createGraphics();
@@ -120,10 +125,6 @@ public class GeometryToRasterOperation extends RasterProcessingOperation {
         g2D.setPaintMode();
         g2D.setComposite(AlphaComposite.Src);
 
-        // set nodata value
-        g2D.setPaint(valueToColor(NoData));
-        g2D.fillRect(0, 0, dmImage.getWidth(), dmImage.getHeight());
-
         // setup affine transform
         double x_scale = dmImage.getWidth() / Extent.getWidth();
         double y_scale = dmImage.getHeight() / Extent.getHeight();
@@ -16,20 +16,13 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 import java.util.logging.Logger;
 
-import org.geotools.process.spatialstatistics.core.KnnSearch;
+import org.geotools.process.spatialstatistics.core.PointKdTree;
+import org.geotools.process.spatialstatistics.core.PointKdTree.Neighbors;
 import org.geotools.process.spatialstatistics.gridcoverage.RasterRadius.SearchRadiusType;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Envelope;
-import org.locationtech.jts.index.strtree.ItemBoundable;
-import org.locationtech.jts.index.strtree.ItemDistance;
-import org.locationtech.jts.index.strtree.STRtree;
 
 /**
  * Implementation of Inverse Distance Weighted interpolation.
@@ -41,9 +34,9 @@ import org.locationtech.jts.index.strtree.STRtree;
 public class IDWInterpolator extends AbstractInterpolator {
     protected static final Logger LOGGER = Logging.getLogger(IDWInterpolator.class);
 
-    private STRtree spatialIndex = null;
+    private PointKdTree kdTree = null;
 
-    private KnnSearch knnSearch = null;
+    private double[] values = null;
 
     private RasterRadius radius = new RasterRadius();
 
@@ -63,106 +56,98 @@ public class IDWInterpolator extends AbstractInterpolator {
     }
 
     private void init() {
-        spatialIndex = new STRtree();
-        for (Coordinate sample : samples) {
-            spatialIndex.insert(new Envelope(sample), sample);
+        double[] xs = new double[number];
+        double[] ys = new double[number];
+        values = new double[number];
+        for (int i = 0; i < number; i++) {
+            xs[i] = samples[i].x;
+            ys[i] = samples[i].y;
+            values[i] = samples[i].z;
         }
-        knnSearch = new KnnSearch(spatialIndex);
+        kdTree = new PointKdTree(xs, ys);
     }
 
     @Override
     public double getValue(Coordinate p) {
+        return getValue(p.x, p.y, new Neighbors(), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Interpolates the cells of one row, reusing the neighbor buffer. The nearest samples of adjacent cells are close to each other, so the
+     * search of each cell is bounded by the farthest sample of the previous cell plus the cell size.
+     * 
+     * @param y row location
+     * @param minX location of the first cell
+     * @param cellSize distance between the cells
+     * @param row receives the interpolated values
+     */
+    public void getValues(double y, double minX, double cellSize, double[] row,
+            Neighbors neighbors) {
+        double bound = Double.POSITIVE_INFINITY;
+        for (int column = 0; column < row.length; column++) {
+            row[column] = getValue(minX + column * cellSize, y, neighbors, bound);
+
+            // k nearest samples: all of them lie within this distance from the next cell
+            final int k = radius.numberOfPoints;
+            if (k > 0 && neighbors.size() == k) {
+                bound = Math.sqrt(neighbors.getFarthestDistanceSq()) + cellSize;
+            } else {
+                bound = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    private double getValue(double x, double y, Neighbors neighbors, double bound) {
         if (radius.getRadiusType() == SearchRadiusType.Fixed) {
-            return interpolateFixed(p);
+            interpolateFixed(x, y, neighbors, bound);
         } else {
-            return interpolateVariable(p);
+            interpolateVariable(x, y, neighbors, bound);
         }
+        return interpolate(neighbors);
     }
 
     /**
      * Variable search radius With a variable search radius, the number of points used in calculating the value of the interpolated cell is specified,
      * which makes the radius distance vary for each interpolated cell, depending on how far it has to search around each interpolated cell to reach
      * the specified number of input points
-     * 
-     * @param p locations
-     * @return interpolated value
      */
-    private double interpolateVariable(Coordinate p) {
-        Map<Double, Coordinate> sortedMap = new TreeMap<Double, Coordinate>();
-
-        Envelope searchEnv = new Envelope(p);
-        searchEnv.expandBy(radius.distance);
-
-        for (@SuppressWarnings("unchecked")
-        Iterator<Coordinate> iter = (Iterator<Coordinate>) spatialIndex.query(searchEnv).iterator(); iter
-                .hasNext();) {
-            Coordinate sample = iter.next();
-            double distance = p.distance(sample);
-            if (radius.distance < distance) {
-                continue;
-            }
-            sortedMap.put(Double.valueOf(distance), sample);
-        }
-
-        return interpolate(sortedMap);
+    private void interpolateVariable(double x, double y, Neighbors neighbors, double bound) {
+        double maxDistance = Double.isNaN(radius.distance) ? Double.POSITIVE_INFINITY
+                : radius.distance;
+        kdTree.search(x, y, Math.max(0, radius.numberOfPoints), Math.min(maxDistance, bound),
+                neighbors);
     }
 
     /**
      * Fixed search radius <br>
      * When there are fewer measured points in the neighborhood than the specified minimum, <br>
      * the search radius will increase until it can encompass the minimum number of points
-     * 
-     * @param p locations
-     * @return interpolated value
      */
-    private double interpolateFixed(Coordinate p) {
-        Map<Double, Coordinate> sortedMap = new TreeMap<Double, Coordinate>();
-
-        Envelope searchEnv = new Envelope(p);
-        searchEnv.expandBy(radius.distance);
-
-        if (radius.numberOfPoints > 0) {
-            Object[] knns = knnSearch.kNearestNeighbour(searchEnv, p, new ItemDistance() {
-                @Override
-                public double distance(ItemBoundable item1, ItemBoundable item2) {
-                    Coordinate s1 = (Coordinate) item1.getItem();
-                    Coordinate s2 = (Coordinate) item2.getItem();
-                    return s1.distance(s2);
-                }
-            }, radius.numberOfPoints);
-
-            for (Object object : knns) {
-                Coordinate sample = (Coordinate) object;
-                sortedMap.put(Double.valueOf(p.distance(sample)), sample);
-            }
-        } else {
-            for (@SuppressWarnings("unchecked")
-            Iterator<Coordinate> iter = (Iterator<Coordinate>) spatialIndex.query(searchEnv)
-                    .iterator(); iter.hasNext();) {
-                Coordinate sample = iter.next();
-                double distance = p.distance(sample);
-                if (radius.distance < distance) {
-                    continue;
-                }
-                sortedMap.put(Double.valueOf(distance), sample);
-            }
-        }
+    private void interpolateFixed(double x, double y, Neighbors neighbors, double bound) {
+        kdTree.searchRadius(x, y, radius.distance, neighbors);
 
-        return interpolate(sortedMap);
+        if (radius.numberOfPoints > 0 && neighbors.size() < radius.numberOfPoints) {
+            kdTree.search(x, y, radius.numberOfPoints, bound, neighbors);
+        }
     }
 
-    private double interpolate(Map<Double, Coordinate> sortedMap) {
+    private double interpolate(Neighbors neighbors) {
+        final double halfPower = power / 2.0;
+
         double sumWeight = 0;
         double weightSumDist = 0;
-        int process = 0;
-        for (Entry<Double, Coordinate> entry : sortedMap.entrySet()) {
-            process++;
-            final double weight = Math.pow(entry.getKey(), -power);
-            weightSumDist += weight * entry.getValue().z;
-            sumWeight += weight;
-            if (radius.numberOfPoints > 0 && process >= radius.numberOfPoints) {
-                break;
+        for (int i = 0; i < neighbors.size(); i++) {
+            final double distanceSq = neighbors.getDistanceSq(i);
+            final double value = values[neighbors.getIndex(i)];
+            if (distanceSq == 0) {
+                // the cell is located on a sample
+                return value;
             }
+
+            final double weight = power == 2.0 ? 1.0 / distanceSq : Math.pow(distanceSq,
+                    -halfPower);
+            weightSumDist += weight * value;
+            sumWeight += weight;
         }
 
         return sumWeight > 0 ? weightSumDist / sumWeight : -Float.MAX_VALUE;
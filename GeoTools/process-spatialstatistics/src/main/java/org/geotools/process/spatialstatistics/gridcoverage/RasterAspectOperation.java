@@ -18,12 +18,7 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 
 import java.util.logging.Logger;
 
-import javax.media.jai.iterator.RectIterFactory;
-import javax.media.jai.iterator.WritableRectIter;
-
-import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
-import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
@@ -51,34 +46,16 @@ public class RasterAspectOperation extends AbstractSurfaceOperation {
         this.initSurface(inputGc);
 
         DiskMemImage outputImage = this.createDiskMemImage(inputGc, RasterPixelType.FLOAT);
-        WritableRectIter writer = RectIterFactory.createWritable(outputImage,
-                outputImage.getBounds());
-
-        GridCoordinates2D pos = new GridCoordinates2D();
-
-        int y = bounds.y;
-        writer.startLines();
-        while (!writer.finishedLines()) {
-
-            int x = bounds.x;
-            writer.startPixels();
-            while (!writer.finishedPixels()) {
-                pos.setLocation(x, y);
-
-                visitAspect(writer, pos);
-
-                writer.nextPixel();
-                x++;
+        processSurface(outputImage, 1.0, new WindowOperator() {
+            public double evaluate(double[] window) {
+                return visitAspect(window);
             }
-
-            writer.nextLine();
-            y++;
-        }
+        });
 
         return createGridCoverage("Aspect", outputImage);
     }
 
-    private void visitAspect(WritableRectIter writer, GridCoordinates2D pos) {
+    private double visitAspect(double[] mx) {
         // http://webhelp.esri.com/arcgisdesktop/9.3/index.cfm?TopicName=How%20Aspect%20works
         // Burrough, P. A. and McDonell, R.A., 1998. Principles of Geographical Information Systems
         // (Oxford University Press, New York), p. 190.
@@ -98,28 +75,20 @@ public class RasterAspectOperation extends AbstractSurfaceOperation {
         // | 3 4 5 |>| d e f |
         // | 6 7 8 | | g h i |
         // +-------+ +-------+
-        double[][] mx = getSubMatrix(pos, 3, 3);
-        if (Double.isNaN(mx[1][1]) || SSUtils.compareDouble(srcNoData, mx[1][1])) {
-            writer.setSample(0, NoData);
-            return;
-        }
-
-        double dZdX = ((mx[2][0] + 2 * mx[2][1] + mx[2][2]) - (mx[0][0] + 2 * mx[0][1] + mx[0][2]))
+        double dZdX = ((mx[2] + 2 * mx[5] + mx[8]) - (mx[0] + 2 * mx[3] + mx[6]))
                 / (_8DX);
-        double dZdY = ((mx[0][2] + 2 * mx[1][2] + mx[2][2]) - (mx[0][0] + 2 * mx[1][0] + mx[2][0]))
+        double dZdY = ((mx[6] + 2 * mx[7] + mx[8]) - (mx[0] + 2 * mx[1] + mx[2]))
                 / (_8DY);
 
         double rise_run = (dZdX * dZdX) + (dZdY * dZdY);
         double slope = Math.toDegrees(Math.atan(Math.sqrt(rise_run)));
         if (Double.isNaN(slope) || Double.isInfinite(slope) || slope == 0) {
-            writer.setSample(0, -1);
-            updateStatistics(-1);
-            return;
+            return -1;
         }
 
         // aspect
-        dZdX = ((mx[2][0] + 2 * mx[2][1] + mx[2][2]) - (mx[0][0] + 2 * mx[0][1] + mx[0][2])) / (8.0);
-        dZdY = ((mx[0][2] + 2 * mx[1][2] + mx[2][2]) - (mx[0][0] + 2 * mx[1][0] + mx[2][0])) / (8.0);
+        dZdX = ((mx[2] + 2 * mx[5] + mx[8]) - (mx[0] + 2 * mx[3] + mx[6])) / (8.0);
+        dZdY = ((mx[6] + 2 * mx[7] + mx[8]) - (mx[0] + 2 * mx[1] + mx[2])) / (8.0);
 
         // double aspect = Math.toDegrees(Math.atan2(H, -G));
         double aspect = Math.atan2(dZdY, -dZdX) * RADTODEG;
@@ -136,7 +105,6 @@ public class RasterAspectOperation extends AbstractSurfaceOperation {
             aspect = -1.0;
         }
 
-        writer.setSample(0, aspect);
-        updateStatistics(aspect);
+        return aspect;
     }
 }
\ No newline at end of file
@@ -16,16 +16,21 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.media.jai.PlanarImage;
-import javax.media.jai.iterator.RectIter;
 import javax.media.jai.iterator.RectIterFactory;
 import javax.media.jai.iterator.WritableRectIter;
 
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
+import org.geotools.process.spatialstatistics.gridcoverage.RasterMapAlgebra.Kernel;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
 import org.opengis.feature.simple.SimpleFeature;
@@ -35,6 +40,9 @@ import org.opengis.filter.expression.Literal;
 
 /**
  * Performs a conditional if/else evaluation on each of the input cells of an input raster.
+ * <p>
+ * The filter is compiled once by {@link RasterMapAlgebra} and evaluated over the sample arrays of row bands, one tile high, in parallel. The
+ * filter refers to the band by the raster name or "Value", and to all bands by "B1", "B2" ...
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -59,65 +67,166 @@ public class RasterConditionalOperation extends RasterProcessingOperation {
             return inputGc;
         }
 
+        RasterMapAlgebra algebra = new RasterMapAlgebra();
+        algebra.addVariable(inputGc.getName().toString(), inputGc, bandIndex.intValue());
+        algebra.addVariable("Value", inputGc, bandIndex.intValue());
+        algebra.addBandVariables("B", inputGc);
+
         // decide pixel type
         final boolean isNoDataFilter = isNodataFilter(filter);
-        final double inputNoData = RasterHelper.getNoDataValue(inputGc);
+        final Kernel kernel = isNoDataFilter ? null : algebra.compile(filter);
+        if (!isNoDataFilter && kernel == null) {
+            LOGGER.log(Level.FINE, "Evaluating the filter per pixel: " + filter);
+        }
 
         final int valueTrue = trueValue.intValue();
         final int valueFalse = falseValue.intValue();
-        SimpleFeature feature = this.createTemplateFeature(inputGc);
-
-        PlanarImage inputImage = (PlanarImage) inputGc.getRenderedImage();
-        RectIter inputIter = RectIterFactory.create(inputImage, inputImage.getBounds());
 
         DiskMemImage outputImage = this.createDiskMemImage(inputGc, RasterPixelType.INTEGER);
-        this.NoData = Integer.MIN_VALUE;  // change nodata value
-        
-        WritableRectIter writerIter = RectIterFactory.createWritable(outputImage,
-                outputImage.getBounds());
-
-        inputIter.startLines();
-        writerIter.startLines();
-        while (!inputIter.finishedLines() && !writerIter.finishedLines()) {
-            inputIter.startPixels();
-            writerIter.startPixels();
-            while (!inputIter.finishedPixels() && !writerIter.finishedPixels()) {
-                double curVal = inputIter.getSampleDouble(bandIndex);
+        this.NoData = Integer.MIN_VALUE; // change nodata value
+
+        // row bands, one tile high
+        final Rectangle bounds = outputImage.getBounds();
+        final int bandHeight = outputImage.getTileHeight();
+        final int bandCount = (bounds.height + bandHeight - 1) / bandHeight;
+
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
+
+        List<PartialConditional> tasks = new ArrayList<PartialConditional>();
+        for (int t = 0; t < workers; t++) {
+            SimpleFeature feature = null;
+            if (!isNoDataFilter && kernel == null) {
+                feature = algebra.createTemplateFeature(inputGc.getName().toString(),
+                        inputGc.getCoordinateReferenceSystem());
+            }
+
+            tasks.add(new PartialConditional(outputImage, bounds, bandHeight, bandCount,
+                    nextBand, algebra, kernel, filter, feature, isNoDataFilter, valueTrue,
+                    valueFalse));
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        if (SSUtils.compareDouble(valueFalse, this.NoData)) {
+            MinValue = valueTrue;
+        } else {
+            MinValue = Math.min(valueTrue, valueFalse);
+        }
+
+        MaxValue = Math.max(valueTrue, valueFalse);
+
+        return createGridCoverage(inputGc.getName(), outputImage);
+    }
+
+    final class PartialConditional implements Runnable {
+        private final DiskMemImage oi;
+
+        private final Rectangle bounds;
+
+        private final int bandHeight;
+
+        private final int bandCount;
+
+        private final AtomicInteger nextBand;
+
+        private final RasterMapAlgebra algebra;
+
+        private final Kernel kernel;
+
+        private final Filter filter;
+
+        private final SimpleFeature feature;
+
+        private final boolean isNoDataFilter;
+
+        private final int valueTrue;
+
+        private final int valueFalse;
+
+        public PartialConditional(DiskMemImage oi, Rectangle bounds, int bandHeight,
+                int bandCount, AtomicInteger nextBand, RasterMapAlgebra algebra, Kernel kernel,
+                Filter filter, SimpleFeature feature, boolean isNoDataFilter, int valueTrue,
+                int valueFalse) {
+            this.oi = oi;
+            this.bounds = bounds;
+            this.bandHeight = bandHeight;
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
+            this.algebra = algebra;
+            this.kernel = kernel;
+            this.filter = filter;
+            this.feature = feature;
+            this.isNoDataFilter = isNoDataFilter;
+            this.valueTrue = valueTrue;
+            this.valueFalse = valueFalse;
+        }
+
+        public void run() {
+            final int capacity = bounds.width * bandHeight;
+            // the NoData filter reads the first variable only, as a constant kernel does
+            final double[][] inputs = algebra.createInputs(
+                    isNoDataFilter ? algebra.compile(Filter.EXCLUDE) : kernel, capacity);
+            final double[] result = new double[capacity];
+            final double[][] buffers = kernel == null ? null : RasterMapAlgebra.createBuffers(
+                    kernel, capacity);
+            final int[] conValues = new int[capacity];
+
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                int row = band * bandHeight;
+                Rectangle gridRect = new Rectangle(0, row, bounds.width,
+                        Math.min(bandHeight, bounds.height - row));
+                final int length = gridRect.width * gridRect.height;
+
+                algebra.read(gridRect, inputs);
+                final double[] values = inputs[0];
 
                 if (isNoDataFilter) {
-                    if (SSUtils.compareDouble(curVal, inputNoData)) {
-                        writerIter.setSample(0, valueTrue);
-                    } else {
-                        writerIter.setSample(0, valueFalse);
+                    for (int i = 0; i < length; i++) {
+                        conValues[i] = Double.isNaN(values[i]) ? valueTrue : valueFalse;
                     }
                 } else {
-                    if (SSUtils.compareDouble(curVal, inputNoData)) {
-                        writerIter.setSample(0, this.NoData);
+                    if (kernel == null) {
+                        for (int i = 0; i < length; i++) {
+                            if (!Double.isNaN(values[i])) {
+                                algebra.setAttributes(feature, inputs, i);
+                                result[i] = filter.evaluate(feature) ? 1.0 : 0.0;
+                            }
+                        }
                     } else {
-                        feature.setAttribute(1, curVal); // raster name
-                        feature.setAttribute(2, curVal); // Value
+                        kernel.evaluate(inputs, length, result, buffers, 0);
+                    }
 
-                        int conValue = filter.evaluate(feature) ? valueTrue : valueFalse;
-                        writerIter.setSample(0, conValue);
+                    for (int i = 0; i < length; i++) {
+                        if (Double.isNaN(values[i])) {
+                            conValues[i] = (int) NoData;
+                        } else {
+                            conValues[i] = result[i] != 0.0 ? valueTrue : valueFalse;
+                        }
                     }
                 }
 
-                inputIter.nextPixel();
-                writerIter.nextPixel();
+                write(gridRect, conValues);
             }
-            inputIter.nextLine();
-            writerIter.nextLine();
         }
 
-        if (SSUtils.compareDouble(valueFalse, this.NoData)) {
-            MinValue = valueTrue;
-        } else {
-            MinValue = Math.min(valueTrue, valueFalse);
+        private void write(Rectangle gridRect, int[] conValues) {
+            Rectangle rect = new Rectangle(bounds.x + gridRect.x, bounds.y + gridRect.y,
+                    gridRect.width, gridRect.height);
+            WritableRectIter writer = RectIterFactory.createWritable(oi, rect);
+
+            int index = 0;
+            writer.startLines();
+            while (!writer.finishedLines()) {
+                writer.startPixels();
+                while (!writer.finishedPixels()) {
+                    writer.setSample(0, conValues[index++]);
+                    writer.nextPixel();
+                }
+                writer.nextLine();
+            }
         }
-
-        MaxValue = Math.max(valueTrue, valueFalse);
-
-        return createGridCoverage(inputGc.getName(), outputImage);
     }
 
     private boolean isNodataFilter(Filter filter) {
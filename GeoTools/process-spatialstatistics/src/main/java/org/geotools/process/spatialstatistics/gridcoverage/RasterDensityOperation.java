@@ -45,6 +45,7 @@ import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.process.spatialstatistics.core.BinGrid;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.StringHelper;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
@@ -88,6 +89,24 @@ public class RasterDensityOperation extends RasterProcessingOperation {
 
     protected PlanarImage pointToRaster(SimpleFeatureCollection pointFeatures,
             String populationField) {
+        BinGrid cells = pointToCells(pointFeatures, populationField);
+
+        DiskMemImage outputImage = this.createDiskMemImage(Extent, RasterPixelType.FLOAT);
+        this.initializeDefaultValue(outputImage, 0.0);
+
+        for (long key : cells.getSortedKeys()) {
+            final double wVal = cells.get(key, 0.0);
+            outputImage.setSample(BinGrid.col(key), BinGrid.row(key), 0, wVal);
+            this.MaxValue = Math.max(MaxValue, wVal);
+        }
+
+        return outputImage;
+    }
+
+    /**
+     * Sums the weights of the points which fall in each cell of the output extent, only the occupied cells are stored.
+     */
+    protected BinGrid pointToCells(SimpleFeatureCollection pointFeatures, String populationField) {
         // calculate extent & cellsize
         calculateExtentAndCellSize(pointFeatures, Integer.MIN_VALUE);
 
@@ -96,12 +115,10 @@ public class RasterDensityOperation extends RasterProcessingOperation {
                     populationField);
         }
 
-        DiskMemImage outputImage = this.createDiskMemImage(Extent, RasterPixelType.FLOAT);
-        this.initializeDefaultValue(outputImage, 0.0);
-
         String the_geom = pointFeatures.getSchema().getGeometryDescriptor().getLocalName();
         Filter filter = ff.bbox(ff.property(the_geom), Extent);
 
+        BinGrid cells = new BinGrid();
         GridTransformer trans = new GridTransformer(Extent, CellSizeX, CellSizeY);
         SimpleFeatureIterator featureIter = pointFeatures.subCollection(filter).features();
         try {
@@ -117,11 +134,7 @@ public class RasterDensityOperation extends RasterProcessingOperation {
                     if (trans.contains(gridPos.x, gridPos.y)) {
                         final Double dblVal = weightExp.evaluate(feature, Double.class);
                         double wVal = dblVal == null ? 1.0 : dblVal.doubleValue();
-
-                        wVal += outputImage.getSampleDouble(gridPos.x, gridPos.y, 0);
-
-                        outputImage.setSample(gridPos.x, gridPos.y, 0, wVal);
-                        this.MaxValue = Math.max(MaxValue, wVal);
+                        cells.add(gridPos.y, gridPos.x, wVal);
                     }
                 }
             }
@@ -129,7 +142,7 @@ public class RasterDensityOperation extends RasterProcessingOperation {
             featureIter.close();
         }
 
-        return outputImage;
+        return cells;
     }
 
     protected PlanarImage lineToRaster(SimpleFeatureCollection lineFeatures, String populationField) {
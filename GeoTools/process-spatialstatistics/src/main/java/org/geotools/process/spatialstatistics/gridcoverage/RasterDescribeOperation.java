@@ -132,7 +132,7 @@ public class RasterDescribeOperation {
                 }
             }
 
-            visitor[index] = new StatisticsVisitor(new DoubleStrategy());
+            visitor[index] = new StatisticsVisitor(new DoubleStrategy(true));
             visitor[index].setNoData(ndvs[index]);
         }
 
@@ -163,6 +163,7 @@ public class RasterDescribeOperation {
             band.setMinimun(ret.getMinimum());
             band.setMaximin(ret.getMaximum());
             band.setMean(ret.getMean());
+            band.setMedian(ret.getMedian());
             band.setSum(ret.getSum());
             band.setVariance(ret.getVariance());
             band.setStandardDeviation(ret.getStandardDeviation());
@@ -187,6 +188,8 @@ public class RasterDescribeOperation {
 
         Double mean = Double.NaN;
 
+        Double median = Double.NaN;
+
         Double sum = Double.NaN;
 
         Double variance = Double.NaN;
@@ -249,6 +252,14 @@ public class RasterDescribeOperation {
             this.mean = mean;
         }
 
+        public Double getMedian() {
+            return median;
+        }
+
+        public void setMedian(Double median) {
+            this.median = median;
+        }
+
         public Double getSum() {
             return sum;
         }
@@ -292,6 +303,7 @@ public class RasterDescribeOperation {
             sb.append("Minimum: ").append(getMinimun()).append(separator);
             sb.append("Maximum: ").append(getMaximin()).append(separator);
             sb.append("Mean: ").append(getMean()).append(separator);
+            sb.append("Median: ").append(getMedian()).append(separator);
             sb.append("Sum: ").append(getSum()).append(separator);
             sb.append("Variance: ").append(getVariance()).append(separator);
             sb.append("StandardDeviation: ").append(getStandardDeviation()).append(separator);
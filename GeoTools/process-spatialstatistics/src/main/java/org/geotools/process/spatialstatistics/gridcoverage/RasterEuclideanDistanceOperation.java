@@ -16,17 +16,22 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
-import java.util.Arrays;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.media.jai.PlanarImage;
 import javax.media.jai.iterator.RectIter;
 import javax.media.jai.iterator.RectIterFactory;
+import javax.media.jai.iterator.WritableRectIter;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.util.factory.GeoTools;
@@ -39,7 +44,7 @@ import org.opengis.filter.FilterFactory2;
  * Calculates, for each cell, the Euclidean distance to the closest source.
  * 
  * @author Minpa Lee, MangoSystem
- * @reference https://github.com/DotSpatial/DotSpatial/blob/master/Source/DotSpatial.Tools/RasterDistance.cs
+ * @reference Felzenszwalb, P. F. and Huttenlocher, D. P., 2012. Distance Transforms of Sampled Functions. Theory of Computing, 8(19).
  * 
  * @source $URL$
  */
@@ -55,6 +60,14 @@ public class RasterEuclideanDistanceOperation extends RasterProcessingOperation
 
     private DiskMemImage outputImage;
 
+    private PlanarImage inputImage;
+
+    private double inputNoData;
+
+    private int numColumns;
+
+    private int numRows;
+
     public GridCoverage2D execute(SimpleFeatureCollection inputFeatures, double maximumDistance) {
         FeaturesToRasterOperation process = new FeaturesToRasterOperation();
         final Number gridVal = Short.valueOf((short) 1);
@@ -101,268 +114,226 @@ public class RasterEuclideanDistanceOperation extends RasterProcessingOperation
         // create raster
         outputImage = createDiskMemImage(valueCoverage, RasterPixelType.FLOAT);
 
-        // declare two jagged arrays for storing the (Rx, Ry) vectors.
-        // rX is distance from current cell to nearest target cell measured in the x-direction
-        // rY is distance from current cell to nearest target cell measured in the y-direction
-        // the actual distance can be calculated as sqrt(rX^2 + rY^2).
-        // in the resulting distance raster we store the squared distance as well as the rX, rY
-        // relative coordinates to improve computation speed
-
-        PlanarImage inputImage = (PlanarImage) valueCoverage.getRenderedImage();
-        final double inputNoData = RasterHelper.getNoDataValue(valueCoverage);
-
-        // ====================================================================
-        // initialize the arrays
-        // ====================================================================
-        final int numColumns = inputImage.getWidth() + 2;
-        final int numRows = inputImage.getHeight() + 2;
-
-        int[][] aRx = new int[numRows][];
-        int[][] aRy = new int[numRows][];
-        int[][] aSqDist = new int[numRows][];
-
-        initializeArrays(inputImage, inputNoData, aRx, aRy, aSqDist, numColumns);
-
-        // ====================================================================
-        // raster distance calculation pass one - top to bottom, left to right
-        // ====================================================================
-        int[] aNcels = new int[4]; // the values of four neighbouring cells (W, NW, N, NE)
-        int[] aDiff = new int[4]; // the | y coordinate distances to nearest target cell
-
-        for (int row = 1; row < numRows; row++) {
-            for (int col = 1; col < numColumns - 1; col++) {
-                int val = aSqDist[row][col];
-
-                // Continue processing only if the current cell is not a target
-                if (val == INT_ZERO) {
-                    continue;
-                }
+        // exact separable distance transform (Felzenszwalb & Huttenlocher).
+        // pass one writes, for each cell, the distance in rows to the nearest source in its
+        // column into the output tiles; pass two reads those rows back and computes the exact
+        // squared distance along each row. Both passes only hold one band of tiles per thread.
+        inputImage = (PlanarImage) valueCoverage.getRenderedImage();
+        inputNoData = RasterHelper.getNoDataValue(valueCoverage);
 
-                // read the values of the cell's neighbours
-                aNcels[0] = aSqDist[row][col - 1]; // W
-                aNcels[1] = aSqDist[row - 1][col - 1]; // NW
-                aNcels[2] = aSqDist[row - 1][col]; // N
-                aNcels[3] = aSqDist[row - 1][col + 1]; // NE
+        numColumns = Math.min(inputImage.getWidth(), outputImage.getWidth());
+        numRows = Math.min(inputImage.getHeight(), outputImage.getHeight());
 
-                // calculate the squared euclidean distances to each neighbouring cell and to the
-                // nearest target cell
-                if (aNcels[0] < INT_MAX) {
-                    aDiff[0] = aNcels[0] + 2 * aRx[row][col - 1] + 1;
-                } else {
-                    aDiff[0] = INT_MAX;
-                }
+        // pass one: vertical bands, one tile wide
+        final int bandWidth = outputImage.getTileWidth();
+        runBands((numColumns + bandWidth - 1) / bandWidth, true);
 
-                if (aNcels[1] < INT_MAX) {
-                    aDiff[1] = aNcels[1] + 2 * (aRx[row - 1][col - 1] + aRy[row - 1][col - 1] + 1);
-                } else {
-                    aDiff[1] = INT_MAX;
-                }
+        // pass two: horizontal bands, one tile high
+        final int bandHeight = outputImage.getTileHeight();
+        runBands((numRows + bandHeight - 1) / bandHeight, false);
 
-                if (aNcels[2] < INT_MAX) {
-                    aDiff[2] = aNcels[2] + 2 * aRy[row - 1][col] + 1;
-                } else {
-                    aDiff[2] = INT_MAX;
-                }
+        inputImage = null;
+        return createGridCoverage("EuclideanDistance", outputImage);
+    }
 
-                if (aNcels[3] < INT_MAX) {
-                    aDiff[3] = aNcels[3] + 2 * (aRx[row - 1][col + 1] + aRy[row - 1][col + 1] + 1);
-                } else {
-                    aDiff[3] = INT_MAX;
-                }
+    private void runBands(final int bandCount, final boolean columnPass) {
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
 
-                // find neighbouring cell with minimum distance difference
-                int minDiff = aDiff[0];
-                int minDiffCell = 0;
-                for (int i = 1; i < 4; i++) {
-                    if (aDiff[i] < minDiff) {
-                        minDiff = aDiff[i];
-                        minDiffCell = i;
-                    }
-                }
+        List<PartialDistance> tasks = new ArrayList<PartialDistance>();
+        for (int t = 0; t < workers; t++) {
+            PartialDistance task = new PartialDistance(bandCount, nextBand, columnPass);
+            tasks.add(task);
+        }
 
-                // if a neighbouring cell with known distance was found:
-                if (minDiff < INT_MAX) {
-                    // assign the minimum euclidean distance
-                    aSqDist[row][col] = minDiff;
-
-                    // update the (rX, rY) cell-to-nearest-target vector
-                    switch (minDiffCell) {
-                    case 0: // W
-                        aRx[row][col] = aRx[row][col - 1] + 1;
-                        aRy[row][col] = aRy[row][col - 1];
-                        break;
-                    case 1: // NW
-                        aRx[row][col] = aRx[row - 1][col - 1] + 1;
-                        aRy[row][col] = aRy[row - 1][col - 1] + 1;
-                        break;
-                    case 2: // N
-                        aRx[row][col] = aRx[row - 1][col];
-                        aRy[row][col] = aRy[row - 1][col] + 1;
-                        break;
-                    case 3: // NE
-                        aRx[row][col] = aRx[row - 1][col + 1] + 1;
-                        aRy[row][col] = aRy[row - 1][col + 1] + 1;
-                        break;
-                    }
+        ParallelExecutor.execute(tasks);
+
+        if (!columnPass) {
+            for (PartialDistance task : tasks) {
+                if (task.minValue <= task.maxValue) {
+                    updateStatistics(task.minValue);
+                    updateStatistics(task.maxValue);
                 }
-                // end of update (rX, rY) cell-to-nearest-target vector
             }
-            // end or current row processing
         }
-        // ====================================================================
-        // end of first pass for loop
-        // ====================================================================
-
-        // ====================================================================
-        // raster distance calculation PASS TWO - bottom to top, right to left
-        // ====================================================================
-        for (int row = numRows - 2; row > 0; row--) {
-            for (int col = numColumns - 2; col > 0; col--) {
-                int val = aSqDist[row][col];
-
-                // Continue processing only if the current cell is not a target
-                if (val == INT_ZERO) {
-                    continue;
-                }
+    }
 
-                // read the values of the cell's neighbours
-                aNcels[0] = aSqDist[row][col + 1]; // E
-                aNcels[1] = aSqDist[row + 1][col + 1]; // SE
-                aNcels[2] = aSqDist[row + 1][col]; // S
-                aNcels[3] = aSqDist[row + 1][col - 1]; // SW
+    final class PartialDistance implements Runnable {
+        private final int bandCount;
 
-                // calculate the squared euclidean distances to each neighbouring cell and to the
-                // nearest target cell
-                if (aNcels[0] < INT_MAX) {
-                    aDiff[0] = aNcels[0] + 2 * aRx[row][col + 1] + 1;
-                } else {
-                    aDiff[0] = INT_MAX;
-                }
+        private final AtomicInteger nextBand;
 
-                if (aNcels[1] < INT_MAX) {
-                    aDiff[1] = aNcels[1] + 2 * (aRx[row + 1][col + 1] + aRy[row + 1][col + 1] + 1);
-                } else {
-                    aDiff[1] = INT_MAX;
-                }
+        private final boolean columnPass;
 
-                if (aNcels[2] < INT_MAX) {
-                    aDiff[2] = aNcels[2] + 2 * aRy[row + 1][col] + 1;
-                } else {
-                    aDiff[2] = INT_MAX;
-                }
+        double minValue = Double.MAX_VALUE;
 
-                if (aNcels[3] < INT_MAX) {
-                    aDiff[3] = aNcels[3] + 2 * (aRx[row + 1][col - 1] + aRy[row + 1][col - 1] + 1);
+        double maxValue = -Double.MAX_VALUE;
+
+        public PartialDistance(int bandCount, AtomicInteger nextBand, boolean columnPass) {
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
+            this.columnPass = columnPass;
+        }
+
+        public void run() {
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                if (columnPass) {
+                    int width = outputImage.getTileWidth();
+                    int x = band * width;
+                    transformColumns(x, Math.min(width, numColumns - x));
                 } else {
-                    aDiff[3] = INT_MAX;
+                    int height = outputImage.getTileHeight();
+                    int y = band * height;
+                    transformRows(y, Math.min(height, numRows - y));
                 }
+            }
+        }
 
-                // find neighbouring cell with minimum distance difference
-                int minDiff = aDiff[0];
-                int minDiffCell = 0;
-                for (int i = 1; i < 4; i++) {
-                    if (aDiff[i] < minDiff) {
-                        minDiff = aDiff[i];
-                        minDiffCell = i;
+        private void transformColumns(int x, int width) {
+            // distance in rows to the nearest source above, then below
+            int[] dist = new int[width * numRows];
+            Rectangle rect = new Rectangle(inputImage.getMinX() + x, inputImage.getMinY(), width,
+                    numRows);
+            RectIter readIter = RectIterFactory.create(inputImage, rect);
+
+            int row = 0;
+            readIter.startLines();
+            while (!readIter.finishedLines()) {
+                int col = 0;
+                readIter.startPixels();
+                while (!readIter.finishedPixels()) {
+                    final int val = readIter.getSample(0);
+                    int idx = row * width + col;
+                    if (!SSUtils.compareDouble(val, inputNoData)) {
+                        dist[idx] = INT_ZERO;
+                    } else if (row == 0 || dist[idx - width] == INT_MAX) {
+                        dist[idx] = INT_MAX;
+                    } else {
+                        dist[idx] = dist[idx - width] + 1;
                     }
+                    readIter.nextPixel();
+                    col++;
                 }
+                readIter.nextLine();
+                row++;
+            }
 
-                // if a neighbouring cell with known distance smaller than current known distance
-                // was found:
-                if (minDiff < val) {
-                    // assign the minimum euclidean distance
-                    aSqDist[row][col] = minDiff;
-
-                    // update the (rX, rY) cell-to-nearest-target vector
-                    switch (minDiffCell) {
-                    case 0: // E
-                        aRx[row][col] = aRx[row][col + 1] + 1;
-                        aRy[row][col] = aRy[row][col + 1];
-                        break;
-                    case 1: // SE
-                        aRx[row][col] = aRx[row + 1][col + 1] + 1;
-                        aRy[row][col] = aRy[row + 1][col + 1] + 1;
-                        break;
-                    case 2: // S
-                        aRx[row][col] = aRx[row + 1][col];
-                        aRy[row][col] = aRy[row + 1][col] + 1;
-                        break;
-                    case 3: // SW
-                        aRx[row][col] = aRx[row + 1][col - 1] + 1;
-                        aRy[row][col] = aRy[row + 1][col - 1] + 1;
-                        break;
+            for (row = numRows - 2; row >= 0; row--) {
+                for (int col = 0; col < width; col++) {
+                    int below = dist[(row + 1) * width + col];
+                    int idx = row * width + col;
+                    if (below != INT_MAX && below + 1 < dist[idx]) {
+                        dist[idx] = below + 1;
                     }
                 }
-                // end of update (rX, rY) cell-to-nearest-target vector
             }
 
-            // write output distance
-            writeDistance(row - 1, aSqDist[row]);
+            // store into the output tiles, -1 = no source in this column
+            WritableRectIter writer = RectIterFactory.createWritable(outputImage, new Rectangle(
+                    x, 0, width, numRows));
+            int idx = 0;
+            writer.startLines();
+            while (!writer.finishedLines()) {
+                writer.startPixels();
+                while (!writer.finishedPixels()) {
+                    int val = dist[idx++];
+                    writer.setSample(0, val == INT_MAX ? -1f : (float) val);
+                    writer.nextPixel();
+                }
+                writer.nextLine();
+            }
         }
-        // *******************************************************************
-        // end of second pass proximity calculation loop
-        // *******************************************************************
-
-        return createGridCoverage("EuclideanDistance", outputImage);
-    }
 
-    private void writeDistance(int row, int[] colValues) {
-        final int length = colValues.length;
-        for (int col = 0; col < length - 1; col++) {
-            int val = colValues[col + 1];
+        private void transformRows(int y, int height) {
+            double[] f = new double[numColumns];
+            double[] d = new double[numColumns];
+            int[] v = new int[numColumns];
+            double[] z = new double[numColumns + 1];
+
+            WritableRectIter iter = RectIterFactory.createWritable(outputImage, new Rectangle(0,
+                    y, numColumns, height));
+            iter.startLines();
+            while (!iter.finishedLines()) {
+                int col = 0;
+                iter.startPixels();
+                while (!iter.finishedPixels()) {
+                    double g = iter.getSampleDouble(0);
+                    f[col++] = g < 0 ? Double.POSITIVE_INFINITY : g * g;
+                    iter.nextPixel();
+                }
 
-            if (val == INT_MAX) {
-                outputImage.setSample(col, row, 0, NoData);
-            } else {
-                double distance = Math.sqrt(val) * CellSizeX;
-                if (maximumDistance < distance) {
-                    outputImage.setSample(col, row, 0, NoData);
-                } else {
-                    outputImage.setSample(col, row, 0, distance);
-                    updateStatistics(distance);
+                boolean found = distanceTransform(f, d, v, z, numColumns);
+
+                col = 0;
+                iter.startPixels();
+                while (!iter.finishedPixels()) {
+                    double value = NoData;
+                    if (found) {
+                        double distance = Math.sqrt(d[col]) * CellSizeX;
+                        if (distance <= maximumDistance) {
+                            value = distance;
+                            minValue = Math.min(minValue, distance);
+                            maxValue = Math.max(maxValue, distance);
+                        }
+                    }
+                    iter.setSample(0, value);
+                    iter.nextPixel();
+                    col++;
                 }
+                iter.nextLine();
             }
         }
     }
 
-    private void initializeArrays(PlanarImage inputImage, double inputNoData, final int[][] aRx,
-            final int[][] aRy, final int[][] aSqDist, int numColumns) {
-        final RectIter readIter = RectIterFactory.create(inputImage, inputImage.getBounds());
-
-        // first row
-        int dy = 0;
-        aRx[dy] = new int[numColumns];
-        aRy[dy] = new int[numColumns];
-        aSqDist[dy] = new int[numColumns];
-        Arrays.fill(aSqDist[dy], INT_MAX);
-
-        // valid cell
-        dy++;
-        readIter.startLines();
-        while (!readIter.finishedLines()) {
-            aRx[dy] = new int[numColumns];
-            aRy[dy] = new int[numColumns];
-            aSqDist[dy] = new int[numColumns];
-            Arrays.fill(aSqDist[dy], INT_MAX);
-
-            int dx = 1;
-            readIter.startPixels();
-            while (!readIter.finishedPixels()) {
-                final int val = readIter.getSample(0);
-                if (!SSUtils.compareDouble(val, inputNoData)) {
-                    aSqDist[dy][dx] = INT_ZERO;
-                }
-                readIter.nextPixel();
-                dx++;
+    /**
+     * One dimensional squared distance transform of the sampled function f: lower envelope of the parabolas rooted at the finite samples.
+     * 
+     * @return false if f has no finite sample
+     */
+    static boolean distanceTransform(double[] f, double[] d, int[] v, double[] z, int n) {
+        int k = -1;
+        for (int q = 0; q < n; q++) {
+            if (Double.isInfinite(f[q])) {
+                continue;
+            }
+
+            if (k < 0) {
+                k = 0;
+                v[0] = q;
+                z[0] = Double.NEGATIVE_INFINITY;
+                z[1] = Double.POSITIVE_INFINITY;
+                continue;
             }
-            readIter.nextLine();
-            dy++;
+
+            double s = intersection(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
         }
 
-        // last row
-        aRx[dy] = new int[numColumns];
-        aRy[dy] = new int[numColumns];
-        aSqDist[dy] = new int[numColumns];
-        Arrays.fill(aSqDist[dy], INT_MAX);
+        if (k < 0) {
+            return false;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            double dx = q - v[k];
+            d[q] = dx * dx + f[v[k]];
+        }
+        return true;
+    }
+
+    private static double intersection(double[] f, int q, int p) {
+        return ((f[q] + (double) q * q) - (f[p] + (double) p * p)) / (2.0 * q - 2.0 * p);
     }
-}
\ No newline at end of file
+}
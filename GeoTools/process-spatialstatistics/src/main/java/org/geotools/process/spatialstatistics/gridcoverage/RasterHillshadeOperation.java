@@ -18,12 +18,7 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 
 import java.util.logging.Logger;
 
-import javax.media.jai.iterator.RectIterFactory;
-import javax.media.jai.iterator.WritableRectIter;
-
-import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
-import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
@@ -56,40 +51,21 @@ public class RasterHillshadeOperation extends AbstractSurfaceOperation {
         return execute(inputGc, azimuth, altitude, 1.0);
     }
 
-    public GridCoverage2D execute(GridCoverage2D inputGc, double azimuth, double altitude,
-            double zFactor) {
+    public GridCoverage2D execute(GridCoverage2D inputGc, final double azimuth,
+            final double altitude, final double zFactor) {
         this.initSurface(inputGc);
 
         DiskMemImage outputImage = this.createDiskMemImage(inputGc, RasterPixelType.FLOAT);
-        WritableRectIter writer = RectIterFactory.createWritable(outputImage,
-                outputImage.getBounds());
-
-        GridCoordinates2D pos = new GridCoordinates2D();
-
-        int y = bounds.y;
-        writer.startLines();
-        while (!writer.finishedLines()) {
-
-            int x = bounds.x;
-            writer.startPixels();
-            while (!writer.finishedPixels()) {
-                pos.setLocation(x, y);
-
-                visitHillShade(writer, pos, azimuth, altitude, zFactor);
-
-                writer.nextPixel();
-                x++;
+        processSurface(outputImage, zFactor, new WindowOperator() {
+            public double evaluate(double[] window) {
+                return visitHillShade(window, azimuth, altitude, zFactor);
             }
-
-            writer.nextLine();
-            y++;
-        }
+        });
 
         return createGridCoverage("Aspect", outputImage);
     }
 
-    private void visitHillShade(WritableRectIter writer, GridCoordinates2D pos,
-            final double azimuth, final double altitude, final double zFactor) {
+    private double visitHillShade(double[] mx, final double azimuth, final double altitude, final double zFactor) {
         // http://webhelp.esri.com/arcgisdesktop/9.2/index.cfm?TopicName=How%20Hillshade%20works
         // Burrough, P. A. and McDonell, R.A., 1998. Principles of Geographical Information Systems
         // (Oxford University Press, New York), p. 190.
@@ -101,21 +77,14 @@ public class RasterHillshadeOperation extends AbstractSurfaceOperation {
         // | 3 4 5 |>| d e f |
         // | 6 7 8 | | g h i |
         // +-------+ +-------+
-        double[][] mx = getSubMatrix(pos, 3, 3, zFactor);
-        if (Double.isNaN(mx[1][1]) || SSUtils.compareDouble(srcNoData, mx[1][1])) {
-            writer.setSample(0, NoData);
-            return;
-        }
-
-        double dZdX = ((mx[2][0] + 2 * mx[2][1] + mx[2][2]) - (mx[0][0] + 2 * mx[0][1] + mx[0][2]))
+        double dZdX = ((mx[2] + 2 * mx[5] + mx[8]) - (mx[0] + 2 * mx[3] + mx[6]))
                 / (_8DX);
-        double dZdY = ((mx[0][2] + 2 * mx[1][2] + mx[2][2]) - (mx[0][0] + 2 * mx[1][0] + mx[2][0]))
+        double dZdY = ((mx[6] + 2 * mx[7] + mx[8]) - (mx[0] + 2 * mx[1] + mx[2]))
                 / (_8DY);
 
         if (Double.isNaN(dZdX) || Double.isNaN(dZdY) || Double.isInfinite(dZdX)
                 || Double.isInfinite(dZdY)) {
-            writer.setSample(0, NoData);
-            return;
+            return Double.NaN;
         }
 
         // Computing the illumination angle
@@ -166,7 +135,6 @@ public class RasterHillshadeOperation extends AbstractSurfaceOperation {
             hsdVal = 255;
         }
 
-        writer.setSample(0, hsdVal);
-        updateStatistics(hsdVal);
+        return hsdVal;
     }
 }
\ No newline at end of file
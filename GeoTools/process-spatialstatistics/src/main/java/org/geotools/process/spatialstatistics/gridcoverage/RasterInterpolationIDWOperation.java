@@ -19,6 +19,7 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,6 +29,9 @@ import javax.media.jai.iterator.WritableRectIter;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
+import org.geotools.process.spatialstatistics.core.PointKdTree.Neighbors;
+import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
@@ -86,38 +90,27 @@ public class RasterInterpolationIDWOperation extends RasterInterpolationOperator
         final DiskMemImage oi = createDiskMemImage(Extent, pixelType);
         final GridTransformer trans = new GridTransformer(Extent, CellSizeX, CellSizeY);
 
-        // divide 500 pixels
-        final java.awt.Rectangle bounds = oi.getBounds();
-        final int count = Math.max(bounds.width, bounds.height) / MIN_CELL_COUNT;
-
-        List<Thread> threads = new ArrayList<Thread>();
-
-        if (count == 0) {
-            Thread thread = new Thread(new PartialInterpolator(oi, bounds, interpolator, trans));
-            thread.start();
-            threads.add(thread);
-        } else {
-            final int sizeX = bounds.width / count;
-            final int sizeY = bounds.height / count;
-
-            for (int x = 0; x < count; x++) {
-                int posX = x == 0 ? x : (x * sizeX) + x;
-                for (int y = 0; y < count; y++) {
-                    int posY = y == 0 ? y : (y * sizeY) + y;
-                    java.awt.Rectangle rect = new Rectangle(posX, posY, sizeX + 1, sizeY + 1);
-                    Thread thread = new Thread(new PartialInterpolator(oi, rect, interpolator,
-                            trans));
-                    thread.start();
-                    threads.add(thread);
-                }
-            }
+        // row bands, one tile high
+        final Rectangle bounds = oi.getBounds();
+        final int bandHeight = oi.getTileHeight();
+        final int bandCount = (bounds.height + bandHeight - 1) / bandHeight;
+
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
+
+        List<PartialInterpolator> tasks = new ArrayList<PartialInterpolator>();
+        for (int t = 0; t < workers; t++) {
+            PartialInterpolator task = new PartialInterpolator(oi, bounds, bandHeight, bandCount,
+                    nextBand, interpolator, trans);
+            tasks.add(task);
         }
 
-        for (int i = 0; i < threads.size(); i++) {
-            try {
-                threads.get(i).join();
-            } catch (InterruptedException e) {
-                LOGGER.log(Level.FINER, e.getMessage(), e);
+        ParallelExecutor.execute(tasks);
+
+        for (PartialInterpolator task : tasks) {
+            if (task.minValue <= task.maxValue) {
+                updateStatistics(task.minValue);
+                updateStatistics(task.maxValue);
             }
         }
 
@@ -125,40 +118,69 @@ public class RasterInterpolationIDWOperation extends RasterInterpolationOperator
     }
 
     final class PartialInterpolator implements Runnable {
-        private DiskMemImage oi;
+        private final DiskMemImage oi;
+
+        private final Rectangle bounds;
+
+        private final int bandHeight;
+
+        private final int bandCount;
+
+        private final AtomicInteger nextBand;
+
+        private final IDWInterpolator interpolator;
+
+        private final GridTransformer trans;
 
-        private java.awt.Rectangle rect;
+        private final Neighbors neighbors = new Neighbors();
 
-        private AbstractInterpolator interpolator;
+        double minValue = Double.MAX_VALUE;
 
-        private GridTransformer trans;
+        double maxValue = -Double.MAX_VALUE;
 
-        public PartialInterpolator(DiskMemImage oi, Rectangle rect,
-                AbstractInterpolator interpolator, GridTransformer trans) {
+        public PartialInterpolator(DiskMemImage oi, Rectangle bounds, int bandHeight,
+                int bandCount, AtomicInteger nextBand, IDWInterpolator interpolator,
+                GridTransformer trans) {
             this.oi = oi;
-            this.rect = rect;
+            this.bounds = bounds;
+            this.bandHeight = bandHeight;
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
             this.interpolator = interpolator;
             this.trans = trans;
         }
 
         public void run() {
-            WritableRectIter writer = RectIterFactory.createWritable(oi, rect);
-
-            writer.startLines();
-            int y = rect.y;
-            while (!writer.finishedLines()) {
-                writer.startPixels();
-                int x = rect.x;
-                while (!writer.finishedPixels()) {
-                    final Coordinate realPos = trans.gridToWorldCoordinate(x, y);
-                    final double retVal = interpolator.getValue(realPos);
-                    writer.setSample(0, retVal);
-                    updateStatistics(retVal);
-                    writer.nextPixel();
-                    x++;
+            final double[] row = new double[bounds.width];
+            final double minX = trans.getX(bounds.x);
+            final double cellSize = trans.getX(bounds.x + 1) - minX;
+
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                int posY = bounds.y + band * bandHeight;
+                Rectangle rect = new Rectangle(bounds.x, posY, bounds.width,
+                        Math.min(bandHeight, bounds.y + bounds.height - posY));
+
+                WritableRectIter writer = RectIterFactory.createWritable(oi, rect);
+                writer.startLines();
+                int y = rect.y;
+                while (!writer.finishedLines()) {
+                    interpolator.getValues(trans.getY(y), minX, cellSize, row, neighbors);
+
+                    writer.startPixels();
+                    int x = 0;
+                    while (!writer.finishedPixels()) {
+                        final double retVal = row[x++];
+                        writer.setSample(0, retVal);
+                        if (!SSUtils.compareDouble(retVal, NoData)) {
+                            minValue = Math.min(minValue, retVal);
+                            maxValue = Math.max(maxValue, retVal);
+                        }
+                        writer.nextPixel();
+                    }
+                    writer.nextLine();
+                    y++;
                 }
-                writer.nextLine();
-                y++;
             }
         }
     }
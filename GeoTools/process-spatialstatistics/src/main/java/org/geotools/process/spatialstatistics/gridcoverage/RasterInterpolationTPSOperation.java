@@ -19,6 +19,7 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,13 +29,14 @@ import javax.media.jai.iterator.WritableRectIter;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
 import org.locationtech.jts.geom.Coordinate;
 
 /**
- * TPS Interpolation based on thin plate spline (TPS) algorithm
+ * TPS Interpolation based on thin plate spline (TPS) algorithm, with one global spline or local splines over the nearest samples
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -44,6 +46,14 @@ public class RasterInterpolationTPSOperation extends RasterInterpolationOperator
     protected static final Logger LOGGER = Logging.getLogger(RasterInterpolationTPSOperation.class);
 
     public GridCoverage2D execute(SimpleFeatureCollection pointFeatures, String valueField) {
+        return execute(pointFeatures, valueField, 0);
+    }
+
+    /**
+     * @param numberOfPoints number of nearest samples of the local spline of each cell, 0 to fit one spline to all samples
+     */
+    public GridCoverage2D execute(SimpleFeatureCollection pointFeatures, String valueField,
+            int numberOfPoints) {
         valueField = FeatureTypes.validateProperty(pointFeatures.getSchema(), valueField);
         if (valueField == null || pointFeatures.getSchema().indexOf(valueField) == -1) {
             LOGGER.log(Level.FINER, valueField + " does not exist!");
@@ -56,44 +66,34 @@ public class RasterInterpolationTPSOperation extends RasterInterpolationOperator
 
         // extract the input observation points
         Coordinate[] pts = extractPoints(pointFeatures, valueField);
-        final ThinPlateSplineInterpolator interpolator = new ThinPlateSplineInterpolator(pts);
+        final ThinPlateSplineInterpolator interpolator = new ThinPlateSplineInterpolator(pts,
+                numberOfPoints);
 
         // create image & write pixels
         final DiskMemImage oi = this.createDiskMemImage(Extent, pixelType);
         final GridTransformer trans = new GridTransformer(Extent, CellSizeX, CellSizeY);
 
-        // divide 500 pixels
-        final java.awt.Rectangle bounds = oi.getBounds();
-        final int count = Math.max(bounds.width, bounds.height) / MIN_CELL_COUNT;
-
-        List<Thread> threads = new ArrayList<Thread>();
-
-        if (count == 0) {
-            Thread thread = new Thread(new PartialInterpolator(oi, bounds, interpolator, trans));
-            thread.start();
-            threads.add(thread);
-        } else {
-            final int sizeX = bounds.width / count;
-            final int sizeY = bounds.height / count;
-
-            for (int x = 0; x < count; x++) {
-                int posX = x == 0 ? x : (x * sizeX) + x;
-                for (int y = 0; y < count; y++) {
-                    int posY = y == 0 ? y : (y * sizeY) + y;
-                    java.awt.Rectangle rect = new Rectangle(posX, posY, sizeX + 1, sizeY + 1);
-                    Thread thread = new Thread(new PartialInterpolator(oi, rect, interpolator,
-                            trans));
-                    thread.start();
-                    threads.add(thread);
-                }
-            }
+        // row bands, one tile high: the local splines are reused along the rows
+        final Rectangle bounds = oi.getBounds();
+        final int bandHeight = oi.getTileHeight();
+        final int bandCount = (bounds.height + bandHeight - 1) / bandHeight;
+
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
+
+        List<PartialInterpolator> tasks = new ArrayList<PartialInterpolator>();
+        for (int t = 0; t < workers; t++) {
+            PartialInterpolator task = new PartialInterpolator(oi, bounds, bandHeight, bandCount,
+                    nextBand, interpolator, trans);
+            tasks.add(task);
         }
 
-        for (int i = 0; i < threads.size(); i++) {
-            try {
-                threads.get(i).join();
-            } catch (InterruptedException e) {
-                LOGGER.log(Level.FINER, e.getMessage(), e);
+        ParallelExecutor.execute(tasks);
+
+        for (PartialInterpolator task : tasks) {
+            if (task.minValue <= task.maxValue) {
+                updateStatistics(task.minValue);
+                updateStatistics(task.maxValue);
             }
         }
 
@@ -101,23 +101,47 @@ public class RasterInterpolationTPSOperation extends RasterInterpolationOperator
     }
 
     final class PartialInterpolator implements Runnable {
-        private DiskMemImage oi;
+        private final DiskMemImage oi;
+
+        private final Rectangle bounds;
 
-        private java.awt.Rectangle rect;
+        private final int bandHeight;
 
-        private AbstractInterpolator interpolator;
+        private final int bandCount;
 
-        private GridTransformer trans;
+        private final AtomicInteger nextBand;
 
-        public PartialInterpolator(DiskMemImage oi, Rectangle rect,
-                AbstractInterpolator interpolator, GridTransformer trans) {
+        private final AbstractInterpolator interpolator;
+
+        private final GridTransformer trans;
+
+        double minValue = Double.MAX_VALUE;
+
+        double maxValue = -Double.MAX_VALUE;
+
+        public PartialInterpolator(DiskMemImage oi, Rectangle bounds, int bandHeight,
+                int bandCount, AtomicInteger nextBand, AbstractInterpolator interpolator,
+                GridTransformer trans) {
             this.oi = oi;
-            this.rect = rect;
+            this.bounds = bounds;
+            this.bandHeight = bandHeight;
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
             this.interpolator = interpolator;
             this.trans = trans;
         }
 
         public void run() {
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                int posY = bounds.y + band * bandHeight;
+                Rectangle rect = new Rectangle(bounds.x, posY, bounds.width,
+                        Math.min(bandHeight, bounds.y + bounds.height - posY));
+                interpolate(rect);
+            }
+        }
+
+        private void interpolate(Rectangle rect) {
             WritableRectIter writer = RectIterFactory.createWritable(oi, rect);
 
             writer.startLines();
@@ -129,7 +153,8 @@ public class RasterInterpolationTPSOperation extends RasterInterpolationOperator
                     final Coordinate realPos = trans.gridToWorldCoordinate(x, y);
                     final double retVal = interpolator.getValue(realPos);
                     writer.setSample(0, retVal);
-                    updateStatistics(retVal);
+                    minValue = Math.min(minValue, retVal);
+                    maxValue = Math.max(maxValue, retVal);
                     writer.nextPixel();
                     x++;
                 }
@@ -16,24 +16,30 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
-import java.awt.RenderingHints;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.measure.Unit;
-import javax.media.jai.BorderExtender;
-import javax.media.jai.JAI;
 import javax.media.jai.KernelJAI;
-import javax.media.jai.ParameterBlockJAI;
-import javax.media.jai.PlanarImage;
+import javax.media.jai.iterator.RectIterFactory;
+import javax.media.jai.iterator.WritableRectIter;
 
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.BinGrid;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.enumeration.KernelType;
+import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.jaitools.media.jai.kernel.KernelFactory;
 import org.jaitools.media.jai.kernel.KernelFactory.ValueType;
+import org.jaitools.tiledimage.DiskMemImage;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.crs.GeographicCRS;
 
@@ -51,6 +57,11 @@ public class RasterKernelDensityOperation extends RasterDensityOperation {
 
     private KernelType kernelType = KernelType.Quadratic;
 
+    // occupied cells, sorted by row and then by column, see BinGrid#key
+    private long[] cellKeys;
+
+    private double[] cellValues;
+
     public KernelType getKernelType() {
         return kernelType;
     }
@@ -69,8 +80,8 @@ public class RasterKernelDensityOperation extends RasterDensityOperation {
 
     public GridCoverage2D execute(SimpleFeatureCollection pointFeatures, String weightField,
             double searchRadius) {
-        // step 1 : convert point to gridcoverage : Sum
-        final PlanarImage outputImage = pointToRaster(pointFeatures, weightField);
+        // step 1 : collect the occupied cells : Sum
+        final DiskMemImage outputImage = collectCells(pointFeatures, weightField);
 
         // The kernel function is based on the quadratic kernel function described in Silverman
         // (1986, p. 76, equation 4.5).
@@ -79,15 +90,6 @@ public class RasterKernelDensityOperation extends RasterDensityOperation {
         // step 2 Only a circular neighborhood is possible
         final KernelJAI kernel = getKernel(searchRadius);
 
-        final RenderingHints hints = new RenderingHints(JAI.KEY_BORDER_EXTENDER,
-                BorderExtender.createInstance(BorderExtender.BORDER_ZERO));
-
-        final ParameterBlockJAI pb = new ParameterBlockJAI("Convolve");
-        pb.setSource("source0", outputImage);
-        pb.setParameter("kernel", kernel);
-
-        PlanarImage densityImage = JAI.create("Convolve", pb, hints);
-
         // If an area unit is selected, the calculated density for the cell is multiplied by the
         // appropriate factor before it is written to the output raster.
         // For example, if the input units are meters, the output area units will default to square
@@ -107,7 +109,149 @@ public class RasterKernelDensityOperation extends RasterDensityOperation {
             }
         }
 
-        return createGridCoverage("KernelDensity", scaleUnit(densityImage));
+        // step 3 : splat the kernel around the occupied cells only, one row band per task
+        splatKernel(outputImage, kernel);
+        cellKeys = null;
+        cellValues = null;
+
+        return createGridCoverage("KernelDensity", outputImage);
+    }
+
+    private DiskMemImage collectCells(SimpleFeatureCollection pointFeatures, String weightField) {
+        BinGrid cells = pointToCells(pointFeatures, weightField);
+
+        cellKeys = cells.getSortedKeys();
+        cellValues = new double[cellKeys.length];
+        for (int index = 0; index < cellKeys.length; index++) {
+            cellValues[index] = cells.get(cellKeys[index], 0.0);
+        }
+
+        return this.createDiskMemImage(Extent, RasterPixelType.FLOAT);
+    }
+
+    private void splatKernel(DiskMemImage outputImage, KernelJAI kernel) {
+        final int bandHeight = outputImage.getTileHeight();
+        final int bandCount = (outputImage.getHeight() + bandHeight - 1) / bandHeight;
+
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
+
+        List<PartialDensity> tasks = new ArrayList<PartialDensity>();
+        for (int t = 0; t < workers; t++) {
+            PartialDensity task = new PartialDensity(outputImage, kernel, bandCount, nextBand);
+            tasks.add(task);
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        this.MinValue = 0.0;
+        this.MaxValue = 0.0;
+        for (PartialDensity task : tasks) {
+            this.MaxValue = Math.max(MaxValue, task.maxValue);
+        }
+    }
+
+    final class PartialDensity implements Runnable {
+        private final DiskMemImage outputImage;
+
+        private final float[] weights;
+
+        private final int radius;
+
+        private final int bandCount;
+
+        private final AtomicInteger nextBand;
+
+        double maxValue = 0.0;
+
+        public PartialDensity(DiskMemImage outputImage, KernelJAI kernel, int bandCount,
+                AtomicInteger nextBand) {
+            this.outputImage = outputImage;
+            this.weights = kernel.getKernelData();
+            this.radius = kernel.getXOrigin();
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
+        }
+
+        public void run() {
+            final int width = outputImage.getWidth();
+            final int bandHeight = outputImage.getTileHeight();
+            double[] buffer = new double[width * bandHeight];
+
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                int y0 = band * bandHeight;
+                int height = Math.min(bandHeight, outputImage.getHeight() - y0);
+                Arrays.fill(buffer, 0, width * height, 0.0);
+
+                splat(buffer, width, y0, height);
+                write(buffer, width, y0, height);
+            }
+        }
+
+        private void splat(double[] buffer, int width, int y0, int height) {
+            final int kernelWidth = 2 * radius + 1;
+            final int y1 = y0 + height - 1;
+
+            // cells whose footprint reaches this band
+            int start = lowerBound(BinGrid.key(Math.max(0, y0 - radius), 0));
+            long endKey = BinGrid.key(y1 + radius + 1, 0);
+
+            for (int c = start; c < cellKeys.length && cellKeys[c] < endKey; c++) {
+                final int sy = BinGrid.row(cellKeys[c]);
+                final int sx = BinGrid.col(cellKeys[c]);
+                final double value = cellValues[c];
+
+                final int minDy = Math.max(-radius, y0 - sy);
+                final int maxDy = Math.min(radius, y1 - sy);
+                final int minDx = Math.max(-radius, -sx);
+                final int maxDx = Math.min(radius, width - 1 - sx);
+
+                for (int dy = minDy; dy <= maxDy; dy++) {
+                    // same orientation as the Convolve operator: dst(x, y) += src * k(r - dx, r - dy)
+                    final int kernelRow = (radius - dy) * kernelWidth + radius;
+                    final int offset = (sy + dy - y0) * width + sx;
+                    for (int dx = minDx; dx <= maxDx; dx++) {
+                        final float weight = weights[kernelRow - dx];
+                        if (weight != 0) {
+                            buffer[offset + dx] += value * weight;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void write(double[] buffer, int width, int y0, int height) {
+            WritableRectIter writer = RectIterFactory.createWritable(outputImage, new Rectangle(0,
+                    y0, width, height));
+
+            int index = 0;
+            writer.startLines();
+            while (!writer.finishedLines()) {
+                writer.startPixels();
+                while (!writer.finishedPixels()) {
+                    final double density = buffer[index++] / scaleArea;
+                    writer.setSample(0, (float) density);
+                    maxValue = Math.max(maxValue, density);
+                    writer.nextPixel();
+                }
+                writer.nextLine();
+            }
+        }
+
+        private int lowerBound(long key) {
+            int low = 0;
+            int high = cellKeys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cellKeys[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
     }
 
     private KernelJAI getKernel(double searchRadius) {
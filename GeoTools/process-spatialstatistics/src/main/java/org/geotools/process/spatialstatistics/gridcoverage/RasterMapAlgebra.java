@@ -0,0 +1,811 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.gridcoverage;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import javax.media.jai.PlanarImage;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.FeatureTypes;
+import org.geotools.process.spatialstatistics.core.SSUtils;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.expression.Add;
+import org.opengis.filter.expression.Divide;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.Multiply;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.expression.Subtract;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Raster map algebra: compiles filter expressions and filters into kernels which evaluate over primitive sample arrays. <br>
+ * Each variable is one band of a coverage and is referenced in the expression by its property name. All coverages must have the same grid. NoData
+ * samples are read as NaN so that they propagate through the arithmetic; filters evaluate to 1 (true) or 0 (false). <br>
+ * Expressions with unsupported functions or unknown property names compile to null, the caller then evaluates the expression per pixel against a
+ * template feature.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class RasterMapAlgebra {
+    protected static final Logger LOGGER = Logging.getLogger(RasterMapAlgebra.class);
+
+    /**
+     * Compiled expression.
+     */
+    public interface Kernel {
+        /**
+         * Returns the number of scratch arrays needed by {@link #evaluate(double[][], int, double[], double[][], int)}.
+         */
+        int getBufferCount();
+
+        /**
+         * Marks the variables read by the kernel.
+         */
+        void addVariables(boolean[] used);
+
+        /**
+         * Evaluates the first length samples of the inputs, one array per variable, into the result array. The buffers from the given depth are
+         * scratch arrays of the calling thread, see {@link RasterMapAlgebra#createBuffers(Kernel, int)}.
+         */
+        void evaluate(double[][] inputs, int length, double[] result, double[][] buffers,
+                int depth);
+    }
+
+    private final List<String> names = new ArrayList<String>();
+
+    private final List<PlanarImage> images = new ArrayList<PlanarImage>();
+
+    private final List<Integer> bands = new ArrayList<Integer>();
+
+    private final List<Double> noDataValues = new ArrayList<Double>();
+
+    static final double ALIGN_TOLERANCE = 1.0e-3;
+
+    private ReferencedEnvelope extent;
+
+    private double cellSizeX;
+
+    private double cellSizeY;
+
+    public int getVariableCount() {
+        return names.size();
+    }
+
+    public String getVariableName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * Creates the scratch arrays of the kernel for one thread, each with the given capacity.
+     */
+    public static double[][] createBuffers(Kernel kernel, int capacity) {
+        return new double[kernel.getBufferCount()][capacity];
+    }
+
+    /**
+     * Adds a variable, a variable with the same name is not replaced. The first variable defines the grid, the coverages of the other
+     * variables must have the same extent and cell size.
+     */
+    public void addVariable(String name, GridCoverage2D coverage, int band) {
+        if (names.contains(name)) {
+            return;
+        }
+
+        RenderedImage image = coverage.getRenderedImage();
+        if (band < 0 || band >= image.getSampleModel().getNumBands()) {
+            throw new IllegalArgumentException("Band index out of range: " + band);
+        }
+
+        if (images.size() > 0) {
+            PlanarImage first = images.get(0);
+            if (first.getWidth() != image.getWidth() || first.getHeight() != image.getHeight()) {
+                throw new IllegalArgumentException(
+                        "All input coverages must have the same number of columns and rows!");
+            }
+
+            if (!isAligned(coverage)) {
+                throw new IllegalArgumentException(
+                        "All input coverages must have the same extent and cell size!");
+            }
+        } else {
+            extent = new ReferencedEnvelope(coverage.getEnvelope());
+            AffineTransform gridToWorld = (AffineTransform) coverage.getGridGeometry()
+                    .getGridToCRS2D();
+            cellSizeX = Math.abs(gridToWorld.getScaleX());
+            cellSizeY = Math.abs(gridToWorld.getScaleY());
+        }
+
+        names.add(name);
+        images.add(PlanarImage.wrapRenderedImage(image));
+        bands.add(Integer.valueOf(band));
+        noDataValues.add(Double.valueOf(RasterHelper.getNoDataValue(coverage)));
+    }
+
+    private boolean isAligned(GridCoverage2D coverage) {
+        AffineTransform gridToWorld = (AffineTransform) coverage.getGridGeometry()
+                .getGridToCRS2D();
+        ReferencedEnvelope other = new ReferencedEnvelope(coverage.getEnvelope());
+
+        // a small fraction of a cell, the grid origins are calculated in floating point
+        final double tolX = cellSizeX * ALIGN_TOLERANCE;
+        final double tolY = cellSizeY * ALIGN_TOLERANCE;
+        return Math.abs(Math.abs(gridToWorld.getScaleX()) - cellSizeX) <= tolX
+                && Math.abs(Math.abs(gridToWorld.getScaleY()) - cellSizeY) <= tolY
+                && Math.abs(other.getMinX() - extent.getMinX()) <= tolX
+                && Math.abs(other.getMaxX() - extent.getMaxX()) <= tolX
+                && Math.abs(other.getMinY() - extent.getMinY()) <= tolY
+                && Math.abs(other.getMaxY() - extent.getMaxY()) <= tolY;
+    }
+
+    /**
+     * Adds one variable per band, named prefix + band number (1 based).
+     */
+    public void addBandVariables(String prefix, GridCoverage2D coverage) {
+        int numBands = coverage.getRenderedImage().getSampleModel().getNumBands();
+        for (int band = 0; band < numBands; band++) {
+            addVariable(prefix + (band + 1), coverage, band);
+        }
+    }
+
+    /**
+     * Returns the variable index of the property name, the exact name first and then ignoring case.
+     */
+    public int indexOf(String name) {
+        int index = names.indexOf(name);
+        if (index == -1) {
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Creates the input arrays of one thread, each with the given capacity. The first variable, which defines NoData, and the variables used by
+     * the kernel get an array, all variables if the kernel is null. Variables of the same band of the same coverage share one array, so that
+     * the band is read once; the arrays of unused variables are null.
+     */
+    public double[][] createInputs(Kernel kernel, int capacity) {
+        final int count = names.size();
+        boolean[] used = new boolean[count];
+        if (kernel == null) {
+            Arrays.fill(used, true);
+        } else {
+            used[0] = true;
+            kernel.addVariables(used);
+        }
+
+        double[][] inputs = new double[count][];
+        for (int v = 0; v < count; v++) {
+            if (!used[v]) {
+                continue;
+            }
+
+            for (int other = 0; other < v && inputs[v] == null; other++) {
+                if (used[other] && images.get(other) == images.get(v)
+                        && bands.get(other).equals(bands.get(v))
+                        && noDataValues.get(other).equals(noDataValues.get(v))) {
+                    inputs[v] = inputs[other];
+                }
+            }
+
+            if (inputs[v] == null) {
+                inputs[v] = new double[capacity];
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Reads the samples of the variables in the given grid rectangle (0 based columns and rows), NoData as NaN. Variables with a null array
+     * are skipped and an array shared by several variables is read once, see {@link #createInputs(Kernel, int)}.
+     */
+    public void read(Rectangle gridRect, double[][] buffers) {
+        final int length = gridRect.width * gridRect.height;
+        final Raster[] rasters = new Raster[names.size()];
+        for (int v = 0; v < names.size(); v++) {
+            if (buffers[v] == null || isShared(buffers, v)) {
+                continue;
+            }
+
+            // one request per image, whatever the number of bands read
+            PlanarImage image = images.get(v);
+            Rectangle rect = new Rectangle(image.getMinX() + gridRect.x,
+                    image.getMinY() + gridRect.y, gridRect.width, gridRect.height);
+
+            Raster raster = null;
+            for (int other = 0; other < v && raster == null; other++) {
+                if (images.get(other) == image) {
+                    raster = rasters[other];
+                }
+            }
+            if (raster == null) {
+                raster = image.getData(rect);
+            }
+            rasters[v] = raster;
+
+            double[] samples = raster.getSamples(rect.x, rect.y, rect.width, rect.height,
+                    bands.get(v).intValue(), buffers[v]);
+
+            final double noData = noDataValues.get(v).doubleValue();
+            for (int i = 0; i < length; i++) {
+                if (SSUtils.compareDouble(samples[i], noData)) {
+                    samples[i] = Double.NaN;
+                }
+            }
+        }
+    }
+
+    private boolean isShared(double[][] buffers, int index) {
+        for (int v = 0; v < index; v++) {
+            if (buffers[v] == buffers[index]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a template feature for the per-pixel evaluation: a point geometry and one Double attribute per variable, in variable order.
+     */
+    public SimpleFeature createTemplateFeature(String typeName, CoordinateReferenceSystem crs) {
+        SimpleFeatureType schema = FeatureTypes.getDefaultType(typeName, Point.class, crs);
+        for (String name : names) {
+            schema = FeatureTypes.add(schema, name, Double.class);
+        }
+        return new SimpleFeatureBuilder(schema).buildFeature(null);
+    }
+
+    /**
+     * Sets the variables of the template feature to the samples at the given index, NaN as null.
+     */
+    public void setAttributes(SimpleFeature feature, double[][] inputs, int index) {
+        for (int v = 0; v < names.size(); v++) {
+            double value = inputs[v][index];
+            feature.setAttribute(v + 1, Double.isNaN(value) ? null : Double.valueOf(value));
+        }
+    }
+
+    /**
+     * Compiles the expression, null if the expression is not supported.
+     */
+    public Kernel compile(Expression expression) {
+        if (expression instanceof Literal) {
+            Double value = expression.evaluate(null, Double.class);
+            return value == null ? null : new ConstantKernel(value.doubleValue());
+        } else if (expression instanceof PropertyName) {
+            int index = indexOf(((PropertyName) expression).getPropertyName());
+            return index == -1 ? null : new VariableKernel(index);
+        } else if (expression instanceof Add) {
+            Add add = (Add) expression;
+            return binary(ADD, compile(add.getExpression1()), compile(add.getExpression2()));
+        } else if (expression instanceof Subtract) {
+            Subtract sub = (Subtract) expression;
+            return binary(SUBTRACT, compile(sub.getExpression1()), compile(sub.getExpression2()));
+        } else if (expression instanceof Multiply) {
+            Multiply mul = (Multiply) expression;
+            return binary(MULTIPLY, compile(mul.getExpression1()), compile(mul.getExpression2()));
+        } else if (expression instanceof Divide) {
+            Divide div = (Divide) expression;
+            return binary(DIVIDE, compile(div.getExpression1()), compile(div.getExpression2()));
+        } else if (expression instanceof Function) {
+            return compileFunction((Function) expression);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the filter into a kernel which returns 1 for true and 0 for false, null if the filter is not supported.
+     */
+    public Kernel compile(Filter filter) {
+        if (filter == Filter.INCLUDE) {
+            return new ConstantKernel(1.0);
+        } else if (filter == Filter.EXCLUDE) {
+            return new ConstantKernel(0.0);
+        } else if (filter instanceof And || filter instanceof Or) {
+            List<Filter> children = filter instanceof And ? ((And) filter).getChildren()
+                    : ((Or) filter).getChildren();
+            final int op = filter instanceof And ? AND : OR;
+
+            Kernel kernel = null;
+            for (Filter child : children) {
+                Kernel childKernel = compile(child);
+                if (childKernel == null) {
+                    return null;
+                }
+                kernel = kernel == null ? childKernel : binary(op, kernel, childKernel);
+            }
+            return kernel;
+        } else if (filter instanceof Not) {
+            Kernel child = compile(((Not) filter).getFilter());
+            return child == null ? null : new UnaryKernel(NOT, child);
+        } else if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            Kernel value = compile(between.getExpression());
+            Kernel lower = binary(GREATER_EQUAL, value, compile(between.getLowerBoundary()));
+            Kernel upper = binary(LESS_EQUAL, value, compile(between.getUpperBoundary()));
+            return binary(AND, lower, upper);
+        }
+
+        int op;
+        if (filter instanceof PropertyIsEqualTo) {
+            op = EQUAL;
+        } else if (filter instanceof PropertyIsNotEqualTo) {
+            op = NOT_EQUAL;
+        } else if (filter instanceof PropertyIsGreaterThan) {
+            op = GREATER;
+        } else if (filter instanceof PropertyIsGreaterThanOrEqualTo) {
+            op = GREATER_EQUAL;
+        } else if (filter instanceof PropertyIsLessThan) {
+            op = LESS;
+        } else if (filter instanceof PropertyIsLessThanOrEqualTo) {
+            op = LESS_EQUAL;
+        } else {
+            return null;
+        }
+
+        BinaryComparisonOperator comparison = (BinaryComparisonOperator) filter;
+        return binary(op, compile(comparison.getExpression1()),
+                compile(comparison.getExpression2()));
+    }
+
+    private Kernel compileFunction(Function function) {
+        // abs_2, min_3 ... are the typed variants of the same function
+        String name = function.getName().toLowerCase(Locale.ENGLISH);
+        int pos = name.indexOf('_');
+        if (pos > 0) {
+            name = name.substring(0, pos);
+        }
+
+        List<Expression> params = function.getParameters();
+        if (params.size() == 1) {
+            int op = unaryOperator(name);
+            Kernel child = compile(params.get(0));
+            return op == -1 || child == null ? null : new UnaryKernel(op, child);
+        } else if (params.size() == 2) {
+            int op = -1;
+            if (name.equals("pow")) {
+                op = POW;
+            } else if (name.equals("atan2")) {
+                op = ATAN2;
+            } else if (name.equals("min")) {
+                op = MIN;
+            } else if (name.equals("max")) {
+                op = MAX;
+            }
+            return op == -1 ? null : binary(op, compile(params.get(0)), compile(params.get(1)));
+        }
+        return null;
+    }
+
+    private int unaryOperator(String name) {
+        if (name.equals("abs")) {
+            return ABS;
+        } else if (name.equals("sqrt")) {
+            return SQRT;
+        } else if (name.equals("exp")) {
+            return EXP;
+        } else if (name.equals("log")) {
+            return LOG;
+        } else if (name.equals("sin")) {
+            return SIN;
+        } else if (name.equals("cos")) {
+            return COS;
+        } else if (name.equals("tan")) {
+            return TAN;
+        } else if (name.equals("asin")) {
+            return ASIN;
+        } else if (name.equals("acos")) {
+            return ACOS;
+        } else if (name.equals("atan")) {
+            return ATAN;
+        } else if (name.equals("floor")) {
+            return FLOOR;
+        } else if (name.equals("ceil")) {
+            return CEIL;
+        } else if (name.equals("rint")) {
+            return RINT;
+        } else if (name.equals("round")) {
+            return ROUND;
+        } else if (name.equals("todegrees")) {
+            return TO_DEGREES;
+        } else if (name.equals("toradians")) {
+            return TO_RADIANS;
+        }
+        return -1;
+    }
+
+    private Kernel binary(int op, Kernel left, Kernel right) {
+        return left == null || right == null ? null : new BinaryKernel(op, left, right);
+    }
+
+    // binary operators
+    static final int ADD = 0;
+
+    static final int SUBTRACT = 1;
+
+    static final int MULTIPLY = 2;
+
+    static final int DIVIDE = 3;
+
+    static final int POW = 4;
+
+    static final int ATAN2 = 5;
+
+    static final int MIN = 6;
+
+    static final int MAX = 7;
+
+    static final int EQUAL = 8;
+
+    static final int NOT_EQUAL = 9;
+
+    static final int GREATER = 10;
+
+    static final int GREATER_EQUAL = 11;
+
+    static final int LESS = 12;
+
+    static final int LESS_EQUAL = 13;
+
+    static final int AND = 14;
+
+    static final int OR = 15;
+
+    // unary operators
+    static final int ABS = 0;
+
+    static final int SQRT = 1;
+
+    static final int EXP = 2;
+
+    static final int LOG = 3;
+
+    static final int SIN = 4;
+
+    static final int COS = 5;
+
+    static final int TAN = 6;
+
+    static final int ASIN = 7;
+
+    static final int ACOS = 8;
+
+    static final int ATAN = 9;
+
+    static final int FLOOR = 10;
+
+    static final int CEIL = 11;
+
+    static final int RINT = 12;
+
+    static final int ROUND = 13;
+
+    static final int TO_DEGREES = 14;
+
+    static final int TO_RADIANS = 15;
+
+    static final int NOT = 16;
+
+    static final class ConstantKernel implements Kernel {
+        private final double value;
+
+        ConstantKernel(double value) {
+            this.value = value;
+        }
+
+        public int getBufferCount() {
+            return 0;
+        }
+
+        public void addVariables(boolean[] used) {
+            // no variable
+        }
+
+        public void evaluate(double[][] inputs, int length, double[] result, double[][] buffers,
+                int depth) {
+            Arrays.fill(result, 0, length, value);
+        }
+    }
+
+    static final class VariableKernel implements Kernel {
+        private final int index;
+
+        VariableKernel(int index) {
+            this.index = index;
+        }
+
+        public int getBufferCount() {
+            return 0;
+        }
+
+        public void addVariables(boolean[] used) {
+            used[index] = true;
+        }
+
+        public void evaluate(double[][] inputs, int length, double[] result, double[][] buffers,
+                int depth) {
+            System.arraycopy(inputs[index], 0, result, 0, length);
+        }
+    }
+
+    static final class UnaryKernel implements Kernel {
+        private final int op;
+
+        private final Kernel child;
+
+        UnaryKernel(int op, Kernel child) {
+            this.op = op;
+            this.child = child;
+        }
+
+        public int getBufferCount() {
+            return child.getBufferCount();
+        }
+
+        public void addVariables(boolean[] used) {
+            child.addVariables(used);
+        }
+
+        public void evaluate(double[][] inputs, int length, double[] result, double[][] buffers,
+                int depth) {
+            child.evaluate(inputs, length, result, buffers, depth);
+
+            // one loop per operator, so that each loop body is a single primitive operation
+            switch (op) {
+            case ABS:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.abs(result[i]);
+                }
+                break;
+            case SQRT:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.sqrt(result[i]);
+                }
+                break;
+            case EXP:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.exp(result[i]);
+                }
+                break;
+            case LOG:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.log(result[i]);
+                }
+                break;
+            case SIN:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.sin(result[i]);
+                }
+                break;
+            case COS:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.cos(result[i]);
+                }
+                break;
+            case TAN:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.tan(result[i]);
+                }
+                break;
+            case ASIN:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.asin(result[i]);
+                }
+                break;
+            case ACOS:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.acos(result[i]);
+                }
+                break;
+            case ATAN:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.atan(result[i]);
+                }
+                break;
+            case FLOOR:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.floor(result[i]);
+                }
+                break;
+            case CEIL:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.ceil(result[i]);
+                }
+                break;
+            case RINT:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.rint(result[i]);
+                }
+                break;
+            case ROUND:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Double.isNaN(result[i]) ? Double.NaN : Math.round(result[i]);
+                }
+                break;
+            case TO_DEGREES:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.toDegrees(result[i]);
+                }
+                break;
+            case TO_RADIANS:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.toRadians(result[i]);
+                }
+                break;
+            case NOT:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] != 0.0 ? 0.0 : 1.0;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + op);
+            }
+        }
+    }
+
+    static final class BinaryKernel implements Kernel {
+        private final int op;
+
+        private final Kernel left;
+
+        private final Kernel right;
+
+        BinaryKernel(int op, Kernel left, Kernel right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        public int getBufferCount() {
+            // the left operand is done before the buffer of the right operand is used
+            return Math.max(left.getBufferCount(), 1 + right.getBufferCount());
+        }
+
+        public void addVariables(boolean[] used) {
+            left.addVariables(used);
+            right.addVariables(used);
+        }
+
+        public void evaluate(double[][] inputs, int length, double[] result, double[][] buffers,
+                int depth) {
+            left.evaluate(inputs, length, result, buffers, depth);
+
+            final double[] other = buffers[depth];
+            right.evaluate(inputs, length, other, buffers, depth + 1);
+
+            // comparisons with NaN (NoData) are false
+            switch (op) {
+            case ADD:
+                for (int i = 0; i < length; i++) {
+                    result[i] += other[i];
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < length; i++) {
+                    result[i] -= other[i];
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < length; i++) {
+                    result[i] *= other[i];
+                }
+                break;
+            case DIVIDE:
+                for (int i = 0; i < length; i++) {
+                    result[i] /= other[i];
+                }
+                break;
+            case POW:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.pow(result[i], other[i]);
+                }
+                break;
+            case ATAN2:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.atan2(result[i], other[i]);
+                }
+                break;
+            case MIN:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.min(result[i], other[i]);
+                }
+                break;
+            case MAX:
+                for (int i = 0; i < length; i++) {
+                    result[i] = Math.max(result[i], other[i]);
+                }
+                break;
+            case EQUAL:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] == other[i] ? 1.0 : 0.0;
+                }
+                break;
+            case NOT_EQUAL:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] != other[i] && !Double.isNaN(result[i])
+                            && !Double.isNaN(other[i]) ? 1.0 : 0.0;
+                }
+                break;
+            case GREATER:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] > other[i] ? 1.0 : 0.0;
+                }
+                break;
+            case GREATER_EQUAL:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] >= other[i] ? 1.0 : 0.0;
+                }
+                break;
+            case LESS:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] < other[i] ? 1.0 : 0.0;
+                }
+                break;
+            case LESS_EQUAL:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] <= other[i] ? 1.0 : 0.0;
+                }
+                break;
+            case AND:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] != 0.0 && other[i] != 0.0 ? 1.0 : 0.0;
+                }
+                break;
+            case OR:
+                for (int i = 0; i < length; i++) {
+                    result[i] = result[i] != 0.0 || other[i] != 0.0 ? 1.0 : 0.0;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + op);
+            }
+        }
+    }
+}
@@ -16,30 +16,35 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
-import java.awt.geom.AffineTransform;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.media.jai.PlanarImage;
-import javax.media.jai.iterator.RectIter;
 import javax.media.jai.iterator.RectIterFactory;
 import javax.media.jai.iterator.WritableRectIter;
 
 import org.geotools.coverage.grid.GridCoverage2D;
-import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.geometry.jts.JTSFactoryFinder;
-import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.process.spatialstatistics.core.SSUtils;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
+import org.geotools.process.spatialstatistics.gridcoverage.RasterMapAlgebra.Kernel;
 import org.geotools.util.factory.GeoTools;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.expression.Expression;
 
 /**
  * Performs mathematical operations on raster using expression.
+ * <p>
+ * The expression is compiled once by {@link RasterMapAlgebra} and evaluated over the sample arrays of row bands, one tile high, in parallel.
+ * Expressions which can not be compiled are evaluated per pixel against a template feature.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -50,68 +55,206 @@ public class RasterMathOperation extends RasterProcessingOperation {
 
     GeometryFactory gf = JTSFactoryFinder.getGeometryFactory(GeoTools.getDefaultHints());
 
+    /**
+     * The expression refers to the band by the raster name or "Value", and to all bands by "B1", "B2" ...
+     */
     public GridCoverage2D execute(GridCoverage2D inputGc, Integer bandIndex, Expression expression) {
+        RasterMapAlgebra algebra = new RasterMapAlgebra();
+        algebra.addVariable(inputGc.getName().toString(), inputGc, bandIndex.intValue());
+        algebra.addVariable("Value", inputGc, bandIndex.intValue());
+        algebra.addBandVariables("B", inputGc);
 
-        // prepare feature
-        SimpleFeature feature = super.createTemplateFeature(inputGc);
+        return execute(inputGc, algebra, expression);
+    }
+
+    /**
+     * Evaluates the expression over several coverages with the same grid. The expression refers to the first band of each coverage by its key,
+     * and to all bands by key + "_B1", key + "_B2" ... The output has the grid and NoData value of the reference coverage, the other coverages
+     * must have the same extent and cell size. Cells where the reference coverage is NoData remain NoData.
+     */
+    public GridCoverage2D execute(Map<String, GridCoverage2D> coverages, String referenceName,
+            Expression expression) {
+        if (coverages == null || coverages.isEmpty()) {
+            throw new IllegalArgumentException("At least one coverage is required!");
+        }
+
+        final GridCoverage2D referenceGc = coverages.get(referenceName);
+        if (referenceGc == null) {
+            throw new IllegalArgumentException("Reference coverage not found: " + referenceName);
+        }
+
+        // the reference is the first variable, whatever the iteration order of the map
+        RasterMapAlgebra algebra = new RasterMapAlgebra();
+        algebra.addVariable(referenceName, referenceGc, 0);
+        for (Entry<String, GridCoverage2D> entry : coverages.entrySet()) {
+            algebra.addVariable(entry.getKey(), entry.getValue(), 0);
+        }
+        algebra.addBandVariables(referenceName + "_B", referenceGc);
+        for (Entry<String, GridCoverage2D> entry : coverages.entrySet()) {
+            algebra.addBandVariables(entry.getKey() + "_B", entry.getValue());
+        }
+
+        return execute(referenceGc, algebra, expression);
+    }
+
+    private GridCoverage2D execute(GridCoverage2D inputGc, RasterMapAlgebra algebra,
+            Expression expression) {
+        final Kernel kernel = algebra.compile(expression);
+        if (kernel == null) {
+            LOGGER.log(Level.FINE, "Evaluating the expression per pixel: " + expression);
+        }
 
         // create image
         RasterPixelType pixelType = RasterPixelType.DOUBLE;
         DiskMemImage outputImage = this.createDiskMemImage(inputGc, pixelType);
-
-        PlanarImage inputImage = (PlanarImage) inputGc.getRenderedImage();
         this.NoData = RasterHelper.getNoDataValue(inputGc);
 
-        GridGeometry2D gridGeometry2D = inputGc.getGridGeometry();
-        ReferencedEnvelope extent = new ReferencedEnvelope(gridGeometry2D.getEnvelope());
-        AffineTransform gridToWorld = (AffineTransform) gridGeometry2D.getGridToCRS2D();
-
-        double dx = Math.abs(gridToWorld.getScaleX());
-        double dy = Math.abs(gridToWorld.getScaleY());
-        GridTransformer trans = new GridTransformer(extent, dx, dy);
-        // GridTransformer trans = new GridTransformer(coverage);
-
-        java.awt.Rectangle inputBounds = inputImage.getBounds();
-        RectIter inputIter = RectIterFactory.create(inputImage, inputBounds);
-        WritableRectIter writerIter = RectIterFactory.createWritable(outputImage,
-                outputImage.getBounds());
-
-        int row = 0; // inputBounds.y
-        inputIter.startLines();
-        writerIter.startLines();
-        while (!inputIter.finishedLines() && !writerIter.finishedLines()) {
-            int column = 0; // inputBounds.x
-            inputIter.startPixels();
-            writerIter.startPixels();
-            while (!inputIter.finishedPixels() && !writerIter.finishedPixels()) {
-                final double gridVal = inputIter.getSampleDouble(bandIndex);
-
-                if (SSUtils.compareDouble(gridVal, this.NoData)) {
-                    writerIter.setSample(0, this.NoData);
+        GridTransformer trans = new GridTransformer(Extent, CellSizeX, CellSizeY);
+
+        // row bands, one tile high
+        final Rectangle bounds = outputImage.getBounds();
+        final int bandHeight = outputImage.getTileHeight();
+        final int bandCount = (bounds.height + bandHeight - 1) / bandHeight;
+
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
+
+        List<PartialMath> tasks = new ArrayList<PartialMath>();
+        for (int t = 0; t < workers; t++) {
+            SimpleFeature feature = null;
+            if (kernel == null) {
+                feature = algebra.createTemplateFeature(inputGc.getName().toString(),
+                        inputGc.getCoordinateReferenceSystem());
+            }
+
+            PartialMath task = new PartialMath(outputImage, bounds, bandHeight, bandCount,
+                    nextBand, algebra, kernel, expression, feature, trans);
+            tasks.add(task);
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        for (PartialMath task : tasks) {
+            if (task.minValue <= task.maxValue) {
+                updateStatistics(task.minValue);
+                updateStatistics(task.maxValue);
+            }
+        }
+
+        return createGridCoverage(inputGc.getName(), outputImage);
+    }
+
+    final class PartialMath implements Runnable {
+        private final DiskMemImage oi;
+
+        private final Rectangle bounds;
+
+        private final int bandHeight;
+
+        private final int bandCount;
+
+        private final AtomicInteger nextBand;
+
+        private final RasterMapAlgebra algebra;
+
+        private final Kernel kernel;
+
+        private final Expression expression;
+
+        private final SimpleFeature feature;
+
+        private final GridTransformer trans;
+
+        double minValue = Double.MAX_VALUE;
+
+        double maxValue = -Double.MAX_VALUE;
+
+        public PartialMath(DiskMemImage oi, Rectangle bounds, int bandHeight, int bandCount,
+                AtomicInteger nextBand, RasterMapAlgebra algebra, Kernel kernel,
+                Expression expression, SimpleFeature feature, GridTransformer trans) {
+            this.oi = oi;
+            this.bounds = bounds;
+            this.bandHeight = bandHeight;
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
+            this.algebra = algebra;
+            this.kernel = kernel;
+            this.expression = expression;
+            this.feature = feature;
+            this.trans = trans;
+        }
+
+        public void run() {
+            final int capacity = bounds.width * bandHeight;
+            final double[][] inputs = algebra.createInputs(kernel, capacity);
+            final double[] result = new double[capacity];
+            final double[][] buffers = kernel == null ? null : RasterMapAlgebra.createBuffers(
+                    kernel, capacity);
+
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                int row = band * bandHeight;
+                Rectangle gridRect = new Rectangle(0, row, bounds.width,
+                        Math.min(bandHeight, bounds.height - row));
+                final int length = gridRect.width * gridRect.height;
+
+                algebra.read(gridRect, inputs);
+                if (kernel == null) {
+                    evaluate(gridRect, inputs, result);
                 } else {
-                    Coordinate coord = trans.gridToWorldCoordinate(column, row);
-                    feature.setDefaultGeometry(gf.createPoint(coord));
-                    feature.setAttribute(1, gridVal); // raster name
-                    feature.setAttribute(2, gridVal); // Value
+                    kernel.evaluate(inputs, length, result, buffers, 0);
+                }
 
-                    Double value = expression.evaluate(feature, Double.class);
-                    if (value == null || value.isInfinite() || value.isNaN()) {
-                        writerIter.setSample(0, this.NoData);
+                // NoData of the input band remains NoData
+                final double[] values = inputs[0];
+                for (int i = 0; i < length; i++) {
+                    if (Double.isNaN(values[i]) || Double.isNaN(result[i])
+                            || Double.isInfinite(result[i])) {
+                        result[i] = NoData;
                     } else {
-                        writerIter.setSample(0, value.doubleValue());
-                        updateStatistics(value);
+                        minValue = Math.min(minValue, result[i]);
+                        maxValue = Math.max(maxValue, result[i]);
                     }
                 }
 
-                column++;
-                inputIter.nextPixel();
-                writerIter.nextPixel();
+                write(gridRect, result);
             }
-            row++;
-            inputIter.nextLine();
-            writerIter.nextLine();
         }
 
-        return createGridCoverage(inputGc.getName(), outputImage);
+        private void evaluate(Rectangle gridRect, double[][] inputs, double[] result) {
+            int index = 0;
+            for (int row = gridRect.y; row < gridRect.y + gridRect.height; row++) {
+                for (int column = 0; column < gridRect.width; column++) {
+                    if (Double.isNaN(inputs[0][index])) {
+                        result[index++] = Double.NaN;
+                        continue;
+                    }
+
+                    feature.setDefaultGeometry(gf.createPoint(trans.gridToWorldCoordinate(
+                            column, row)));
+                    algebra.setAttributes(feature, inputs, index);
+
+                    Double value = expression.evaluate(feature, Double.class);
+                    result[index++] = value == null ? Double.NaN : value.doubleValue();
+                }
+            }
+        }
+
+        private void write(Rectangle gridRect, double[] result) {
+            Rectangle rect = new Rectangle(bounds.x + gridRect.x, bounds.y + gridRect.y,
+                    gridRect.width, gridRect.height);
+            WritableRectIter writer = RectIterFactory.createWritable(oi, rect);
+
+            int index = 0;
+            writer.startLines();
+            while (!writer.finishedLines()) {
+                writer.startPixels();
+                while (!writer.finishedPixels()) {
+                    writer.setSample(0, result[index++]);
+                    writer.nextPixel();
+                }
+                writer.nextLine();
+            }
+        }
     }
 }
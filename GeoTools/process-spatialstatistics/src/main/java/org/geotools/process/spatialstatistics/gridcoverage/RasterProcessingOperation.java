@@ -192,11 +192,26 @@ public abstract class RasterProcessingOperation {
             backgroundValues[index] = initValue;
         }
 
-        // raw level
-        WritableRaster raster = (WritableRaster) writableImage.getData();
-        // ImageUtil.fillBackground(raster, raster.getBounds(), backgroundValues);
-        this.fillBackground(raster, raster.getBounds(), backgroundValues);
-        writableImage.setData(raster);
+        if (writableImage instanceof BackgroundDiskMemImage) {
+            // filled lazily when the tiles are first accessed
+            ((BackgroundDiskMemImage) writableImage).setBackground(backgroundValues);
+            return;
+        }
+
+        // raw level, one tile at a time
+        final Rectangle bounds = writableImage.getBounds();
+        final int maxTileX = writableImage.getMaxTileX();
+        final int maxTileY = writableImage.getMaxTileY();
+        for (int tileY = writableImage.getMinTileY(); tileY <= maxTileY; tileY++) {
+            for (int tileX = writableImage.getMinTileX(); tileX <= maxTileX; tileX++) {
+                WritableRaster tile = writableImage.getWritableTile(tileX, tileY);
+                try {
+                    this.fillBackground(tile, bounds, backgroundValues);
+                } finally {
+                    writableImage.releaseWritableTile(tileX, tileY);
+                }
+            }
+        }
     }
 
     private boolean isBinary(SampleModel sm) {
@@ -492,7 +507,7 @@ public abstract class RasterProcessingOperation {
         Dimension dm = RasterHelper.getDimension(Extent, CellSizeX, CellSizeY);
 
         DiskMemImage diskMemImage = null;
-        diskMemImage = new DiskMemImage(0, 0, dm.width, dm.height, 0, 0, sampleModel, cm);
+        diskMemImage = new BackgroundDiskMemImage(0, 0, dm.width, dm.height, 0, 0, sampleModel, cm);
         diskMemImage.setUseCommonCache(true);
 
         // Get a raster for the single tile.
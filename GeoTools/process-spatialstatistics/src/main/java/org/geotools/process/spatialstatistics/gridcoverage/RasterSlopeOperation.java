@@ -18,12 +18,7 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 
 import java.util.logging.Logger;
 
-import javax.media.jai.iterator.RectIterFactory;
-import javax.media.jai.iterator.WritableRectIter;
-
-import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
-import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.process.spatialstatistics.enumeration.SlopeType;
 import org.geotools.util.logging.Logging;
@@ -49,39 +44,21 @@ public class RasterSlopeOperation extends AbstractSurfaceOperation {
         return execute(inputGc, slopeType, 1.0);
     }
 
-    public GridCoverage2D execute(GridCoverage2D inputGc, SlopeType slopeType, double zFactor) {
+    public GridCoverage2D execute(GridCoverage2D inputGc, final SlopeType slopeType,
+            final double zFactor) {
         this.initSurface(inputGc);
 
         DiskMemImage outputImage = this.createDiskMemImage(inputGc, RasterPixelType.FLOAT);
-        WritableRectIter writer = RectIterFactory.createWritable(outputImage,
-                outputImage.getBounds());
-
-        GridCoordinates2D pos = new GridCoordinates2D();
-
-        int y = bounds.y;
-        writer.startLines();
-        while (!writer.finishedLines()) {
-
-            int x = bounds.x;
-            writer.startPixels();
-            while (!writer.finishedPixels()) {
-                pos.setLocation(x, y);
-
-                visitSlope(writer, pos, slopeType, zFactor);
-
-                writer.nextPixel();
-                x++;
+        processSurface(outputImage, zFactor, new WindowOperator() {
+            public double evaluate(double[] window) {
+                return visitSlope(window, slopeType, zFactor);
             }
-
-            writer.nextLine();
-            y++;
-        }
+        });
 
         return createGridCoverage("Slope", outputImage);
     }
 
-    private void visitSlope(WritableRectIter writer, GridCoordinates2D pos, SlopeType slopeType,
-            double zFactor) {
+    private double visitSlope(double[] mx, SlopeType slopeType, double zFactor) {
         // http://webhelp.esri.com/arcgisdesktop/9.3/index.cfm?TopicName=How%20Slope%20works
         // Burrough, P. A. and McDonell, R.A., 1998. Principles of Geographical Information Systems
         // (Oxford University Press, New York), p. 190.
@@ -102,21 +79,14 @@ public class RasterSlopeOperation extends AbstractSurfaceOperation {
         // | 3 4 5 |>| d e f |
         // | 6 7 8 | | g h i |
         // +-------+ +-------+
-        double[][] mx = getSubMatrix(pos, 3, 3, zFactor);
-        if (Double.isNaN(mx[1][1]) || SSUtils.compareDouble(srcNoData, mx[1][1])) {
-            writer.setSample(0, NoData);
-            return;
-        }
-
-        double dZdX = ((mx[2][0] + 2 * mx[2][1] + mx[2][2]) - (mx[0][0] + 2 * mx[0][1] + mx[0][2]))
+        double dZdX = ((mx[2] + 2 * mx[5] + mx[8]) - (mx[0] + 2 * mx[3] + mx[6]))
                 / (_8DX);
-        double dZdY = ((mx[0][2] + 2 * mx[1][2] + mx[2][2]) - (mx[0][0] + 2 * mx[1][0] + mx[2][0]))
+        double dZdY = ((mx[6] + 2 * mx[7] + mx[8]) - (mx[0] + 2 * mx[1] + mx[2]))
                 / (_8DY);
 
         double rise_run = (dZdX * dZdX) + (dZdY * dZdY);
         if (Double.isNaN(rise_run) || Double.isInfinite(rise_run)) {
-            writer.setSample(0, NoData);
-            return;
+            return Double.NaN;
         }
 
         double slope = Math.atan(Math.sqrt(rise_run));
@@ -128,11 +98,9 @@ public class RasterSlopeOperation extends AbstractSurfaceOperation {
         }
 
         if (slope < 0 || slope > 100) {
-            writer.setSample(0, NoData);
-            return;
+            return Double.NaN;
         }
 
-        writer.setSample(0, slope);
-        updateStatistics(slope);
+        return slope;
     }
 }
\ No newline at end of file
@@ -18,12 +18,7 @@ package org.geotools.process.spatialstatistics.gridcoverage;
 
 import java.util.logging.Logger;
 
-import javax.media.jai.iterator.RectIterFactory;
-import javax.media.jai.iterator.WritableRectIter;
-
-import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
-import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.enumeration.RasterPixelType;
 import org.geotools.util.logging.Logging;
 import org.jaitools.tiledimage.DiskMemImage;
@@ -47,51 +42,26 @@ public class RasterTPIOperation extends AbstractSurfaceOperation {
         this.initSurface(inputGc);
 
         DiskMemImage outputImage = this.createDiskMemImage(inputGc, RasterPixelType.FLOAT);
-        WritableRectIter writer = RectIterFactory.createWritable(outputImage,
-                outputImage.getBounds());
-
-        GridCoordinates2D pos = new GridCoordinates2D();
-
-        int y = bounds.y;
-        writer.startLines();
-        while (!writer.finishedLines()) {
-
-            int x = bounds.x;
-            writer.startPixels();
-            while (!writer.finishedPixels()) {
-                pos.setLocation(x, y);
-
-                visitTPI(writer, pos);
-
-                writer.nextPixel();
-                x++;
+        processSurface(outputImage, 1.0, new WindowOperator() {
+            public double evaluate(double[] window) {
+                return visitTPI(window);
             }
-
-            writer.nextLine();
-            y++;
-        }
+        });
 
         return createGridCoverage("TPI", outputImage);
     }
 
-    private void visitTPI(WritableRectIter writer, GridCoordinates2D pos) {
+    private double visitTPI(double[] mx) {
         // +-------+ +-------+
         // | 0 1 2 | | a b c |
         // | 3 4 5 |>| d e f |
         // | 6 7 8 | | g h i |
         // +-------+ +-------+
-        double[][] mx = getSubMatrix(pos, 3, 3);
-        if (Double.isNaN(mx[1][1]) || SSUtils.compareDouble(srcNoData, mx[1][1])) {
-            writer.setSample(0, NoData);
-            return;
-        }
-
         // Topographic Position Index is the difference between
         // The central cell and the mean of the surrounding cells
-        double tpi = mx[1][1]
-                - ((mx[0][0] + mx[1][0] + mx[2][0] + mx[0][1] + mx[2][1] + mx[0][2] + mx[1][2] + mx[2][2]) / 8.0);
+        double tpi = mx[4]
+                - ((mx[0] + mx[1] + mx[2] + mx[3] + mx[5] + mx[6] + mx[7] + mx[8]) / 8.0);
 
-        writer.setSample(0, tpi);
-        updateStatistics(tpi);
+        return tpi;
     }
 }
\ No newline at end of file
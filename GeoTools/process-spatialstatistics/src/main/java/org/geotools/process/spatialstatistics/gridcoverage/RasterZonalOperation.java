@@ -16,9 +16,15 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.io.IOException;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.media.jai.PlanarImage;
@@ -31,10 +37,8 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.core.SSUtils;
-import org.geotools.process.spatialstatistics.core.StatisticsVisitor;
-import org.geotools.process.spatialstatistics.core.StatisticsVisitor.DoubleStrategy;
-import org.geotools.process.spatialstatistics.core.StatisticsVisitorResult;
 import org.geotools.process.spatialstatistics.enumeration.ResampleType;
 import org.geotools.process.spatialstatistics.enumeration.ZonalStatisticsType;
 import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
@@ -59,9 +63,8 @@ public class RasterZonalOperation extends RasterProcessingOperation {
 
     private double cellArea = 0.0;
 
-    private ZonalStatisticsType statisticsType = ZonalStatisticsType.Mean; // default
-
-    private String targetField = ZonalStatisticsType.Mean.name(); // default
+    // statistics type -> output field
+    private Map<ZonalStatisticsType, String> statisticsFields = new LinkedHashMap<ZonalStatisticsType, String>();
 
     public RasterZonalOperation() {
 
@@ -70,8 +73,39 @@ public class RasterZonalOperation extends RasterProcessingOperation {
     public SimpleFeatureCollection execute(SimpleFeatureCollection zoneFeatures, String targetField,
             GridCoverage2D valueCoverage, Integer bandIndex, ZonalStatisticsType statisticsType)
             throws IOException {
-        this.statisticsType = statisticsType;
-        this.targetField = targetField;
+        Map<ZonalStatisticsType, String> fields = new LinkedHashMap<ZonalStatisticsType, String>();
+        fields.put(statisticsType, targetField);
+        return execute(zoneFeatures, valueCoverage, bandIndex, fields);
+    }
+
+    /**
+     * Calculates all given statistics in one pass, the output field of each statistic is its name.
+     */
+    public SimpleFeatureCollection execute(SimpleFeatureCollection zoneFeatures,
+            GridCoverage2D valueCoverage, Integer bandIndex,
+            ZonalStatisticsType... statisticsTypes) throws IOException {
+        Map<ZonalStatisticsType, String> fields = new LinkedHashMap<ZonalStatisticsType, String>();
+        for (ZonalStatisticsType statisticsType : statisticsTypes) {
+            fields.put(statisticsType, statisticsType.name());
+        }
+        return execute(zoneFeatures, valueCoverage, bandIndex, fields);
+    }
+
+    public SimpleFeatureCollection execute(SimpleFeatureCollection zoneFeatures,
+            GridCoverage2D valueCoverage, Integer bandIndex,
+            Map<ZonalStatisticsType, String> statisticsFields) throws IOException {
+        if (statisticsFields == null || statisticsFields.isEmpty()) {
+            throw new IllegalArgumentException("At least one statistics type is required!");
+        }
+        this.statisticsFields = statisticsFields;
+
+        boolean useHistogram = false;
+        for (ZonalStatisticsType statisticsType : statisticsFields.keySet()) {
+            useHistogram |= ZonalStatisticsAccumulator.requiresHistogram(statisticsType);
+        }
+
+        // zone ids are 1 .. feature count
+        final int zoneCount = zoneFeatures.size() + 1;
 
         // check crs
         CoordinateReferenceSystem sCRS = valueCoverage.getCoordinateReferenceSystem();
@@ -88,7 +122,7 @@ public class RasterZonalOperation extends RasterProcessingOperation {
         org.locationtech.jts.geom.Envelope intEnv = featureEnv.intersection(gridEnv);
         if (intEnv == null || intEnv.isNull()) {
             // return empty result
-            return insertFeatures(zoneFeatures, new Hashtable<Object, StatisticsVisitor>());
+            return insertFeatures(zoneFeatures, new ZonalStatisticsAccumulator(0, false));
         }
 
         // crop coverage
@@ -109,9 +143,7 @@ public class RasterZonalOperation extends RasterProcessingOperation {
         rsOp.getRasterEnvironment().setExtent(new ReferencedEnvelope(cropGc.getEnvelope2D(), tCRS));
         GridCoverage2D zonalGc = rsOp.execute(zoneFeatures);
 
-        // calculate statistics
-        Hashtable<Object, StatisticsVisitor> visitorMap = new Hashtable<Object, StatisticsVisitor>();
-
+        // calculate statistics: one accumulator per thread, row bands of tiles
         final double inputNoData = RasterHelper.getNoDataValue(valueCoverage);
         final double zoneNoData = RasterHelper.getNoDataValue(zonalGc);
         cellArea = cellSizeX * cellSizeY;
@@ -119,43 +151,112 @@ public class RasterZonalOperation extends RasterProcessingOperation {
         PlanarImage zoneImage = (PlanarImage) zonalGc.getRenderedImage();
         PlanarImage inputImage = (PlanarImage) cropGc.getRenderedImage();
 
-        RectIter zoneIter = RectIterFactory.create(zoneImage, zoneImage.getBounds());
-        RectIter inputIter = RectIterFactory.create(inputImage, inputImage.getBounds());
-        zoneIter.startLines();
-        inputIter.startLines();
-        while (!zoneIter.finishedLines() && !inputIter.finishedLines()) {
-            zoneIter.startPixels();
-            inputIter.startPixels();
-            while (!zoneIter.finishedPixels() && !inputIter.finishedPixels()) {
-                final Integer key = zoneIter.getSample(0); // one band
-                final double value = inputIter.getSampleDouble(bandIndex);
-
-                if (!SSUtils.compareDouble(zoneNoData, key)
-                        && !SSUtils.compareDouble(inputNoData, value)) {
-                    StatisticsVisitor visitor = visitorMap.get(key);
-                    if (visitor == null) {
-                        visitor = new StatisticsVisitor(new DoubleStrategy());
-                        visitorMap.put(key, visitor);
-                    }
-                    visitor.visit(value);
-                }
+        final int width = Math.min(zoneImage.getWidth(), inputImage.getWidth());
+        final int height = Math.min(zoneImage.getHeight(), inputImage.getHeight());
+        final int bandHeight = Math.max(1, inputImage.getTileHeight());
+        final int bandCount = (height + bandHeight - 1) / bandHeight;
 
-                zoneIter.nextPixel();
-                inputIter.nextPixel();
-            }
-            zoneIter.nextLine();
-            inputIter.nextLine();
+        final AtomicInteger nextBand = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(bandCount, 1);
+
+        List<PartialZonal> tasks = new ArrayList<PartialZonal>();
+        for (int t = 0; t < workers; t++) {
+            PartialZonal task = new PartialZonal(zoneImage, inputImage, bandIndex, zoneNoData,
+                    inputNoData, width, height, bandHeight, bandCount, nextBand,
+                    new ZonalStatisticsAccumulator(zoneCount, useHistogram));
+            tasks.add(task);
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        ZonalStatisticsAccumulator accumulator = tasks.get(0).accumulator;
+        for (int t = 1; t < tasks.size(); t++) {
+            accumulator.merge(tasks.get(t).accumulator);
         }
 
         cropGc.dispose(false);
         zonalGc.dispose(false);
 
         // build result
-        return insertFeatures(zoneFeatures, visitorMap);
+        return insertFeatures(zoneFeatures, accumulator);
+    }
+
+    static final class PartialZonal implements Runnable {
+        private final PlanarImage zoneImage;
+
+        private final PlanarImage inputImage;
+
+        private final int bandIndex;
+
+        private final double zoneNoData;
+
+        private final double inputNoData;
+
+        private final int width;
+
+        private final int height;
+
+        private final int bandHeight;
+
+        private final int bandCount;
+
+        private final AtomicInteger nextBand;
+
+        final ZonalStatisticsAccumulator accumulator;
+
+        public PartialZonal(PlanarImage zoneImage, PlanarImage inputImage, int bandIndex,
+                double zoneNoData, double inputNoData, int width, int height, int bandHeight,
+                int bandCount, AtomicInteger nextBand, ZonalStatisticsAccumulator accumulator) {
+            this.zoneImage = zoneImage;
+            this.inputImage = inputImage;
+            this.bandIndex = bandIndex;
+            this.zoneNoData = zoneNoData;
+            this.inputNoData = inputNoData;
+            this.width = width;
+            this.height = height;
+            this.bandHeight = bandHeight;
+            this.bandCount = bandCount;
+            this.nextBand = nextBand;
+            this.accumulator = accumulator;
+        }
+
+        public void run() {
+            int band;
+            while ((band = nextBand.getAndIncrement()) < bandCount) {
+                int y = band * bandHeight;
+                int rows = Math.min(bandHeight, height - y);
+
+                RectIter zoneIter = RectIterFactory.create(zoneImage, new Rectangle(
+                        zoneImage.getMinX(), zoneImage.getMinY() + y, width, rows));
+                RectIter inputIter = RectIterFactory.create(inputImage, new Rectangle(
+                        inputImage.getMinX(), inputImage.getMinY() + y, width, rows));
+
+                zoneIter.startLines();
+                inputIter.startLines();
+                while (!zoneIter.finishedLines() && !inputIter.finishedLines()) {
+                    zoneIter.startPixels();
+                    inputIter.startPixels();
+                    while (!zoneIter.finishedPixels() && !inputIter.finishedPixels()) {
+                        final int key = zoneIter.getSample(0); // one band
+                        final double value = inputIter.getSampleDouble(bandIndex);
+
+                        if (!SSUtils.compareDouble(zoneNoData, key)
+                                && !SSUtils.compareDouble(inputNoData, value)) {
+                            accumulator.visit(key, value);
+                        }
+
+                        zoneIter.nextPixel();
+                        inputIter.nextPixel();
+                    }
+                    zoneIter.nextLine();
+                    inputIter.nextLine();
+                }
+            }
+        }
     }
 
     private SimpleFeatureCollection insertFeatures(SimpleFeatureCollection zoneFeatures,
-            Hashtable<Object, StatisticsVisitor> visitorMap) throws IOException {
+            ZonalStatisticsAccumulator accumulator) throws IOException {
 
         // prepare transactional feature store
         IFeatureInserter featureWriter = prepareFeatureWriter(zoneFeatures);
@@ -175,45 +276,13 @@ public class RasterZonalOperation extends RasterProcessingOperation {
                 SimpleFeature newFeature = featureWriter.buildFeature();
                 featureWriter.copyAttributes(feature, newFeature, true);
 
-                // Count, Sum, Mean, Minimum, Maximum, Range, StdDev, Area
-                StatisticsVisitor visitor = visitorMap.get(featureID);
-                if (visitor == null) {
-                    if (statisticsType == ZonalStatisticsType.Count) {
-                        newFeature.setAttribute(targetField, Integer.valueOf(0));
-                    } else {
-                        newFeature.setAttribute(targetField, null);
-                    }
-                    newFeature.setAttribute(AREA_FIELD, 0.0);
-                } else {
-                    StatisticsVisitorResult ret = visitor.getResult();
-                    switch (statisticsType) {
-                    case Count:
-                        newFeature.setAttribute(targetField, ret.getCount());
-                        break;
-                    case Maximum:
-                        newFeature.setAttribute(targetField, ret.getMaximum());
-                        break;
-                    case Mean:
-                        newFeature.setAttribute(targetField, ret.getMean());
-                        break;
-                    case Minimum:
-                        newFeature.setAttribute(targetField, ret.getMinimum());
-                        break;
-                    case Range:
-                        newFeature.setAttribute(targetField, ret.getRange());
-                        break;
-                    case StdDev:
-                        newFeature.setAttribute(targetField, ret.getStandardDeviation());
-                        break;
-                    case Sum:
-                        newFeature.setAttribute(targetField, ret.getSum());
-                        break;
-                    default:
-                        newFeature.setAttribute(targetField, ret.getMean());
-                        break;
-                    }
-                    newFeature.setAttribute(AREA_FIELD, ret.getCount() * cellArea);
+                // Count, Sum, Mean, Minimum, Maximum, Range, StdDev, Median, Majority, Area
+                for (Entry<ZonalStatisticsType, String> entry : statisticsFields.entrySet()) {
+                    newFeature.setAttribute(entry.getValue(),
+                            accumulator.getValue(featureID, entry.getKey()));
                 }
+                newFeature.setAttribute(AREA_FIELD, accumulator.getCount(featureID) * cellArea);
+
                 featureWriter.write(newFeature);
                 featureID++;
             }
@@ -229,10 +298,12 @@ public class RasterZonalOperation extends RasterProcessingOperation {
     private IFeatureInserter prepareFeatureWriter(SimpleFeatureCollection zoneSfs) {
         SimpleFeatureType featureType = zoneSfs.getSchema();
 
-        if (statisticsType == ZonalStatisticsType.Count) {
-            featureType = FeatureTypes.add(featureType, targetField, Integer.class, 10);
-        } else {
-            featureType = FeatureTypes.add(featureType, targetField, Double.class, 19);
+        for (Entry<ZonalStatisticsType, String> entry : statisticsFields.entrySet()) {
+            if (entry.getKey() == ZonalStatisticsType.Count) {
+                featureType = FeatureTypes.add(featureType, entry.getValue(), Integer.class, 10);
+            } else {
+                featureType = FeatureTypes.add(featureType, entry.getValue(), Double.class, 19);
+            }
         }
 
         // default
@@ -241,4 +312,4 @@ public class RasterZonalOperation extends RasterProcessingOperation {
         // prepare transactional feature store
         return getTransactionFeatureStore(featureType);
     }
-}
\ No newline at end of file
+}
@@ -16,14 +16,24 @@
  */
 package org.geotools.process.spatialstatistics.gridcoverage;
 
-import org.geotools.referencing.operation.matrix.GeneralMatrix;
+import java.util.Arrays;
+
+import org.geotools.process.spatialstatistics.core.KnnSearch;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
 
 /**
  * Implementation of 2D Thin Plate Spline interpolation.
  * <p>
  * http://en.wikipedia.org/wiki/Thin_plate_spline <br>
  * http://elonen.iki.fi/code/tpsdemo/index.html
+ * <p>
+ * The spline system is solved by Gaussian elimination with partial pivoting instead of an explicit inverse. If the number of points is given, a
+ * local spline is fitted to the k nearest samples of each location; this scales to large sample sets, but the surface may show small steps where
+ * the set of nearest samples changes.
  * 
  * @author Minpa Lee
  * @see https://github.com/geotools/geotools/blob/master/spike/jan/gsoc-transformations/src/main/java/org/geotools/referencing/operation/builder/algorithm/TPSInterpolation.java
@@ -31,44 +41,82 @@ import org.locationtech.jts.geom.Coordinate;
  */
 public class ThinPlateSplineInterpolator extends AbstractInterpolator {
 
-    /** Main matrix (according http://elonen.iki.fi/code/tpsdemo/index.html) */
-    private GeneralMatrix L;
+    static final ItemDistance SAMPLE_DISTANCE = new ItemDistance() {
+        @Override
+        public double distance(ItemBoundable item1, ItemBoundable item2) {
+            Coordinate s1 = (Coordinate) item1.getItem();
+            Coordinate s2 = (Coordinate) item2.getItem();
+            return s1.distance(s2);
+        }
+    };
+
+    /** number of nearest samples of the local spline, 0 = one global spline */
+    private int numberOfPoints = 0;
+
+    /** global spline */
+    private Spline spline;
 
-    /** Matrix of target values (according http://elonen.iki.fi/code/tpsdemo/index.html) */
-    private GeneralMatrix V;
+    private KnnSearch knnSearch;
 
-    private GeneralMatrix result;
+    /** the last local spline of each thread, neighboring cells mostly share the same samples */
+    private final ThreadLocal<Spline> lastSpline = new ThreadLocal<Spline>();
 
     public ThinPlateSplineInterpolator(Coordinate[] samples) {
+        this(samples, 0);
+    }
+
+    /**
+     * @param samples observed data values
+     * @param numberOfPoints number of nearest samples of the local spline, 0 or less to fit one spline to all samples
+     */
+    public ThinPlateSplineInterpolator(Coordinate[] samples, int numberOfPoints) {
         this.samples = samples;
         this.number = samples.length;
 
-        L = new GeneralMatrix(number + 3, number + 3);
-
-        fillKsubMatrix();
-        fillPsubMatrix();
-        fillOsubMatrix();
+        if (numberOfPoints <= 0 || numberOfPoints >= number) {
+            this.numberOfPoints = 0;
+            this.spline = new Spline(samples);
+            if (spline.coefficients == null) {
+                throw new IllegalArgumentException(
+                        "Thin plate spline matrix is singular, check duplicated or collinear samples!");
+            }
+        } else {
+            // at least 3 samples for the affine part
+            this.numberOfPoints = Math.max(3, numberOfPoints);
 
-        L.invert();
+            STRtree spatialIndex = new STRtree();
+            for (Coordinate sample : samples) {
+                spatialIndex.insert(new Envelope(sample), sample);
+            }
+            spatialIndex.build(); // shared by the worker threads
+            knnSearch = new KnnSearch(spatialIndex);
+        }
+    }
 
-        GeneralMatrix V = fillVMatrix(0);
-        result = new GeneralMatrix(number + 3, 1);
-        result.mul(L, V);
+    public int getNumberOfPoints() {
+        return numberOfPoints;
     }
 
     @Override
     public double getValue(Coordinate p) {
-        double a1 = result.getElement(result.getNumRow() - 3, 0);
-        double a2 = result.getElement(result.getNumRow() - 2, 0);
-        double a3 = result.getElement(result.getNumRow() - 1, 0);
-
-        double sum = 0;
-        for (int i = 0; i < (result.getNumRow() - 3); i++) {
-            double dist = p.distance(samples[i]);
-            sum += (result.getElement(i, 0) * functionU(dist));
+        if (numberOfPoints == 0) {
+            return spline.getValue(p);
+        }
+
+        Object[] knns = knnSearch.kNearestNeighbour(new Envelope(p), p, SAMPLE_DISTANCE,
+                numberOfPoints);
+        Coordinate[] neighbors = new Coordinate[knns.length];
+        for (int i = 0; i < knns.length; i++) {
+            neighbors[i] = (Coordinate) knns[i];
         }
+        Arrays.sort(neighbors);
 
-        return sum + a1 + (a2 * p.x) + (a3 * p.y);
+        Spline local = lastSpline.get();
+        if (local == null || !local.isFittedTo(neighbors)) {
+            local = new Spline(neighbors);
+            lastSpline.set(local);
+        }
+        return local.getValue(p);
     }
 
     /**
@@ -77,7 +125,7 @@ public class ThinPlateSplineInterpolator extends AbstractInterpolator {
      * @param distance distance
      * @return log(distance)*distance<sub>2</sub> or 0 if distance = 0
      */
-    private double functionU(double distance) {
+    static double functionU(double distance) {
         if (distance == 0) {
             return 0;
         }
@@ -86,83 +134,184 @@ public class ThinPlateSplineInterpolator extends AbstractInterpolator {
     }
 
     /**
-     * Calculates U function where distance = ||p_i, p_j|| (from source points)
+     * Solves the TPS system [K P; P<sup>T</sup> O] [w; a] = [v; 0] (<a href="http://elonen.iki.fi/code/tpsdemo/index.html"> see more here</a>) by
+     * Gaussian elimination with partial pivoting.
      * 
-     * @param p_i p_i
-     * @param p_j p_j
-     * @return log(distance)*distance<sub>2</sub> or 0 if distance = 0
+     * @return w<sub>0</sub> .. w<sub>n-1</sub>, a<sub>1</sub>, a<sub>2</sub>, a<sub>3</sub> or null if the matrix is singular
      */
-    private double calculateFunctionU(Coordinate p_i, Coordinate p_j) {
-        double distance = p_i.distance(p_j);
+    static double[] solve(double[] xs, double[] ys, double[] values, int n) {
+        final int size = n + 3;
+        final double[] L = new double[size * size];
+        final double[] V = new double[size];
 
-        return functionU(distance);
-    }
+        double scale = 1.0;
+        for (int i = 0; i < n; i++) {
+            // K sub matrix, the diagonal is 0
+            for (int j = i + 1; j < n; j++) {
+                double dx = xs[i] - xs[j];
+                double dy = ys[i] - ys[j];
+                double u = functionU(Math.sqrt(dx * dx + dy * dy));
+                L[i * size + j] = u;
+                L[j * size + i] = u;
+                scale = Math.max(scale, Math.abs(u));
+            }
 
-    /**
-     * Fill K submatrix (<a href="http://elonen.iki.fi/code/tpsdemo/index.html"> see more here</a>)
-     */
-    private void fillKsubMatrix() {
-        double alfa = 0;
+            // P sub matrix, the O sub matrix is 0
+            L[i * size + n] = 1;
+            L[i * size + n + 1] = xs[i];
+            L[i * size + n + 2] = ys[i];
+            L[n * size + i] = 1;
+            L[(n + 1) * size + i] = xs[i];
+            L[(n + 2) * size + i] = ys[i];
+            scale = Math.max(scale, Math.max(Math.abs(xs[i]), Math.abs(ys[i])));
 
-        for (int i = 0; i < number; i++) {
-            for (int j = i + 1; j < number; j++) {
-                double u = calculateFunctionU(samples[i], samples[j]);
-                L.setElement(i, j, u);
-                L.setElement(j, i, u);
-                alfa = alfa + (u * 2); // same for upper and lower part
-            }
+            V[i] = values[i];
         }
 
-        alfa = alfa / (number * number);
-    }
+        final double epsilon = scale * 1E-13;
+        for (int k = 0; k < size; k++) {
+            int pivot = k;
+            double max = Math.abs(L[k * size + k]);
+            for (int r = k + 1; r < size; r++) {
+                double abs = Math.abs(L[r * size + k]);
+                if (abs > max) {
+                    max = abs;
+                    pivot = r;
+                }
+            }
 
-    /**
-     * Fill L submatrix (<a href="http://elonen.iki.fi/code/tpsdemo/index.html"> see more here</a>)
-     */
-    private void fillPsubMatrix() {
-        for (int i = 0; i < number; i++) {
-            L.setElement(i, i, 0);
+            if (max <= epsilon) {
+                return null;
+            }
 
-            Coordinate source = samples[i];
+            if (pivot != k) {
+                for (int c = k; c < size; c++) {
+                    double tmp = L[k * size + c];
+                    L[k * size + c] = L[pivot * size + c];
+                    L[pivot * size + c] = tmp;
+                }
+                double tmp = V[k];
+                V[k] = V[pivot];
+                V[pivot] = tmp;
+            }
 
-            L.setElement(i, number + 0, 1);
-            L.setElement(i, number + 1, source.x);
-            L.setElement(i, number + 2, source.y);
+            final double diagonal = L[k * size + k];
+            for (int r = k + 1; r < size; r++) {
+                final double factor = L[r * size + k] / diagonal;
+                if (factor == 0) {
+                    continue;
+                }
+                for (int c = k + 1; c < size; c++) {
+                    L[r * size + c] -= factor * L[k * size + c];
+                }
+                V[r] -= factor * V[k];
+            }
+        }
 
-            L.setElement(number + 0, i, 1);
-            L.setElement(number + 1, i, source.x);
-            L.setElement(number + 2, i, source.y);
+        // back substitution
+        for (int k = size - 1; k >= 0; k--) {
+            double sum = V[k];
+            for (int c = k + 1; c < size; c++) {
+                sum -= L[k * size + c] * V[c];
+            }
+            V[k] = sum / L[k * size + k];
         }
+
+        return V;
     }
 
     /**
-     * Fill O submatrix (<a href="http://elonen.iki.fi/code/tpsdemo/index.html"> see more here</a>)
+     * Spline fitted to a set of samples. The coordinates are relative to the center of the samples and divided by their extent to keep the system
+     * well conditioned, the interpolated surface does not change.
      */
-    private void fillOsubMatrix() {
-        for (int i = number; i < (number + 3); i++) {
-            for (int j = number; j < (number + 3); j++) {
-                L.setElement(i, j, 0);
+    static final class Spline {
+        final Coordinate[] fitted;
+
+        final int n;
+
+        final double[] xs;
+
+        final double[] ys;
+
+        double originX = 0.0;
+
+        double originY = 0.0;
+
+        double unit = 1.0;
+
+        /** w<sub>0</sub> .. w<sub>n-1</sub>, a<sub>1</sub>, a<sub>2</sub>, a<sub>3</sub>, null if singular */
+        final double[] coefficients;
+
+        /** mean of the sample values, used if the matrix is singular */
+        double mean = 0.0;
+
+        Spline(Coordinate[] samples) {
+            this.fitted = samples;
+            this.n = samples.length;
+            this.xs = new double[n];
+            this.ys = new double[n];
+
+            double[] values = new double[n];
+            for (int i = 0; i < n; i++) {
+                originX += samples[i].x;
+                originY += samples[i].y;
+                mean += samples[i].z;
+            }
+
+            if (n > 0) {
+                originX /= n;
+                originY /= n;
+                mean /= n;
+            }
+
+            double extent = 0.0;
+            for (int i = 0; i < n; i++) {
+                extent = Math.max(extent, Math.abs(samples[i].x - originX));
+                extent = Math.max(extent, Math.abs(samples[i].y - originY));
+            }
+
+            if (extent > 0) {
+                unit = extent;
+            }
+
+            for (int i = 0; i < n; i++) {
+                xs[i] = (samples[i].x - originX) / unit;
+                ys[i] = (samples[i].y - originY) / unit;
+                values[i] = samples[i].z;
             }
+
+            this.coefficients = n < 3 ? null : solve(xs, ys, values, n);
         }
-    }
 
-    /**
-     * Fill V matrix (matrix of target values)
-     * 
-     * @param dim 0 for dx, 1 for dy.
-     * @return V Matrix
-     */
-    private GeneralMatrix fillVMatrix(int dim) {
-        V = new GeneralMatrix(number + 3, 1);
+        boolean isFittedTo(Coordinate[] neighbors) {
+            if (neighbors.length != n) {
+                return false;
+            }
 
-        for (int i = 0; i < number; i++) {
-            V.setElement(i, 0, samples[i].z);
+            for (int i = 0; i < n; i++) {
+                if (neighbors[i] != fitted[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
 
-        V.setElement(V.getNumRow() - 3, 0, 0);
-        V.setElement(V.getNumRow() - 2, 0, 0);
-        V.setElement(V.getNumRow() - 1, 0, 0);
+        double getValue(Coordinate p) {
+            if (coefficients == null) {
+                return mean;
+            }
 
-        return V;
+            final double dx = (p.x - originX) / unit;
+            final double dy = (p.y - originY) / unit;
+
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                final double ox = dx - xs[i];
+                final double oy = dy - ys[i];
+                sum += coefficients[i] * functionU(Math.sqrt(ox * ox + oy * oy));
+            }
+
+            return sum + coefficients[n] + (coefficients[n + 1] * dx) + (coefficients[n + 2] * dy);
+        }
     }
-}
\ No newline at end of file
+}
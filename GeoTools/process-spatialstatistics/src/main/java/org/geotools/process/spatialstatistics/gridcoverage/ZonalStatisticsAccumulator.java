@@ -0,0 +1,278 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.gridcoverage;
+
+import java.util.Arrays;
+
+import org.geotools.process.spatialstatistics.enumeration.ZonalStatisticsType;
+
+/**
+ * Zone indexed accumulators for all zonal statistics. <br>
+ * Count, sum, sum of squares, minimum and maximum are kept in primitive arrays; median and majority use a per-zone histogram of the distinct
+ * values, which is only allocated when requested.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class ZonalStatisticsAccumulator {
+
+    private final int zoneCount;
+
+    private final int[] count;
+
+    private final double[] sum;
+
+    private final double[] sumOfSqrs;
+
+    private final double[] minimum;
+
+    private final double[] maximum;
+
+    private final ValueHistogram[] histograms;
+
+    /**
+     * @param zoneCount number of zones, zone ids are 0 .. zoneCount - 1
+     * @param useHistogram true if median or majority are required
+     */
+    public ZonalStatisticsAccumulator(int zoneCount, boolean useHistogram) {
+        this.zoneCount = zoneCount;
+        this.count = new int[zoneCount];
+        this.sum = new double[zoneCount];
+        this.sumOfSqrs = new double[zoneCount];
+        this.minimum = new double[zoneCount];
+        this.maximum = new double[zoneCount];
+        this.histograms = useHistogram ? new ValueHistogram[zoneCount] : null;
+
+        Arrays.fill(minimum, Double.MAX_VALUE);
+        Arrays.fill(maximum, -Double.MAX_VALUE);
+    }
+
+    public static boolean requiresHistogram(ZonalStatisticsType statisticsType) {
+        return statisticsType == ZonalStatisticsType.Median
+                || statisticsType == ZonalStatisticsType.Majority;
+    }
+
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    public void visit(int zone, double value) {
+        if (zone < 0 || zone >= zoneCount) {
+            return;
+        }
+
+        count[zone]++;
+        sum[zone] += value;
+        sumOfSqrs[zone] += value * value;
+        if (value < minimum[zone]) {
+            minimum[zone] = value;
+        }
+        if (value > maximum[zone]) {
+            maximum[zone] = value;
+        }
+
+        if (histograms != null) {
+            if (histograms[zone] == null) {
+                histograms[zone] = new ValueHistogram();
+            }
+            histograms[zone].add(value, 1);
+        }
+    }
+
+    public void merge(ZonalStatisticsAccumulator other) {
+        for (int zone = 0; zone < zoneCount; zone++) {
+            if (other.count[zone] == 0) {
+                continue;
+            }
+
+            count[zone] += other.count[zone];
+            sum[zone] += other.sum[zone];
+            sumOfSqrs[zone] += other.sumOfSqrs[zone];
+            minimum[zone] = Math.min(minimum[zone], other.minimum[zone]);
+            maximum[zone] = Math.max(maximum[zone], other.maximum[zone]);
+
+            if (histograms != null && other.histograms != null) {
+                if (histograms[zone] == null) {
+                    histograms[zone] = other.histograms[zone];
+                } else {
+                    histograms[zone].addAll(other.histograms[zone]);
+                }
+            }
+        }
+    }
+
+    public int getCount(int zone) {
+        return zone < 0 || zone >= zoneCount ? 0 : count[zone];
+    }
+
+    /**
+     * Returns the statistic of the zone, Integer for Count and Double for the others. Null if the zone has no value.
+     */
+    public Object getValue(int zone, ZonalStatisticsType statisticsType) {
+        final int n = getCount(zone);
+        if (statisticsType == ZonalStatisticsType.Count) {
+            return Integer.valueOf(n);
+        } else if (n == 0) {
+            return null;
+        }
+
+        switch (statisticsType) {
+        case Sum:
+            return sum[zone];
+        case Minimum:
+            return minimum[zone];
+        case Maximum:
+            return maximum[zone];
+        case Range:
+            return maximum[zone] - minimum[zone];
+        case StdDev:
+            // population standard deviation, as StatisticsVisitor
+            double variance = (sumOfSqrs[zone] - Math.pow(sum[zone], 2.0) / n) / n;
+            return Math.sqrt(Math.max(0.0, variance));
+        case Median:
+            return histograms == null ? null : histograms[zone].getMedian(n);
+        case Majority:
+            return histograms == null ? null : histograms[zone].getMajority();
+        case Mean:
+        default:
+            return sum[zone] / n;
+        }
+    }
+
+    /**
+     * Open addressing map from a distinct value to its frequency.
+     */
+    static final class ValueHistogram {
+        private long[] keys = new long[16];
+
+        private int[] counts = new int[16];
+
+        private int size = 0;
+
+        void add(double value, int frequency) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+
+            long key = Double.doubleToLongBits(value + 0.0); // -0.0 to 0.0
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    counts[slot] += frequency;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            counts[slot] = frequency;
+            size++;
+        }
+
+        void addAll(ValueHistogram other) {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                if (other.counts[slot] != 0) {
+                    add(Double.longBitsToDouble(other.keys[slot]), other.counts[slot]);
+                }
+            }
+        }
+
+        double getMedian(int total) {
+            double[] values = new double[size];
+            int[] frequencies = new int[size];
+            sortedEntries(values, frequencies);
+
+            // average of the two middle values if the count is even
+            int lower = (total - 1) / 2;
+            int upper = total / 2;
+            double lowerValue = Double.NaN;
+            int cumulative = 0;
+            for (int i = 0; i < size; i++) {
+                cumulative += frequencies[i];
+                if (Double.isNaN(lowerValue) && cumulative > lower) {
+                    lowerValue = values[i];
+                }
+                if (cumulative > upper) {
+                    return (lowerValue + values[i]) / 2.0;
+                }
+            }
+            return lowerValue;
+        }
+
+        double getMajority() {
+            double[] values = new double[size];
+            int[] frequencies = new int[size];
+            sortedEntries(values, frequencies);
+
+            // the smallest value wins ties
+            int best = 0;
+            for (int i = 1; i < size; i++) {
+                if (frequencies[i] > frequencies[best]) {
+                    best = i;
+                }
+            }
+            return values[best];
+        }
+
+        private void sortedEntries(double[] values, int[] frequencies) {
+            int index = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (counts[slot] != 0) {
+                    values[index++] = Double.longBitsToDouble(keys[slot]);
+                }
+            }
+            Arrays.sort(values);
+
+            for (int i = 0; i < size; i++) {
+                frequencies[i] = get(Double.doubleToLongBits(values[i]));
+            }
+        }
+
+        private int get(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    return counts[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+
+            keys = new long[capacity];
+            counts = new int[capacity];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldCounts[slot] != 0) {
+                    add(Double.longBitsToDouble(oldKeys[slot]), oldCounts[slot]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
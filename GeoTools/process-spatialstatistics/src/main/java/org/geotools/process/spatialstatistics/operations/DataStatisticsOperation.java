@@ -65,7 +65,7 @@ public class DataStatisticsOperation extends GeneralOperation {
         String propertyName = "Value";
         Double noData = RasterHelper.getNoDataValue(inputCoverage);
 
-        StatisticsVisitor visitor = new StatisticsVisitor(new DoubleStrategy());
+        StatisticsVisitor visitor = new StatisticsVisitor(new DoubleStrategy(true));
         visitor.setNoData(noData);
 
         if (cropShape == null) {
@@ -85,6 +85,7 @@ public class DataStatisticsOperation extends GeneralOperation {
         item.setMinimum(ret.getMinimum());
         item.setMaximum(ret.getMaximum());
         item.setMean(ret.getMean());
+        item.setMedian(ret.getMedian());
         item.setStandardDeviation(ret.getStandardDeviation());
         item.setVariance(ret.getVariance());
         item.setCoefficientOfVariance(ret.getCoefficientOfVariance());
@@ -136,7 +137,7 @@ public class DataStatisticsOperation extends GeneralOperation {
 
                     StatisticsVisitor visitor = map.get(caseValue);
                     if (visitor == null) {
-                        visitor = new StatisticsVisitor(featureType, propertyName);
+                        visitor = new StatisticsVisitor(featureType, propertyName, true);
                         map.put((String) caseValue, visitor);
                     }
                     visitor.visit(feature);
@@ -177,7 +178,7 @@ public class DataStatisticsOperation extends GeneralOperation {
             }
 
             // calculate
-            StatisticsVisitor visitor = new StatisticsVisitor(featureType, propertyName);
+            StatisticsVisitor visitor = new StatisticsVisitor(featureType, propertyName, true);
             visitor.visit(inputFeatures);
 
             // remap for WPS PPIO
@@ -199,6 +200,7 @@ public class DataStatisticsOperation extends GeneralOperation {
         item.setMinimum(ret.getMinimum());
         item.setMaximum(ret.getMaximum());
         item.setMean(ret.getMean());
+        item.setMedian(ret.getMedian());
         item.setStandardDeviation(ret.getStandardDeviation());
         item.setVariance(ret.getVariance());
         item.setCoefficientOfVariance(ret.getCoefficientOfVariance());
@@ -264,6 +266,8 @@ public class DataStatisticsOperation extends GeneralOperation {
 
             Double mean;
 
+            Double median;
+
             Double variance;
 
             Double standardDeviation;
@@ -380,6 +384,15 @@ public class DataStatisticsOperation extends GeneralOperation {
                 this.mean = mean;
             }
 
+            public Double getMedian() {
+                return median;
+            }
+
+            // not computed for strings
+            public void setMedian(Double median) {
+                this.median = median == null || median.isNaN() ? null : median;
+            }
+
             public Double getStandardDeviation() {
                 return standardDeviation;
             }
@@ -437,6 +450,9 @@ public class DataStatisticsOperation extends GeneralOperation {
                 sb.append("Ranges: ").append(ranges).append(separator);
                 sb.append("Sum: ").append(sum).append(separator);
                 sb.append("Mean: ").append(mean).append(separator);
+                if (median != null) {
+                    sb.append("Median: ").append(median).append(separator);
+                }
                 sb.append("Variance: ").append(variance).append(separator);
                 sb.append("StandardDeviation: ").append(standardDeviation).append(separator);
                 sb.append("CoefficientOfVariance: ").append(coefficientOfVariance);
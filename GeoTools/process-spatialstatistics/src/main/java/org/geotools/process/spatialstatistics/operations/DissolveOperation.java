@@ -31,6 +31,7 @@ import org.geotools.process.spatialstatistics.core.StatisticsVisitor;
 import org.geotools.process.spatialstatistics.core.StatisticsVisitorResult;
 import org.geotools.process.spatialstatistics.core.StringHelper;
 import org.geotools.process.spatialstatistics.core.SummaryFieldBuilder;
+import org.geotools.process.spatialstatistics.enumeration.StaticsType;
 import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
@@ -110,8 +111,16 @@ public class DissolveOperation extends GeneralOperation {
             }
         }
 
+        // the median needs a quantile sketch
+        final List<String> medianFields = new ArrayList<String>();
+        for (StatisticsField curField : statisticsList) {
+            if (curField.getStatType() == StaticsType.Median) {
+                medianFields.add(curField.getSrcField());
+            }
+        }
+
         // calculate statistics
-        calculateStatistics(features, dissolveField, schema, uvFields);
+        calculateStatistics(features, dissolveField, schema, uvFields, medianFields);
 
         // post process
         IFeatureInserter writer = getFeatureWriter(featureType);
@@ -169,7 +178,7 @@ public class DissolveOperation extends GeneralOperation {
     }
 
     private void calculateStatistics(SimpleFeatureCollection features, String dissolveField,
-            SimpleFeatureType schema, List<String> uvFields) {
+            SimpleFeatureType schema, List<String> uvFields, List<String> medianFields) {
         attMap = new Hashtable<Object, Hashtable<String, StatisticsVisitor>>();
         geoMap = new Hashtable<Object, List<Geometry>>();
 
@@ -194,7 +203,8 @@ public class DissolveOperation extends GeneralOperation {
                 if (attMap.get(disValue) == null) {
                     attMap.put(disValue, new Hashtable<String, StatisticsVisitor>());
                     for (String field : uvFields) {
-                        attMap.get(disValue).put(field, new StatisticsVisitor(schema, field));
+                        attMap.get(disValue).put(field,
+                                new StatisticsVisitor(schema, field, medianFields.contains(field)));
                     }
                 }
 
@@ -29,6 +29,7 @@ import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.process.spatialstatistics.storage.BackgroundFeatureInserter;
 import org.geotools.process.spatialstatistics.storage.FeatureInserter;
 import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.process.spatialstatistics.storage.MemoryFeatureInserter;
@@ -55,6 +56,12 @@ public abstract class GeneralOperation {
 
     private DataStore outputDataStore = null;
 
+    private boolean backgroundWriting = false;
+
+    private int commitInterval = 0;
+
+    private boolean autoBatchSize = true;
+
     public void setOutputDataStore(DataStore outputDataStore) {
         this.outputDataStore = outputDataStore;
     }
@@ -63,6 +70,41 @@ public abstract class GeneralOperation {
         return outputDataStore;
     }
 
+    public boolean isBackgroundWriting() {
+        return backgroundWriting;
+    }
+
+    /**
+     * If true, features are written to the output data store by a background writer, see {@link BackgroundFeatureInserter}.
+     */
+    public void setBackgroundWriting(boolean backgroundWriting) {
+        this.backgroundWriting = backgroundWriting;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    /**
+     * Number of features between commits of the background writer, 0 (the default) to commit once when the writer is closed. <br>
+     * With an interval, batches which were committed before a failure remain in the output data store, only the uncommitted features
+     * are rolled back.
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    public boolean isAutoBatchSize() {
+        return autoBatchSize;
+    }
+
+    /**
+     * If true, the background writer adjusts the batch size to the measured throughput of the output data store.
+     */
+    public void setAutoBatchSize(boolean autoBatchSize) {
+        this.autoBatchSize = autoBatchSize;
+    }
+
     protected boolean isShapefileDataStore(DataStore dataStore) {
         if (dataStore instanceof DirectoryDataStore) {
             return true;
@@ -91,6 +133,12 @@ public abstract class GeneralOperation {
                 featureStore = (SimpleFeatureStore) featureSource;
             }
 
+            if (backgroundWriting) {
+                BackgroundFeatureInserter inserter = new BackgroundFeatureInserter(featureStore);
+                inserter.setCommitInterval(commitInterval);
+                inserter.setAutoBatchSize(autoBatchSize);
+                return inserter;
+            }
             return new FeatureInserter(featureStore);
         }
     }
@@ -18,9 +18,9 @@ package org.geotools.process.spatialstatistics.operations;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,23 +29,27 @@ import javax.measure.quantity.Length;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
-import org.geotools.process.spatialstatistics.core.DataUtils;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
+import org.geotools.process.spatialstatistics.core.QuantileSketch;
 import org.geotools.process.spatialstatistics.core.StatisticsField;
 import org.geotools.process.spatialstatistics.core.StatisticsVisitor;
 import org.geotools.process.spatialstatistics.core.StatisticsVisitorResult;
 import org.geotools.process.spatialstatistics.core.SummaryFieldBuilder;
 import org.geotools.process.spatialstatistics.core.UnitConverter;
 import org.geotools.process.spatialstatistics.enumeration.DistanceUnit;
+import org.geotools.process.spatialstatistics.enumeration.StaticsType;
 import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.process.spatialstatistics.transformation.ReprojectFeatureCollection;
 import org.geotools.process.spatialstatistics.util.GeodeticBuilder;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.filter.Filter;
 import org.opengis.parameter.InvalidParameterValueException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -61,7 +65,10 @@ import si.uom.SI;
 public class PointStatisticsOperation extends GeneralOperation {
     protected static final Logger LOGGER = Logging.getLogger(PointStatisticsOperation.class);
 
-    // FIRST, LAST, SUM, MEAN, MIN, MAX, RANGE, STD, VAR, COUNT
+    // FIRST, LAST, SUM, MEAN, MEDIAN, MIN, MAX, RANGE, STD, VAR, COUNT
+
+    // number of polygons aggregated in parallel before they are written
+    static final int BATCH_SIZE = 1024;
 
     private double bufferDistance = 0.0d;
 
@@ -136,6 +143,15 @@ public class PointStatisticsOperation extends GeneralOperation {
                 uvFields.add(curField.getSrcField());
             }
         }
+
+        // the median needs a quantile sketch
+        final boolean[] quantiles = new boolean[uvFields.size()];
+        for (StatisticsField curField : statFields) {
+            if (curField.getStatType() == StaticsType.Median) {
+                quantiles[uvFields.indexOf(curField.getSrcField())] = true;
+            }
+        }
+
         // check coordinate reference system
         CoordinateReferenceSystem crsT = polygons.getSchema().getCoordinateReferenceSystem();
         CoordinateReferenceSystem crsS = points.getSchema().getCoordinateReferenceSystem();
@@ -160,13 +176,19 @@ public class PointStatisticsOperation extends GeneralOperation {
             }
         }
 
-        // use SpatialIndexFeatureCollection
-        points = DataUtils.toSpatialIndexFeatureCollection(points);
+        // index the points once
+        final PointIndex pointIndex = new PointIndex(points, uvFields, quantiles);
 
         // prepare transactional feature store
-        final String the_geom = points.getSchema().getGeometryDescriptor().getLocalName();
         IFeatureInserter featureWriter = getFeatureWriter(schema);
 
+        final boolean geodeticBuffer = distanceUnit != DistanceUnit.Default && isGeographicCRS;
+        List<SimpleFeature> batch = new ArrayList<SimpleFeature>(BATCH_SIZE);
+        List<Geometry> geometries = new ArrayList<Geometry>(BATCH_SIZE);
+
+        // one pool for all batches, released when the polygons are written
+        final ParallelExecutor executor = new ParallelExecutor(
+                ParallelExecutor.getWorkers(BATCH_SIZE, 16));
         SimpleFeatureIterator featureIter = polygons.features();
         try {
             while (featureIter.hasNext()) {
@@ -176,64 +198,87 @@ public class PointStatisticsOperation extends GeneralOperation {
                     continue;
                 }
 
-                MultipleStatVisitor visitor = new MultipleStatVisitor(points.getSchema());
-                if (radius > 0) {
-                    if (distanceUnit != DistanceUnit.Default && isGeographicCRS) {
-                        geometry = geodetic.buffer(geometry, radius);
-                    } else {
-                        geometry = geometry.buffer(radius, quadrantSegments);
-                    }
+                if (radius > 0 && geodeticBuffer) {
+                    geometry = geodetic.buffer(geometry, radius);
                 }
 
-                Filter filter = getIntersectsFilter(the_geom, geometry);
-
-                int featureCount = 0;
-                if (statFields.size() > 0) {
-                    SimpleFeatureIterator pointIter = null;
-                    try {
-                        pointIter = points.subCollection(filter).features();
-                        while (pointIter.hasNext()) {
-                            SimpleFeature pointFeature = pointIter.next();
-                            featureCount++;
-                            for (String srcField : uvFields) {
-                                visitor.visit(srcField, pointFeature);
-                            }
-                        }
-                    } finally {
-                        pointIter.close();
-                    }
-                } else {
-                    featureCount = points.subCollection(filter).size();
-                }
-
-                // create & insert feature
-                SimpleFeature newFeature = featureWriter.buildFeature();
-                featureWriter.copyAttributes(feature, newFeature, true);
-
-                if (hasCountField) {
-                    newFeature.setAttribute(cntField, featureCount);
-                }
-
-                if (visitor.getResult().size() > 0) {
-                    HashMap<Object, StatisticsVisitor> stat = visitor.getResult();
-                    for (StatisticsField field : statFields) {
-                        StatisticsVisitorResult ret = stat.get(field.getSrcField()).getResult();
-                        Object value = ret.getValue(field.getStatType());
-                        newFeature.setAttribute(field.getTargetField(), value);
-                    }
+                batch.add(feature);
+                geometries.add(geometry);
+                if (batch.size() == BATCH_SIZE) {
+                    writeBatch(executor, featureWriter, batch, geometries, pointIndex,
+                            geodeticBuffer ? 0 : radius, hasCountField ? cntField : null,
+                            statFields, uvFields);
                 }
+            }
 
-                featureWriter.write(newFeature);
+            if (batch.size() > 0) {
+                writeBatch(executor, featureWriter, batch, geometries, pointIndex,
+                        geodeticBuffer ? 0 : radius, hasCountField ? cntField : null, statFields,
+                        uvFields);
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
+            featureWriter.rollback(e);
+            throw e;
+        } catch (RuntimeException e) {
+            // a failed worker, nothing of the output is kept
             featureWriter.rollback(e);
+            throw e;
         } finally {
+            executor.shutdown();
             featureWriter.close(featureIter);
         }
 
         return featureWriter.getFeatureCollection();
     }
 
+    private void writeBatch(ParallelExecutor executor, IFeatureInserter featureWriter,
+            List<SimpleFeature> batch, List<Geometry> geometries, PointIndex pointIndex,
+            double radius, String cntField, List<StatisticsField> statFields,
+            List<String> uvFields) throws IOException {
+        final int size = batch.size();
+        final PolygonStatistics[] results = new PolygonStatistics[size];
+
+        final AtomicInteger next = new AtomicInteger(0);
+        final int workers = Math.min(executor.getThreadCount(),
+                ParallelExecutor.getWorkers(size, 16));
+
+        List<PartialStatistics> tasks = new ArrayList<PartialStatistics>();
+        for (int t = 0; t < workers; t++) {
+            PartialStatistics task = new PartialStatistics(geometries, results, next, pointIndex,
+                    radius);
+            tasks.add(task);
+        }
+
+        // a failure of any worker stops the others and is rethrown here
+        executor.invokeAll(tasks);
+
+        // write in the order of the polygons
+        for (int k = 0; k < size; k++) {
+            PolygonStatistics result = results[k];
+
+            SimpleFeature newFeature = featureWriter.buildFeature();
+            featureWriter.copyAttributes(batch.get(k), newFeature, true);
+
+            if (cntField != null) {
+                newFeature.setAttribute(cntField, result.count);
+            }
+
+            if (result.count > 0) {
+                for (StatisticsField field : statFields) {
+                    int index = uvFields.indexOf(field.getSrcField());
+                    StatisticsVisitorResult ret = result.fields[index].getResult();
+                    Object value = ret.getValue(field.getStatType());
+                    newFeature.setAttribute(field.getTargetField(), value);
+                }
+            }
+
+            featureWriter.write(newFeature);
+        }
+
+        batch.clear();
+        geometries.clear();
+    }
+
     private SimpleFeatureType addAttributes(SimpleFeatureType schema,
             List<StatisticsField> attributes) {
         for (StatisticsField sfield : attributes) {
@@ -244,32 +289,256 @@ public class PointStatisticsOperation extends GeneralOperation {
         return schema;
     }
 
-    static final class MultipleStatVisitor {
+    final class PartialStatistics implements Runnable {
+        private final List<Geometry> geometries;
+
+        private final PolygonStatistics[] results;
 
-        static final String CASE_ALL = "ALL";
+        private final AtomicInteger next;
 
-        SimpleFeatureType schema;
+        private final PointIndex pointIndex;
 
-        HashMap<Object, StatisticsVisitor> resuleMap = new LinkedHashMap<Object, StatisticsVisitor>();
+        private final double radius;
 
-        public MultipleStatVisitor(SimpleFeatureType schema) {
-            this.schema = schema;
+        public PartialStatistics(List<Geometry> geometries, PolygonStatistics[] results,
+                AtomicInteger next, PointIndex pointIndex, double radius) {
+            this.geometries = geometries;
+            this.results = results;
+            this.next = next;
+            this.pointIndex = pointIndex;
+            this.radius = radius;
         }
 
-        public HashMap<Object, StatisticsVisitor> getResult() {
-            return resuleMap;
+        public void run() {
+            int k;
+            while ((k = next.getAndIncrement()) < results.length) {
+                Geometry geometry = geometries.get(k);
+                if (radius > 0) {
+                    geometry = geometry.buffer(radius, quadrantSegments);
+                }
+                results[k] = pointIndex.aggregate(geometry);
+            }
         }
+    }
+
+    /**
+     * Points and the values of the summary fields, read once and indexed with a STRtree.
+     */
+    static final class PointIndex {
+        private final STRtree spatialIndex = new STRtree();
+
+        private Geometry[] geometries = new Geometry[1024];
+
+        private final boolean[] numeric;
+
+        private final boolean[] quantiles;
 
-        public void visit(String propertyName, SimpleFeature feature) {
-            propertyName = propertyName == null ? CASE_ALL : propertyName;
-            StatisticsVisitor visitor = resuleMap.get(propertyName);
+        private final double[][] numbers;
 
-            if (visitor == null) {
-                visitor = new StatisticsVisitor(schema, propertyName);
-                resuleMap.put(propertyName, visitor);
+        private final Object[][] values;
+
+        private int size = 0;
+
+        public PointIndex(SimpleFeatureCollection points, List<String> fields,
+                boolean[] quantiles) {
+            SimpleFeatureType schema = points.getSchema();
+            this.quantiles = quantiles;
+
+            final int fieldCount = fields.size();
+            int[] attributes = new int[fieldCount];
+            numeric = new boolean[fieldCount];
+            numbers = new double[fieldCount][];
+            values = new Object[fieldCount][];
+            for (int field = 0; field < fieldCount; field++) {
+                String name = FeatureTypes.validateProperty(schema, fields.get(field));
+                attributes[field] = name == null ? -1 : schema.indexOf(name);
+                if (attributes[field] != -1) {
+                    Class<?> binding = schema.getDescriptor(attributes[field]).getType()
+                            .getBinding();
+                    numeric[field] = Number.class.isAssignableFrom(binding);
+                }
+                numbers[field] = new double[geometries.length];
+                values[field] = new Object[geometries.length];
+            }
+
+            SimpleFeatureIterator featureIter = points.features();
+            try {
+                while (featureIter.hasNext()) {
+                    SimpleFeature feature = featureIter.next();
+                    Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                    if (geometry == null || geometry.isEmpty()) {
+                        continue;
+                    }
+
+                    if (size == geometries.length) {
+                        grow();
+                    }
+
+                    geometries[size] = geometry;
+                    for (int field = 0; field < fieldCount; field++) {
+                        Object value = attributes[field] == -1 ? null
+                                : feature.getAttribute(attributes[field]);
+                        values[field][size] = value;
+                        numbers[field][size] = toDouble(value);
+                    }
+
+                    spatialIndex.insert(geometry.getEnvelopeInternal(), Integer.valueOf(size));
+                    size++;
+                }
+            } finally {
+                featureIter.close();
             }
 
-            visitor.visit(feature);
+            // queries from several threads
+            spatialIndex.build();
+        }
+
+        private void grow() {
+            int capacity = geometries.length * 2;
+            geometries = Arrays.copyOf(geometries, capacity);
+            for (int field = 0; field < numbers.length; field++) {
+                numbers[field] = Arrays.copyOf(numbers[field], capacity);
+                values[field] = Arrays.copyOf(values[field], capacity);
+            }
+        }
+
+        private double toDouble(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else if (value != null) {
+                try {
+                    return Double.parseDouble(value.toString());
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            }
+            return Double.NaN;
+        }
+
+        /**
+         * Aggregates all fields over the points which intersect the polygon, in the order of the points.
+         */
+        @SuppressWarnings("unchecked")
+        public PolygonStatistics aggregate(Geometry polygon) {
+            List<Integer> hits = spatialIndex.query(polygon.getEnvelopeInternal());
+            int[] candidates = new int[hits.size()];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = hits.get(i).intValue();
+            }
+            Arrays.sort(candidates);
+
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(polygon);
+            PolygonStatistics result = new PolygonStatistics(quantiles);
+            for (int index : candidates) {
+                if (!prepared.intersects(geometries[index])) {
+                    continue;
+                }
+
+                result.count++;
+                for (int field = 0; field < numbers.length; field++) {
+                    result.fields[field].add(index, numbers[field][index], values[field],
+                            numeric[field]);
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class PolygonStatistics {
+        int count = 0;
+
+        final FieldAccumulator[] fields;
+
+        public PolygonStatistics(boolean[] quantiles) {
+            fields = new FieldAccumulator[quantiles.length];
+            for (int field = 0; field < quantiles.length; field++) {
+                fields[field] = new FieldAccumulator(quantiles[field]);
+            }
+        }
+    }
+
+    /**
+     * Primitive accumulator of one field, same results as the strategies of {@link StatisticsVisitor}.
+     */
+    static final class FieldAccumulator {
+        Object[] values;
+
+        boolean numeric = false;
+
+        int count = 0;
+
+        int first = -1;
+
+        int last = -1;
+
+        double sumOfVals = 0.0d;
+
+        double sumOfSqrs = 0.0d;
+
+        double minVal = Double.MAX_VALUE;
+
+        double maxVal = -Double.MAX_VALUE;
+
+        QuantileSketch quantiles = null;
+
+        /**
+         * @param computeQuantiles true to estimate the median and quantiles of a numeric field with a {@link QuantileSketch}
+         */
+        public FieldAccumulator(boolean computeQuantiles) {
+            if (computeQuantiles) {
+                quantiles = new QuantileSketch();
+            }
+        }
+
+        public void add(int index, double number, Object[] values, boolean numeric) {
+            if (values[index] == null) {
+                return;
+            }
+
+            this.values = values;
+            this.numeric = numeric;
+            if (numeric) {
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    return;
+                }
+
+                sumOfVals += number;
+                sumOfSqrs += number * number;
+                minVal = Math.min(minVal, number);
+                maxVal = Math.max(maxVal, number);
+                if (quantiles != null) {
+                    quantiles.add(number);
+                }
+            }
+
+            if (first == -1) {
+                first = index;
+            }
+            last = index;
+            count++;
+        }
+
+        public StatisticsVisitorResult getResult() {
+            StatisticsVisitorResult sr = new StatisticsVisitorResult();
+            if (count == 0) {
+                return sr;
+            }
+
+            sr.setFirstValue(values[first]);
+            sr.setLastValue(values[last]);
+            sr.setCount(count);
+
+            if (numeric) {
+                sr.setMinimum(minVal);
+                sr.setMaximum(maxVal);
+                sr.setSum(sumOfVals);
+                sr.setQuantiles(quantiles);
+
+                // Population Standard Deviation
+                double variance = (sumOfSqrs - Math.pow(sumOfVals, 2.0) / count) / count;
+                sr.setVariance(variance);
+            }
+            return sr;
         }
     }
 
@@ -18,8 +18,11 @@ package org.geotools.process.spatialstatistics.operations;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,6 +30,7 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.process.spatialstatistics.enumeration.ThiessenAttributeMode;
 import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.util.logging.Logging;
@@ -36,8 +40,6 @@ import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.geom.prep.PreparedGeometry;
 import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
-import org.locationtech.jts.index.strtree.ItemBoundable;
-import org.locationtech.jts.index.strtree.ItemDistance;
 import org.locationtech.jts.index.strtree.STRtree;
 import org.locationtech.jts.triangulate.VoronoiDiagramBuilder;
 import org.opengis.feature.simple.SimpleFeature;
@@ -105,14 +107,21 @@ public class ThiessenPolygonOperation extends GeneralOperation {
         vdBuilder.setTolerance(proximalTolerance);
 
         Geometry thiessenGeoms = vdBuilder.getDiagram(gf);
-        coordinateList.clear();
 
-        STRtree spatialIndex = new STRtree();
+        // each voronoi cell carries its site coordinate as user data
+        Map<Coordinate, Integer> cellMap = new HashMap<Coordinate, Integer>();
         for (int k = 0; k < thiessenGeoms.getNumGeometries(); k++) {
-            Geometry geometry = thiessenGeoms.getGeometryN(k);
-            spatialIndex.insert(geometry.getEnvelopeInternal(), geometry);
+            Object site = thiessenGeoms.getGeometryN(k).getUserData();
+            if (site instanceof Coordinate) {
+                cellMap.put((Coordinate) site, Integer.valueOf(k));
+            }
         }
 
+        coordinateList.clear();
+
+        // clip cells
+        Geometry[] cells = clipCells(thiessenGeoms, clipPolygon, praparedGeom);
+
         SimpleFeatureType featureType = null;
         switch (attributeMode) {
         case OnlyFID:
@@ -131,46 +140,44 @@ public class ThiessenPolygonOperation extends GeneralOperation {
         SimpleFeatureIterator featureIter = pointFeatures.features();
         try {
             int fid = 0;
+            STRtree spatialIndex = null;
             while (featureIter.hasNext()) {
                 SimpleFeature feature = featureIter.next();
                 Geometry geometry = (Geometry) feature.getDefaultGeometry();
                 Point centroid = geometry.getCentroid();
 
-                // get polygon
-                Geometry voronoiPolygon = (Geometry) spatialIndex.nearestNeighbour(
-                        geometry.getEnvelopeInternal(), geometry, new ItemDistance() {
-                            @Override
-                            public double distance(ItemBoundable item1, ItemBoundable item2) {
-                                Geometry s1 = (Geometry) item1.getItem();
-                                Geometry s2 = (Geometry) item2.getItem();
-                                return s1.distance(s2);
-                            }
-                        });
-
-                if (voronoiPolygon.contains(centroid)) {
-                    Geometry finalVoronoi = voronoiPolygon;
-
-                    if (praparedGeom.disjoint(voronoiPolygon)) {
-                        continue;
-                    } else if (!praparedGeom.contains(voronoiPolygon)) {
-                        finalVoronoi = voronoiPolygon.intersection(clipPolygon);
-                        if (finalVoronoi == null || finalVoronoi.isEmpty()) {
-                            continue;
+                Integer cell = cellMap.get(centroid.getCoordinate());
+                if (cell == null) {
+                    // merged with another site within the proximal tolerance: the cell containing it
+                    if (spatialIndex == null) {
+                        spatialIndex = new STRtree();
+                        for (int k = 0; k < thiessenGeoms.getNumGeometries(); k++) {
+                            spatialIndex.insert(thiessenGeoms.getGeometryN(k)
+                                    .getEnvelopeInternal(), Integer.valueOf(k));
                         }
                     }
+                    cell = findCell(thiessenGeoms, spatialIndex, centroid);
+                }
 
-                    // create feature
-                    SimpleFeature newFeature = featureWriter.buildFeature();
-                    if (attributeMode == ThiessenAttributeMode.All) {
-                        featureWriter.copyAttributes(feature, newFeature, false);
-                    }
-
-                    newFeature.setAttribute(FID_FIELD, fid++);
-                    newFeature.setDefaultGeometry(finalVoronoi);
-                    featureWriter.write(newFeature);
-                } else {
+                if (cell == null) {
                     LOGGER.log(Level.WARNING, "duplicated point feature!");
+                    continue;
+                }
+
+                Geometry finalVoronoi = cells[cell.intValue()];
+                if (finalVoronoi == null) {
+                    continue;
                 }
+
+                // create feature
+                SimpleFeature newFeature = featureWriter.buildFeature();
+                if (attributeMode == ThiessenAttributeMode.All) {
+                    featureWriter.copyAttributes(feature, newFeature, false);
+                }
+
+                newFeature.setAttribute(FID_FIELD, fid++);
+                newFeature.setDefaultGeometry(finalVoronoi);
+                featureWriter.write(newFeature);
             }
         } catch (IOException e) {
             featureWriter.rollback(e);
@@ -181,6 +188,64 @@ public class ThiessenPolygonOperation extends GeneralOperation {
         return featureWriter.getFeatureCollection();
     }
 
+    private Integer findCell(Geometry diagram, STRtree spatialIndex, Point centroid) {
+        for (Object item : spatialIndex.query(centroid.getEnvelopeInternal())) {
+            Integer k = (Integer) item;
+            if (diagram.getGeometryN(k.intValue()).contains(centroid)) {
+                return k;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Clips the voronoi cells by the clip polygon in parallel, null for the cells outside of the clip polygon.
+     */
+    private Geometry[] clipCells(final Geometry diagram, final Geometry clipPolygon,
+            final PreparedGeometry preparedClip) {
+        final int cellCount = diagram.getNumGeometries();
+        final Geometry[] cells = new Geometry[cellCount];
+
+        final int chunkSize = 256;
+        final int chunkCount = (cellCount + chunkSize - 1) / chunkSize;
+        final AtomicInteger nextChunk = new AtomicInteger(0);
+        final int workers = ParallelExecutor.getWorkers(chunkCount, 1);
+
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int t = 0; t < workers; t++) {
+            tasks.add(new Runnable() {
+                public void run() {
+                    int chunk;
+                    while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                        int end = Math.min(cellCount, (chunk + 1) * chunkSize);
+                        for (int k = chunk * chunkSize; k < end; k++) {
+                            cells[k] = clipCell(diagram.getGeometryN(k), clipPolygon,
+                                    preparedClip);
+                        }
+                    }
+                }
+            });
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        return cells;
+    }
+
+    private Geometry clipCell(Geometry voronoiPolygon, Geometry clipPolygon,
+            PreparedGeometry preparedClip) {
+        if (preparedClip.disjoint(voronoiPolygon)) {
+            return null;
+        } else if (!preparedClip.contains(voronoiPolygon)) {
+            Geometry finalVoronoi = voronoiPolygon.intersection(clipPolygon);
+            if (finalVoronoi == null || finalVoronoi.isEmpty()) {
+                return null;
+            }
+            return finalVoronoi;
+        }
+        return voronoiPolygon;
+    }
+
     public SimpleFeatureCollection execute(List<Coordinate> coordinateList,
             CoordinateReferenceSystem crs) throws IOException {
         SimpleFeatureType featureType = FeatureTypes.getDefaultType(TYPE_NAME, Polygon.class, crs);
@@ -224,27 +289,22 @@ public class ThiessenPolygonOperation extends GeneralOperation {
 
         coords.clear();
 
+        Geometry[] cells = null;
+        if (clipArea != null) {
+            cells = clipCells(triangleGeoms, clipArea, PreparedGeometryFactory.prepare(clipArea));
+        }
+
         // insert features
         try {
             for (int k = 0; k < triangleGeoms.getNumGeometries(); k++) {
-                Geometry curGeometry = triangleGeoms.getGeometryN(k);
+                Geometry curGeometry = cells == null ? triangleGeoms.getGeometryN(k) : cells[k];
+                if (curGeometry == null) {
+                    continue;
+                }
 
                 SimpleFeature newFeature = featureWriter.buildFeature();
                 newFeature.setAttribute(FID_FIELD, k);
-
-                if (clipArea == null) {
-                    newFeature.setDefaultGeometry(curGeometry);
-                } else {
-                    if (clipArea.disjoint(curGeometry)) {
-                        continue;
-                    } else if (clipArea.contains(curGeometry)) {
-                        newFeature.setDefaultGeometry(curGeometry);
-                    } else {
-                        Geometry interGeom = clipArea.intersection(curGeometry);
-                        newFeature.setDefaultGeometry(interGeom);
-                    }
-                }
-
+                newFeature.setDefaultGeometry(curGeometry);
                 featureWriter.write(newFeature);
             }
         } catch (IOException e) {
@@ -17,6 +17,7 @@
 package org.geotools.process.spatialstatistics.pattern;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,6 +26,8 @@ import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.BinGrid;
+import org.geotools.process.spatialstatistics.util.CoordinateTranslateFilter;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
@@ -34,7 +37,8 @@ import org.opengis.filter.expression.Expression;
 import org.opengis.referencing.operation.TransformException;
 
 /**
- * Abstract Binning Visitor.
+ * Abstract Binning Visitor. <br>
+ * The sums of the bins are kept in a sparse {@link BinGrid}, so only the bins which receive a value use memory.
  * 
  * @author Minpa Lee, MangoSystem
  * 
@@ -54,18 +58,10 @@ public abstract class AbstractBinningVisitor {
 
     protected int rows;
 
-    protected Double[][] gridValues;
+    protected BinGrid gridValues = new BinGrid();
 
     protected Geometry binTemplate;
 
-    protected int minCol = Integer.MAX_VALUE;
-
-    protected int minRow = Integer.MAX_VALUE;
-
-    protected int maxCol = Integer.MIN_VALUE;
-
-    protected int maxRow = Integer.MIN_VALUE;
-
     protected double minX;
 
     protected double minY;
@@ -78,6 +74,14 @@ public abstract class AbstractBinningVisitor {
 
     protected void visit(SimpleFeatureCollection features, Expression weight,
             GeometryCoordinateSequenceTransformer transformer) {
+        visit(features, weight, transformer, this);
+    }
+
+    /**
+     * Aggregates the features into all visitors, e.g. grids of several bin sizes, in one pass over the features.
+     */
+    public static void visit(SimpleFeatureCollection features, Expression weight,
+            GeometryCoordinateSequenceTransformer transformer, AbstractBinningVisitor... visitors) {
         SimpleFeatureIterator featureIter = features.features();
         try {
             while (featureIter.hasNext()) {
@@ -91,17 +95,86 @@ public abstract class AbstractBinningVisitor {
                 Geometry geometry = (Geometry) featture.getDefaultGeometry();
                 if (transformer != null) {
                     // project source geometry to targetCRS
-                    geometry = transform(transformer, geometry);
+                    geometry = visitors[0].transform(transformer, geometry);
                 }
 
-                this.visit(geometry, value);
+                Coordinate coordinate = geometry.getCentroid().getCoordinate();
+                for (AbstractBinningVisitor visitor : visitors) {
+                    visitor.visit(coordinate, value);
+                }
             }
         } finally {
             featureIter.close();
         }
     }
 
-    public abstract Iterator<Bin> getBins(GeometryCoordinateSequenceTransformer transformer);
+    /**
+     * Returns the x offset of the bin from the bin template.
+     */
+    protected abstract double getOffsetX(int row, int col);
+
+    /**
+     * Returns the y offset of the bin from the bin template.
+     */
+    protected abstract double getOffsetY(int row, int col);
+
+    protected void addValue(int row, int col, double value) {
+        gridValues.add(row, col, value);
+    }
+
+    /**
+     * Returns the bins ordered by row and then by column: the bins which received a value if onlyValidGrid is true, otherwise all bins of
+     * the grid.
+     */
+    public Iterator<Bin> getBins(final GeometryCoordinateSequenceTransformer transformer) {
+        final boolean onlyValid = getOnlyValidGrid();
+        final long[] keys = onlyValid ? gridValues.getSortedKeys() : null;
+        final long count = onlyValid ? keys.length : (long) rows * columns;
+
+        return new Iterator<Bin>() {
+            int featureID = 0;
+
+            long index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Bin next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("hasNext() returned false!");
+                }
+
+                int row, col;
+                if (onlyValid) {
+                    row = BinGrid.row(keys[(int) index]);
+                    col = BinGrid.col(keys[(int) index]);
+                } else {
+                    row = (int) (index / columns);
+                    col = (int) (index % columns);
+                }
+                index++;
+
+                Geometry grid = (Geometry) binTemplate.copy();
+                grid.apply(new CoordinateTranslateFilter(getOffsetX(row, col), getOffsetY(row,
+                        col)));
+
+                if (transformer != null) {
+                    // reproject grid geometry to sourceCRS
+                    grid = transform(transformer, grid);
+                }
+
+                return new Bin(featureID++, grid, gridValues.get(row, col));
+            }
+
+            @Override
+            public void remove() {
+                // do nothing
+            }
+        };
+    }
 
     public Boolean getOnlyValidGrid() {
         return onlyValidGrid;
@@ -16,14 +16,24 @@
  */
 package org.geotools.process.spatialstatistics.pattern;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
+import org.geotools.process.ProcessException;
+import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.operations.GeneralOperation;
+import org.geotools.process.spatialstatistics.pattern.AbstractBinningVisitor.Bin;
+import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -44,6 +54,8 @@ public abstract class BinningOperation extends GeneralOperation {
 
     protected static final String AGG_FIELD = "val";
 
+    protected static final String SIZE_FIELD = "binsize";
+
     protected static int quadrantSegments = 16;
 
     private Boolean onlyValidGrid = Boolean.TRUE;
@@ -56,6 +68,30 @@ public abstract class BinningOperation extends GeneralOperation {
         this.onlyValidGrid = onlyValidGrid;
     }
 
+    /**
+     * Parses a comma separated list of bin sizes, returns null if sizes is null or empty.
+     */
+    public static double[] parseSizes(String sizes) {
+        if (sizes == null || sizes.trim().length() == 0) {
+            return null;
+        }
+
+        String[] splits = sizes.split(",");
+        double[] binSizes = new double[splits.length];
+        for (int k = 0; k < splits.length; k++) {
+            try {
+                binSizes[k] = Double.parseDouble(splits[k].trim());
+            } catch (NumberFormatException nfe) {
+                throw new ProcessException("Invalid bin size: " + splits[k]);
+            }
+
+            if (binSizes[k] <= 0) {
+                throw new ProcessException("Bin sizes must be greater than 0: " + splits[k]);
+            }
+        }
+        return binSizes;
+    }
+
     protected MathTransform findMathTransform(CoordinateReferenceSystem sourceCRS,
             CoordinateReferenceSystem targetCRS, boolean lenient) {
         if (targetCRS == null || CRS.equalsIgnoreMetadata(sourceCRS, targetCRS)) {
@@ -77,4 +113,70 @@ public abstract class BinningOperation extends GeneralOperation {
         }
         return source;
     }
+
+    protected GeometryCoordinateSequenceTransformer createTransformer(MathTransform transform,
+            CoordinateReferenceSystem targetCRS) {
+        if (transform == null) {
+            return null;
+        }
+
+        GeometryCoordinateSequenceTransformer transformer = new GeometryCoordinateSequenceTransformer();
+        transformer.setMathTransform(transform);
+        transformer.setCoordinateReferenceSystem(targetCRS);
+        return transformer;
+    }
+
+    /**
+     * Writes the bins of all visitors into one feature collection. If sizes is not null, the bin size of each visitor is written to the
+     * binsize field.
+     */
+    protected SimpleFeatureCollection writeBins(String typeName,
+            CoordinateReferenceSystem sourceCRS, CoordinateReferenceSystem targetCRS,
+            MathTransform transform, AbstractBinningVisitor[] visitors, double[] sizes)
+            throws IOException {
+        // create feature type
+        SimpleFeatureType schema = FeatureTypes.getDefaultType(typeName, Polygon.class, sourceCRS);
+        schema = FeatureTypes.add(schema, UID, Integer.class, 19);
+        schema = FeatureTypes.add(schema, AGG_FIELD, Double.class, 38);
+        if (sizes != null) {
+            schema = FeatureTypes.add(schema, SIZE_FIELD, Double.class, 38);
+        }
+
+        // write features
+        IFeatureInserter featureWriter = getFeatureWriter(schema);
+        try {
+            GeometryCoordinateSequenceTransformer transformer = null;
+            if (transform != null) {
+                transformer = createTransformer(transform.inverse(), sourceCRS);
+            }
+
+            int featureID = 0;
+            for (int index = 0; index < visitors.length; index++) {
+                Iterator<Bin> iter = visitors[index].getBins(transformer);
+                while (iter.hasNext()) {
+                    Bin bin = iter.next();
+
+                    Geometry grid = bin.geometry;
+                    grid.setUserData(targetCRS);
+
+                    // create feature and set geometry
+                    SimpleFeature newFeature = featureWriter.buildFeature();
+                    newFeature.setAttribute(UID, featureID++);
+                    newFeature.setAttribute(AGG_FIELD, bin.value);
+                    if (sizes != null) {
+                        newFeature.setAttribute(SIZE_FIELD, sizes[index]);
+                    }
+                    newFeature.setDefaultGeometry(grid);
+
+                    featureWriter.write(newFeature);
+                }
+            }
+        } catch (Exception e) {
+            featureWriter.rollback(e);
+        } finally {
+            featureWriter.close();
+        }
+
+        return featureWriter.getFeatureCollection();
+    }
 }
@@ -17,20 +17,12 @@
 package org.geotools.process.spatialstatistics.pattern;
 
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
 import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.process.spatialstatistics.core.FeatureTypes;
-import org.geotools.process.spatialstatistics.pattern.AbstractBinningVisitor.Bin;
-import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.util.logging.Logging;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.Polygon;
-import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.filter.expression.Expression;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -80,52 +72,15 @@ public class CircularBinningOperation extends BinningOperation {
         CoordinateReferenceSystem targetCRS = bbox.getCoordinateReferenceSystem();
         MathTransform transform = findMathTransform(sourceCRS, targetCRS, true);
 
-        GeometryCoordinateSequenceTransformer transformer = null;
-        if (transform != null) {
-            transformer = new GeometryCoordinateSequenceTransformer();
-            transformer.setMathTransform(transform);
-            transformer.setCoordinateReferenceSystem(targetCRS);
-        }
+        GeometryCoordinateSequenceTransformer transformer = createTransformer(transform,
+                targetCRS);
 
         // calculate
         CircularBinningVisitor visitor = new CircularBinningVisitor(bbox, radius);
         visitor.setOnlyValidGrid(getOnlyValidGrid());
         visitor.visit(features, weight, transformer);
 
-        // create feature type
-        SimpleFeatureType schema = FeatureTypes.getDefaultType(TYPE_NAME, Polygon.class, sourceCRS);
-        schema = FeatureTypes.add(schema, UID, Integer.class, 19);
-        schema = FeatureTypes.add(schema, AGG_FIELD, Double.class, 38);
-
-        // write features
-        IFeatureInserter featureWriter = getFeatureWriter(schema);
-        try {
-            if (transformer != null) {
-                transformer.setMathTransform(transform.inverse());
-                transformer.setCoordinateReferenceSystem(sourceCRS);
-            }
-
-            Iterator<Bin> iter = visitor.getBins(transformer);
-            while (iter.hasNext()) {
-                Bin bin = iter.next();
-
-                Geometry grid = bin.geometry;
-                grid.setUserData(targetCRS);
-
-                // create feature and set geometry
-                SimpleFeature newFeature = featureWriter.buildFeature();
-                newFeature.setAttribute(UID, bin.featureID);
-                newFeature.setAttribute(AGG_FIELD, bin.value);
-                newFeature.setDefaultGeometry(grid);
-
-                featureWriter.write(newFeature);
-            }
-        } catch (Exception e) {
-            featureWriter.rollback(e);
-        } finally {
-            featureWriter.close();
-        }
-
-        return featureWriter.getFeatureCollection();
+        return writeBins(TYPE_NAME, sourceCRS, targetCRS, transform,
+                new AbstractBinningVisitor[] { visitor }, null);
     }
 }
@@ -16,16 +16,11 @@
  */
 package org.geotools.process.spatialstatistics.pattern;
 
-import java.util.Iterator;
-import java.util.NoSuchElementException;
 import java.util.logging.Logger;
 
-import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
 import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.process.spatialstatistics.util.CoordinateTranslateFilter;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -72,8 +67,6 @@ public class CircularBinningVisitor extends AbstractBinningVisitor {
         this.minX = finalBBox.getMinX();
         this.minY = finalBBox.getMinY();
 
-        this.gridValues = new Double[rows][columns];
-
         Point center = gf.createPoint(new Coordinate(minX + radius, minY + radius));
         this.binTemplate = center.buffer(radius, quadrantSegments);
     }
@@ -87,94 +80,16 @@ public class CircularBinningVisitor extends AbstractBinningVisitor {
             return;
         }
 
-        Double preVal = gridValues[row][col];
-        gridValues[row][col] = preVal == null ? value : preVal + value;
-
-        if (getOnlyValidGrid()) {
-            minCol = Math.min(col, minCol);
-            maxCol = Math.max(col, maxCol);
-            minRow = Math.min(row, minRow);
-            maxRow = Math.max(row, maxRow);
-        }
+        addValue(row, col, value);
     }
 
     @Override
-    public Iterator<Bin> getBins(final GeometryCoordinateSequenceTransformer transformer) {
-        if (!getOnlyValidGrid()) {
-            minCol = 0;
-            maxCol = columns;
-            minRow = 0;
-            maxRow = rows;
-        }
+    protected double getOffsetX(int row, int col) {
+        return col * diameter;
+    }
 
-        final int rowLimit = getOnlyValidGrid() ? maxRow + 1 : maxRow;
-        final int colLimit = getOnlyValidGrid() ? maxCol + 1 : maxCol;
-
-        return new Iterator<RectangularBinningVisitor.Bin>() {
-            int featureID = 0;
-
-            int row = minRow;
-
-            int col = minCol;
-
-            double ypos = minRow * diameter;
-
-            double xpos = minCol * diameter;
-
-            private void resetIndexes() {
-                if (col == colLimit) {
-                    xpos = minCol * diameter;
-                    col = minCol;
-
-                    row++;
-                    ypos += diameter;
-                }
-            }
-
-            @Override
-            public boolean hasNext() {
-                return row < rowLimit && col < colLimit;
-            }
-
-            @Override
-            public Bin next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException("hasNext() returned false!");
-                }
-
-                // Loop through the array: rows
-                while (row < rowLimit) {
-                    // Loop through the array: columns
-                    while (col < colLimit) {
-                        Double value = gridValues[row][col];
-                        col++;
-
-                        if (value == null && getOnlyValidGrid()) {
-                            xpos += diameter;
-                            resetIndexes();
-                        } else {
-                            Geometry grid = (Geometry) binTemplate.copy();
-                            grid.apply(new CoordinateTranslateFilter(xpos, ypos));
-
-                            if (transformer != null) {
-                                // reproject grid geometry to sourceCRS
-                                grid = transform(transformer, grid);
-                            }
-
-                            xpos += diameter;
-                            resetIndexes();
-
-                            return new Bin(featureID++, grid, value);
-                        }
-                    }
-                }
-                return null;
-            }
-
-            @Override
-            public void remove() {
-                // do nothing
-            }
-        };
+    @Override
+    protected double getOffsetY(int row, int col) {
+        return row * diameter;
     }
 }
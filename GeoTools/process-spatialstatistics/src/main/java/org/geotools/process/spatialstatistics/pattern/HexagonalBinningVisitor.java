@@ -16,13 +16,9 @@
  */
 package org.geotools.process.spatialstatistics.pattern;
 
-import java.util.Iterator;
-import java.util.NoSuchElementException;
 import java.util.logging.Logger;
 
-import org.geotools.geometry.jts.GeometryCoordinateSequenceTransformer;
 import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.process.spatialstatistics.util.CoordinateTranslateFilter;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
@@ -80,8 +76,6 @@ public class HexagonalBinningVisitor extends AbstractBinningVisitor {
         columns = columns * xoffset < extent.getWidth() ? columns + 1 : columns;
         rows = rows * yoffset < extent.getHeight() ? rows + 1 : rows;
 
-        this.gridValues = new Double[rows][columns];
-
         this.binTemplate = this.createHexagon(minX, minY, size);
     }
 
@@ -145,15 +139,7 @@ public class HexagonalBinningVisitor extends AbstractBinningVisitor {
             return;
         }
 
-        Double preVal = gridValues[row][col];
-        gridValues[row][col] = preVal == null ? value : preVal + value;
-
-        if (getOnlyValidGrid()) {
-            minCol = Math.min(col, minCol);
-            maxCol = Math.max(col, maxCol);
-            minRow = Math.min(row, minRow);
-            maxRow = Math.max(row, maxRow);
-        }
+        addValue(row, col, value);
     }
 
     private Coordinate createCenter(double x, double y) {
@@ -161,86 +147,13 @@ public class HexagonalBinningVisitor extends AbstractBinningVisitor {
     }
 
     @Override
-    public Iterator<Bin> getBins(final GeometryCoordinateSequenceTransformer transformer) {
-        if (!getOnlyValidGrid()) {
-            minCol = 0;
-            maxCol = columns;
-            minRow = 0;
-            maxRow = rows;
-        }
-
-        final int rowLimit = getOnlyValidGrid() ? maxRow + 1 : maxRow;
-        final int colLimit = getOnlyValidGrid() ? maxCol + 1 : maxCol;
-
-        return new Iterator<RectangularBinningVisitor.Bin>() {
-            int featureID = 0;
-
-            int row = minRow;
-
-            int col = minCol;
-
-            double ypos = minRow * yoffset;
-
-            double xpos = (row % 2) == 1 ? (minCol * xoffset) + half_xoffset : minCol * xoffset;
-
-            private void resetIndexes() {
-                if (col == colLimit) {
-                    row++;
-                    ypos += yoffset;
-
-                    xpos = minCol * xoffset;
-                    col = minCol;
-                    if ((row % 2) == 1) {
-                        xpos += half_xoffset;
-                    }
-                }
-            }
-
-            @Override
-            public boolean hasNext() {
-                return row < rowLimit && col < colLimit;
-            }
-
-            @Override
-            public Bin next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException("hasNext() returned false!");
-                }
-
-                // Loop through the array: rows
-                while (row < rowLimit) {
-                    // Loop through the array: columns
-                    while (col < colLimit) {
-                        Double value = gridValues[row][col];
-                        col++;
-
-                        if (value == null && getOnlyValidGrid()) {
-                            xpos += xoffset;
-                            resetIndexes();
-                        } else {
-                            Geometry grid = (Geometry) binTemplate.copy();
-                            grid.apply(new CoordinateTranslateFilter(xpos, ypos));
-
-                            if (transformer != null) {
-                                // reproject grid geometry to sourceCRS
-                                grid = transform(transformer, grid);
-                            }
-
-                            xpos += xoffset;
-                            resetIndexes();
-
-                            return new Bin(featureID++, grid, value);
-                        }
-                    }
-                }
-                return null;
-            }
+    protected double getOffsetX(int row, int col) {
+        return (row % 2) == 1 ? (col * xoffset) + half_xoffset : col * xoffset;
+    }
 
-            @Override
-            public void remove() {
-                // do nothing
-            }
-        };
+    @Override
+    protected double getOffsetY(int row, int col) {
+        return row * yoffset;
     }
 
     private Geometry createHexagon(double minX, double minY, double size) {
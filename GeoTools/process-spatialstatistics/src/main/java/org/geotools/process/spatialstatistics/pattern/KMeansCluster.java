@@ -17,14 +17,15 @@
 package org.geotools.process.spatialstatistics.pattern;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
@@ -32,9 +33,16 @@ import org.opengis.feature.simple.SimpleFeature;
 
 /**
  * k-means clustering
+ * <p>
+ * The centroids are seeded with k-means++ and refined by Lloyd iterations with Hamerly's distance bounds, which skip most point-centroid distance
+ * computations once the centroids settle. The assignment step runs over primitive coordinate arrays in parallel chunks. If a batch size is given,
+ * the centroids are refined by mini-batch k-means instead and every point is assigned once at the end.
  * 
  * @author Minpa Lee, MangoSystem
  * @reference http://code.google.com/p/hdict/source/browse/src/com/google/io/kmeans/DalvikClusterer.java
+ * @reference Arthur, D. and Vassilvitskii, S. (2007) k-means++: the advantages of careful seeding.
+ * @reference Hamerly, G. (2010) Making k-means even faster.
+ * @reference Sculley, D. (2010) Web-scale k-means clustering.
  * @source $URL$
  */
 public class KMeansCluster implements Cluster {
@@ -42,12 +50,35 @@ public class KMeansCluster implements Cluster {
 
     static final int MAX_LOOP_COUNT = 200;
 
+    static final int CHUNK_SIZE = 4096;
+
     final Random random = new Random(System.currentTimeMillis());
 
     private PointEvent[] points = null;
 
     private ReferencedEnvelope extent = null;
 
+    private int batchSize = 0;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    // primitive copies of the point coordinates
+    private double[] xs;
+
+    private double[] ys;
+
+    // centroids
+    private double[] cx;
+
+    private double[] cy;
+
+    // Hamerly bounds: assigned centroid, distance upper bound and lower bound of the second closest
+    private int[] assignment;
+
+    private double[] upper;
+
+    private double[] lower;
+
     public PointEvent[] getPoints() {
         return this.points;
     }
@@ -61,112 +92,337 @@ public class KMeansCluster implements Cluster {
         this.extent = extent;
     }
 
-    private PointEvent getRandomPoint() {
-        PointEvent randomPoint = new PointEvent();
-
-        while (true) {
-            double x = extent.getMinX() + random.nextInt((int) extent.getWidth());
-            double y = extent.getMinY() + random.nextInt((int) extent.getHeight());
-            if (extent.contains(x, y)) {
-                randomPoint.x = x;
-                randomPoint.y = y;
-                break;
-            }
-        }
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize number of points sampled per mini-batch iteration, 0 to use all points in each iteration
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
 
-        return randomPoint;
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    private PointEvent getRandomPoint() {
+        double x = extent.getMinX() + random.nextDouble() * extent.getWidth();
+        double y = extent.getMinY() + random.nextDouble() * extent.getHeight();
+        return new PointEvent(x, y);
     }
 
     @Override
     public PointEvent[] cluster(int numClusters) {
-        boolean converged = false;
-        boolean dirty;
-        double distance;
-        double curMinDistance;
-        int loopCount = 0;
-        PointEvent point;
-
-        // randomly pick some points to be the centroids of the groups, for the first pass
+        final int n = points.length;
         PointEvent[] means = new PointEvent[numClusters];
-        for (int i = 0; i < numClusters; ++i) {
-            means[i] = getRandomPoint();
-            means[i].cluster = i;
+        if (n == 0 || numClusters <= 0) {
+            for (int j = 0; j < numClusters; ++j) {
+                means[j] = getRandomPoint();
+                means[j].cluster = j;
+            }
+            return means;
         }
 
-        // initialize data
-        double[] distances = new double[points.length];
-        Arrays.fill(distances, Double.MAX_VALUE);
+        xs = new double[n];
+        ys = new double[n];
+        for (int i = 0; i < n; ++i) {
+            xs[i] = points[i].x;
+            ys[i] = points[i].y;
+        }
 
+        cx = new double[numClusters];
+        cy = new double[numClusters];
+        assignment = new int[n];
+        upper = new double[n];
+        lower = new double[n];
+
+        seedCentroids(numClusters);
+
+        if (batchSize > 0 && batchSize < n) {
+            miniBatch(numClusters);
+            runAssignment(numClusters, null, true);
+        } else {
+            lloyd(numClusters);
+        }
+
+        for (int i = 0; i < n; ++i) {
+            points[i].cluster = assignment[i];
+        }
+
+        for (int j = 0; j < numClusters; ++j) {
+            means[j] = new PointEvent(cx[j], cy[j]);
+            means[j].cluster = j;
+        }
+
+        xs = ys = upper = lower = null;
+        return means;
+    }
+
+    /**
+     * k-means++: each next centroid is a point drawn with probability proportional to its squared distance to the nearest centroid.
+     */
+    private void seedCentroids(int numClusters) {
+        final int n = xs.length;
+        double[] d2 = new double[n];
+
+        int first = random.nextInt(n);
+        cx[0] = xs[first];
+        cy[0] = ys[first];
+
+        double total = 0;
+        for (int i = 0; i < n; ++i) {
+            d2[i] = squaredDistance(xs[i], ys[i], cx[0], cy[0]);
+            total += d2[i];
+        }
+
+        for (int j = 1; j < numClusters; ++j) {
+            int pick = n - 1;
+            if (total > 0) {
+                double target = random.nextDouble() * total;
+                for (int i = 0; i < n; ++i) {
+                    target -= d2[i];
+                    if (target <= 0) {
+                        pick = i;
+                        break;
+                    }
+                }
+            } else {
+                // fewer distinct points than clusters
+                pick = random.nextInt(n);
+            }
+
+            cx[j] = xs[pick];
+            cy[j] = ys[pick];
+
+            total = 0;
+            for (int i = 0; i < n; ++i) {
+                d2[i] = Math.min(d2[i], squaredDistance(xs[i], ys[i], cx[j], cy[j]));
+                total += d2[i];
+            }
+        }
+    }
+
+    private void lloyd(int numClusters) {
+        double[] halfSeparation = new double[numClusters];
         double[] sumX = new double[numClusters];
         double[] sumY = new double[numClusters];
         int[] clusterSizes = new int[numClusters];
 
-        // main loop
-        while (!converged) {
-            dirty = false;
-
-            // compute which group each point is closest to
-            for (int i = 0; i < points.length; ++i) {
-                point = points[i];
-                curMinDistance = distances[i];
-                for (PointEvent mean : means) {
-                    distance = computeDistance(point, mean);
-                    if (distance < curMinDistance) {
-                        dirty = true;
-                        distances[i] = distance;
-                        curMinDistance = distance;
-                        point.cluster = mean.cluster;
+        // the first pass computes all distances
+        runAssignment(numClusters, null, true);
+
+        for (int loopCount = 0; loopCount < MAX_LOOP_COUNT; loopCount++) {
+            // compute the new centroids of the groups
+            for (int j = 0; j < numClusters; ++j) {
+                sumX[j] = sumY[j] = clusterSizes[j] = 0;
+            }
+            for (int i = 0; i < xs.length; ++i) {
+                final int j = assignment[i];
+                sumX[j] += xs[i];
+                sumY[j] += ys[i];
+                clusterSizes[j]++;
+            }
+
+            double maxMove = 0;
+            double[] moves = new double[numClusters];
+            for (int j = 0; j < numClusters; ++j) {
+                if (clusterSizes[j] == 0) {
+                    continue; // keep the empty centroid in place
+                }
+                double x = sumX[j] / clusterSizes[j];
+                double y = sumY[j] / clusterSizes[j];
+                moves[j] = Math.sqrt(squaredDistance(x, y, cx[j], cy[j]));
+                maxMove = Math.max(maxMove, moves[j]);
+                cx[j] = x;
+                cy[j] = y;
+            }
+
+            if (maxMove == 0) {
+                break;
+            }
+
+            // update bounds by the centroid movements
+            for (int i = 0; i < xs.length; ++i) {
+                upper[i] += moves[assignment[i]];
+                lower[i] -= maxMove;
+            }
+
+            // half the distance from each centroid to its closest other centroid
+            for (int j = 0; j < numClusters; ++j) {
+                double min = Double.MAX_VALUE;
+                for (int o = 0; o < numClusters; ++o) {
+                    if (o != j) {
+                        min = Math.min(min, squaredDistance(cx[j], cy[j], cx[o], cy[o]));
                     }
                 }
+                halfSeparation[j] = numClusters > 1 ? Math.sqrt(min) / 2.0 : Double.MAX_VALUE;
+            }
+
+            if (runAssignment(numClusters, halfSeparation, false) == 0) {
+                break; // the greedy algorithm has converged
+            }
+        }
+    }
+
+    /**
+     * Mini-batch k-means: each centroid moves toward the sampled points with a per-centroid learning rate of 1 / (points seen).
+     */
+    private void miniBatch(int numClusters) {
+        final int n = xs.length;
+        int[] seen = new int[numClusters];
+
+        for (int loopCount = 0; loopCount < MAX_LOOP_COUNT; loopCount++) {
+            double maxMove = 0;
+            for (int b = 0; b < batchSize; ++b) {
+                final int i = random.nextInt(n);
+                final int j = nearest(xs[i], ys[i], numClusters);
+
+                seen[j]++;
+                final double eta = 1.0 / seen[j];
+                final double x = cx[j] + eta * (xs[i] - cx[j]);
+                final double y = cy[j] + eta * (ys[i] - cy[j]);
+                maxMove = Math.max(maxMove, squaredDistance(x, y, cx[j], cy[j]));
+                cx[j] = x;
+                cy[j] = y;
             }
 
-            // if we did no work, break early (greedy algorithm has converged)
-            if (!dirty) {
-                converged = true;
+            if (maxMove == 0) {
                 break;
             }
+        }
+    }
 
-            // compute the new centroids of the groups, since contents have changed
-            for (int i = 0; i < numClusters; ++i) {
-                sumX[i] = sumY[i] = clusterSizes[i] = 0;
+    private int nearest(double x, double y, int numClusters) {
+        int best = 0;
+        double bestDistance = Double.MAX_VALUE;
+        for (int j = 0; j < numClusters; ++j) {
+            double distance = squaredDistance(x, y, cx[j], cy[j]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = j;
             }
+        }
+        return best;
+    }
+
+    /**
+     * Assigns the points to their closest centroids in parallel chunks and returns the number of changed assignments.
+     */
+    private int runAssignment(int numClusters, double[] halfSeparation, boolean initial) {
+        final int chunkCount = (xs.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final AtomicInteger nextChunk = new AtomicInteger(0);
+        final int workers = Math.max(1, Math.min(threadCount, chunkCount));
 
-            for (int i = 0; i < points.length; ++i) {
-                point = points[i];
-                sumX[point.cluster] += point.x;
-                sumY[point.cluster] += point.y;
-                clusterSizes[point.cluster] += 1;
+        List<PartialAssignment> tasks = new ArrayList<PartialAssignment>();
+        for (int t = 0; t < workers; t++) {
+            tasks.add(new PartialAssignment(numClusters, halfSeparation, initial, chunkCount,
+                    nextChunk));
+        }
+
+        ParallelExecutor.execute(tasks);
+
+        int changed = 0;
+        for (PartialAssignment task : tasks) {
+            changed += task.changed;
+        }
+        return changed;
+    }
+
+    final class PartialAssignment implements Runnable {
+        private final int numClusters;
+
+        private final double[] halfSeparation;
+
+        private final boolean initial;
+
+        private final int chunkCount;
+
+        private final AtomicInteger nextChunk;
+
+        int changed = 0;
+
+        public PartialAssignment(int numClusters, double[] halfSeparation, boolean initial,
+                int chunkCount, AtomicInteger nextChunk) {
+            this.numClusters = numClusters;
+            this.halfSeparation = halfSeparation;
+            this.initial = initial;
+            this.chunkCount = chunkCount;
+            this.nextChunk = nextChunk;
+        }
+
+        public void run() {
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                int end = Math.min(xs.length, (chunk + 1) * CHUNK_SIZE);
+                for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                    if (initial) {
+                        assign(i);
+                        continue;
+                    }
+
+                    // skip the point if its centroid is provably still the closest
+                    final int current = assignment[i];
+                    double bound = Math.max(halfSeparation[current], lower[i]);
+                    if (upper[i] <= bound) {
+                        continue;
+                    }
+
+                    // tighten the upper bound and test again
+                    upper[i] = Math.sqrt(squaredDistance(xs[i], ys[i], cx[current], cy[current]));
+                    if (upper[i] <= bound) {
+                        continue;
+                    }
+
+                    assign(i);
+                    if (assignment[i] != current) {
+                        changed++;
+                    }
+                }
             }
+        }
 
-            for (int i = 0; i < numClusters; ++i) {
-                try {
-                    means[i].x = sumX[i] / clusterSizes[i];
-                    means[i].y = sumY[i] / clusterSizes[i];
-                } catch (ArithmeticException e) {
-                    // means a Divide-By-Zero error, b/c no points were associated with this
-                    // cluster.
-                    // rare, so reset the cluster to have a new random center
-                    PointEvent p = getRandomPoint();
-                    means[i].x = p.x;
-                    means[i].y = p.y;
+        private void assign(int i) {
+            int best = 0;
+            double first = Double.MAX_VALUE;
+            double second = Double.MAX_VALUE;
+            for (int j = 0; j < numClusters; ++j) {
+                double distance = squaredDistance(xs[i], ys[i], cx[j], cy[j]);
+                if (distance < first) {
+                    second = first;
+                    first = distance;
+                    best = j;
+                } else if (distance < second) {
+                    second = distance;
                 }
             }
 
-            // bail out after at most MAX_LOOP_COUNT passes
-            loopCount++;
-            converged = converged || (loopCount > MAX_LOOP_COUNT);
-        }
+            if (initial && assignment[i] != best) {
+                changed++;
+            }
 
-        return means;
+            assignment[i] = best;
+            upper[i] = Math.sqrt(first);
+            lower[i] = second == Double.MAX_VALUE ? Double.MAX_VALUE : Math.sqrt(second);
+        }
     }
 
     /**
-     * Computes the Cartesian distance between two points.
+     * Computes the squared Cartesian distance between two points.
      */
-    private double computeDistance(PointEvent a, PointEvent b) {
-        double dx = a.x - b.x;
-        double dy = a.y - b.y;
-        return Math.sqrt((dx * dx) + (dy * dy));
+    private static double squaredDistance(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return (dx * dx) + (dy * dy);
     }
 
     private void loadPoints(SimpleFeatureCollection pointFeatures, String weightField) {
@@ -50,9 +50,23 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 public class KMeansClusterOperation extends GeneralOperation {
     protected static final Logger LOGGER = Logging.getLogger(KMeansClusterOperation.class);
 
+    private int batchSize = 0;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize number of points per mini-batch iteration, 0 for full k-means
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public SimpleFeatureCollection execute(SimpleFeatureCollection features, String targetField,
             int numClusters) throws IOException {
         KMeansCluster cluster = new KMeansCluster(features);
+        cluster.setBatchSize(batchSize);
         cluster.cluster(numClusters);
         PointEvent[] originPoints = cluster.getPoints();
 
@@ -81,6 +95,7 @@ public class KMeansClusterOperation extends GeneralOperation {
     public SimpleFeatureCollection executeAsCircle(SimpleFeatureCollection features,
             String targetField, int numClusters) throws IOException {
         KMeansCluster cluster = new KMeansCluster(features);
+        cluster.setBatchSize(batchSize);
         cluster.cluster(numClusters);
         PointEvent[] originPoints = cluster.getPoints();
 
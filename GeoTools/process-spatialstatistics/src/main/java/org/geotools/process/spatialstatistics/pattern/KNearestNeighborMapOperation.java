@@ -17,28 +17,18 @@
 package org.geotools.process.spatialstatistics.pattern;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
-import org.geotools.process.spatialstatistics.core.KnnSearch;
-import org.geotools.process.spatialstatistics.core.SpatialEvent;
 import org.geotools.process.spatialstatistics.operations.GeneralOperation;
 import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.algorithm.ConvexHull;
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.CoordinateArrays;
-import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
-import org.locationtech.jts.index.strtree.ItemBoundable;
-import org.locationtech.jts.index.strtree.ItemDistance;
-import org.locationtech.jts.index.strtree.STRtree;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -59,9 +49,10 @@ public class KNearestNeighborMapOperation extends GeneralOperation {
 
     public SimpleFeatureCollection execute(SimpleFeatureCollection features, int neighbor,
             boolean convexHull) throws IOException {
-        // build spatial index
-        STRtree spatialIndex = buildSpatialIndex(features);
-        List<Coordinate> coordinates = new ArrayList<Coordinate>();
+        // read the points once and find all neighbors
+        PointPattern pattern = new PointPattern(features);
+        featureCount = pattern.size();
+        final int[] neighbors = pattern.getNearestNeighbors(neighbor);
 
         // create schema
         String typeName = features.getSchema().getTypeName();
@@ -77,36 +68,19 @@ public class KNearestNeighborMapOperation extends GeneralOperation {
 
         // build feature
         IFeatureInserter featureWriter = getFeatureWriter(schema);
-        SimpleFeatureIterator featureIter = features.features();
         try {
-            KnnSearch knnSearch = new KnnSearch(spatialIndex);
-            while (featureIter.hasNext()) {
-                SimpleFeature feature = featureIter.next();
-                Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                Coordinate coordinate = geometry.getCentroid().getCoordinate();
-                if (convexHull) {
-                    coordinates.add(coordinate);
-                }
-
-                SpatialEvent start = new SpatialEvent(feature.getID(), coordinate);
-                Object[] knns = knnSearch.kNearestNeighbour(new Envelope(coordinate), start,
-                        new ItemDistance() {
-                            @Override
-                            public double distance(ItemBoundable item1, ItemBoundable item2) {
-                                SpatialEvent s1 = (SpatialEvent) item1.getItem();
-                                SpatialEvent s2 = (SpatialEvent) item2.getItem();
-                                if (s1.id.equals(s2.id)) {
-                                    return Double.MAX_VALUE;
-                                }
-                                return s1.distance(s2);
-                            }
-                        }, neighbor);
+            for (int index = 0; index < featureCount; index++) {
+                Coordinate start = pattern.getCoordinate(index);
 
                 // build line & write feature
-                for (Object object : knns) {
-                    SpatialEvent nearest = (SpatialEvent) object;
+                for (int k = 0; k < neighbor; k++) {
+                    int nearest = neighbors[index * neighbor + k];
+                    if (nearest == -1) {
+                        break;
+                    }
 
-                    Geometry line = createLineString(start, nearest);
+                    Geometry line = gf.createLineString(new Coordinate[] { start,
+                            pattern.getCoordinate(nearest) });
                     double distance = line.getLength();
                     if (distance == 0) {
                         continue;
@@ -114,8 +88,8 @@ public class KNearestNeighborMapOperation extends GeneralOperation {
 
                     SimpleFeature newFeature = featureWriter.buildFeature();
                     newFeature.setDefaultGeometry(line);
-                    newFeature.setAttribute(FIELDS[0], start.id);
-                    newFeature.setAttribute(FIELDS[1], nearest.id);
+                    newFeature.setAttribute(FIELDS[0], pattern.getID(index));
+                    newFeature.setAttribute(FIELDS[1], pattern.getID(nearest));
                     newFeature.setAttribute(FIELDS[2], distance);
                     newFeature.setAttribute(FIELDS[3], "Nearest");
                     featureWriter.write(newFeature);
@@ -124,7 +98,10 @@ public class KNearestNeighborMapOperation extends GeneralOperation {
 
             // finally convexhull
             if (convexHull) {
-                Coordinate[] coords = CoordinateArrays.toCoordinateArray(coordinates);
+                Coordinate[] coords = new Coordinate[featureCount];
+                for (int index = 0; index < featureCount; index++) {
+                    coords[index] = pattern.getCoordinate(index);
+                }
                 ConvexHull cvxBuidler = new ConvexHull(coords, new GeometryFactory());
                 Geometry convexHullGeom = cvxBuidler.getConvexHull();
 
@@ -136,32 +113,9 @@ public class KNearestNeighborMapOperation extends GeneralOperation {
         } catch (Exception e) {
             featureWriter.rollback(e);
         } finally {
-            featureWriter.close(featureIter);
+            featureWriter.close();
         }
 
         return featureWriter.getFeatureCollection();
     }
-
-    private Geometry createLineString(SpatialEvent start, SpatialEvent end) {
-        return gf.createLineString(new Coordinate[] { start.getCoordinate(), end.getCoordinate() });
-    }
-
-    private STRtree buildSpatialIndex(SimpleFeatureCollection features) {
-        STRtree spatialIndex = new STRtree();
-        SimpleFeatureIterator featureIter = features.features();
-        try {
-            while (featureIter.hasNext()) {
-                SimpleFeature feature = featureIter.next();
-                Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                Coordinate centroid = geometry.getCentroid().getCoordinate();
-
-                SpatialEvent event = new SpatialEvent(feature.getID(), centroid);
-                spatialIndex.insert(new Envelope(centroid), event);
-                featureCount++;
-            }
-        } finally {
-            featureIter.close();
-        }
-        return spatialIndex;
-    }
 }
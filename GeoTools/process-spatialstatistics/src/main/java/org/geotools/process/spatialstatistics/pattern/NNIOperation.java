@@ -17,13 +17,10 @@
 package org.geotools.process.spatialstatistics.pattern;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureIterator;
-import org.geotools.process.spatialstatistics.core.DistanceFactory;
 import org.geotools.process.spatialstatistics.core.FormatUtils;
 import org.geotools.process.spatialstatistics.core.SSUtils;
 import org.geotools.process.spatialstatistics.core.SSUtils.StatEnum;
@@ -33,13 +30,8 @@ import org.geotools.process.spatialstatistics.operations.GeneralOperation;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.algorithm.ConvexHull;
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.index.strtree.ItemBoundable;
-import org.locationtech.jts.index.strtree.ItemDistance;
-import org.locationtech.jts.index.strtree.STRtree;
-import org.opengis.feature.simple.SimpleFeature;
 
 /**
  * Calculates a nearest neighbor index based on the average distance from each feature to its nearest neighboring feature.
@@ -51,8 +43,6 @@ import org.opengis.feature.simple.SimpleFeature;
 public class NNIOperation extends GeneralOperation {
     protected static final Logger LOGGER = Logging.getLogger(NNIOperation.class);
 
-    private final DistanceFactory factory = DistanceFactory.newInstance();
-
     private DistanceMethod distanceMethod = DistanceMethod.Euclidean;
 
     private int featureCount = 0;
@@ -86,51 +76,22 @@ public class NNIOperation extends GeneralOperation {
 
     public NearestNeighborResult execute(SimpleFeatureCollection features, double studyArea) {
         typeName = features.getSchema().getTypeName();
-        factory.setDistanceType(distanceMethod);
-
-        // build spatial index
-        final List<SpatialEvent> events = new ArrayList<SpatialEvent>();
-        final STRtree spatialIndex = new STRtree();
-        SimpleFeatureIterator featureIter = features.features();
-        try {
-            while (featureIter.hasNext()) {
-                SimpleFeature feature = featureIter.next();
-                Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                Coordinate centroid = geometry.getCentroid().getCoordinate();
-
-                SpatialEvent event = new SpatialEvent(feature.getID(), centroid);
-                events.add(event);
-                spatialIndex.insert(new Envelope(centroid), event);
-            }
-        } finally {
-            featureIter.close();
-        }
+
+        // read the points once
+        PointPattern pattern = new PointPattern(features);
 
         // calculate area
-        featureCount = events.size();
+        featureCount = pattern.size();
         if (studyArea == 0) {
-            this.studyArea = getConvexHullArea(events);
+            this.studyArea = pattern.getConvexHullArea();
         } else {
             this.studyArea = studyArea;
         }
 
         // calculate nearest neighbor index
         double distanceSum = 0.0;
-        for (SpatialEvent source : events) {
-            SpatialEvent nearest = (SpatialEvent) spatialIndex.nearestNeighbour(new Envelope(
-                    source.coordinate), source, new ItemDistance() {
-                @Override
-                public double distance(ItemBoundable item1, ItemBoundable item2) {
-                    SpatialEvent s1 = (SpatialEvent) item1.getItem();
-                    SpatialEvent s2 = (SpatialEvent) item2.getItem();
-                    if (s1.id.equals(s2.id)) {
-                        return Double.MAX_VALUE;
-                    }
-                    return s1.distance(s2);
-                }
-            });
-
-            distanceSum += factory.getDistance(source, nearest);
+        for (double distance : pattern.getNearestNeighborDistances(distanceMethod)) {
+            distanceSum += distance;
         }
 
         observedMeanDist = distanceSum / featureCount;
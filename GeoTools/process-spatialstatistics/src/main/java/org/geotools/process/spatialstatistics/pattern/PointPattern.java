@@ -0,0 +1,316 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
+import org.geotools.process.spatialstatistics.core.PointKdTree;
+import org.geotools.process.spatialstatistics.core.PointKdTree.Neighbors;
+import org.geotools.process.spatialstatistics.core.SSUtils;
+import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.algorithm.ConvexHull;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Centroids of the features of a point pattern analysis, read once into primitive arrays. <br>
+ * Nearest neighbor, k-nearest neighbor and distance band searches share one {@link PointKdTree} and run on all processors.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class PointPattern {
+    protected static final Logger LOGGER = Logging.getLogger(PointPattern.class);
+
+    private double[] xs = new double[1024];
+
+    private double[] ys = new double[1024];
+
+    private String[] ids = new String[1024];
+
+    private int size = 0;
+
+    // envelope of the geometries, not only of the centroids
+    private Envelope bounds = new Envelope();
+
+    private PointKdTree tree = null;
+
+    public PointPattern(SimpleFeatureCollection features) {
+        SimpleFeatureIterator featureIter = features.features();
+        try {
+            while (featureIter.hasNext()) {
+                SimpleFeature feature = featureIter.next();
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                Coordinate centroid = geometry.getCentroid().getCoordinate();
+
+                if (size == xs.length) {
+                    xs = Arrays.copyOf(xs, size * 2);
+                    ys = Arrays.copyOf(ys, size * 2);
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+
+                xs[size] = centroid.x;
+                ys[size] = centroid.y;
+                ids[size] = feature.getID();
+                size++;
+
+                bounds.expandToInclude(geometry.getEnvelopeInternal());
+            }
+        } finally {
+            featureIter.close();
+        }
+
+        xs = Arrays.copyOf(xs, size);
+        ys = Arrays.copyOf(ys, size);
+        ids = Arrays.copyOf(ids, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    public Coordinate getCoordinate(int index) {
+        return new Coordinate(xs[index], ys[index]);
+    }
+
+    public String getID(int index) {
+        return ids[index];
+    }
+
+    public Envelope getBounds() {
+        return bounds;
+    }
+
+    private synchronized PointKdTree getTree() {
+        if (tree == null) {
+            tree = new PointKdTree(xs, ys);
+        }
+        return tree;
+    }
+
+    public double getConvexHullArea() {
+        Coordinate[] coordinates = new Coordinate[size];
+        for (int k = 0; k < size; k++) {
+            coordinates[k] = getCoordinate(k);
+        }
+
+        ConvexHull cbxBuidler = new ConvexHull(coordinates, new GeometryFactory());
+        return cbxBuidler.getConvexHull().getArea();
+    }
+
+    public double getDistance(int from, int to, DistanceMethod distanceMethod) {
+        if (distanceMethod == DistanceMethod.Manhattan) {
+            return SSUtils.getManhattanDistance(xs[from], ys[from], xs[to], ys[to]);
+        }
+        return SSUtils.getEuclideanDistance(xs[from], ys[from], xs[to], ys[to]);
+    }
+
+    /**
+     * Returns the distance from each point to its nearest other point, 0 if there is no other point. <br>
+     * The nearest point is the Euclidean one, its distance is measured with the distance method.
+     */
+    public double[] getNearestNeighborDistances(final DistanceMethod distanceMethod) {
+        final double[] distances = new double[size];
+        final int[] nearest = getNearestNeighbors(1);
+        for (int index = 0; index < size; index++) {
+            distances[index] = nearest[index] == -1 ? 0d : getDistance(index, nearest[index],
+                    distanceMethod);
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the k nearest other points of each point, ordered by distance: the neighbors of point i are at [i * k, i * k + k), -1 where a
+     * point has fewer than k other points.
+     */
+    public int[] getNearestNeighbors(final int k) {
+        final int[] neighbors = new int[size * k];
+        Arrays.fill(neighbors, -1);
+        if (k <= 0 || size < 2) {
+            return neighbors;
+        }
+
+        final PointKdTree kdTree = getTree();
+        final AtomicInteger next = new AtomicInteger(0);
+        List<PartialSearch> tasks = new ArrayList<PartialSearch>();
+        for (int t = 0; t < getWorkers(); t++) {
+            tasks.add(new PartialSearch(next) {
+                @Override
+                void search(int index, Neighbors found) {
+                    // the point itself is among its k + 1 nearest points
+                    kdTree.search(xs[index], ys[index], k + 1, Double.NaN, found);
+
+                    int[] order = sortByDistance(found);
+                    int count = 0;
+                    for (int i = 0; i < order.length && count < k; i++) {
+                        int neighbor = found.getIndex(order[i]);
+                        if (neighbor != index) {
+                            neighbors[index * k + count++] = neighbor;
+                        }
+                    }
+                }
+            });
+        }
+        ParallelExecutor.execute(tasks);
+
+        return neighbors;
+    }
+
+    /**
+     * Counts, for each distance band, the ordered pairs of distinct points whose Euclidean distance is within the band distance.
+     *
+     * @param distances band distances in increasing order
+     */
+    public long[] getPairCounts(final double[] distances) {
+        final long[] total = new long[distances.length];
+        if (distances.length == 0 || size < 2) {
+            return total;
+        }
+
+        final PointKdTree kdTree = getTree();
+        final AtomicInteger next = new AtomicInteger(0);
+
+        List<PairCounter> tasks = new ArrayList<PairCounter>();
+        for (int t = 0; t < getWorkers(); t++) {
+            tasks.add(new PairCounter(next, kdTree, distances));
+        }
+        ParallelExecutor.execute(tasks);
+
+        // each band also holds the pairs of the smaller bands
+        for (PairCounter task : tasks) {
+            for (int band = 0; band < total.length; band++) {
+                total[band] += task.counts[band];
+            }
+        }
+        for (int band = 1; band < total.length; band++) {
+            total[band] += total[band - 1];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of points in each quadrat of the grid, row by row from the lower left corner of the bounds.
+     */
+    public int[] getQuadratCounts(double cellSize, int columns, int rows) {
+        final double minX = bounds.getMinX();
+        final double minY = bounds.getMinY();
+
+        final int[] quadrats = new int[rows * columns];
+        for (int index = 0; index < size; index++) {
+            int col = (int) Math.floor((xs[index] - minX) / cellSize);
+            int row = (int) Math.floor((ys[index] - minY) / cellSize);
+
+            // points on the upper or right edge of the bounds
+            col = Math.max(0, Math.min(columns - 1, col));
+            row = Math.max(0, Math.min(rows - 1, row));
+            quadrats[col + row * columns]++;
+        }
+        return quadrats;
+    }
+
+    private int[] sortByDistance(Neighbors found) {
+        // insertion sort, k is small
+        int[] order = new int[found.size()];
+        for (int i = 0; i < order.length; i++) {
+            int j = i;
+            while (j > 0 && found.getDistanceSq(order[j - 1]) > found.getDistanceSq(i)) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+        return order;
+    }
+
+    private int getWorkers() {
+        return ParallelExecutor.getWorkers(size, 1024);
+    }
+
+    abstract class PartialSearch implements Runnable {
+        private final AtomicInteger next;
+
+        public PartialSearch(AtomicInteger next) {
+            this.next = next;
+        }
+
+        public void run() {
+            final Neighbors found = new Neighbors();
+            int index;
+            while ((index = next.getAndIncrement()) < size) {
+                search(index, found);
+            }
+        }
+
+        abstract void search(int index, Neighbors found);
+    }
+
+    final class PairCounter extends PartialSearch {
+        private final PointKdTree kdTree;
+
+        private final double[] distances;
+
+        // pairs of the worker whose first band is each band
+        final long[] counts;
+
+        public PairCounter(AtomicInteger next, PointKdTree kdTree, double[] distances) {
+            super(next);
+            this.kdTree = kdTree;
+            this.distances = distances;
+            this.counts = new long[distances.length];
+        }
+
+        @Override
+        void search(int index, Neighbors found) {
+            kdTree.searchRadius(xs[index], ys[index], distances[distances.length - 1], found);
+            for (int i = 0; i < found.size(); i++) {
+                if (found.getIndex(i) == index) {
+                    continue;
+                }
+
+                double distance = Math.sqrt(found.getDistanceSq(i));
+                int band = Arrays.binarySearch(distances, distance);
+                band = band < 0 ? -band - 1 : band;
+                while (band > 0 && distances[band - 1] >= distance) {
+                    band--;
+                }
+                if (band < distances.length) {
+                    counts[band]++;
+                }
+            }
+        }
+    }
+}
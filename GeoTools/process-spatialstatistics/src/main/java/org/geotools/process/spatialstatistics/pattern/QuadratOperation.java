@@ -16,18 +16,12 @@
  */
 package org.geotools.process.spatialstatistics.pattern;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
 import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.process.spatialstatistics.operations.GeneralOperation;
 import org.geotools.util.logging.Logging;
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
-import org.locationtech.jts.geom.Geometry;
-import org.opengis.feature.simple.SimpleFeature;
 
 /**
  * Performs a point pattern analysis using quadrat method.
@@ -49,52 +43,20 @@ public class QuadratOperation extends GeneralOperation {
         QuadratResult result = new QuadratResult(features.getSchema().getTypeName());
 
         // 1. calculate extent and feature count
-        Envelope bounds = null;
-        List<Coordinate> coordinates = new ArrayList<Coordinate>();
-
-        SimpleFeatureIterator featureIter = features.features();
-        try {
-            while (featureIter.hasNext()) {
-                SimpleFeature feature = featureIter.next();
-                Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                coordinates.add(geometry.getCentroid().getCoordinate());
-
-                if (bounds == null) {
-                    bounds = geometry.getEnvelopeInternal();
-                } else {
-                    bounds.expandToInclude(geometry.getEnvelopeInternal());
-                }
-            }
-        } finally {
-            featureIter.close();
-        }
+        PointPattern pattern = new PointPattern(features);
+        Envelope bounds = pattern.getBounds();
 
         // 2. prepare variables
         double area = bounds.getArea();
         if (cellSize == null || cellSize <= 0 || cellSize.isNaN() || cellSize.isInfinite()) {
-            cellSize = Math.sqrt((area * 2) / coordinates.size());
+            cellSize = Math.sqrt((area * 2) / pattern.size());
         }
 
-        double minX = bounds.getMinX();
-        double minY = bounds.getMinY();
-        int columns = (int) Math.ceil(bounds.getWidth() / cellSize);
-        int rows = (int) Math.ceil(bounds.getHeight() / cellSize);
-
-        // 3. calculate grids & count
-        int iQuadratCount[][] = new int[rows][columns];
-        for (Coordinate coordinate : coordinates) {
-            int col = (int) Math.floor((coordinate.x - minX) / cellSize);
-            int row = (int) Math.floor((coordinate.y - minY) / cellSize);
-            iQuadratCount[row][col]++;
-        }
+        int columns = Math.max(1, (int) Math.ceil(bounds.getWidth() / cellSize));
+        int rows = Math.max(1, (int) Math.ceil(bounds.getHeight() / cellSize));
 
-        // 4. builds array
-        final int quadrats[] = new int[rows * columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                quadrats[j + i * columns] = iQuadratCount[i][j];
-            }
-        }
+        // 3. count the points of each quadrat
+        final int quadrats[] = pattern.getQuadratCounts(cellSize, columns, rows);
 
         // 5. calculate statistics
         int quadratCount = quadrats.length;
@@ -131,7 +93,7 @@ public class QuadratOperation extends GeneralOperation {
 
         // finally, build result
         result.setArea(area);
-        result.setFeatureCount(coordinates.size());
+        result.setFeatureCount(pattern.size());
         result.setCellSize(cellSize);
         result.setColumns(columns);
         result.setRows(rows);
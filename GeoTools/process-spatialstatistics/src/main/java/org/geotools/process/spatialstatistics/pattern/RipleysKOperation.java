@@ -0,0 +1,196 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.pattern;
+
+import java.text.DecimalFormat;
+import java.util.logging.Logger;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.process.spatialstatistics.operations.GeneralOperation;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Multi-Distance Spatial Cluster Analysis (Ripley's K Function): determines whether features are clustered or dispersed over a range of
+ * distances. <br>
+ * The K function is reported as its L transformation, L(d) = sqrt(A * sum(k(i, j)) / (PI * n * (n - 1))), whose expected value for a random
+ * pattern is the distance itself. No edge correction is applied.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class RipleysKOperation extends GeneralOperation {
+    protected static final Logger LOGGER = Logging.getLogger(RipleysKOperation.class);
+
+    public RipleysKResult execute(SimpleFeatureCollection features) {
+        return execute(features, 10, 0d, 0d, 0d);
+    }
+
+    /**
+     * @param numberOfBands number of distance bands, 10 if not positive
+     * @param beginningDistance first distance, the increment if not positive
+     * @param increment distance between the bands, if not positive a quarter of the longest side of the extent divided by the number of
+     *        bands
+     * @param studyArea area of the study region, the area of the convex hull if not positive
+     */
+    public RipleysKResult execute(SimpleFeatureCollection features, int numberOfBands,
+            double beginningDistance, double increment, double studyArea) {
+        RipleysKResult result = new RipleysKResult(features.getSchema().getTypeName());
+
+        // read the points once
+        PointPattern pattern = new PointPattern(features);
+        final int featureCount = pattern.size();
+
+        if (numberOfBands <= 0) {
+            numberOfBands = 10;
+        }
+
+        if (increment <= 0 || Double.isNaN(increment) || Double.isInfinite(increment)) {
+            Envelope bounds = pattern.getBounds();
+            increment = Math.max(bounds.getWidth(), bounds.getHeight()) * 0.25 / numberOfBands;
+        }
+
+        if (beginningDistance <= 0 || Double.isNaN(beginningDistance)) {
+            beginningDistance = increment;
+        }
+
+        if (studyArea <= 0 || Double.isNaN(studyArea)) {
+            studyArea = featureCount < 3 ? 0d : pattern.getConvexHullArea();
+        }
+
+        final double[] distances = new double[numberOfBands];
+        for (int band = 0; band < numberOfBands; band++) {
+            distances[band] = beginningDistance + band * increment;
+        }
+
+        // pairs within each distance
+        long[] pairs = pattern.getPairCounts(distances);
+
+        final double[] observed = new double[numberOfBands];
+        final double[] difference = new double[numberOfBands];
+        for (int band = 0; band < numberOfBands; band++) {
+            if (featureCount > 1 && studyArea > 0) {
+                double k = studyArea * pairs[band] / ((double) featureCount * (featureCount - 1));
+                observed[band] = Math.sqrt(k / Math.PI);
+            }
+            difference[band] = observed[band] - distances[band];
+        }
+
+        result.setFeatureCount(featureCount);
+        result.setStudyArea(studyArea);
+        result.setExpectedK(distances);
+        result.setObservedK(observed);
+        result.setDiffK(difference);
+
+        return result;
+    }
+
+    public static final class RipleysKResult {
+
+        String typeName;
+
+        int featureCount = 0;
+
+        double studyArea = 0;
+
+        double[] expectedK;
+
+        double[] observedK;
+
+        double[] diffK;
+
+        public RipleysKResult(String typeName) {
+            this.typeName = typeName;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public void setTypeName(String typeName) {
+            this.typeName = typeName;
+        }
+
+        public int getFeatureCount() {
+            return featureCount;
+        }
+
+        public void setFeatureCount(int featureCount) {
+            this.featureCount = featureCount;
+        }
+
+        public double getStudyArea() {
+            return studyArea;
+        }
+
+        public void setStudyArea(double studyArea) {
+            this.studyArea = studyArea;
+        }
+
+        /**
+         * The distance of each band, which is also the expected L value of a random pattern.
+         */
+        public double[] getExpectedK() {
+            return expectedK;
+        }
+
+        public void setExpectedK(double[] expectedK) {
+            this.expectedK = expectedK;
+        }
+
+        public double[] getObservedK() {
+            return observedK;
+        }
+
+        public void setObservedK(double[] observedK) {
+            this.observedK = observedK;
+        }
+
+        /**
+         * Observed minus expected: positive values indicate clustering, negative values dispersion at that distance.
+         */
+        public double[] getDiffK() {
+            return diffK;
+        }
+
+        public void setDiffK(double[] diffK) {
+            this.diffK = diffK;
+        }
+
+        @Override
+        public String toString() {
+            final String separator = System.getProperty("line.separator");
+            final DecimalFormat df = new DecimalFormat("##.######");
+
+            StringBuffer sb = new StringBuffer();
+            sb.append("|| Multi-Distance Spatial Cluster Analysis Summary").append(separator);
+            sb.append("|| Observed Point Count: ").append(df.format(getFeatureCount()))
+                    .append(separator);
+            sb.append("|| Study Area: ").append(df.format(getStudyArea())).append(separator);
+            sb.append("|| ExpectedK, ObservedK, DiffK").append(separator);
+            for (int band = 0; band < expectedK.length; band++) {
+                sb.append("|| ").append(df.format(expectedK[band])).append(", ");
+                sb.append(df.format(observedK[band])).append(", ");
+                sb.append(df.format(diffK[band])).append(separator);
+            }
+
+            return sb.toString();
+        }
+    }
+
+}
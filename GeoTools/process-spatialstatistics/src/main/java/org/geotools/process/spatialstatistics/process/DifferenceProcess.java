@@ -23,6 +23,7 @@ import org.geotools.process.ProcessException;
 import org.geotools.process.ProcessFactory;
 import org.geotools.process.spatialstatistics.core.Params;
 import org.geotools.process.spatialstatistics.transformation.DifferenceFeatureCollection;
+import org.geotools.process.spatialstatistics.transformation.OverlayIndex;
 import org.geotools.util.logging.Logging;
 import org.opengis.util.ProgressListener;
 
@@ -79,9 +80,16 @@ public class DifferenceProcess extends AbstractStatisticsProcess {
             throw new NullPointerException("inputFeatures, differenceFeatures parameters required");
         }
 
+        Boolean parallel = (Boolean) Params.getValue(input, DifferenceProcessFactory.parallel,
+                DifferenceProcessFactory.parallel.sample);
+
         // start process
+        OverlayIndex differenceIndex = new OverlayIndex(differenceFeatures, inputFeatures
+                .getSchema().getCoordinateReferenceSystem());
+        differenceIndex.setParallel(parallel.booleanValue());
+
         SimpleFeatureCollection resultFc = DataUtilities.simple(new DifferenceFeatureCollection(
-                inputFeatures, differenceFeatures));
+                inputFeatures, differenceIndex));
         // end process
 
         Map<String, Object> resultMap = new HashMap<String, Object>();
@@ -77,11 +77,17 @@ public class DifferenceProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("Difference.differenceFeatures.title"),
             getResource("Difference.differenceFeatures.description"), true, 1, 1, null, null);
 
+    /** parallel */
+    public static final Parameter<Boolean> parallel = new Parameter<Boolean>("parallel",
+            Boolean.class, getResource("Difference.parallel.title"),
+            getResource("Difference.parallel.description"), false, 0, 1, Boolean.FALSE, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
         parameterInfo.put(inputFeatures.key, inputFeatures);
         parameterInfo.put(differenceFeatures.key, differenceFeatures);
+        parameterInfo.put(parallel.key, parallel);
         return parameterInfo;
     }
 
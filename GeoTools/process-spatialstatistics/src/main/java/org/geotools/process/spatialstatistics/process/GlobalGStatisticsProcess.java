@@ -30,6 +30,8 @@ import org.geotools.process.spatialstatistics.autocorrelation.GlobalGStatisticOp
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.FormatUtils;
 import org.geotools.process.spatialstatistics.core.Params;
+import org.geotools.process.spatialstatistics.core.StringHelper;
+import org.geotools.process.spatialstatistics.core.WeightMatrix;
 import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
 import org.geotools.process.spatialstatistics.enumeration.SpatialConcept;
 import org.geotools.process.spatialstatistics.enumeration.StandardizationMethod;
@@ -117,6 +119,8 @@ public class GlobalGStatisticsProcess extends AbstractStatisticsProcess {
                 GlobalGStatisticsProcessFactory.selfNeighbors,
                 GlobalGStatisticsProcessFactory.selfNeighbors.sample);
 
+        String weightsFile = (String) Params.getValue(input, GlobalGStatisticsProcessFactory.weightsFile, null);
+
         // start process
         String typeName = inputFeatures.getSchema().getTypeName();
 
@@ -126,6 +130,15 @@ public class GlobalGStatisticsProcess extends AbstractStatisticsProcess {
         process.setStandardizationType(standardization);
         process.setSelfNeighbors(selfNeighbors);
 
+        // read with WeightsFromFile, otherwise the weights are saved to it
+        if (!StringHelper.isNullOrEmpty(weightsFile)) {
+            try {
+                process.setSpatialWeightsFile(WeightMatrix.resolveWeightsFile(weightsFile));
+            } catch (IllegalArgumentException e) {
+                throw new ProcessException(e.getMessage(), e);
+            }
+        }
+
         // searchDistance
         if (searchDistance > 0 && !Double.isNaN(searchDistance)) {
             process.setDistanceBand(searchDistance);
@@ -117,6 +117,11 @@ public class GlobalGStatisticsProcessFactory extends SpatialStatisticsProcessFac
             getResource("GlobalGStatistics.selfNeighbors.description"), false, 0, 1, Boolean.FALSE,
             null);
 
+    /** weightsFile */
+    public static final Parameter<String> weightsFile = new Parameter<String>("weightsFile",
+            String.class, getResource("GlobalGStatistics.weightsFile.title"),
+            getResource("GlobalGStatistics.weightsFile.description"), false, 0, 1, null, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -127,6 +132,7 @@ public class GlobalGStatisticsProcessFactory extends SpatialStatisticsProcessFac
         parameterInfo.put(standardization.key, standardization);
         parameterInfo.put(searchDistance.key, searchDistance);
         // parameterInfo.put(selfNeighbors.key, selfNeighbors);
+        parameterInfo.put(weightsFile.key, weightsFile);
         return parameterInfo;
     }
 
@@ -28,6 +28,7 @@ import org.geotools.process.Process;
 import org.geotools.process.ProcessException;
 import org.geotools.process.ProcessFactory;
 import org.geotools.process.spatialstatistics.core.Params;
+import org.geotools.process.spatialstatistics.pattern.BinningOperation;
 import org.geotools.process.spatialstatistics.pattern.HexagonalBinningOperation;
 import org.geotools.util.logging.Logging;
 import org.opengis.filter.expression.Expression;
@@ -89,6 +90,7 @@ public class HexagonalBinningProcess extends AbstractStatisticsProcess {
         ReferencedEnvelope bbox = (ReferencedEnvelope) Params.getValue(input,
                 HexagonalBinningProcessFactory.bbox, null);
         Double size = (Double) Params.getValue(input, HexagonalBinningProcessFactory.size, null);
+        String sizes = (String) Params.getValue(input, HexagonalBinningProcessFactory.sizes, null);
         Boolean validGrid = (Boolean) Params.getValue(input,
                 HexagonalBinningProcessFactory.validGrid,
                 HexagonalBinningProcessFactory.validGrid.sample);
@@ -98,7 +100,9 @@ public class HexagonalBinningProcess extends AbstractStatisticsProcess {
             bbox = features.getBounds();
         }
 
-        if (size == null || size <= 0) {
+        double[] binSizes = BinningOperation.parseSizes(sizes);
+
+        if (binSizes == null && (size == null || size <= 0)) {
             size = (Math.min(bbox.getWidth(), bbox.getHeight()) / 250.0d) / 2.0d;
             LOGGER.log(Level.WARNING, "The default width / height is " + size);
         }
@@ -107,7 +111,12 @@ public class HexagonalBinningProcess extends AbstractStatisticsProcess {
         try {
             HexagonalBinningOperation process = new HexagonalBinningOperation();
             process.setOnlyValidGrid(validGrid);
-            resultFc = process.execute(features, weight, bbox, size);
+            if (binSizes == null) {
+                resultFc = process.execute(features, weight, bbox, size);
+            } else {
+                // bins of all sizes in one pass, written with their binsize
+                resultFc = process.execute(features, weight, bbox, binSizes);
+            }
         } catch (IOException e) {
             throw new ProcessException(e);
         }
@@ -117,4 +126,4 @@ public class HexagonalBinningProcess extends AbstractStatisticsProcess {
         resultMap.put(HexagonalBinningProcessFactory.RESULT.key, resultFc);
         return resultMap;
     }
-}
\ No newline at end of file
+}
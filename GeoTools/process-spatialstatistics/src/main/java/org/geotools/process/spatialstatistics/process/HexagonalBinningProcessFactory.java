@@ -47,8 +47,8 @@ public class HexagonalBinningProcessFactory extends SpatialStatisticsProcessFact
     private static final String PROCESS_NAME = "HexagonalBinning";
 
     /*
-     * HexagonalBinning(SimpleFeatureCollection features, Expression weight, ReferencedEnvelope bbox, Double size, Boolean validGrid):
-     * SimpleFeatureCollection
+     * HexagonalBinning(SimpleFeatureCollection features, Expression weight, ReferencedEnvelope bbox, Double size, String sizes, Boolean
+     * validGrid): SimpleFeatureCollection
      */
 
     public HexagonalBinningProcessFactory() {
@@ -91,7 +91,12 @@ public class HexagonalBinningProcessFactory extends SpatialStatisticsProcessFact
     /** size */
     public static final Parameter<Double> size = new Parameter<Double>("size", Double.class,
             getResource("HexagonalBinning.size.title"),
-            getResource("HexagonalBinning.size.description"), true, 1, 1, null, null);
+            getResource("HexagonalBinning.size.description"), false, 0, 1, null, null);
+
+    /** sizes */
+    public static final Parameter<String> sizes = new Parameter<String>("sizes", String.class,
+            getResource("HexagonalBinning.sizes.title"), getResource("HexagonalBinning.sizes.description"),
+            false, 0, 1, null, null);
 
     /** validGrid */
     public static final Parameter<Boolean> validGrid = new Parameter<Boolean>("validGrid",
@@ -105,6 +110,7 @@ public class HexagonalBinningProcessFactory extends SpatialStatisticsProcessFact
         parameterInfo.put(weight.key, weight);
         parameterInfo.put(bbox.key, bbox);
         parameterInfo.put(size.key, size);
+        parameterInfo.put(sizes.key, sizes);
         parameterInfo.put(validGrid.key, validGrid);
         return parameterInfo;
     }
@@ -25,6 +25,7 @@ import org.geotools.process.spatialstatistics.core.Params;
 import org.geotools.process.spatialstatistics.transformation.DifferenceFeatureCollection;
 import org.geotools.process.spatialstatistics.transformation.IntersectFeatureCollection;
 import org.geotools.process.spatialstatistics.transformation.MergeFeatureCollection;
+import org.geotools.process.spatialstatistics.transformation.OverlayIndex;
 import org.geotools.util.logging.Logging;
 import org.opengis.util.ProgressListener;
 
@@ -81,12 +82,20 @@ public class IdentityProcess extends AbstractStatisticsProcess {
             throw new NullPointerException("inputFeatures, identityFeatures parameters required");
         }
 
+        Boolean parallel = (Boolean) Params.getValue(input, IdentityProcessFactory.parallel,
+                IdentityProcessFactory.parallel.sample);
+
         // start process
+        // one spatial index of the identity features for both overlays
+        OverlayIndex identityIndex = new OverlayIndex(identityFeatures, inputFeatures.getSchema()
+                .getCoordinateReferenceSystem());
+        identityIndex.setParallel(parallel.booleanValue());
+
         SimpleFeatureCollection difference = DataUtilities.simple(new DifferenceFeatureCollection(
-                inputFeatures, identityFeatures));
+                inputFeatures, identityIndex));
 
         SimpleFeatureCollection intersect = DataUtilities.simple(new IntersectFeatureCollection(
-                inputFeatures, identityFeatures));
+                inputFeatures, identityIndex));
 
         SimpleFeatureCollection resultFc = DataUtilities.simple(new MergeFeatureCollection(
                 intersect, difference));
@@ -77,11 +77,17 @@ public class IdentityProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("Identity.identityFeatures.title"),
             getResource("Identity.identityFeatures.description"), true, 1, 1, null, null);
 
+    /** parallel */
+    public static final Parameter<Boolean> parallel = new Parameter<Boolean>("parallel",
+            Boolean.class, getResource("Identity.parallel.title"),
+            getResource("Identity.parallel.description"), false, 0, 1, Boolean.FALSE, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
         parameterInfo.put(inputFeatures.key, inputFeatures);
         parameterInfo.put(identityFeatures.key, identityFeatures);
+        parameterInfo.put(parallel.key, parallel);
         return parameterInfo;
     }
 
@@ -28,6 +28,7 @@ import org.geotools.process.ProcessException;
 import org.geotools.process.ProcessFactory;
 import org.geotools.process.spatialstatistics.core.Params;
 import org.geotools.process.spatialstatistics.transformation.IntersectFeatureCollection;
+import org.geotools.process.spatialstatistics.transformation.OverlayIndex;
 import org.geotools.util.logging.Logging;
 import org.opengis.util.ProgressListener;
 
@@ -79,9 +80,16 @@ public class IntersectProcess extends AbstractStatisticsProcess {
             throw new NullPointerException("inputFeatures, overlayFeatures parameters required");
         }
 
+        Boolean parallel = (Boolean) Params.getValue(input, IntersectProcessFactory.parallel,
+                IntersectProcessFactory.parallel.sample);
+
         // start process
+        OverlayIndex overlayIndex = new OverlayIndex(overlayFeatures, inputFeatures.getSchema()
+                .getCoordinateReferenceSystem());
+        overlayIndex.setParallel(parallel.booleanValue());
+
         SimpleFeatureCollection resultFc = DataUtilities.simple(new IntersectFeatureCollection(
-                inputFeatures, overlayFeatures));
+                inputFeatures, overlayIndex));
         // end process
 
         Map<String, Object> resultMap = new HashMap<String, Object>();
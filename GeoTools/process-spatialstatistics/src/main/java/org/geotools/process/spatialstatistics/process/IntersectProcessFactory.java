@@ -77,11 +77,17 @@ public class IntersectProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("Intersect.overlayFeatures.title"),
             getResource("Intersect.overlayFeatures.description"), true, 1, 1, null, null);
 
+    /** parallel */
+    public static final Parameter<Boolean> parallel = new Parameter<Boolean>("parallel",
+            Boolean.class, getResource("Intersect.parallel.title"),
+            getResource("Intersect.parallel.description"), false, 0, 1, Boolean.FALSE, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
         parameterInfo.put(inputFeatures.key, inputFeatures);
         parameterInfo.put(overlayFeatures.key, overlayFeatures);
+        parameterInfo.put(parallel.key, parallel);
         return parameterInfo;
     }
 
@@ -52,11 +52,19 @@ public class KMeansClusteringProcess extends AbstractStatisticsProcess {
 
     public static SimpleFeatureCollection process(SimpleFeatureCollection inputFeatures,
             String targetField, Integer numberOfClusters, Boolean asCircle, ProgressListener monitor) {
+        return process(inputFeatures, targetField, numberOfClusters, asCircle, Integer.valueOf(0),
+                monitor);
+    }
+
+    public static SimpleFeatureCollection process(SimpleFeatureCollection inputFeatures,
+            String targetField, Integer numberOfClusters, Boolean asCircle, Integer batchSize,
+            ProgressListener monitor) {
         Map<String, Object> map = new HashMap<String, Object>();
         map.put(KMeansClusteringProcessFactory.inputFeatures.key, inputFeatures);
         map.put(KMeansClusteringProcessFactory.targetField.key, targetField);
         map.put(KMeansClusteringProcessFactory.numberOfClusters.key, numberOfClusters);
         map.put(KMeansClusteringProcessFactory.asCircle.key, asCircle);
+        map.put(KMeansClusteringProcessFactory.batchSize.key, batchSize);
 
         Process process = new KMeansClusteringProcess(null);
         Map<String, Object> resultMap;
@@ -98,10 +106,15 @@ public class KMeansClusteringProcess extends AbstractStatisticsProcess {
                 KMeansClusteringProcessFactory.asCircle,
                 KMeansClusteringProcessFactory.asCircle.sample);
 
+        Integer batchSize = (Integer) Params.getValue(input,
+                KMeansClusteringProcessFactory.batchSize,
+                KMeansClusteringProcessFactory.batchSize.sample);
+
         // start process
         SimpleFeatureCollection resultFc = null;
         try {
             KMeansClusterOperation operator = new KMeansClusterOperation();
+            operator.setBatchSize(batchSize);
             if (asCircle) {
                 resultFc = operator.executeAsCircle(inputFeatures, targetField, numberOfClusters);
             } else {
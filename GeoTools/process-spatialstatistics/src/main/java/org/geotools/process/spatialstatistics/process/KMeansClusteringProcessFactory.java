@@ -44,8 +44,8 @@ public class KMeansClusteringProcessFactory extends SpatialStatisticsProcessFact
 
     private static final String PROCESS_NAME = "KMeansClustering";
 
-    // KMeansClustering(SimpleFeatureCollection inputFeatures, String targetField, Integer numberOfClusters, Boolean asCircle):
-    // SimpleFeatureCollection
+    // KMeansClustering(SimpleFeatureCollection inputFeatures, String targetField, Integer numberOfClusters, Boolean asCircle,
+    // Integer batchSize): SimpleFeatureCollection
 
     public KMeansClusteringProcessFactory() {
         super(new NameImpl(NAMESPACE, PROCESS_NAME));
@@ -90,6 +90,12 @@ public class KMeansClusteringProcessFactory extends SpatialStatisticsProcessFact
             Boolean.class, getResource("KMeansClustering.asCircle.title"),
             getResource("KMeansClustering.asCircle.description"), false, 0, 1, Boolean.FALSE, null);
 
+    /** batchSize */
+    public static final Parameter<Integer> batchSize = new Parameter<Integer>("batchSize",
+            Integer.class, getResource("KMeansClustering.batchSize.title"),
+            getResource("KMeansClustering.batchSize.description"), false, 0, 1,
+            Integer.valueOf(0), null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -97,6 +103,7 @@ public class KMeansClusteringProcessFactory extends SpatialStatisticsProcessFact
         parameterInfo.put(targetField.key, targetField);
         parameterInfo.put(numberOfClusters.key, numberOfClusters);
         parameterInfo.put(asCircle.key, asCircle);
+        parameterInfo.put(batchSize.key, batchSize);
         return parameterInfo;
     }
 
@@ -116,6 +116,16 @@ public class LocalGStatisticsProcessFactory extends SpatialStatisticsProcessFact
             getResource("LocalGStatistics.selfNeighbors.description"), false, 0, 1, Boolean.TRUE,
             null);
 
+    /** weightsFile */
+    public static final Parameter<String> weightsFile = new Parameter<String>("weightsFile",
+            String.class, getResource("LocalGStatistics.weightsFile.title"),
+            getResource("LocalGStatistics.weightsFile.description"), false, 0, 1, null, null);
+
+    /** permutations */
+    public static final Parameter<Integer> permutations = new Parameter<Integer>("permutations",
+            Integer.class, getResource("LocalGStatistics.permutations.title"),
+            getResource("LocalGStatistics.permutations.description"), false, 0, 1, Integer.valueOf(0), null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -126,6 +136,8 @@ public class LocalGStatisticsProcessFactory extends SpatialStatisticsProcessFact
         parameterInfo.put(standardization.key, standardization);
         parameterInfo.put(searchDistance.key, searchDistance);
         // parameterInfo.put(selfNeighbors.key, selfNeighbors);
+        parameterInfo.put(weightsFile.key, weightsFile);
+        parameterInfo.put(permutations.key, permutations);
         return parameterInfo;
     }
 
@@ -114,6 +114,9 @@ public class LocalGearysCProcess extends AbstractStatisticsProcess {
                 LocalGearysCProcessFactory.selfNeighbors,
                 LocalGearysCProcessFactory.selfNeighbors.sample);
 
+        Integer permutations = (Integer) Params.getValue(input, LocalGearysCProcessFactory.permutations,
+                LocalGearysCProcessFactory.permutations.sample);
+
         // start process
         SimpleFeatureCollection resultFc = null;
 
@@ -122,6 +125,7 @@ public class LocalGearysCProcess extends AbstractStatisticsProcess {
         process.setDistanceType(distanceMethod);
         process.setStandardizationType(standardization);
         process.setSelfNeighbors(selfNeighbors);
+        process.setPermutations(permutations);
 
         // searchDistance
         if (searchDistance > 0 && !Double.isNaN(searchDistance)) {
@@ -115,6 +115,11 @@ public class LocalGearysCProcessFactory extends SpatialStatisticsProcessFactory
             Boolean.class, getResource("LocalGearysC.selfNeighbors.title"),
             getResource("LocalGearysC.selfNeighbors.description"), false, 0, 1, Boolean.FALSE, null);
 
+    /** permutations */
+    public static final Parameter<Integer> permutations = new Parameter<Integer>("permutations",
+            Integer.class, getResource("LocalGearysC.permutations.title"),
+            getResource("LocalGearysC.permutations.description"), false, 0, 1, Integer.valueOf(0), null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -125,6 +130,7 @@ public class LocalGearysCProcessFactory extends SpatialStatisticsProcessFactory
         parameterInfo.put(standardization.key, standardization);
         parameterInfo.put(searchDistance.key, searchDistance);
         // parameterInfo.put(selfNeighbors.key, selfNeighbors);
+        parameterInfo.put(permutations.key, permutations);
         return parameterInfo;
     }
 
@@ -128,6 +128,9 @@ public class LocalLeesLProcess extends AbstractStatisticsProcess {
                 LocalLeesLProcessFactory.selfNeighbors,
                 LocalLeesLProcessFactory.selfNeighbors.sample);
 
+        Integer permutations = (Integer) Params.getValue(input, LocalLeesLProcessFactory.permutations,
+                LocalLeesLProcessFactory.permutations.sample);
+
         // start process
         SimpleFeatureCollection resultFc = null;
 
@@ -136,6 +139,7 @@ public class LocalLeesLProcess extends AbstractStatisticsProcess {
         process.setDistanceType(distanceMethod);
         process.setStandardizationType(standardization);
         process.setSelfNeighbors(selfNeighbors);
+        process.setPermutations(permutations);
 
         // searchDistance
         if (searchDistance > 0 && !Double.isNaN(searchDistance)) {
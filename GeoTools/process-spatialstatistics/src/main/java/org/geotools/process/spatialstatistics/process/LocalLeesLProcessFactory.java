@@ -117,6 +117,11 @@ public class LocalLeesLProcessFactory extends SpatialStatisticsProcessFactory {
             Boolean.class, getResource("LocalLeesL.selfNeighbors.title"),
             getResource("LocalLeesL.selfNeighbors.description"), false, 0, 1, Boolean.TRUE, null);
 
+    /** permutations */
+    public static final Parameter<Integer> permutations = new Parameter<Integer>("permutations",
+            Integer.class, getResource("LocalLeesL.permutations.title"),
+            getResource("LocalLeesL.permutations.description"), false, 0, 1, Integer.valueOf(0), null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -128,6 +133,7 @@ public class LocalLeesLProcessFactory extends SpatialStatisticsProcessFactory {
         parameterInfo.put(standardization.key, standardization);
         parameterInfo.put(searchDistance.key, searchDistance);
         parameterInfo.put(selfNeighbors.key, selfNeighbors);
+        parameterInfo.put(permutations.key, permutations);
         return parameterInfo;
     }
 
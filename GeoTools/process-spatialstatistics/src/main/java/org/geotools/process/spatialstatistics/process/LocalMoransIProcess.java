@@ -29,6 +29,8 @@ import org.geotools.process.ProcessFactory;
 import org.geotools.process.spatialstatistics.autocorrelation.LocalMoranIStatisticOperation;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.Params;
+import org.geotools.process.spatialstatistics.core.StringHelper;
+import org.geotools.process.spatialstatistics.core.WeightMatrix;
 import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
 import org.geotools.process.spatialstatistics.enumeration.SpatialConcept;
 import org.geotools.process.spatialstatistics.enumeration.StandardizationMethod;
@@ -115,6 +117,11 @@ public class LocalMoransIProcess extends AbstractStatisticsProcess {
                 LocalMoransIProcessFactory.selfNeighbors,
                 LocalMoransIProcessFactory.selfNeighbors.sample);
 
+        Integer permutations = (Integer) Params.getValue(input, LocalMoransIProcessFactory.permutations,
+                LocalMoransIProcessFactory.permutations.sample);
+
+        String weightsFile = (String) Params.getValue(input, LocalMoransIProcessFactory.weightsFile, null);
+
         // start process
         SimpleFeatureCollection resultFc = null;
 
@@ -123,6 +130,16 @@ public class LocalMoransIProcess extends AbstractStatisticsProcess {
         process.setDistanceType(distanceMethod);
         process.setStandardizationType(standardization);
         process.setSelfNeighbors(selfNeighbors);
+        process.setPermutations(permutations);
+
+        // read with WeightsFromFile, otherwise the weights are saved to it
+        if (!StringHelper.isNullOrEmpty(weightsFile)) {
+            try {
+                process.setSpatialWeightsFile(WeightMatrix.resolveWeightsFile(weightsFile));
+            } catch (IllegalArgumentException e) {
+                throw new ProcessException(e.getMessage(), e);
+            }
+        }
 
         // searchDistance
         if (searchDistance > 0 && !Double.isNaN(searchDistance)) {
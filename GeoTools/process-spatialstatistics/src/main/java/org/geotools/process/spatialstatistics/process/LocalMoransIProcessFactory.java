@@ -115,6 +115,16 @@ public class LocalMoransIProcessFactory extends SpatialStatisticsProcessFactory
             Boolean.class, getResource("LocalMoransI.selfNeighbors.title"),
             getResource("LocalMoransI.selfNeighbors.description"), false, 0, 1, Boolean.FALSE, null);
 
+    /** weightsFile */
+    public static final Parameter<String> weightsFile = new Parameter<String>("weightsFile",
+            String.class, getResource("LocalMoransI.weightsFile.title"),
+            getResource("LocalMoransI.weightsFile.description"), false, 0, 1, null, null);
+
+    /** permutations */
+    public static final Parameter<Integer> permutations = new Parameter<Integer>("permutations",
+            Integer.class, getResource("LocalMoransI.permutations.title"),
+            getResource("LocalMoransI.permutations.description"), false, 0, 1, Integer.valueOf(0), null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -125,6 +135,8 @@ public class LocalMoransIProcessFactory extends SpatialStatisticsProcessFactory
         parameterInfo.put(standardization.key, standardization);
         parameterInfo.put(searchDistance.key, searchDistance);
         // parameterInfo.put(selfNeighbors.key, selfNeighbors);
+        parameterInfo.put(weightsFile.key, weightsFile);
+        parameterInfo.put(permutations.key, permutations);
         return parameterInfo;
     }
 
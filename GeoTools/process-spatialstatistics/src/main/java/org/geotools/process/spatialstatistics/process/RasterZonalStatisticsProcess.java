@@ -17,6 +17,7 @@
 package org.geotools.process.spatialstatistics.process;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -28,6 +29,7 @@ import org.geotools.process.Process;
 import org.geotools.process.ProcessException;
 import org.geotools.process.ProcessFactory;
 import org.geotools.process.spatialstatistics.core.Params;
+import org.geotools.process.spatialstatistics.core.StringHelper;
 import org.geotools.process.spatialstatistics.enumeration.ZonalStatisticsType;
 import org.geotools.process.spatialstatistics.gridcoverage.RasterZonalOperation;
 import org.geotools.util.logging.Logging;
@@ -102,12 +104,21 @@ public class RasterZonalStatisticsProcess extends AbstractStatisticsProcess {
             targetField = statisticsType.name();
         }
 
+        String statisticsTypes = (String) Params.getValue(input,
+                RasterZonalStatisticsProcessFactory.statisticsTypes, null);
+
         // start process
         SimpleFeatureCollection result = null;
         try {
             RasterZonalOperation process = new RasterZonalOperation();
-            result = process.execute(zoneFeatures, targetField, valueCoverage, bandIndex,
-                    statisticsType);
+            if (StringHelper.isNullOrEmpty(statisticsTypes)) {
+                result = process.execute(zoneFeatures, targetField, valueCoverage, bandIndex,
+                        statisticsType);
+            } else {
+                // all statistics in one pass, the output fields are the statistics names
+                ZonalStatisticsType[] types = parseTypes(statisticsTypes);
+                result = process.execute(zoneFeatures, valueCoverage, bandIndex, types);
+            }
         } catch (IOException e) {
             throw new ProcessException(e);
         }
@@ -117,4 +128,18 @@ public class RasterZonalStatisticsProcess extends AbstractStatisticsProcess {
         resultMap.put(RasterZonalStatisticsProcessFactory.RESULT.key, result);
         return resultMap;
     }
+
+    private ZonalStatisticsType[] parseTypes(String statisticsTypes) {
+        String[] names = statisticsTypes.split(",");
+        ZonalStatisticsType[] types = new ZonalStatisticsType[names.length];
+        for (int index = 0; index < names.length; index++) {
+            try {
+                types[index] = ZonalStatisticsType.valueOf(names[index].trim());
+            } catch (IllegalArgumentException e) {
+                throw new ProcessException("Invalid statistics type: " + names[index]
+                        + ", valid types are " + Arrays.toString(ZonalStatisticsType.values()));
+            }
+        }
+        return types;
+    }
 }
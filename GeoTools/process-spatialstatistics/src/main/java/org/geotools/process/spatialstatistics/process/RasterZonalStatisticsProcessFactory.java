@@ -103,6 +103,12 @@ public class RasterZonalStatisticsProcessFactory extends SpatialStatisticsProces
             getResource("ZonalStatistics.statisticsType.description"), false, 0, 1,
             ZonalStatisticsType.Mean, null);
 
+    /** statisticsTypes */
+    public static final Parameter<String> statisticsTypes = new Parameter<String>(
+            "statisticsTypes", String.class,
+            getResource("ZonalStatistics.statisticsTypes.title"),
+            getResource("ZonalStatistics.statisticsTypes.description"), false, 0, 1, null, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -111,6 +117,7 @@ public class RasterZonalStatisticsProcessFactory extends SpatialStatisticsProces
         parameterInfo.put(valueCoverage.key, valueCoverage);
         parameterInfo.put(bandIndex.key, bandIndex);
         parameterInfo.put(statisticsType.key, statisticsType);
+        parameterInfo.put(statisticsTypes.key, statisticsTypes);
         return parameterInfo;
     }
 
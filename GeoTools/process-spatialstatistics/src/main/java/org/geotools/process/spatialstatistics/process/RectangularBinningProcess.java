@@ -28,6 +28,7 @@ import org.geotools.process.Process;
 import org.geotools.process.ProcessException;
 import org.geotools.process.ProcessFactory;
 import org.geotools.process.spatialstatistics.core.Params;
+import org.geotools.process.spatialstatistics.pattern.BinningOperation;
 import org.geotools.process.spatialstatistics.pattern.RectangularBinningOperation;
 import org.geotools.util.logging.Logging;
 import org.opengis.filter.expression.Expression;
@@ -93,6 +94,8 @@ public class RectangularBinningProcess extends AbstractStatisticsProcess {
                 .getValue(input, RectangularBinningProcessFactory.width, null);
         Double height = (Double) Params.getValue(input, RectangularBinningProcessFactory.height,
                 null);
+        String sizes = (String) Params
+                .getValue(input, RectangularBinningProcessFactory.sizes, null);
         Boolean validGrid = (Boolean) Params.getValue(input,
                 RectangularBinningProcessFactory.validGrid,
                 RectangularBinningProcessFactory.validGrid.sample);
@@ -102,7 +105,9 @@ public class RectangularBinningProcess extends AbstractStatisticsProcess {
             bbox = features.getBounds();
         }
 
-        if (width == null || width <= 0 || height == null || height <= 0) {
+        double[] binSizes = BinningOperation.parseSizes(sizes);
+
+        if (binSizes == null && (width == null || width <= 0 || height == null || height <= 0)) {
             width = Math.min(bbox.getWidth(), bbox.getHeight()) / 250.0d;
             height = width;
             LOGGER.log(Level.WARNING, "The default width / height is " + width);
@@ -112,7 +117,12 @@ public class RectangularBinningProcess extends AbstractStatisticsProcess {
         try {
             RectangularBinningOperation process = new RectangularBinningOperation();
             process.setOnlyValidGrid(validGrid);
-            resultFc = process.execute(features, weight, bbox, width, height);
+            if (binSizes == null) {
+                resultFc = process.execute(features, weight, bbox, width, height);
+            } else {
+                // square bins of all sizes in one pass, written with their binsize
+                resultFc = process.execute(features, weight, bbox, binSizes);
+            }
         } catch (IOException e) {
             throw new ProcessException(e);
         }
@@ -122,4 +132,4 @@ public class RectangularBinningProcess extends AbstractStatisticsProcess {
         resultMap.put(RectangularBinningProcessFactory.RESULT.key, resultFc);
         return resultMap;
     }
-}
\ No newline at end of file
+}
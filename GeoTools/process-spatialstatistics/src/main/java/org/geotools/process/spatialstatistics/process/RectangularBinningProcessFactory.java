@@ -48,8 +48,8 @@ public class RectangularBinningProcessFactory extends SpatialStatisticsProcessFa
     private static final String PROCESS_NAME = "RectangularBinning";
 
     /*
-     * RectangularBinning(SimpleFeatureCollection features, Expression weight, ReferencedEnvelope bbox, Double width, Double height, Boolean
-     * validGrid): SimpleFeatureCollection
+     * RectangularBinning(SimpleFeatureCollection features, Expression weight, ReferencedEnvelope bbox, Double width, Double height, String
+     * sizes, Boolean validGrid): SimpleFeatureCollection
      */
 
     public RectangularBinningProcessFactory() {
@@ -92,12 +92,17 @@ public class RectangularBinningProcessFactory extends SpatialStatisticsProcessFa
     /** width */
     public static final Parameter<Double> width = new Parameter<Double>("width", Double.class,
             getResource("RectangularBinning.width.title"),
-            getResource("RectangularBinning.width.description"), true, 1, 1, null, null);
+            getResource("RectangularBinning.width.description"), false, 0, 1, null, null);
 
     /** height */
     public static final Parameter<Double> height = new Parameter<Double>("height", Double.class,
             getResource("RectangularBinning.height.title"),
-            getResource("RectangularBinning.height.description"), true, 1, 1, null, null);
+            getResource("RectangularBinning.height.description"), false, 0, 1, null, null);
+
+    /** sizes */
+    public static final Parameter<String> sizes = new Parameter<String>("sizes", String.class,
+            getResource("RectangularBinning.sizes.title"), getResource("RectangularBinning.sizes.description"),
+            false, 0, 1, null, null);
 
     /** validGrid */
     public static final Parameter<Boolean> validGrid = new Parameter<Boolean>("validGrid",
@@ -113,6 +118,7 @@ public class RectangularBinningProcessFactory extends SpatialStatisticsProcessFa
         parameterInfo.put(bbox.key, bbox);
         parameterInfo.put(width.key, width);
         parameterInfo.put(height.key, height);
+        parameterInfo.put(sizes.key, sizes);
         parameterInfo.put(validGrid.key, validGrid);
         return parameterInfo;
     }
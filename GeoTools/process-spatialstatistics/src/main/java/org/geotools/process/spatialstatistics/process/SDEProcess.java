@@ -52,11 +52,18 @@ public class SDEProcess extends AbstractStatisticsProcess {
 
     public static SimpleFeatureCollection process(SimpleFeatureCollection inputFeatures,
             String ellipseSize, String weightField, String caseField, ProgressListener monitor) {
+        return process(inputFeatures, ellipseSize, weightField, caseField, Boolean.FALSE, monitor);
+    }
+
+    public static SimpleFeatureCollection process(SimpleFeatureCollection inputFeatures,
+            String ellipseSize, String weightField, String caseField, Boolean streaming,
+            ProgressListener monitor) {
         Map<String, Object> map = new HashMap<String, Object>();
         map.put(SDEProcessFactory.inputFeatures.key, inputFeatures);
         map.put(SDEProcessFactory.ellipseSize.key, ellipseSize);
         map.put(SDEProcessFactory.weightField.key, weightField);
         map.put(SDEProcessFactory.caseField.key, caseField);
+        map.put(SDEProcessFactory.streaming.key, streaming);
 
         Process process = new SDEProcess(null);
         Map<String, Object> resultMap;
@@ -81,6 +88,8 @@ public class SDEProcess extends AbstractStatisticsProcess {
         
         String weightField = (String) Params.getValue(input, SDEProcessFactory.weightField, null);
         String caseField = (String) Params.getValue(input, SDEProcessFactory.caseField, null);
+        Boolean streaming = (Boolean) Params.getValue(input, SDEProcessFactory.streaming,
+                SDEProcessFactory.streaming.sample);
         String ellipseSize = (String) Params.getValue(input, SDEProcessFactory.ellipseSize,
                 SDEProcessFactory.ellipseSize.sample);
 
@@ -97,6 +106,7 @@ public class SDEProcess extends AbstractStatisticsProcess {
         try {
             StandardDeviationalEllipseOperation process = new StandardDeviationalEllipseOperation();
             process.setStdDeviation(stdDeviation);
+            process.setStreaming(streaming.booleanValue());
             resultFc = process.execute(inputFeatures, weightField, caseField);
         } catch (IOException e) {
             throw new ProcessException(e);
@@ -45,7 +45,7 @@ public class SDEProcessFactory extends SpatialStatisticsProcessFactory {
     private static final String PROCESS_NAME = "StandardDeviationalEllipse";
 
     /*
-     * StandardDeviationalEllipse(SimpleFeatureCollection inputFeatures, String ellipseSize, String weightField, String caseField):
+     * StandardDeviationalEllipse(SimpleFeatureCollection inputFeatures, String ellipseSize, String weightField, String caseField, Boolean streaming):
      * SimpleFeatureCollection
      */
 
@@ -90,6 +90,11 @@ public class SDEProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("Sde.caseField.description"), false, 0, 1, null, new KVP(Params.FIELD,
                     "inputFeatures.All"));
 
+    /** streaming */
+    public static final Parameter<Boolean> streaming = new Parameter<Boolean>("streaming",
+            Boolean.class, getResource("Sde.streaming.title"),
+            getResource("Sde.streaming.description"), false, 0, 1, Boolean.FALSE, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -97,6 +102,7 @@ public class SDEProcessFactory extends SpatialStatisticsProcessFactory {
         parameterInfo.put(ellipseSize.key, ellipseSize);
         parameterInfo.put(weightField.key, weightField);
         parameterInfo.put(caseField.key, caseField);
+        parameterInfo.put(streaming.key, streaming);
         return parameterInfo;
     }
 
@@ -51,11 +51,18 @@ public class SDProcess extends AbstractStatisticsProcess {
 
     public static SimpleFeatureCollection process(SimpleFeatureCollection inputFeatures,
             String circleSize, String weightField, String caseField, ProgressListener monitor) {
+        return process(inputFeatures, circleSize, weightField, caseField, Boolean.FALSE, monitor);
+    }
+
+    public static SimpleFeatureCollection process(SimpleFeatureCollection inputFeatures,
+            String circleSize, String weightField, String caseField, Boolean streaming,
+            ProgressListener monitor) {
         Map<String, Object> map = new HashMap<String, Object>();
         map.put(SDProcessFactory.inputFeatures.key, inputFeatures);
         map.put(SDProcessFactory.circleSize.key, circleSize);
         map.put(SDProcessFactory.weightField.key, weightField);
         map.put(SDProcessFactory.caseField.key, caseField);
+        map.put(SDProcessFactory.streaming.key, streaming);
 
         Process process = new SDProcess(null);
         Map<String, Object> resultMap;
@@ -80,6 +87,8 @@ public class SDProcess extends AbstractStatisticsProcess {
 
         String weightField = (String) Params.getValue(input, SDProcessFactory.weightField, null);
         String caseField = (String) Params.getValue(input, SDProcessFactory.caseField, null);
+        Boolean streaming = (Boolean) Params.getValue(input, SDProcessFactory.streaming,
+                SDProcessFactory.streaming.sample);
         String circleSize = (String) Params.getValue(input, SDProcessFactory.circleSize,
                 SDProcessFactory.circleSize.sample);
 
@@ -96,6 +105,7 @@ public class SDProcess extends AbstractStatisticsProcess {
         try {
             StandardDistanceOperation process = new StandardDistanceOperation();
             process.setStdDeviation(stdDeviation);
+            process.setStreaming(streaming.booleanValue());
             resultFc = process.execute(inputFeatures, weightField, caseField);
         } catch (IOException e) {
             throw new ProcessException(e);
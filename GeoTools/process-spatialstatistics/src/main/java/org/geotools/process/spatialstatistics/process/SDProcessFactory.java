@@ -45,7 +45,8 @@ public class SDProcessFactory extends SpatialStatisticsProcessFactory {
     private static final String PROCESS_NAME = "StandardDistance";
 
     /*
-     * StandardDistance(SimpleFeatureCollection inputFeatures, String circleSize, String weightField, String caseField): SimpleFeatureCollection
+     * StandardDistance(SimpleFeatureCollection inputFeatures, String circleSize, String weightField, String caseField, Boolean streaming):
+     * SimpleFeatureCollection
      */
 
     public SDProcessFactory() {
@@ -89,6 +90,11 @@ public class SDProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("Sd.caseField.description"), false, 0, 1, null, new KVP(Params.FIELD,
                     "inputFeatures.All"));
 
+    /** streaming */
+    public static final Parameter<Boolean> streaming = new Parameter<Boolean>("streaming",
+            Boolean.class, getResource("Sd.streaming.title"),
+            getResource("Sd.streaming.description"), false, 0, 1, Boolean.FALSE, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
@@ -96,6 +102,7 @@ public class SDProcessFactory extends SpatialStatisticsProcessFactory {
         parameterInfo.put(circleSize.key, circleSize);
         parameterInfo.put(weightField.key, weightField);
         parameterInfo.put(caseField.key, caseField);
+        parameterInfo.put(streaming.key, streaming);
         return parameterInfo;
     }
 
@@ -53,9 +53,16 @@ public class TPSProcess extends AbstractStatisticsProcess {
 
     public static GridCoverage2D process(SimpleFeatureCollection inputFeatures, String inputField,
             Double cellSize, ReferencedEnvelope extent, ProgressListener monitor) {
+        return process(inputFeatures, inputField, Integer.valueOf(0), cellSize, extent, monitor);
+    }
+
+    public static GridCoverage2D process(SimpleFeatureCollection inputFeatures, String inputField,
+            Integer numberOfPoints, Double cellSize, ReferencedEnvelope extent,
+            ProgressListener monitor) {
         Map<String, Object> map = new HashMap<String, Object>();
         map.put(TPSProcessFactory.inputFeatures.key, inputFeatures);
         map.put(TPSProcessFactory.inputField.key, inputField);
+        map.put(TPSProcessFactory.numberOfPoints.key, numberOfPoints);
 
         map.put(TPSProcessFactory.cellSize.key, cellSize);
         map.put(TPSProcessFactory.extent.key, extent);
@@ -88,6 +95,8 @@ public class TPSProcess extends AbstractStatisticsProcess {
             throw new NullPointerException(inputField + " does not exist!");
         }
 
+        Integer numberOfPoints = (Integer) Params.getValue(input,
+                TPSProcessFactory.numberOfPoints, TPSProcessFactory.numberOfPoints.sample);
         Double cellSize = (Double) Params.getValue(input, TPSProcessFactory.cellSize,
                 TPSProcessFactory.cellSize.sample);
         ReferencedEnvelope extent = (ReferencedEnvelope) Params.getValue(input,
@@ -115,11 +124,11 @@ public class TPSProcess extends AbstractStatisticsProcess {
             process.getRasterEnvironment().setCellSizeX(cellSize);
             process.getRasterEnvironment().setCellSizeY(cellSize);
 
-            resultGc = process.execute(inputFeatures, inputField);
+            resultGc = process.execute(inputFeatures, inputField, numberOfPoints);
             process.getRasterEnvironment().setCellSizeX(origCellSizeX);
             process.getRasterEnvironment().setCellSizeY(origCellSizeY);
         } else {
-            resultGc = process.execute(inputFeatures, inputField);
+            resultGc = process.execute(inputFeatures, inputField, numberOfPoints);
         }
         // end process
 
@@ -43,7 +43,8 @@ public class TPSProcessFactory extends SpatialStatisticsProcessFactory {
     private static final String PROCESS_NAME = "TPS";
 
     /*
-     * TPS(SimpleFeatureCollection inputFeatures, String inputField, Double cellSize, ReferencedEnvelope extent): GridCoverage2D
+     * TPS(SimpleFeatureCollection inputFeatures, String inputField, Integer numberOfPoints, Double cellSize, ReferencedEnvelope extent):
+     * GridCoverage2D
      */
 
     public TPSProcessFactory() {
@@ -77,6 +78,11 @@ public class TPSProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("TPS.inputField.description"), true, 1, 1, null, new KVP(Params.FIELD,
                     "inputFeatures.Number"));
 
+    /** numberOfPoints */
+    public static final Parameter<Integer> numberOfPoints = new Parameter<Integer>(
+            "numberOfPoints", Integer.class, getResource("TPS.numberOfPoints.title"),
+            getResource("TPS.numberOfPoints.description"), false, 0, 1, Integer.valueOf(0), null);
+
     /** cellSize */
     public static final Parameter<Double> cellSize = new Parameter<Double>("cellSize",
             Double.class, getResource("TPS.cellSize.title"),
@@ -92,6 +98,7 @@ public class TPSProcessFactory extends SpatialStatisticsProcessFactory {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
         parameterInfo.put(inputFeatures.key, inputFeatures);
         parameterInfo.put(inputField.key, inputField);
+        parameterInfo.put(numberOfPoints.key, numberOfPoints);
 
         parameterInfo.put(cellSize.key, cellSize);
         parameterInfo.put(extent.key, extent);
@@ -25,6 +25,7 @@ import org.geotools.process.spatialstatistics.core.Params;
 import org.geotools.process.spatialstatistics.transformation.DifferenceFeatureCollection;
 import org.geotools.process.spatialstatistics.transformation.IntersectFeatureCollection;
 import org.geotools.process.spatialstatistics.transformation.MergeFeatureCollection;
+import org.geotools.process.spatialstatistics.transformation.OverlayIndex;
 import org.geotools.util.logging.Logging;
 import org.opengis.util.ProgressListener;
 
@@ -81,15 +82,28 @@ public class UnionProcess extends AbstractStatisticsProcess {
             throw new NullPointerException("inputFeatures, overlayFeatures parameters required");
         }
 
+        Boolean parallel = (Boolean) Params.getValue(input, UnionProcessFactory.parallel,
+                UnionProcessFactory.parallel.sample);
+
         // start process
+        // one spatial index of the overlay features for the intersection and the first difference
+        OverlayIndex overlayIndex = new OverlayIndex(overlayFeatures, inputFeatures.getSchema()
+                .getCoordinateReferenceSystem());
+        overlayIndex.setParallel(parallel.booleanValue());
+
+        // and one of the input features for the second difference
+        OverlayIndex inputIndex = new OverlayIndex(inputFeatures, overlayFeatures.getSchema()
+                .getCoordinateReferenceSystem());
+        inputIndex.setParallel(parallel.booleanValue());
+
         SimpleFeatureCollection intersect = DataUtilities.simple(new IntersectFeatureCollection(
-                inputFeatures, overlayFeatures));
+                inputFeatures, overlayIndex));
 
         SimpleFeatureCollection difference1 = DataUtilities.simple(new DifferenceFeatureCollection(
-                inputFeatures, overlayFeatures));
+                inputFeatures, overlayIndex));
 
         SimpleFeatureCollection difference2 = DataUtilities.simple(new DifferenceFeatureCollection(
-                overlayFeatures, inputFeatures));
+                overlayFeatures, inputIndex));
 
         SimpleFeatureCollection merge1 = DataUtilities.simple(new MergeFeatureCollection(intersect,
                 difference1));
@@ -77,11 +77,17 @@ public class UnionProcessFactory extends SpatialStatisticsProcessFactory {
             getResource("Union.overlayFeatures.description"), true, 1, 1, null, new KVP(
                     Params.FEATURES, Params.Polygon));
 
+    /** parallel */
+    public static final Parameter<Boolean> parallel = new Parameter<Boolean>("parallel",
+            Boolean.class, getResource("Union.parallel.title"),
+            getResource("Union.parallel.description"), false, 0, 1, Boolean.FALSE, null);
+
     @Override
     protected Map<String, Parameter<?>> getParameterInfo() {
         HashMap<String, Parameter<?>> parameterInfo = new LinkedHashMap<String, Parameter<?>>();
         parameterInfo.put(inputFeatures.key, inputFeatures);
         parameterInfo.put(overlayFeatures.key, overlayFeatures);
+        parameterInfo.put(parallel.key, parallel);
         return parameterInfo;
     }
 
@@ -0,0 +1,257 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.Transaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Feature Inserter which writes in the background. <br>
+ * Features are buffered into batches on the caller thread and handed over a bounded queue to a writer thread, which appends each batch with
+ * {@link SimpleFeatureStore#addFeatures} (the bulk append path of JDBC stores) and commits every {@link #getCommitInterval()} features. The
+ * batch size starts at the flush interval and is adjusted to the measured throughput of the store. <br>
+ * A failure of the writer is rethrown as an IOException by the next write or by close, after the transaction was rolled back. A rollback
+ * only undoes the features written since the last commit: batches which were already committed remain in the store. Use a commit
+ * interval of 0 to write all features in one transaction.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class BackgroundFeatureInserter extends FeatureInserter {
+    protected static final Logger LOGGER = Logging.getLogger(BackgroundFeatureInserter.class);
+
+    static final int MIN_BATCH_SIZE = 100;
+
+    static final int MAX_BATCH_SIZE = 50000;
+
+    // aimed duration of one batch, in milliseconds
+    static final long TARGET_BATCH_TIME = 250;
+
+    private static final List<SimpleFeature> END = Collections.emptyList();
+
+    private final BlockingQueue<List<SimpleFeature>> queue;
+
+    private List<SimpleFeature> batch;
+
+    private volatile int batchSize;
+
+    private boolean autoBatchSize = true;
+
+    private int commitInterval = 0;
+
+    private volatile Throwable failure = null;
+
+    private volatile boolean cancelled = false;
+
+    private Thread writerThread = null;
+
+    private boolean closed = false;
+
+    public BackgroundFeatureInserter(SimpleFeatureStore featureStore) {
+        this(featureStore, 4);
+    }
+
+    /**
+     * @param queueCapacity number of batches waiting for the writer, the caller blocks when the queue is full
+     */
+    public BackgroundFeatureInserter(SimpleFeatureStore featureStore, int queueCapacity) {
+        super(featureStore);
+        this.queue = new ArrayBlockingQueue<List<SimpleFeature>>(Math.max(1, queueCapacity));
+        this.batchSize = flushInterval;
+        this.batch = new ArrayList<SimpleFeature>(batchSize);
+    }
+
+    @Override
+    public void setFlushInterval(int flushInterval) {
+        super.setFlushInterval(flushInterval);
+        this.batchSize = Math.max(1, flushInterval);
+    }
+
+    public boolean isAutoBatchSize() {
+        return autoBatchSize;
+    }
+
+    public void setAutoBatchSize(boolean autoBatchSize) {
+        this.autoBatchSize = autoBatchSize;
+    }
+
+    /**
+     * Number of features between commits, 0 (the default) to commit once when closed. A rollback does not undo batches which were already committed.
+     */
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    @Override
+    public void write(SimpleFeature newFeature) throws IOException {
+        checkFailure();
+
+        featureCount++;
+        batch.add(newFeature);
+        if (batch.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    private void submit() throws IOException {
+        if (writerThread == null) {
+            writerThread = new Thread(new BatchWriter(), "FeatureInserter-" + typeName);
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+
+        List<SimpleFeature> pending = batch;
+        batch = new ArrayList<SimpleFeature>(batchSize);
+        try {
+            while (!queue.offer(pending, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the feature writer", e);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IOException("Failed to write features to " + typeName + ": "
+                    + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Waits until the writer has written all submitted batches.
+     */
+    private void finish() throws IOException {
+        if (writerThread == null) {
+            return;
+        }
+
+        try {
+            while (writerThread.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                // the writer is still busy
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the feature writer", e);
+        } finally {
+            writerThread = null;
+        }
+    }
+
+    @Override
+    public void rollback() throws IOException {
+        cancelled = true;
+        queue.clear();
+        finish();
+
+        batch.clear();
+        transaction.rollback();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (!cancelled && failure == null && batch.size() > 0) {
+                submit();
+            }
+            finish();
+
+            if (!cancelled && failure == null) {
+                transaction.commit();
+            } else {
+                transaction.rollback();
+            }
+        } finally {
+            transaction.close();
+            sfStore.setTransaction(Transaction.AUTO_COMMIT);
+        }
+
+        // a failure which was not yet reported by write
+        if (!cancelled) {
+            checkFailure();
+        }
+    }
+
+    final class BatchWriter implements Runnable {
+        public void run() {
+            int uncommitted = 0;
+            try {
+                while (true) {
+                    List<SimpleFeature> features = queue.take();
+                    if (features == END || cancelled) {
+                        break;
+                    }
+
+                    long start = System.currentTimeMillis();
+                    ListFeatureCollection collection = new ListFeatureCollection(
+                            sfStore.getSchema(), features);
+                    sfStore.addFeatures(collection);
+
+                    uncommitted += features.size();
+                    if (commitInterval > 0 && uncommitted >= commitInterval) {
+                        transaction.commit();
+                        uncommitted = 0;
+                    }
+
+                    if (autoBatchSize) {
+                        adjustBatchSize(features.size(), System.currentTimeMillis() - start);
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure = e;
+                LOGGER.log(Level.FINER, e.getMessage(), e);
+            } catch (Throwable e) {
+                failure = e;
+                LOGGER.log(Level.WARNING, e.getMessage(), e);
+            }
+        }
+
+        private void adjustBatchSize(int size, long elapsed) {
+            // halfway towards the size which takes the target time at the measured rate
+            double rate = size / (double) Math.max(1, elapsed);
+            int target = (int) Math.min(MAX_BATCH_SIZE,
+                    Math.max(MIN_BATCH_SIZE, rate * TARGET_BATCH_TIME));
+            batchSize = (batchSize + target) / 2;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.storage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Writes the records of a dbf file directly into a pooled direct buffer, without the intermediate value arrays and strings of
+ * {@link org.geotools.data.shapefile.dbf.DbaseFileWriter}. <br>
+ * Character fields are encoded with the charset of the file and truncated on a character boundary, numbers are formatted into their fixed-width
+ * fields and full buffers of whole records are written to the channel. Supports the C, N, F, D and L field types.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class DbaseFileWriter2 {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte BLANK = (byte) ' ';
+
+    private static final byte EOF = (byte) 0x1A;
+
+    private final DbaseFileHeader2 header;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final int recordLength;
+
+    private final char[] fieldTypes;
+
+    private final int[] fieldLengths;
+
+    private final int[] decimalCounts;
+
+    private final CharsetEncoder encoder;
+
+    private final CharBuffer chars;
+
+    private final Calendar calendar;
+
+    private int numRecords = 0;
+
+    /**
+     * Writes the header and positions the channel at the first record.
+     */
+    public DbaseFileWriter2(DbaseFileHeader2 header, FileChannel channel, Charset charset,
+            TimeZone timeZone) throws IOException {
+        this.header = header;
+        this.channel = channel;
+
+        final int numFields = header.getNumFields();
+        this.fieldTypes = new char[numFields];
+        this.fieldLengths = new int[numFields];
+        this.decimalCounts = new int[numFields];
+
+        int maxLength = 1;
+        for (int field = 0; field < numFields; field++) {
+            fieldTypes[field] = Character.toUpperCase(header.getFieldType(field));
+            fieldLengths[field] = header.getFieldLength(field);
+            decimalCounts[field] = header.getFieldDecimalCount(field);
+            maxLength = Math.max(maxLength, fieldLengths[field]);
+
+            if (!isSupported(fieldTypes[field])) {
+                throw new IllegalArgumentException("Unsupported field type: " + fieldTypes[field]);
+            }
+        }
+
+        this.recordLength = header.getRecordLength();
+        this.buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_SIZE / recordLength)
+                * recordLength);
+
+        this.encoder = charset.newEncoder();
+        this.encoder.onMalformedInput(CodingErrorAction.REPLACE);
+        this.encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // every character needs at least one byte, longer text is never written
+        this.chars = CharBuffer.allocate(maxLength);
+        this.calendar = Calendar.getInstance(timeZone);
+
+        header.writeHeader(channel);
+    }
+
+    /**
+     * Returns true if all fields of the header can be written by this writer.
+     */
+    public static boolean isSupported(DbaseFileHeader2 header) {
+        for (int field = 0; field < header.getNumFields(); field++) {
+            if (!isSupported(Character.toUpperCase(header.getFieldType(field)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupported(char fieldType) {
+        switch (fieldType) {
+        case 'C':
+        case 'N':
+        case 'F':
+        case 'D':
+        case 'L':
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * Writes one record from the attributes of the feature.
+     *
+     * @param attributes index of the feature attribute of each dbf field
+     */
+    public void write(SimpleFeature feature, int[] attributes) throws IOException {
+        if (buffer.remaining() < recordLength) {
+            flush();
+        }
+
+        final int start = buffer.position();
+        buffer.put(BLANK); // not deleted
+
+        for (int field = 0; field < fieldTypes.length; field++) {
+            final Object value = feature.getAttribute(attributes[field]);
+            final int end = buffer.position() + fieldLengths[field];
+
+            switch (fieldTypes[field]) {
+            case 'C':
+                if (value != null) {
+                    putText(value.toString(), fieldLengths[field]);
+                }
+                break;
+            case 'N':
+            case 'F':
+                putNumber(value, fieldLengths[field], decimalCounts[field]);
+                break;
+            case 'D':
+                putDate(value);
+                break;
+            case 'L':
+                putLogical(value);
+                break;
+            }
+
+            // pad the remaining bytes of the field
+            while (buffer.position() < end) {
+                buffer.put(BLANK);
+            }
+        }
+
+        buffer.position(start + recordLength);
+        numRecords++;
+    }
+
+    private void putText(String text, int length) {
+        final int count = Math.min(text.length(), length);
+        chars.clear();
+        for (int index = 0; index < count; index++) {
+            chars.put(text.charAt(index));
+        }
+        chars.flip();
+
+        // an overflow stops at the last whole character which fits
+        final int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        encoder.reset();
+        encoder.encode(chars, buffer, true);
+        buffer.limit(limit);
+    }
+
+    private void putNumber(Object value, int length, int decimals) {
+        if (value == null) {
+            return;
+        }
+
+        String text;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            text = value.toString();
+        } else {
+            BigDecimal number = toDecimal(value);
+            if (number == null) {
+                return;
+            }
+
+            text = number.setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+
+            // round to fewer decimals if the integer part fits
+            for (int scale = decimals - 1; text.length() > length && scale >= 0; scale--) {
+                text = number.setScale(scale, RoundingMode.HALF_UP).toPlainString();
+            }
+        }
+
+        if (text.length() > length) {
+            // overflow
+            for (int index = 0; index < length; index++) {
+                buffer.put((byte) '*');
+            }
+            return;
+        }
+
+        // right justified
+        for (int index = text.length(); index < length; index++) {
+            buffer.put(BLANK);
+        }
+        for (int index = 0; index < text.length(); index++) {
+            buffer.put((byte) text.charAt(index));
+        }
+    }
+
+    private BigDecimal toDecimal(Object value) {
+        double number;
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof Number) {
+            number = ((Number) value).doubleValue();
+        } else {
+            try {
+                number = Double.parseDouble(value.toString().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return null;
+        }
+        return BigDecimal.valueOf(number);
+    }
+
+    private void putDate(Object value) {
+        if (value instanceof Date) {
+            calendar.setTime((Date) value);
+        } else if (value instanceof Calendar) {
+            calendar.setTimeInMillis(((Calendar) value).getTimeInMillis());
+        } else {
+            return;
+        }
+
+        // yyyyMMdd
+        putDigits(calendar.get(Calendar.YEAR), 4);
+        putDigits(calendar.get(Calendar.MONTH) + 1, 2);
+        putDigits(calendar.get(Calendar.DAY_OF_MONTH), 2);
+    }
+
+    private void putDigits(int value, int digits) {
+        for (int divisor = (int) Math.pow(10, digits - 1); divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private void putLogical(Object value) {
+        if (value instanceof Boolean) {
+            buffer.put(((Boolean) value).booleanValue() ? (byte) 'T' : (byte) 'F');
+        } else if (value == null) {
+            buffer.put((byte) '?');
+        } else {
+            String text = value.toString().trim();
+            if (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("t")
+                    || text.equalsIgnoreCase("y") || text.equals("1")) {
+                buffer.put((byte) 'T');
+            } else if (text.equalsIgnoreCase("false") || text.equalsIgnoreCase("f")
+                    || text.equalsIgnoreCase("n") || text.equals("0")) {
+                buffer.put((byte) 'F');
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records to the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the pending records and the end of file marker, updates the number of records in the header and closes the channel.
+     */
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        try {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(EOF);
+            flush();
+
+            header.setNumRecords(numRecords);
+            channel.position(0);
+            header.writeHeader(channel);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -70,6 +70,10 @@ public class ShapeExportOperation {
 
     private DataStore outputDataStore = null;
 
+    private final boolean backgroundWriting;
+
+    private final int commitInterval;
+
     // The shared instance
     private static ShapeExportOperation plugin = new ShapeExportOperation();
 
@@ -77,6 +81,20 @@ public class ShapeExportOperation {
         return plugin;
     }
 
+    public ShapeExportOperation() {
+        this(false, 0);
+    }
+
+    /**
+     * @param backgroundWriting if true, features are written to a non-shapefile data store by a background writer, see
+     *        {@link BackgroundFeatureInserter}
+     * @param commitInterval number of features between commits of the background writer, 0 to commit once when the export is finished
+     */
+    public ShapeExportOperation(boolean backgroundWriting, int commitInterval) {
+        this.backgroundWriting = backgroundWriting;
+        this.commitInterval = commitInterval;
+    }
+
     public void setNamePolicy(NamePolicy namePolicy) {
         this.namePolicy = namePolicy;
     }
@@ -97,6 +115,14 @@ public class ShapeExportOperation {
         return outputDataStore;
     }
 
+    public boolean isBackgroundWriting() {
+        return backgroundWriting;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
     public void setOutputTypeName(String outputTypeName) {
         this.outputTypeName = outputTypeName;
     }
@@ -132,6 +158,11 @@ public class ShapeExportOperation {
             featureStore = (SimpleFeatureStore) featureSource;
         }
 
+        if (backgroundWriting) {
+            BackgroundFeatureInserter inserter = new BackgroundFeatureInserter(featureStore);
+            inserter.setCommitInterval(commitInterval);
+            return inserter;
+        }
         return new FeatureInserter(featureStore);
     }
 
@@ -93,8 +93,12 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
 
     private ShapefileWriter shpWriter;
 
+    private ShapefileWriter2 shpEncoder;
+
     private DbaseFileWriter dbfWriter;
 
+    private DbaseFileWriter2 dbfEncoder;
+
     private FileChannel dbfChannel;
 
     private Charset dbfCharset = Charset.forName(DataStoreFactory.DEFAULT_CHARSET);
@@ -107,6 +111,8 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
 
     private Object[] transferCache;
 
+    private int[] dbfAttributes;
+
     private Envelope bounds;
 
     public ShapefileFeatureInserter(String folder, SimpleFeatureType inputSchema) {
@@ -188,16 +194,31 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
     @Override
     public void write(SimpleFeature newFeature) throws IOException {
         Geometry geometry = (Geometry) newFeature.getDefaultGeometry();
-        geometry = JTSUtilities.convertToCollection(geometry, shapeType);
-        if (geometry == null || geometry.isEmpty()) {
-            return;
-        }
+        if (shpEncoder != null && shpEncoder.accepts(geometry)) {
+            // streamed without a converted copy
+            shpEncoder.write(geometry);
+        } else {
+            geometry = JTSUtilities.convertToCollection(geometry, shapeType);
+            if (geometry == null || geometry.isEmpty()) {
+                return;
+            }
 
-        shapefileLength += (handler.getLength(geometry) + 8);
-        shpWriter.writeGeometry(geometry);
-        bounds.expandToInclude(geometry.getEnvelopeInternal());
+            if (shpEncoder != null) {
+                shpEncoder.write(geometry);
+            } else {
+                shapefileLength += (handler.getLength(geometry) + 8);
+                shpWriter.writeGeometry(geometry);
+                bounds.expandToInclude(geometry.getEnvelopeInternal());
+            }
+        }
 
         // writing attributes
+        if (dbfEncoder != null) {
+            dbfEncoder.write(newFeature, dbfAttributes);
+            numberOfFeatures++;
+            return;
+        }
+
         int pos = 0;
         for (int index = 0; index < writeFlags.length; index++) {
             // skip geometries
@@ -252,19 +273,35 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
     public void close() throws IOException {
         if (numberOfFeatures > 0) {
             // rewrite header
-            shpWriter.writeHeaders(bounds, shapeType, numberOfFeatures, shapefileLength);
-            dbfHeader.setNumRecords(numberOfFeatures);
-            dbfChannel.position(0);
-            dbfHeader.writeHeader(dbfChannel);
+            if (shpWriter != null) {
+                shpWriter.writeHeaders(bounds, shapeType, numberOfFeatures, shapefileLength);
+            }
+            if (dbfWriter != null) {
+                dbfHeader.setNumRecords(numberOfFeatures);
+                dbfChannel.position(0);
+                dbfHeader.writeHeader(dbfChannel);
+            }
         }
 
         writePrj(sourceCRS);
 
-        shpWriter.close();
-        dbfWriter.close();
+        if (shpEncoder != null) {
+            // rewrites the headers
+            shpEncoder.close();
+        } else {
+            shpWriter.close();
+        }
+        if (dbfEncoder != null) {
+            // rewrites the header
+            dbfEncoder.close();
+        } else {
+            dbfWriter.close();
+        }
 
         shpWriter = null;
+        shpEncoder = null;
         dbfWriter = null;
+        dbfEncoder = null;
 
         StorageFile.replaceOriginals(storageFiles.values().toArray(new StorageFile[0]));
 
@@ -341,12 +378,25 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
         // open underlying writers
         FileChannel shpChannel = storageFiles.get(ShpFileType.SHP).getWriteChannel();
         FileChannel shxChannel = storageFiles.get(ShpFileType.SHX).getWriteChannel();
-        shpWriter = new ShapefileWriter(shpChannel, shxChannel);
+        if (ShapefileWriter2.isSupported(shapeType)) {
+            shpEncoder = new ShapefileWriter2(shapeType, shpChannel, shxChannel);
+        } else {
+            // z and m shapes
+            shpWriter = new ShapefileWriter(shpChannel, shxChannel);
+        }
 
         dbfChannel = storageFiles.get(ShpFileType.DBF).getWriteChannel();
-        dbfWriter = new DbaseFileWriter(dbfHeader, dbfChannel, dbfCharset, dbfTimeZone);
+        if (DbaseFileWriter2.isSupported(dbfHeader)) {
+            dbfEncoder = new DbaseFileWriter2(dbfHeader, dbfChannel, dbfCharset, dbfTimeZone);
+        } else {
+            // timestamp fields
+            dbfWriter = new DbaseFileWriter(dbfHeader, dbfChannel, dbfCharset, dbfTimeZone);
+        }
 
-        shpWriter.writeHeaders(new Envelope(), shapeType, numberOfFeatures, shapefileLength);
+        if (shpWriter != null) {
+            shpWriter.writeHeaders(new Envelope(), shapeType, numberOfFeatures,
+                    shapefileLength);
+        }
     }
 
     private void writePrj(CoordinateReferenceSystem crs) throws IOException {
@@ -372,6 +422,7 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
         writeFlags = new byte[attributeCount];
 
         List<String> uniqueFields = new ArrayList<String>();
+        List<Integer> dbfIndexes = new ArrayList<Integer>();
         int dbfFieldCount = 0;
         for (int index = 0; index < attributeCount; index++) {
             AttributeDescriptor descriptor = featureType.getDescriptor(index);
@@ -433,6 +484,7 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
                     continue;
                 }
 
+                dbfIndexes.add(Integer.valueOf(index));
                 dbfFieldCount++;
                 writeFlags[index] = (byte) 1;
             }
@@ -443,6 +495,12 @@ public class ShapefileFeatureInserter implements IFeatureInserter {
         // dbf transfer buffer
         transferCache = new Object[dbfFieldCount];
 
+        // feature attribute of each dbf field
+        dbfAttributes = new int[dbfFieldCount];
+        for (int pos = 0; pos < dbfFieldCount; pos++) {
+            dbfAttributes[pos] = dbfIndexes.get(pos).intValue();
+        }
+
         return header;
     }
 
@@ -0,0 +1,336 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.geotools.data.shapefile.shp.ShapeType;
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Writes the records of the shp and shx files directly into pooled direct buffers, without the geometry collections of
+ * {@link org.geotools.data.shapefile.shp.JTSUtilities#convertToCollection(Geometry, ShapeType)} and the channel writes per record of
+ * {@link org.geotools.data.shapefile.shp.ShapefileWriter}. <br>
+ * Supports the two dimensional shape types. Polygon shells are written clockwise and holes counterclockwise, the coordinates of a ring
+ * with the other orientation are written in reverse order.
+ *
+ * @author Minpa Lee, MangoSystem
+ *
+ * @source $URL$
+ */
+public class ShapefileWriter2 {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final int HEADER_LENGTH = 100;
+
+    private static final int FILE_CODE = 9994;
+
+    private static final int VERSION = 1000;
+
+    private final ShapeType shapeType;
+
+    private final FileChannel shpChannel;
+
+    private final FileChannel shxChannel;
+
+    private final ByteBuffer shpBuffer;
+
+    private final ByteBuffer shxBuffer;
+
+    private final Envelope bounds = new Envelope();
+
+    private int numRecords = 0;
+
+    // in 16-bit words, as the shx offsets
+    private int fileLength = HEADER_LENGTH / 2;
+
+    /**
+     * Writes empty headers and positions the channels at the first record.
+     */
+    public ShapefileWriter2(ShapeType shapeType, FileChannel shpChannel, FileChannel shxChannel)
+            throws IOException {
+        if (!isSupported(shapeType)) {
+            throw new IllegalArgumentException("Unsupported shape type: " + shapeType);
+        }
+
+        this.shapeType = shapeType;
+        this.shpChannel = shpChannel;
+        this.shxChannel = shxChannel;
+        this.shpBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.shxBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        writeHeaders();
+    }
+
+    /**
+     * Returns true if the records of the shape type can be written by this writer.
+     */
+    public static boolean isSupported(ShapeType shapeType) {
+        return shapeType == ShapeType.POINT || shapeType == ShapeType.MULTIPOINT
+                || shapeType == ShapeType.ARC || shapeType == ShapeType.POLYGON;
+    }
+
+    /**
+     * Returns true if the geometry is a non-empty geometry of the shape type, or a single part of it.
+     */
+    public boolean accepts(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            return false;
+        }
+
+        if (shapeType == ShapeType.POINT) {
+            return geometry instanceof Point;
+        } else if (shapeType == ShapeType.MULTIPOINT) {
+            return geometry instanceof Point || geometry instanceof MultiPoint;
+        } else if (shapeType == ShapeType.ARC) {
+            return geometry instanceof LineString || geometry instanceof MultiLineString;
+        } else {
+            return geometry instanceof Polygon || geometry instanceof MultiPolygon;
+        }
+    }
+
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    public Envelope getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Writes one record, see {@link #accepts(Geometry)}.
+     */
+    public void write(Geometry geometry) throws IOException {
+        if (!accepts(geometry)) {
+            throw new IllegalArgumentException("Cannot write " + geometry + " as " + shapeType);
+        }
+
+        final int numParts = countParts(geometry);
+        final int numPoints = geometry.getNumPoints();
+
+        int length; // in bytes, without the record header
+        if (shapeType == ShapeType.POINT) {
+            length = 20;
+        } else if (shapeType == ShapeType.MULTIPOINT) {
+            length = 40 + 16 * numPoints;
+        } else {
+            length = 44 + 4 * numParts + 16 * numPoints;
+        }
+
+        if (shpBuffer.remaining() < length + 8) {
+            flush();
+        }
+        if (shxBuffer.remaining() < 8) {
+            flush();
+        }
+
+        // a record larger than the pooled buffer is written from its own buffer
+        ByteBuffer buffer = shpBuffer;
+        if (buffer.remaining() < length + 8) {
+            buffer = ByteBuffer.allocate(length + 8);
+        }
+
+        numRecords++;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(numRecords);
+        buffer.putInt(length / 2);
+
+        shxBuffer.order(ByteOrder.BIG_ENDIAN);
+        shxBuffer.putInt(fileLength);
+        shxBuffer.putInt(length / 2);
+        fileLength += (length + 8) / 2;
+
+        final Envelope envelope = geometry.getEnvelopeInternal();
+        bounds.expandToInclude(envelope);
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(shapeType.id);
+        if (shapeType == ShapeType.POINT) {
+            Point point = (Point) geometry;
+            buffer.putDouble(point.getX());
+            buffer.putDouble(point.getY());
+        } else {
+            buffer.putDouble(envelope.getMinX());
+            buffer.putDouble(envelope.getMinY());
+            buffer.putDouble(envelope.getMaxX());
+            buffer.putDouble(envelope.getMaxY());
+
+            if (shapeType == ShapeType.MULTIPOINT) {
+                buffer.putInt(numPoints);
+                for (int index = 0; index < geometry.getNumGeometries(); index++) {
+                    Point point = (Point) geometry.getGeometryN(index);
+                    buffer.putDouble(point.getX());
+                    buffer.putDouble(point.getY());
+                }
+            } else {
+                buffer.putInt(numParts);
+                buffer.putInt(numPoints);
+                putParts(buffer, geometry);
+                putPoints(buffer, geometry);
+            }
+        }
+
+        if (buffer != shpBuffer) {
+            flush();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                shpChannel.write(buffer);
+            }
+        }
+    }
+
+    private int countParts(Geometry geometry) {
+        if (shapeType != ShapeType.POLYGON) {
+            return geometry.getNumGeometries();
+        }
+
+        int numParts = 0;
+        for (int index = 0; index < geometry.getNumGeometries(); index++) {
+            numParts += 1 + ((Polygon) geometry.getGeometryN(index)).getNumInteriorRing();
+        }
+        return numParts;
+    }
+
+    private void putParts(ByteBuffer buffer, Geometry geometry) {
+        int start = 0;
+        for (int index = 0; index < geometry.getNumGeometries(); index++) {
+            Geometry part = geometry.getGeometryN(index);
+            if (part instanceof Polygon) {
+                Polygon polygon = (Polygon) part;
+                buffer.putInt(start);
+                start += polygon.getExteriorRing().getNumPoints();
+                for (int ring = 0; ring < polygon.getNumInteriorRing(); ring++) {
+                    buffer.putInt(start);
+                    start += polygon.getInteriorRingN(ring).getNumPoints();
+                }
+            } else {
+                buffer.putInt(start);
+                start += part.getNumPoints();
+            }
+        }
+    }
+
+    private void putPoints(ByteBuffer buffer, Geometry geometry) {
+        for (int index = 0; index < geometry.getNumGeometries(); index++) {
+            Geometry part = geometry.getGeometryN(index);
+            if (part instanceof Polygon) {
+                Polygon polygon = (Polygon) part;
+                putRing(buffer, polygon.getExteriorRing(), false);
+                for (int ring = 0; ring < polygon.getNumInteriorRing(); ring++) {
+                    putRing(buffer, polygon.getInteriorRingN(ring), true);
+                }
+            } else {
+                putCoordinates(buffer, ((LineString) part).getCoordinateSequence(), false);
+            }
+        }
+    }
+
+    private void putRing(ByteBuffer buffer, LineString ring, boolean counterClockwise) {
+        // the orientation of a degenerate ring is undefined
+        boolean reverse = ring.getNumPoints() >= 4
+                && Orientation.isCCW(ring.getCoordinates()) != counterClockwise;
+        putCoordinates(buffer, ring.getCoordinateSequence(), reverse);
+    }
+
+    private void putCoordinates(ByteBuffer buffer, CoordinateSequence coordinates,
+            boolean reverse) {
+        final int size = coordinates.size();
+        for (int i = 0; i < size; i++) {
+            int index = reverse ? size - 1 - i : i;
+            buffer.putDouble(coordinates.getX(index));
+            buffer.putDouble(coordinates.getY(index));
+        }
+    }
+
+    /**
+     * Writes the buffered records to the channels.
+     */
+    public void flush() throws IOException {
+        drain(shpBuffer, shpChannel);
+        drain(shxBuffer, shxChannel);
+    }
+
+    private void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeHeaders() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        putHeader(header, fileLength);
+        shpChannel.position(0);
+        drain(header, shpChannel);
+
+        putHeader(header, HEADER_LENGTH / 2 + 4 * numRecords);
+        shxChannel.position(0);
+        drain(header, shxChannel);
+    }
+
+    private void putHeader(ByteBuffer header, int length) {
+        header.order(ByteOrder.BIG_ENDIAN);
+        header.putInt(FILE_CODE);
+        for (int i = 0; i < 5; i++) {
+            header.putInt(0);
+        }
+        header.putInt(length);
+
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(VERSION);
+        header.putInt(shapeType.id);
+        header.putDouble(bounds.getMinX());
+        header.putDouble(bounds.getMinY());
+        header.putDouble(bounds.getMaxX());
+        header.putDouble(bounds.getMaxY());
+
+        // z and m ranges
+        for (int i = 0; i < 4; i++) {
+            header.putDouble(0.0);
+        }
+    }
+
+    /**
+     * Writes the pending records, updates the headers and closes the channels.
+     */
+    public void close() throws IOException {
+        if (!shpChannel.isOpen()) {
+            return;
+        }
+
+        try {
+            flush();
+            writeHeaders();
+        } finally {
+            shpChannel.close();
+            shxChannel.close();
+        }
+    }
+}
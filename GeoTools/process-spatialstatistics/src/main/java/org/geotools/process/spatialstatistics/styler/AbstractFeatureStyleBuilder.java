@@ -136,7 +136,7 @@ public abstract class AbstractFeatureStyleBuilder {
         return (RangedClassifier) function.evaluate(inputFeatures);
     }
 
-    private String getFunctionName(String methodName) {
+    protected String getFunctionName(String methodName) {
         if (StringHelper.isNullOrEmpty(methodName)) {
             methodName = "Jenks";
         }
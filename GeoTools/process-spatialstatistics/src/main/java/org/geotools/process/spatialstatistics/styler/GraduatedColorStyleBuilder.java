@@ -27,8 +27,11 @@ import org.geotools.brewer.color.ColorBrewer;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.filter.function.RangedClassifier;
+import org.geotools.process.spatialstatistics.clsssifier.NaturalBreaksClassify;
+import org.geotools.process.spatialstatistics.core.DataHistogram;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
 import org.geotools.process.spatialstatistics.core.FeatureTypes.SimpleShapeType;
+import org.geotools.process.spatialstatistics.core.HistogramGridCoverage;
 import org.geotools.process.spatialstatistics.gridcoverage.RasterHelper;
 import org.geotools.process.spatialstatistics.transformation.CoverageToPointFeatureCollection;
 import org.geotools.styling.ColorMap;
@@ -61,6 +64,8 @@ public class GraduatedColorStyleBuilder extends AbstractFeatureStyleBuilder {
 
     String normalProperty;
 
+    int bandIndex = 0;
+
     ColorBrewer brewer = ColorBrewer.instance();
 
     public void setNormalProperty(String normalProperty) {
@@ -71,6 +76,14 @@ public class GraduatedColorStyleBuilder extends AbstractFeatureStyleBuilder {
         return normalProperty;
     }
 
+    public void setBandIndex(int bandIndex) {
+        this.bandIndex = bandIndex;
+    }
+
+    public int getBandIndex() {
+        return bandIndex;
+    }
+
     public Style createStyle(GridCoverage2D coverage, String methodName, int numClasses,
             String brewerPaletteName) {
         return createStyle(coverage, methodName, numClasses, brewerPaletteName, false, 1.0d);
@@ -94,30 +107,63 @@ public class GraduatedColorStyleBuilder extends AbstractFeatureStyleBuilder {
             String brewerPaletteName, boolean reverse, double opacity) {
         numClasses = checkNumClasses(numClasses);
 
-        SimpleFeatureCollection inputFeatures = new CoverageToPointFeatureCollection(coverage);
-
-        RangedClassifier classifier = getClassifier(inputFeatures, "Value", methodName, numClasses); //$NON-NLS-1$
-        double[] breaks = getClassBreaks(classifier);
-
-        BrewerPalette brewerPalette = brewer.getPalette(brewerPaletteName);
-        Color[] colors = brewerPalette.getColors(breaks.length - 1);
-        if (reverse) {
-            Collections.reverse(Arrays.asList(colors));
-        }
-
         StyleBuilder builder = new StyleBuilder();
+        BrewerPalette brewerPalette = brewer.getPalette(brewerPaletteName);
 
         // Set nodata
         double noData = RasterHelper.getNoDataValue(coverage);
         ColorMapEntry nodataEntry = sf.createColorMapEntry();
         nodataEntry.setQuantity(ff.literal(noData));
-        nodataEntry.setColor(builder.colorExpression(colors[0]));
         nodataEntry.setOpacity(ff.literal(0.0f));
         nodataEntry.setLabel("No Data"); //$NON-NLS-1$
 
         ColorMap colorMap = sf.createColorMap();
         colorMap.setType(ColorMap.TYPE_RAMP);
 
+        double[] breaks = null;
+        if ("Jenks".equals(getFunctionName(methodName))) {
+            // natural breaks from the histogram of the coverage, not from point features
+            DataHistogram histogram = new HistogramGridCoverage();
+            if (histogram.calculateHistogram(coverage, bandIndex, noData)) {
+                NaturalBreaksClassify classify = new NaturalBreaksClassify();
+                classify.setSampleSize(NaturalBreaksClassify.DEFAULT_SAMPLE_SIZE);
+                Double[] classBreaks = classify.classify(histogram.getArrayValues(),
+                        histogram.getArrayFrequencies(), numClasses);
+
+                breaks = new double[classBreaks.length];
+                for (int i = 0; i < classBreaks.length; i++) {
+                    breaks[i] = classBreaks[i].doubleValue();
+                }
+            }
+        } else {
+            SimpleFeatureCollection inputFeatures = new CoverageToPointFeatureCollection(
+                    coverage, bandIndex);
+
+            RangedClassifier classifier = getClassifier(inputFeatures, "Value", methodName, //$NON-NLS-1$
+                    numClasses);
+            if (classifier != null && classifier.getSize() > 0) {
+                breaks = getClassBreaks(classifier);
+            }
+        }
+
+        if (breaks == null) {
+            LOGGER.log(Level.WARNING, "The coverage has only NoData values!");
+            nodataEntry.setColor(builder.colorExpression(brewerPalette.getColors(2)[0]));
+            colorMap.addColorMapEntry(nodataEntry);
+            return builder.createStyle(builder.createRasterSymbolizer(colorMap, opacity));
+        }
+
+        // a coverage with a single value has a single break and a single color
+        final int colorCount = Math.max(1, breaks.length - 1);
+        Color[] colors = brewerPalette.getColors(Math.max(2, colorCount));
+        if (colors.length > colorCount) {
+            colors = Arrays.copyOf(colors, colorCount);
+        }
+        if (reverse) {
+            Collections.reverse(Arrays.asList(colors));
+        }
+        nodataEntry.setColor(builder.colorExpression(colors[0]));
+
         if (noData < breaks[0]) {
             colorMap.addColorMapEntry(nodataEntry);
         }
@@ -17,9 +17,8 @@
 package org.geotools.process.spatialstatistics.transformation;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.DataUtilities;
@@ -29,8 +28,6 @@ import org.geotools.feature.collection.SubFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.process.spatialstatistics.core.DataUtils;
-import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
@@ -47,7 +44,6 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.Filter;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
  * Difference SimpleFeatureCollection Implementation
@@ -59,26 +55,25 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 public class DifferenceFeatureCollection extends GXTSimpleFeatureCollection {
     protected static final Logger LOGGER = Logging.getLogger(DifferenceFeatureCollection.class);
 
-    private SimpleFeatureCollection differenceFeatures;
+    private OverlayIndex differenceFeatures;
 
     private SimpleFeatureType targetSchema;
 
+    private ReferencedEnvelope bounds;
+
+    private int size = -1;
+
     public DifferenceFeatureCollection(SimpleFeatureCollection delegate,
             SimpleFeatureCollection differenceFeatures) {
-        super(delegate);
+        this(delegate, new OverlayIndex(differenceFeatures, delegate.getSchema()
+                .getCoordinateReferenceSystem()));
+    }
 
-        // check coordinate reference system
-        CoordinateReferenceSystem crsT = delegate.getSchema().getCoordinateReferenceSystem();
-        CoordinateReferenceSystem crsS = differenceFeatures.getSchema()
-                .getCoordinateReferenceSystem();
-        if (crsT != null && crsS != null && !CRS.equalsIgnoreMetadata(crsT, crsS)) {
-            differenceFeatures = new ReprojectFeatureCollection(differenceFeatures, crsS, crsT,
-                    true);
-            LOGGER.log(Level.WARNING, "reprojecting features");
-        }
+    public DifferenceFeatureCollection(SimpleFeatureCollection delegate,
+            OverlayIndex differenceFeatures) {
+        super(delegate);
 
-        // use SpatialIndexFeatureCollection
-        this.differenceFeatures = DataUtils.toSpatialIndexFeatureCollection(differenceFeatures);
+        this.differenceFeatures = differenceFeatures;
         this.targetSchema = buildTargetSchema(delegate.getSchema());
     }
 
@@ -125,7 +120,10 @@ public class DifferenceFeatureCollection extends GXTSimpleFeatureCollection {
 
     @Override
     public ReferencedEnvelope getBounds() {
-        return DataUtilities.bounds(features());
+        if (bounds == null) {
+            bounds = DataUtilities.bounds(features());
+        }
+        return bounds;
     }
 
     @Override
@@ -137,86 +135,66 @@ public class DifferenceFeatureCollection extends GXTSimpleFeatureCollection {
     }
 
     public int size() {
-        return DataUtilities.count(features());
+        if (size < 0) {
+            size = DataUtilities.count(features());
+        }
+        return size;
     }
 
-    static class DifferenceFeatureIterator implements SimpleFeatureIterator {
-        private SimpleFeatureIterator delegate;
-
-        private SimpleFeatureCollection differenceFeatures;
-
-        private ReferencedEnvelope bounds;
-
-        private String geomField;
+    static class DifferenceFeatureIterator extends OverlayFeatureIterator {
+        private OverlayIndex differenceFeatures;
 
         private SimpleFeatureBuilder builder;
 
-        private SimpleFeature next;
-
         private Class<?> target;
 
         public DifferenceFeatureIterator(SimpleFeatureIterator delegate, SimpleFeatureType schema,
-                SimpleFeatureCollection differenceFeatures) {
-            this.delegate = delegate;
+                OverlayIndex differenceFeatures) {
+            super(delegate, differenceFeatures.getThreadCount());
             this.differenceFeatures = differenceFeatures;
-            this.bounds = differenceFeatures.getBounds();
-            this.geomField = differenceFeatures.getSchema().getGeometryDescriptor().getLocalName();
             this.builder = new SimpleFeatureBuilder(schema);
             this.target = schema.getGeometryDescriptor().getType().getBinding();
         }
 
-        public void close() {
-            delegate.close();
-        }
+        @Override
+        protected List<OverlayResult> overlay(SimpleFeature feature) {
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            if (geometry == null || geometry.isEmpty()) {
+                return Collections.emptyList();
+            }
 
-        public boolean hasNext() {
-            while (next == null && delegate.hasNext()) {
-                SimpleFeature feature = delegate.next();
-                Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                if (geometry == null || geometry.isEmpty()) {
-                    continue;
-                }
+            Geometry diffGeom = geometry; // default
 
-                Geometry diffGeom = geometry; // default
-                if (bounds.intersects(geometry.getEnvelopeInternal())) {
-                    Filter filter = getIntersectsFilter(geomField, geometry);
-
-                    // finally difference using union geometries(intersection features)
-                    List<Geometry> geometries = new ArrayList<Geometry>();
-                    SimpleFeatureIterator difIter = differenceFeatures.subCollection(filter)
-                            .features();
-                    try {
-                        while (difIter.hasNext()) {
-                            SimpleFeature diffFeature = difIter.next();
-                            geometries.add((Geometry) diffFeature.getDefaultGeometry());
-                        }
-                    } finally {
-                        difIter.close();
-                    }
-
-                    if (geometries.size() > 0) {
-                        Geometry unionGeometry = new CascadedPolygonUnion(geometries).union();
-                        if (unionGeometry != null && !unionGeometry.isEmpty()) {
-                            diffGeom = difference(geometry, unionGeometry, target);
-                        }
+            // finally difference using union geometries(intersection features)
+            List<Geometry> geometries = new ArrayList<Geometry>();
+            for (OverlayIndex.OverlayFeature diffFeature : differenceFeatures.query(geometry)) {
+                geometries.add(diffFeature.getGeometry());
+            }
 
-                        if (diffGeom == null || diffGeom.isEmpty()) {
-                            continue;
-                        }
-                    }
+            if (geometries.size() > 0) {
+                Geometry unionGeometry = new CascadedPolygonUnion(geometries).union();
+                if (unionGeometry != null && !unionGeometry.isEmpty()) {
+                    diffGeom = difference(geometry, unionGeometry, target);
                 }
 
-                for (Object attribute : feature.getAttributes()) {
-                    if (attribute instanceof Geometry) {
-                        builder.add(diffGeom);
-                    } else {
-                        builder.add(attribute);
-                    }
+                if (diffGeom == null || diffGeom.isEmpty()) {
+                    return Collections.emptyList();
                 }
-                next = builder.buildFeature(feature.getID());
             }
 
-            return next != null;
+            return Collections.singletonList(new OverlayResult(diffGeom, null));
+        }
+
+        @Override
+        protected SimpleFeature buildFeature(SimpleFeature feature, OverlayResult result) {
+            for (Object attribute : feature.getAttributes()) {
+                if (attribute instanceof Geometry) {
+                    builder.add(result.getGeometry());
+                } else {
+                    builder.add(attribute);
+                }
+            }
+            return builder.buildFeature(feature.getID());
         }
 
         private Geometry difference(Geometry geom, Geometry overlay, Class<?> target) {
@@ -275,15 +253,5 @@ public class DifferenceFeatureCollection extends GXTSimpleFeatureCollection {
 
             return result;
         }
-
-        public SimpleFeature next() throws NoSuchElementException {
-            if (!hasNext()) {
-                throw new NoSuchElementException("hasNext() returned false!");
-            }
-
-            SimpleFeature result = next;
-            next = null;
-            return result;
-        }
     }
 }
@@ -20,8 +20,6 @@ import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.NoSuchElementException;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.data.DataUtilities;
@@ -31,9 +29,7 @@ import org.geotools.feature.collection.SubFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.process.spatialstatistics.core.DataUtils;
 import org.geotools.process.spatialstatistics.core.FeatureTypes;
-import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
@@ -49,7 +45,6 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.filter.Filter;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
  * Intersect SimpleFeatureCollection Implementation
@@ -61,28 +56,27 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 public class IntersectFeatureCollection extends GXTSimpleFeatureCollection {
     protected static final Logger LOGGER = Logging.getLogger(IntersectFeatureCollection.class);
 
-    private SimpleFeatureCollection overlays;
+    private OverlayIndex overlays;
 
     private SimpleFeatureType targetSchema;
 
     private Hashtable<String, String> fieldMap;
 
+    private ReferencedEnvelope bounds;
+
+    private int size = -1;
+
     public IntersectFeatureCollection(SimpleFeatureCollection delegate,
             SimpleFeatureCollection overlays) {
+        this(delegate, new OverlayIndex(overlays, delegate.getSchema()
+                .getCoordinateReferenceSystem()));
+    }
+
+    public IntersectFeatureCollection(SimpleFeatureCollection delegate, OverlayIndex overlays) {
         super(delegate);
 
         this.fieldMap = new Hashtable<String, String>();
-
-        // check coordinate reference system
-        CoordinateReferenceSystem crsT = delegate.getSchema().getCoordinateReferenceSystem();
-        CoordinateReferenceSystem crsS = overlays.getSchema().getCoordinateReferenceSystem();
-        if (crsT != null && crsS != null && !CRS.equalsIgnoreMetadata(crsT, crsS)) {
-            overlays = new ReprojectFeatureCollection(overlays, crsS, crsT, true);
-            LOGGER.log(Level.WARNING, "reprojecting features");
-        }
-
-        // use SpatialIndexFeatureCollection
-        this.overlays = DataUtils.toSpatialIndexFeatureCollection(overlays);
+        this.overlays = overlays;
         this.targetSchema = buildTargetSchema(delegate.getSchema(), overlays.getSchema());
     }
 
@@ -180,115 +174,84 @@ public class IntersectFeatureCollection extends GXTSimpleFeatureCollection {
 
     @Override
     public ReferencedEnvelope getBounds() {
-        return DataUtilities.bounds(features());
+        if (bounds == null) {
+            bounds = DataUtilities.bounds(features());
+        }
+        return bounds;
     }
 
     public int size() {
-        return DataUtilities.count(features());
+        if (size < 0) {
+            size = DataUtilities.count(features());
+        }
+        return size;
     }
 
-    static class IntersectFeatureIterator implements SimpleFeatureIterator {
-        private SimpleFeatureIterator delegate;
-
-        private SimpleFeatureCollection overlays;
-
-        private ReferencedEnvelope bounds;
-
-        private String geomField;
+    static class IntersectFeatureIterator extends OverlayFeatureIterator {
+        private OverlayIndex overlays;
 
         private SimpleFeatureBuilder builder;
 
         private Hashtable<String, String> fieldMap;
 
-        private SimpleFeature next;
-
-        private SimpleFeature feature;
-
         private String typeName;
 
         private Class<?> target;
 
         private int counter = 1;
 
-        private List<SimpleFeature> features = new ArrayList<SimpleFeature>();
-
         public IntersectFeatureIterator(SimpleFeatureIterator delegate, SimpleFeatureType schema,
-                SimpleFeatureCollection overlays, Hashtable<String, String> fieldMap) {
-            this.delegate = delegate;
+                OverlayIndex overlays, Hashtable<String, String> fieldMap) {
+            super(delegate, overlays.getThreadCount());
             this.overlays = overlays;
-            this.bounds = overlays.getBounds();
-            this.geomField = overlays.getSchema().getGeometryDescriptor().getLocalName();
             this.builder = new SimpleFeatureBuilder(schema);
             this.target = schema.getGeometryDescriptor().getType().getBinding();
             this.fieldMap = fieldMap;
             this.typeName = schema.getTypeName();
         }
 
-        public void close() {
-            delegate.close();
-        }
-
-        public boolean hasNext() {
-            while ((next == null && delegate.hasNext())
-                    || (next == null && !delegate.hasNext() && features.size() > 0)) {
-                if (features.size() == 0) {
-                    // query intersected features
-                    feature = delegate.next();
-                    Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                    if (geometry == null || geometry.isEmpty()) {
-                        continue;
-                    }
-
-                    if (!bounds.intersects(geometry.getEnvelopeInternal())) {
-                        continue;
-                    }
+        @Override
+        protected List<OverlayResult> overlay(SimpleFeature feature) {
+            List<OverlayResult> results = new ArrayList<OverlayResult>();
 
-                    Filter filter = getIntersectsFilter(geomField, geometry);
-                    SimpleFeatureIterator difIter = overlays.subCollection(filter).features();
-                    try {
-                        while (difIter.hasNext()) {
-                            features.add(difIter.next());
-                        }
-                    } finally {
-                        difIter.close();
-                    }
-                }
-
-                if (features.size() == 0) {
-                    continue;
-                }
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            if (geometry == null || geometry.isEmpty()) {
+                return results;
+            }
 
-                Geometry geometry = (Geometry) feature.getDefaultGeometry();
-                SimpleFeature overlayFeature = features.get(0);
-                Geometry overlayGeom = (Geometry) overlayFeature.getDefaultGeometry();
-                Geometry result = intersect(geometry, overlayGeom, target);
+            // query intersected features
+            for (OverlayIndex.OverlayFeature overlay : overlays.query(geometry)) {
+                Geometry result = intersect(geometry, overlay.getGeometry(), target);
                 if (result == null || result.isEmpty()) {
-                    features.remove(0);
                     continue;
                 }
+                results.add(new OverlayResult(result, overlay.getFeature()));
+            }
 
-                // input feature
-                for (Object attribute : feature.getAttributes()) {
-                    if (attribute instanceof Geometry) {
-                        builder.add(result);
-                    } else {
-                        builder.add(attribute);
-                    }
-                }
+            return results;
+        }
 
-                // overlay feature
-                for (Entry<String, String> entry : fieldMap.entrySet()) {
-                    Object value = overlayFeature.getAttribute(entry.getKey());
-                    builder.set(entry.getValue(), value);
+        @Override
+        protected SimpleFeature buildFeature(SimpleFeature feature, OverlayResult result) {
+            // input feature
+            for (Object attribute : feature.getAttributes()) {
+                if (attribute instanceof Geometry) {
+                    builder.add(result.getGeometry());
+                } else {
+                    builder.add(attribute);
                 }
+            }
 
-                next = builder.buildFeature(buildID(typeName, counter++));
-                builder.reset();
-                features.remove(0);
-                break;
+            // overlay feature
+            SimpleFeature overlayFeature = result.getOverlay();
+            for (Entry<String, String> entry : fieldMap.entrySet()) {
+                Object value = overlayFeature.getAttribute(entry.getKey());
+                builder.set(entry.getValue(), value);
             }
 
-            return next != null;
+            SimpleFeature next = builder.buildFeature(buildID(typeName, counter++));
+            builder.reset();
+            return next;
         }
 
         private Geometry intersect(Geometry geom, Geometry overlay, Class<?> target) {
@@ -347,15 +310,5 @@ public class IntersectFeatureCollection extends GXTSimpleFeatureCollection {
 
             return result;
         }
-
-        public SimpleFeature next() throws NoSuchElementException {
-            if (!hasNext()) {
-                throw new NoSuchElementException("hasNext() returned false!");
-            }
-
-            SimpleFeature result = next;
-            next = null;
-            return result;
-        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.transformation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.process.spatialstatistics.core.ParallelExecutor;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Streams the result of an overlay: input features are read in batches, the geometric overlay of each feature is calculated in parallel if
+ * more than one thread is requested and the output features are built in input order. The worker threads are owned by the iterator and
+ * released when it is closed; a failure of any worker is thrown from {@link #hasNext()}.
+ * 
+ * @author Minpa Lee, MangoSystem
+ * 
+ * @source $URL$
+ */
+public abstract class OverlayFeatureIterator implements SimpleFeatureIterator {
+    protected static final Logger LOGGER = Logging.getLogger(OverlayFeatureIterator.class);
+
+    static final int BATCH_SIZE = 256;
+
+    private final SimpleFeatureIterator delegate;
+
+    private final int threadCount;
+
+    private final ArrayDeque<SimpleFeature> queue = new ArrayDeque<SimpleFeature>();
+
+    // created with the first parallel batch, shut down on close
+    private ParallelExecutor executor;
+
+    public OverlayFeatureIterator(SimpleFeatureIterator delegate, int threadCount) {
+        this.delegate = delegate;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Calculates the overlay geometries of an input feature. Called from worker threads, must not modify shared state.
+     */
+    protected abstract List<OverlayResult> overlay(SimpleFeature feature);
+
+    /**
+     * Builds an output feature. Called from the iterating thread in input order.
+     */
+    protected abstract SimpleFeature buildFeature(SimpleFeature feature, OverlayResult result);
+
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+    }
+
+    public boolean hasNext() {
+        while (queue.isEmpty() && delegate.hasNext()) {
+            List<SimpleFeature> batch = new ArrayList<SimpleFeature>();
+            while (batch.size() < BATCH_SIZE && delegate.hasNext()) {
+                batch.add(delegate.next());
+            }
+
+            List<List<OverlayResult>> results = overlayBatch(batch);
+            for (int index = 0; index < batch.size(); index++) {
+                for (OverlayResult result : results.get(index)) {
+                    queue.add(buildFeature(batch.get(index), result));
+                }
+            }
+        }
+        return !queue.isEmpty();
+    }
+
+    public SimpleFeature next() throws NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("hasNext() returned false!");
+        }
+        return queue.poll();
+    }
+
+    private List<List<OverlayResult>> overlayBatch(final List<SimpleFeature> batch) {
+        final int size = batch.size();
+        final List<List<OverlayResult>> results = new ArrayList<List<OverlayResult>>(
+                Collections.<List<OverlayResult>> nCopies(size, null));
+
+        final int workers = Math.min(threadCount, size);
+        if (workers <= 1) {
+            for (int index = 0; index < size; index++) {
+                results.set(index, overlay(batch.get(index)));
+            }
+            return results;
+        }
+
+        if (executor == null) {
+            executor = new ParallelExecutor(threadCount);
+        }
+
+        // each worker writes its own indexes, the executor publishes them on completion
+        final AtomicInteger nextFeature = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<Runnable>(workers);
+        for (int t = 0; t < workers; t++) {
+            tasks.add(new Runnable() {
+                public void run() {
+                    int index;
+                    // no early exit, every index of the batch must be filled
+                    while ((index = nextFeature.getAndIncrement()) < size) {
+                        results.set(index, overlay(batch.get(index)));
+                    }
+                }
+            });
+        }
+        executor.invokeAll(tasks);
+
+        return results;
+    }
+
+    public static final class OverlayResult {
+        final Geometry geometry;
+
+        final SimpleFeature overlay;
+
+        public OverlayResult(Geometry geometry, SimpleFeature overlay) {
+            this.geometry = geometry;
+            this.overlay = overlay;
+        }
+
+        public Geometry getGeometry() {
+            return geometry;
+        }
+
+        public SimpleFeature getOverlay() {
+            return overlay;
+        }
+    }
+}
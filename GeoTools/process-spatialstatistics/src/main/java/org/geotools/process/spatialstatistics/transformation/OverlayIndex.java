@@ -0,0 +1,186 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2014, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.process.spatialstatistics.transformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Packed STR tree of the overlay features with prepared geometries, shared by the overlay feature collections (Intersect, Difference and the
+ * processes built on them). The overlay features are read once, when the index is first used, and the built index is safe for concurrent queries.
+ * 
+ * @author Minpa Lee, MangoSystem
+ * 
+ * @source $URL$
+ */
+public class OverlayIndex {
+    protected static final Logger LOGGER = Logging.getLogger(OverlayIndex.class);
+
+    private static final Comparator<OverlayFeature> ORDER = new Comparator<OverlayFeature>() {
+        @Override
+        public int compare(OverlayFeature o1, OverlayFeature o2) {
+            return o1.index < o2.index ? -1 : (o1.index == o2.index ? 0 : 1);
+        }
+    };
+
+    private final SimpleFeatureCollection overlays;
+
+    private STRtree spatialIndex;
+
+    private ReferencedEnvelope bounds;
+
+    // the calling thread unless parallel overlay is requested
+    private int threadCount = 1;
+
+    /**
+     * @param overlays overlay features
+     * @param targetCRS coordinate reference system of the input features, the overlay features are reprojected if it differs
+     */
+    public OverlayIndex(SimpleFeatureCollection overlays, CoordinateReferenceSystem targetCRS) {
+        CoordinateReferenceSystem crsS = overlays.getSchema().getCoordinateReferenceSystem();
+        if (targetCRS != null && crsS != null && !CRS.equalsIgnoreMetadata(targetCRS, crsS)) {
+            overlays = new ReprojectFeatureCollection(overlays, crsS, targetCRS, true);
+            LOGGER.log(Level.WARNING, "reprojecting features");
+        }
+        this.overlays = overlays;
+    }
+
+    public SimpleFeatureType getSchema() {
+        return overlays.getSchema();
+    }
+
+    /**
+     * Number of threads used to overlay the input features, 1 to overlay them in the calling thread.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Overlays the input features in one thread per available processor, or in the calling thread.
+     */
+    public void setParallel(boolean parallel) {
+        this.threadCount = parallel ? Runtime.getRuntime().availableProcessors() : 1;
+    }
+
+    public ReferencedEnvelope getBounds() {
+        build();
+        return bounds;
+    }
+
+    /**
+     * Returns the overlay features whose geometries intersect the given geometry, in the order of the overlay collection.
+     */
+    public List<OverlayFeature> query(Geometry geometry) {
+        build();
+
+        Envelope envelope = geometry.getEnvelopeInternal();
+        if (!bounds.intersects(envelope)) {
+            return Collections.emptyList();
+        }
+
+        List<OverlayFeature> result = new ArrayList<OverlayFeature>();
+        for (Object item : spatialIndex.query(envelope)) {
+            OverlayFeature candidate = (OverlayFeature) item;
+            if (candidate.prepared.intersects(geometry)) {
+                result.add(candidate);
+            }
+        }
+
+        if (result.size() > 1) {
+            Collections.sort(result, ORDER);
+        }
+        return result;
+    }
+
+    private synchronized void build() {
+        if (spatialIndex != null) {
+            return;
+        }
+
+        STRtree index = new STRtree();
+        ReferencedEnvelope extent = new ReferencedEnvelope(
+                overlays.getSchema().getCoordinateReferenceSystem());
+
+        int counter = 0;
+        SimpleFeatureIterator featureIter = overlays.features();
+        try {
+            while (featureIter.hasNext()) {
+                SimpleFeature feature = featureIter.next();
+                Geometry geometry = (Geometry) feature.getDefaultGeometry();
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+
+                PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+                index.insert(geometry.getEnvelopeInternal(),
+                        new OverlayFeature(counter++, feature, prepared));
+                extent.expandToInclude(geometry.getEnvelopeInternal());
+            }
+        } finally {
+            featureIter.close();
+        }
+
+        index.build(); // packed, read only from here
+        this.bounds = extent;
+        this.spatialIndex = index;
+    }
+
+    public static final class OverlayFeature {
+        final int index;
+
+        final SimpleFeature feature;
+
+        final PreparedGeometry prepared;
+
+        OverlayFeature(int index, SimpleFeature feature, PreparedGeometry prepared) {
+            this.index = index;
+            this.feature = feature;
+            this.prepared = prepared;
+        }
+
+        public SimpleFeature getFeature() {
+            return feature;
+        }
+
+        public Geometry getGeometry() {
+            return prepared.getGeometry();
+        }
+    }
+}
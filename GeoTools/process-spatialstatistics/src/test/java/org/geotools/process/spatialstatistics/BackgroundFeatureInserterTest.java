@@ -0,0 +1,112 @@
+package org.geotools.process.spatialstatistics;
+
+import java.io.IOException;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.process.spatialstatistics.operations.GeneralOperation;
+import org.geotools.process.spatialstatistics.storage.BackgroundFeatureInserter;
+import org.geotools.process.spatialstatistics.storage.IFeatureInserter;
+import org.geotools.process.spatialstatistics.storage.ShapeExportOperation;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class BackgroundFeatureInserterTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testGeneralOperation() throws Exception {
+        MemoryDataStore outputStore = new MemoryDataStore();
+        PointOperation operation = new PointOperation();
+        operation.setOutputDataStore(outputStore);
+        operation.setBackgroundWriting(true);
+        operation.setAutoBatchSize(false);
+
+        SimpleFeatureSource result = operation.execute("points", 12345);
+        assertTrue(operation.inserter instanceof BackgroundFeatureInserter);
+        assertEquals(0, ((BackgroundFeatureInserter) operation.inserter).getCommitInterval());
+        assertEquals(12345, result.getFeatures().size());
+        assertEquals(12345, outputStore.getFeatureSource("points").getCount(Query.ALL));
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        MemoryDataStore outputStore = new MemoryDataStore();
+        PointOperation operation = new PointOperation();
+        operation.setOutputDataStore(outputStore);
+        operation.setBackgroundWriting(true);
+        operation.setAutoBatchSize(false);
+        operation.failAt = 9000;
+
+        // without a commit interval nothing is written
+        try {
+            operation.execute("points", 12345);
+            fail("the failure must be propagated");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(0, outputStore.getFeatureSource("points").getCount(Query.ALL));
+
+        // batches of 2500 features committed before the failure remain
+        operation.setCommitInterval(2500);
+        try {
+            operation.execute("committed", 12345);
+            fail("the failure must be propagated");
+        } catch (IOException e) {
+            // expected
+        }
+        int count = outputStore.getFeatureSource("committed").getCount(Query.ALL);
+        assertTrue(count < 9000);
+        assertEquals(0, count % 2500);
+    }
+
+    @Test
+    public void testShapeExport() throws Exception {
+        SimpleFeatureCollection points = dataStore.getFeatureSource("point").getFeatures();
+
+        ShapeExportOperation operation = new ShapeExportOperation(true, 0);
+        operation.setOutputDataStore(new MemoryDataStore());
+        operation.setOutputTypeName("export");
+
+        SimpleFeatureSource result = operation.execute(points);
+        assertEquals(points.size(), result.getFeatures().size());
+    }
+
+    static final class PointOperation extends GeneralOperation {
+        IFeatureInserter inserter;
+
+        int failAt = -1;
+
+        SimpleFeatureSource execute(String typeName, int count) throws IOException {
+            SimpleFeatureType schema = null;
+            try {
+                schema = DataUtilities.createType(typeName, "geom:Point,id:Integer");
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+
+            inserter = getFeatureWriter(schema);
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (i == failAt) {
+                        throw new IOException("failed at " + i);
+                    }
+                    SimpleFeature newFeature = inserter.buildFeature();
+                    newFeature.setDefaultGeometry(gf.createPoint(new Coordinate(i, i * 0.5)));
+                    newFeature.setAttribute("id", i);
+                    inserter.write(newFeature);
+                }
+            } catch (IOException e) {
+                inserter.rollback(e);
+                throw e;
+            } finally {
+                inserter.close();
+            }
+            return inserter.getFeatureSource();
+        }
+    }
+}
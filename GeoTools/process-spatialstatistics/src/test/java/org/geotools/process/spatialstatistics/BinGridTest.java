@@ -0,0 +1,230 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.BinGrid;
+import org.geotools.process.spatialstatistics.pattern.AbstractBinningVisitor;
+import org.geotools.process.spatialstatistics.pattern.AbstractBinningVisitor.Bin;
+import org.geotools.process.spatialstatistics.pattern.HexagonalBinningVisitor;
+import org.geotools.process.spatialstatistics.pattern.RectangularBinningVisitor;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+
+public class BinGridTest extends SpatialStatisticsTestCase {
+
+    static final double TOLERANCE = 1e-6;
+
+    @Test
+    public void testBinGrid() throws Exception {
+        Random random = new Random(31);
+        int rows = 70, columns = 90;
+        Double[][] dense = new Double[rows][columns];
+
+        BinGrid grid = new BinGrid(4);
+        for (int i = 0; i < 20000; i++) {
+            // clustered, so that some bins are hit often and most never
+            int row = Math.min(rows - 1, Math.abs((int) (random.nextGaussian() * 12)));
+            int col = Math.min(columns - 1, Math.abs((int) (random.nextGaussian() * 20)));
+            double value = random.nextDouble() * 10 - 2;
+
+            grid.add(row, col, value);
+            dense[row][col] = dense[row][col] == null ? value : dense[row][col] + value;
+        }
+
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                Double value = grid.get(row, col);
+                if (dense[row][col] == null) {
+                    assertNull(value);
+                } else {
+                    assertEquals(dense[row][col].doubleValue(), value.doubleValue(), 0d);
+                    count++;
+                }
+            }
+        }
+        assertEquals(count, grid.size());
+
+        // row major order of the dense grid
+        long[] keys = grid.getSortedKeys();
+        int index = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                if (dense[row][col] != null) {
+                    assertEquals(row, BinGrid.row(keys[index]));
+                    assertEquals(col, BinGrid.col(keys[index]));
+                    index++;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRectangularBins() throws Exception {
+        ReferencedEnvelope bbox = new ReferencedEnvelope(1000, 1530, 2000, 2390, null);
+        final double width = 20, height = 15;
+
+        for (boolean onlyValidGrid : new boolean[] { true, false }) {
+            DenseRectangularVisitor visitor = new DenseRectangularVisitor(bbox, width, height);
+            visitor.setOnlyValidGrid(onlyValidGrid);
+            visitEvents(visitor, bbox);
+
+            List<Cell> expected = visitor.dense.getCells(onlyValidGrid);
+            Iterator<Bin> iter = visitor.getBins(null);
+            for (Cell cell : expected) {
+                assertTrue(iter.hasNext());
+                Bin bin = iter.next();
+                assertValue(cell.value, bin.value);
+
+                Envelope envelope = bin.geometry.getEnvelopeInternal();
+                assertEquals(visitor.originX() + cell.col * width, envelope.getMinX(), TOLERANCE);
+                assertEquals(visitor.originY() + cell.row * height, envelope.getMinY(), TOLERANCE);
+                assertEquals(width, envelope.getWidth(), TOLERANCE);
+                assertEquals(height, envelope.getHeight(), TOLERANCE);
+            }
+            assertFalse(iter.hasNext());
+        }
+    }
+
+    @Test
+    public void testHexagonalBins() throws Exception {
+        ReferencedEnvelope bbox = new ReferencedEnvelope(1000, 1530, 2000, 2390, null);
+        final double size = 12;
+        final double xoffset = Math.sqrt(3.0) * size;
+        final double yoffset = size * 1.5;
+
+        for (boolean onlyValidGrid : new boolean[] { true, false }) {
+            DenseHexagonalVisitor visitor = new DenseHexagonalVisitor(bbox, size);
+            visitor.setOnlyValidGrid(onlyValidGrid);
+            visitEvents(visitor, bbox);
+
+            List<Cell> expected = visitor.dense.getCells(onlyValidGrid);
+            Iterator<Bin> iter = visitor.getBins(null);
+            for (Cell cell : expected) {
+                assertTrue(iter.hasNext());
+                Bin bin = iter.next();
+                assertValue(cell.value, bin.value);
+
+                // odd rows are shifted by half a hexagon
+                double centerX = visitor.originX() + xoffset * 0.5 + cell.col * xoffset
+                        + (cell.row % 2 == 1 ? xoffset * 0.5 : 0);
+                double centerY = visitor.originY() + size + cell.row * yoffset;
+                Point centroid = bin.geometry.getCentroid();
+                assertEquals(centerX, centroid.getX(), TOLERANCE);
+                assertEquals(centerY, centroid.getY(), TOLERANCE);
+            }
+            assertFalse(iter.hasNext());
+        }
+    }
+
+    private void visitEvents(AbstractBinningVisitor visitor, ReferencedEnvelope bbox) {
+        Random random = new Random(5);
+        for (int i = 0; i < 5000; i++) {
+            // a few events fall outside of the extent
+            double x = bbox.getMinX() - 10 + random.nextDouble() * (bbox.getWidth() + 20);
+            double y = bbox.getMinY() + bbox.getHeight() * 0.5 + random.nextGaussian()
+                    * bbox.getHeight() * 0.2;
+            visitor.visit(new Coordinate(x, y), i % 7 == 0 ? 2.5 : 1.0);
+        }
+    }
+
+    private void assertValue(Double expected, Double actual) {
+        if (expected == null) {
+            assertNull(actual);
+        } else {
+            assertEquals(expected.doubleValue(), actual.doubleValue(), 0d);
+        }
+    }
+
+    static final class Cell {
+        final int row;
+
+        final int col;
+
+        final Double value;
+
+        Cell(int row, int col, Double value) {
+            this.row = row;
+            this.col = col;
+            this.value = value;
+        }
+    }
+
+    // the dense grid of the original implementation
+    static final class DenseGrid {
+        final Double[][] values;
+
+        DenseGrid(int rows, int columns) {
+            values = new Double[rows][columns];
+        }
+
+        void add(int row, int col, double value) {
+            Double preVal = values[row][col];
+            values[row][col] = preVal == null ? value : preVal + value;
+        }
+
+        List<Cell> getCells(boolean onlyValidGrid) {
+            List<Cell> cells = new ArrayList<Cell>();
+            for (int row = 0; row < values.length; row++) {
+                for (int col = 0; col < values[row].length; col++) {
+                    if (values[row][col] != null || !onlyValidGrid) {
+                        cells.add(new Cell(row, col, values[row][col]));
+                    }
+                }
+            }
+            return cells;
+        }
+    }
+
+    static final class DenseRectangularVisitor extends RectangularBinningVisitor {
+        final DenseGrid dense;
+
+        DenseRectangularVisitor(ReferencedEnvelope bbox, double width, double height) {
+            super(bbox, width, height);
+            dense = new DenseGrid(rows, columns);
+        }
+
+        @Override
+        protected void addValue(int row, int col, double value) {
+            super.addValue(row, col, value);
+            dense.add(row, col, value);
+        }
+
+        double originX() {
+            return minX;
+        }
+
+        double originY() {
+            return minY;
+        }
+    }
+
+    static final class DenseHexagonalVisitor extends HexagonalBinningVisitor {
+        final DenseGrid dense;
+
+        DenseHexagonalVisitor(ReferencedEnvelope bbox, double size) {
+            super(bbox, size);
+            dense = new DenseGrid(rows, columns);
+        }
+
+        @Override
+        protected void addValue(int row, int col, double value) {
+            super.addValue(row, col, value);
+            dense.add(row, col, value);
+        }
+
+        double originX() {
+            return minX;
+        }
+
+        double originY() {
+            return minY;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.geotools.process.spatialstatistics.distribution.CentralFeature;
+import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Point;
+
+public class CentralFeatureTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testClusteredEvents() throws Exception {
+        Random random = new Random(42);
+        Coordinate[] coordinates = new Coordinate[3000];
+        double[] weights = new double[coordinates.length];
+        double[] potentials = new double[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            // three clusters of different size and spread
+            double cx = i % 3 == 0 ? 1000 : (i % 3 == 1 ? 5000 : 3000);
+            double cy = i % 3 == 0 ? 2000 : (i % 3 == 1 ? 2500 : 8000);
+            double spread = i % 3 == 0 ? 300 : (i % 3 == 1 ? 800 : 1500);
+            coordinates[i] = new Coordinate(cx + random.nextGaussian() * spread, cy
+                    + random.nextGaussian() * spread);
+            weights[i] = random.nextDouble() * 10;
+            potentials[i] = i % 7 == 0 ? random.nextDouble() * 100 : 0d;
+        }
+
+        for (DistanceMethod method : DistanceMethod.values()) {
+            assertCentralEvent(coordinates, weights, potentials, method);
+        }
+    }
+
+    @Test
+    public void testUniformEvents() throws Exception {
+        Random random = new Random(7);
+        Coordinate[] coordinates = new Coordinate[1000];
+        double[] weights = new double[coordinates.length];
+        double[] potentials = new double[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(random.nextDouble() * 100, random.nextDouble() * 100);
+            weights[i] = 1d;
+        }
+
+        for (DistanceMethod method : DistanceMethod.values()) {
+            assertCentralEvent(coordinates, weights, potentials, method);
+        }
+    }
+
+    @Test
+    public void testTiedEvents() throws Exception {
+        // a symmetric lattice, the first of the tied events wins
+        Coordinate[] coordinates = new Coordinate[32 * 32];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(i % 32, i / 32);
+        }
+        double[] weights = new double[coordinates.length];
+        Arrays.fill(weights, 1d);
+
+        for (DistanceMethod method : DistanceMethod.values()) {
+            assertCentralEvent(coordinates, weights, new double[coordinates.length], method);
+        }
+    }
+
+    @Test
+    public void testNegativeWeights() throws Exception {
+        // the bounds do not hold, every event is scored
+        Random random = new Random(3);
+        Coordinate[] coordinates = new Coordinate[500];
+        double[] weights = new double[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(random.nextDouble() * 100, random.nextDouble() * 100);
+            weights[i] = random.nextDouble() * 10 - 2;
+        }
+
+        assertCentralEvent(coordinates, weights, new double[coordinates.length],
+                DistanceMethod.Euclidean);
+    }
+
+    private void assertCentralEvent(Coordinate[] coordinates, double[] weights,
+            double[] potentials, DistanceMethod method) {
+        CentralFeature centralFeature = new CentralFeature();
+        centralFeature.setDistanceMethod(method);
+        for (int i = 0; i < coordinates.length; i++) {
+            centralFeature.addValue(coordinates[i], weights[i], potentials[i]);
+        }
+
+        Point central = centralFeature.getCentralEvent();
+        Coordinate expected = coordinates[bruteForce(coordinates, weights, potentials, method)];
+        assertEquals(expected.x, central.getCoordinate().x, 0d);
+        assertEquals(expected.y, central.getCoordinate().y, 0d);
+    }
+
+    // the exhaustive search of the original implementation
+    private int bruteForce(Coordinate[] coordinates, double[] weights, double[] potentials,
+            DistanceMethod method) {
+        int index = -1;
+        double minDistance = Double.MAX_VALUE;
+        for (int ce = 0; ce < coordinates.length; ce++) {
+            double curDistance = 0d;
+            for (int de = 0; de < coordinates.length; de++) {
+                double dij = ce == de ? potentials[ce] : getDistance(coordinates[ce],
+                        coordinates[de], method);
+                curDistance += dij * weights[de];
+            }
+
+            if (curDistance < minDistance) {
+                minDistance = curDistance;
+                index = ce;
+            }
+        }
+        return index;
+    }
+
+    private double getDistance(Coordinate from, Coordinate to, DistanceMethod method) {
+        double dx = to.x - from.x;
+        double dy = to.y - from.y;
+        if (method == DistanceMethod.Manhattan) {
+            return Math.abs(dx) + Math.abs(dy);
+        }
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,93 @@
+package org.geotools.process.spatialstatistics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.process.spatialstatistics.storage.DbaseFileHeader2;
+import org.geotools.process.spatialstatistics.storage.DbaseFileWriter2;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class DbaseFileWriter2Test extends SpatialStatisticsTestCase {
+
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    @Test
+    public void testRoundHalfUp() throws Exception {
+        Object[][] values = { { "a", 1.2345, 2.5, 123.4567 }, //
+                { "b", -0.0005, 0.4999, 99.9995 }, //
+                { "c", Integer.valueOf(7), 1234.5, 12345.678 }, //
+                { "d", 1.0005, -2.5, 0.0 } };
+        List<Object[]> rows = writeAndRead(values);
+        assertEquals(values.length, rows.size());
+
+        // value N(12,3)
+        assertEquals(1.235, number(rows.get(0)[1]), 0d);
+        assertEquals(-0.001, number(rows.get(1)[1]), 0d);
+        assertEquals(7.0, number(rows.get(2)[1]), 0d);
+        assertEquals(1.001, number(rows.get(3)[1]), 0d);
+
+        // count N(6,0)
+        assertEquals(3.0, number(rows.get(0)[2]), 0d);
+        assertEquals(0.0, number(rows.get(1)[2]), 0d);
+        assertEquals(1235.0, number(rows.get(2)[2]), 0d);
+        assertEquals(-3.0, number(rows.get(3)[2]), 0d);
+
+        // narrow N(6,3): fewer decimals, rounded rather than truncated
+        assertEquals(123.46, number(rows.get(0)[3]), 0d);
+        assertEquals(100.0, number(rows.get(1)[3]), 0d);
+        assertEquals(12346.0, number(rows.get(2)[3]), 0d);
+        assertEquals(0.0, number(rows.get(3)[3]), 0d);
+
+        assertEquals("a", rows.get(0)[0].toString().trim());
+    }
+
+    private List<Object[]> writeAndRead(Object[][] values) throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType("dbf",
+                "name:String,value:Double,count:Double,narrow:Double");
+
+        DbaseFileHeader2 header = new DbaseFileHeader2();
+        header.addColumn("name", 'C', 10, 0);
+        header.addColumn("value", 'N', 12, 3);
+        header.addColumn("count", 'N', 6, 0);
+        header.addColumn("narrow", 'N', 6, 3);
+
+        File file = File.createTempFile("dbf", ".dbf");
+        file.deleteOnExit();
+
+        DbaseFileWriter2 writer = new DbaseFileWriter2(header,
+                new FileOutputStream(file).getChannel(), CHARSET, TimeZone.getDefault());
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        int[] attributes = { 0, 1, 2, 3 };
+        for (int i = 0; i < values.length; i++) {
+            builder.addAll(values[i]);
+            writer.write(builder.buildFeature("dbf." + i), attributes);
+        }
+        writer.close();
+
+        List<Object[]> rows = new ArrayList<Object[]>();
+        DbaseFileReader reader = new DbaseFileReader(new FileInputStream(file).getChannel(),
+                false, CHARSET);
+        try {
+            assertEquals(values.length, reader.getHeader().getNumRecords());
+            while (reader.hasNext()) {
+                rows.add(reader.readEntry());
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private double number(Object value) {
+        return ((Number) value).doubleValue();
+    }
+}
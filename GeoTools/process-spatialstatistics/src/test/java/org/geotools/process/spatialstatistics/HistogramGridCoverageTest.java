@@ -0,0 +1,74 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.core.DataHistogram;
+import org.geotools.process.spatialstatistics.core.HistogramGridCoverage;
+import org.junit.Test;
+
+public class HistogramGridCoverageTest extends SpatialStatisticsTestCase {
+
+    static final float NODATA = -9999f;
+
+    @Test
+    public void testDistinctValues() throws Exception {
+        Random random = new Random(5);
+        float[][] matrix = new float[200][300];
+        Map<Double, Integer> expected = new TreeMap<Double, Integer>();
+        for (int row = 0; row < matrix.length; row++) {
+            for (int col = 0; col < matrix[row].length; col++) {
+                if (random.nextInt(10) == 0) {
+                    matrix[row][col] = NODATA;
+                    continue;
+                }
+
+                // many repeated values and a few unique ones
+                float value = random.nextInt(4) == 0 ? random.nextFloat() : random.nextInt(50);
+                matrix[row][col] = value;
+
+                Integer count = expected.get(Double.valueOf(value));
+                expected.put(Double.valueOf(value), count == null ? 1 : count + 1);
+            }
+        }
+
+        DataHistogram histogram = new HistogramGridCoverage();
+        assertTrue(histogram.calculateHistogram(createCoverage(matrix), 0, NODATA));
+
+        double[] values = histogram.getArrayValues();
+        int[] frequencies = histogram.getArrayFrequencies();
+        assertEquals(expected.size(), values.length);
+
+        int index = 0;
+        int total = 0;
+        for (Map.Entry<Double, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().doubleValue(), values[index], 0d);
+            assertEquals(entry.getValue().intValue(), frequencies[index]);
+            total += frequencies[index++];
+        }
+        assertEquals(total, histogram.getCount());
+    }
+
+    @Test
+    public void testNoDataOnly() throws Exception {
+        float[][] matrix = new float[10][10];
+        for (float[] row : matrix) {
+            Arrays.fill(row, NODATA);
+        }
+
+        DataHistogram histogram = new HistogramGridCoverage();
+        assertFalse(histogram.calculateHistogram(createCoverage(matrix), 0, NODATA));
+        assertEquals(0, histogram.getCount());
+    }
+
+    private GridCoverage2D createCoverage(float[][] matrix) {
+        ReferencedEnvelope extent = new ReferencedEnvelope(0, matrix[0].length, 0,
+                matrix.length, null);
+        return new GridCoverageFactory().create("histogram", matrix, extent);
+    }
+}
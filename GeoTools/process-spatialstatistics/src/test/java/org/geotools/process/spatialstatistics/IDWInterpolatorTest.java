@@ -0,0 +1,147 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.geotools.process.spatialstatistics.core.PointKdTree.Neighbors;
+import org.geotools.process.spatialstatistics.gridcoverage.IDWInterpolator;
+import org.geotools.process.spatialstatistics.gridcoverage.RasterRadius;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+public class IDWInterpolatorTest extends SpatialStatisticsTestCase {
+
+    static final double CELL_SIZE = 7.5;
+
+    @Test
+    public void testFixedRadius() throws Exception {
+        Coordinate[] samples = createSamples(1500, 3);
+
+        // sparse enough that many cells have fewer than the minimum within the radius
+        RasterRadius radius = new RasterRadius();
+        radius.setFixed(25, 6);
+        assertInterpolation(samples, radius);
+
+        // without a minimum, cells with no sample within the radius are NoData
+        radius = new RasterRadius();
+        radius.setFixed(15);
+        assertInterpolation(samples, radius);
+    }
+
+    @Test
+    public void testVariableRadius() throws Exception {
+        Coordinate[] samples = createSamples(1500, 5);
+
+        RasterRadius radius = new RasterRadius();
+        radius.setVariable(12);
+        assertInterpolation(samples, radius);
+
+        radius = new RasterRadius();
+        radius.setVariable(8, 20);
+        assertInterpolation(samples, radius);
+    }
+
+    @Test
+    public void testCellOnSample() throws Exception {
+        Coordinate[] samples = { new Coordinate(10, 10, 5), new Coordinate(20, 10, 9),
+                new Coordinate(10, 20, 1) };
+        IDWInterpolator idw = new IDWInterpolator(samples);
+        assertEquals(9d, idw.getValue(new Coordinate(20, 10)), 0d);
+
+        // equidistant samples are all used
+        double expected = (5 / 25d + 9 / 25d + 1 / 125d) / (2 / 25d + 1 / 125d);
+        assertEquals(expected, idw.getValue(new Coordinate(15, 10)), 1e-12);
+    }
+
+    private void assertInterpolation(Coordinate[] samples, RasterRadius radius) {
+        IDWInterpolator idw = new IDWInterpolator(samples, radius, 2.0);
+
+        final int columns = 140;
+        final double minX = -20;
+        double[] row = new double[columns];
+        Neighbors neighbors = new Neighbors();
+        for (int r = 0; r < 40; r++) {
+            final double y = -20 + r * 26.3;
+            idw.getValues(y, minX, CELL_SIZE, row, neighbors);
+
+            for (int column = 0; column < columns; column++) {
+                final double x = minX + column * CELL_SIZE;
+                double expected = bruteForce(samples, radius, x, y);
+
+                // the row search is bounded by the previous cell, the single search is not
+                assertEquals(expected, row[column], Math.abs(expected) * 1e-9);
+                assertEquals(expected, idw.getValue(new Coordinate(x, y)),
+                        Math.abs(expected) * 1e-9);
+            }
+        }
+    }
+
+    /**
+     * Fixed radius: every sample within the distance, the nearest minimum number if fewer are
+     * found. Variable radius: the nearest number of samples within the maximum distance.
+     */
+    private double bruteForce(Coordinate[] samples, RasterRadius radius, final double x,
+            final double y) {
+        Coordinate[] sorted = samples.clone();
+        Arrays.sort(sorted, new Comparator<Coordinate>() {
+            @Override
+            public int compare(Coordinate o1, Coordinate o2) {
+                return Double.compare(distanceSq(o1, x, y), distanceSq(o2, x, y));
+            }
+        });
+
+        double distance = radius.distance;
+        int count = 0;
+        if (radius.getRadiusType() == RasterRadius.SearchRadiusType.Fixed) {
+            while (count < sorted.length
+                    && distanceSq(sorted[count], x, y) <= distance * distance) {
+                count++;
+            }
+            if (count < radius.numberOfPoints) {
+                count = Math.min(sorted.length, radius.numberOfPoints);
+            }
+        } else {
+            while (count < Math.min(sorted.length, radius.numberOfPoints)
+                    && distanceSq(sorted[count], x, y) <= distance * distance) {
+                count++;
+            }
+        }
+
+        double sumWeight = 0;
+        double weightSumDist = 0;
+        for (int i = 0; i < count; i++) {
+            double distanceSq = distanceSq(sorted[i], x, y);
+            if (distanceSq == 0) {
+                return sorted[i].z;
+            }
+            sumWeight += 1.0 / distanceSq;
+            weightSumDist += sorted[i].z / distanceSq;
+        }
+        return sumWeight > 0 ? weightSumDist / sumWeight : -Float.MAX_VALUE;
+    }
+
+    private double distanceSq(Coordinate sample, double x, double y) {
+        double dx = sample.x - x;
+        double dy = sample.y - y;
+        return dx * dx + dy * dy;
+    }
+
+    private Coordinate[] createSamples(int size, long seed) {
+        // a dense cluster and a sparse background
+        Random random = new Random(seed);
+        Coordinate[] samples = new Coordinate[size];
+        for (int i = 0; i < size; i++) {
+            double x, y;
+            if (i % 4 == 0) {
+                x = random.nextDouble() * 1000;
+                y = random.nextDouble() * 1000;
+            } else {
+                x = 250 + random.nextGaussian() * 40;
+                y = 400 + random.nextGaussian() * 60;
+            }
+            samples[i] = new Coordinate(x, y, 100 + x * 0.05 - y * 0.02 + random.nextDouble());
+        }
+        return samples;
+    }
+}
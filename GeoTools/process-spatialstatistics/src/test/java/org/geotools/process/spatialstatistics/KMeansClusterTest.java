@@ -0,0 +1,158 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Random;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.pattern.Cluster.PointEvent;
+import org.geotools.process.spatialstatistics.pattern.KMeansCluster;
+import org.junit.Test;
+
+public class KMeansClusterTest extends SpatialStatisticsTestCase {
+
+    static final long SEED = 20100401L;
+
+    @Test
+    public void testHamerlyMatchesLloyd() throws Exception {
+        // more points than one assignment chunk, so that several workers run
+        final int numClusters = 12;
+        double[][] coordinates = createEvents(20000, numClusters, 7);
+
+        PointEvent[] points = new PointEvent[coordinates.length];
+        for (int i = 0; i < coordinates.length; i++) {
+            points[i] = new PointEvent(coordinates[i][0], coordinates[i][1]);
+        }
+
+        KMeansCluster kMeans = new KMeansCluster(points, new ReferencedEnvelope(0, 1000, 0, 1000,
+                null));
+        kMeans.setSeed(SEED);
+        kMeans.setThreadCount(4);
+        PointEvent[] means = kMeans.cluster(numClusters);
+
+        Lloyd lloyd = new Lloyd(coordinates, numClusters, new Random(SEED));
+        for (int j = 0; j < numClusters; j++) {
+            assertEquals(j, means[j].cluster);
+            assertEquals(lloyd.cx[j], means[j].x, 1e-9);
+            assertEquals(lloyd.cy[j], means[j].y, 1e-9);
+        }
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(lloyd.assignment[i], points[i].cluster);
+        }
+    }
+
+    private double[][] createEvents(int size, int centers, long seed) {
+        // overlapping gaussian blobs, so that many points change cluster while iterating
+        Random random = new Random(seed);
+        double[][] blobs = new double[centers][2];
+        for (int j = 0; j < centers; j++) {
+            blobs[j][0] = 100 + random.nextDouble() * 800;
+            blobs[j][1] = 100 + random.nextDouble() * 800;
+        }
+
+        double[][] coordinates = new double[size][2];
+        for (int i = 0; i < size; i++) {
+            double[] blob = blobs[random.nextInt(centers)];
+            coordinates[i][0] = blob[0] + random.nextGaussian() * 60;
+            coordinates[i][1] = blob[1] + random.nextGaussian() * 60;
+        }
+        return coordinates;
+    }
+
+    // k-means++ seeding followed by plain Lloyd iterations, all distances in every pass
+    static final class Lloyd {
+        final double[] cx;
+
+        final double[] cy;
+
+        final int[] assignment;
+
+        Lloyd(double[][] coordinates, int numClusters, Random random) {
+            final int n = coordinates.length;
+            cx = new double[numClusters];
+            cy = new double[numClusters];
+            assignment = new int[n];
+
+            // the same draws as KMeansCluster#seedCentroids
+            double[] d2 = new double[n];
+            int first = random.nextInt(n);
+            cx[0] = coordinates[first][0];
+            cy[0] = coordinates[first][1];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                d2[i] = squaredDistance(coordinates[i], cx[0], cy[0]);
+                total += d2[i];
+            }
+            for (int j = 1; j < numClusters; j++) {
+                int pick = n - 1;
+                double target = random.nextDouble() * total;
+                for (int i = 0; i < n; i++) {
+                    target -= d2[i];
+                    if (target <= 0) {
+                        pick = i;
+                        break;
+                    }
+                }
+                cx[j] = coordinates[pick][0];
+                cy[j] = coordinates[pick][1];
+
+                total = 0;
+                for (int i = 0; i < n; i++) {
+                    d2[i] = Math.min(d2[i], squaredDistance(coordinates[i], cx[j], cy[j]));
+                    total += d2[i];
+                }
+            }
+
+            assign(coordinates);
+            for (int loopCount = 0; loopCount < 200; loopCount++) {
+                double[] sumX = new double[numClusters];
+                double[] sumY = new double[numClusters];
+                int[] sizes = new int[numClusters];
+                for (int i = 0; i < n; i++) {
+                    sumX[assignment[i]] += coordinates[i][0];
+                    sumY[assignment[i]] += coordinates[i][1];
+                    sizes[assignment[i]]++;
+                }
+
+                boolean moved = false;
+                for (int j = 0; j < numClusters; j++) {
+                    if (sizes[j] > 0) {
+                        double x = sumX[j] / sizes[j];
+                        double y = sumY[j] / sizes[j];
+                        moved |= x != cx[j] || y != cy[j];
+                        cx[j] = x;
+                        cy[j] = y;
+                    }
+                }
+
+                if (!moved || assign(coordinates) == 0) {
+                    break;
+                }
+            }
+        }
+
+        private int assign(double[][] coordinates) {
+            int changed = 0;
+            for (int i = 0; i < coordinates.length; i++) {
+                int best = 0;
+                double bestDistance = Double.MAX_VALUE;
+                for (int j = 0; j < cx.length; j++) {
+                    double distance = squaredDistance(coordinates[i], cx[j], cy[j]);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = j;
+                    }
+                }
+                if (assignment[i] != best) {
+                    changed++;
+                }
+                assignment[i] = best;
+            }
+            return changed;
+        }
+
+        private static double squaredDistance(double[] coordinate, double x, double y) {
+            double dx = coordinate[0] - x;
+            double dy = coordinate[1] - y;
+            return dx * dx + dy * dy;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine;
+import org.geotools.process.spatialstatistics.autocorrelation.LocalPermutationEngine.LocalStatistic;
+import org.geotools.process.spatialstatistics.core.WeightMatrixBuilder;
+import org.geotools.process.spatialstatistics.enumeration.SpatialConcept;
+import org.geotools.process.spatialstatistics.enumeration.StandardizationMethod;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class LocalPermutationEngineTest extends SpatialStatisticsTestCase {
+
+    static final int SIZE = 12;
+
+    static final int PERMUTATIONS = 999;
+
+    @Test
+    public void testClusteredPattern() throws Exception {
+        // left half high, right half low
+        double[] values = new double[SIZE * SIZE];
+        Random random = new Random(7);
+        for (int k = 0; k < values.length; k++) {
+            values[k] = (k % SIZE < SIZE / 2 ? 100 : 0) + random.nextDouble();
+        }
+
+        WeightMatrixBuilder swMatrix = buildMatrix(values);
+        double[] pValues = run(swMatrix, values, 4);
+
+        final double minP = 1.0 / (PERMUTATIONS + 1);
+        final double maxP = (PERMUTATIONS / 2 + 1.0) / (PERMUTATIONS + 1);
+        for (int k = 0; k < pValues.length; k++) {
+            assertTrue(pValues[k] >= minP && pValues[k] <= maxP);
+        }
+
+        // cells inside the halves are surrounded by similar values
+        assertTrue(pValues[index(2, 5)] < 0.02);
+        assertTrue(pValues[index(9, 5)] < 0.02);
+    }
+
+    @Test
+    public void testRandomPattern() throws Exception {
+        double[] values = new double[SIZE * SIZE];
+        Random random = new Random(11);
+        for (int k = 0; k < values.length; k++) {
+            values[k] = random.nextGaussian();
+        }
+
+        WeightMatrixBuilder swMatrix = buildMatrix(values);
+        double[] pValues = run(swMatrix, values, 4);
+
+        // folded p-values are uniform on (0, 0.5], about 10% fall below 0.05
+        int significant = 0;
+        for (double pValue : pValues) {
+            if (pValue < 0.05) {
+                significant++;
+            }
+        }
+        assertTrue(significant < pValues.length / 4);
+    }
+
+    @Test
+    public void testThreadIndependence() throws Exception {
+        double[] values = new double[SIZE * SIZE];
+        Random random = new Random(3);
+        for (int k = 0; k < values.length; k++) {
+            values[k] = random.nextDouble();
+        }
+
+        WeightMatrixBuilder swMatrix = buildMatrix(values);
+        double[] single = run(swMatrix, values, 1);
+        double[] parallel = run(swMatrix, values, 4);
+        for (int k = 0; k < single.length; k++) {
+            assertEquals(single[k], parallel[k], 0d);
+        }
+    }
+
+    private int index(int col, int row) {
+        return row * SIZE + col;
+    }
+
+    private WeightMatrixBuilder buildMatrix(double[] values) throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType("grid", "geom:Point,val:Double");
+        ListFeatureCollection features = new ListFeatureCollection(schema);
+
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                builder.add(gf.createPoint(new Coordinate(col, row)));
+                builder.add(Double.valueOf(values[index(col, row)]));
+                features.add(builder.buildFeature("grid." + index(col, row)));
+            }
+        }
+
+        // queen neighbors on the unit grid
+        WeightMatrixBuilder swMatrix = new WeightMatrixBuilder(SpatialConcept.FixedDistance,
+                StandardizationMethod.Row);
+        swMatrix.setDistanceBandWidth(1.5);
+        swMatrix.buildWeightMatrix((SimpleFeatureCollection) features, "val");
+        return swMatrix;
+    }
+
+    private double[] run(WeightMatrixBuilder swMatrix, double[] values, int threadCount) {
+        double mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+
+        final double[] zx = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            zx[i] = swMatrix.getEvents().get(i).xVal - mean;
+        }
+
+        LocalPermutationEngine engine = new LocalPermutationEngine(swMatrix);
+        engine.setPermutations(PERMUTATIONS);
+        engine.setSeed(12345L);
+        engine.setThreadCount(threadCount);
+        engine.run(new LocalStatistic() {
+            @Override
+            public double evaluate(int i, int[] neighbors, double[] weights, int count) {
+                double sum = 0.0;
+                for (int k = 0; k < count; k++) {
+                    sum += weights[k] * zx[neighbors[k]];
+                }
+                return zx[i] * sum;
+            }
+        });
+        return engine.getPValues();
+    }
+}
@@ -0,0 +1,91 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Random;
+
+import org.geotools.process.spatialstatistics.clsssifier.NaturalBreaksClassify;
+import org.junit.Test;
+
+public class NaturalBreaksClassifyTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testOptimalBreaks() throws Exception {
+        Random random = new Random(3);
+        double[] values = new double[40];
+        int[] frequencies = new int[values.length];
+        double value = 0;
+        for (int i = 0; i < values.length; i++) {
+            // three clumps of distinct values
+            value += i % 13 == 0 ? 50 + random.nextDouble() * 20 : random.nextDouble() * 3;
+            values[i] = value;
+            frequencies[i] = 1 + random.nextInt(5);
+        }
+
+        NaturalBreaksClassify classify = new NaturalBreaksClassify();
+        Double[] breaks = classify.classify(values, frequencies, 3);
+        assertEquals(4, breaks.length);
+        assertEquals(values[0], breaks[0].doubleValue(), 0d);
+        assertEquals(values[values.length - 1], breaks[3].doubleValue(), 0d);
+
+        // every split of the sorted values into three classes
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < values.length - 2; i++) {
+            for (int j = i + 1; j < values.length - 1; j++) {
+                double cost = withinSS(values, frequencies, 0, i)
+                        + withinSS(values, frequencies, i + 1, j)
+                        + withinSS(values, frequencies, j + 1, values.length - 1);
+                best = Math.min(best, cost);
+            }
+        }
+
+        int first = 0;
+        double cost = 0;
+        for (int c = 1; c <= 3; c++) {
+            int last = first;
+            while (last < values.length - 1 && values[last + 1] <= breaks[c].doubleValue()) {
+                last++;
+            }
+            cost += withinSS(values, frequencies, first, last);
+            first = last + 1;
+        }
+        assertEquals(values.length, first);
+        assertEquals(best, cost, best * 1e-9);
+    }
+
+    @Test
+    public void testDistinctValuesAreBounded() throws Exception {
+        // more distinct values than the backtrack table holds, without a sample size
+        final int size = NaturalBreaksClassify.MAX_SAMPLE_SIZE * 3;
+        double[] values = new double[size];
+        int[] frequencies = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i < size / 2 ? i : i * 4.0;
+            frequencies[i] = 1;
+        }
+
+        NaturalBreaksClassify classify = new NaturalBreaksClassify();
+        assertEquals(0, classify.getSampleSize());
+        Double[] breaks = classify.classify(values, frequencies, 5);
+
+        assertEquals(6, breaks.length);
+        assertEquals(values[0], breaks[0].doubleValue(), 0d);
+        assertEquals(values[size - 1], breaks[5].doubleValue(), 0d);
+        for (int c = 1; c < breaks.length; c++) {
+            assertTrue(breaks[c - 1].doubleValue() < breaks[c].doubleValue());
+        }
+    }
+
+    private double withinSS(double[] values, int[] frequencies, int from, int to) {
+        double sumW = 0, sumX = 0;
+        for (int i = from; i <= to; i++) {
+            sumW += frequencies[i];
+            sumX += frequencies[i] * values[i];
+        }
+
+        double mean = sumX / sumW;
+        double sum = 0;
+        for (int i = from; i <= to; i++) {
+            sum += frequencies[i] * (values[i] - mean) * (values[i] - mean);
+        }
+        return sum;
+    }
+}
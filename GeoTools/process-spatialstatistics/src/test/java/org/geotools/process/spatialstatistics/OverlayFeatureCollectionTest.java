@@ -0,0 +1,223 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.process.spatialstatistics.process.UnionProcess;
+import org.geotools.process.spatialstatistics.process.UnionProcessFactory;
+import org.geotools.process.spatialstatistics.transformation.DifferenceFeatureCollection;
+import org.geotools.process.spatialstatistics.transformation.IntersectFeatureCollection;
+import org.geotools.process.spatialstatistics.transformation.OverlayIndex;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class OverlayFeatureCollectionTest extends SpatialStatisticsTestCase {
+
+    static final GeometryFactory gf = new GeometryFactory();
+
+    static final double TOLERANCE = 1e-6;
+
+    @Test
+    public void testIntersect() throws Exception {
+        // more input features than one batch of the iterator
+        SimpleFeatureCollection inputs = createCircles("inputs", "id", 700, 12, 1);
+        SimpleFeatureCollection overlays = createCircles("overlays", "code", 60, 40, 2);
+
+        List<SimpleFeature> serial = toList(new IntersectFeatureCollection(inputs,
+                createIndex(overlays, inputs, 1)));
+        List<SimpleFeature> parallel = toList(new IntersectFeatureCollection(inputs,
+                createIndex(overlays, inputs, 4)));
+        assertSameFeatures(serial, parallel);
+
+        // the serial overlay: every pair of intersecting features, in input and overlay order
+        int index = 0;
+        for (SimpleFeature input : toList(inputs)) {
+            Geometry geometry = (Geometry) input.getDefaultGeometry();
+            for (SimpleFeature overlay : toList(overlays)) {
+                Geometry other = (Geometry) overlay.getDefaultGeometry();
+                if (!geometry.intersects(other)) {
+                    continue;
+                }
+
+                Geometry expected = geometry.intersection(other);
+                if (expected.getArea() == 0) {
+                    continue;
+                }
+
+                SimpleFeature feature = serial.get(index++);
+                assertEquals(input.getAttribute("id"), feature.getAttribute("id"));
+                assertEquals(overlay.getAttribute("code"), feature.getAttribute("code"));
+                assertEquals(expected.getArea(), area(feature), TOLERANCE);
+            }
+        }
+        assertEquals(index, serial.size());
+    }
+
+    @Test
+    public void testDifference() throws Exception {
+        SimpleFeatureCollection inputs = createCircles("inputs", "id", 700, 12, 3);
+        SimpleFeatureCollection overlays = createCircles("overlays", "code", 60, 40, 4);
+
+        List<SimpleFeature> serial = toList(new DifferenceFeatureCollection(inputs,
+                createIndex(overlays, inputs, 1)));
+        List<SimpleFeature> parallel = toList(new DifferenceFeatureCollection(inputs,
+                createIndex(overlays, inputs, 4)));
+        assertSameFeatures(serial, parallel);
+
+        // the serial overlay: the input minus the union of the intersecting features
+        int index = 0;
+        for (SimpleFeature input : toList(inputs)) {
+            Geometry expected = difference((Geometry) input.getDefaultGeometry(), overlays);
+            if (expected.getArea() == 0) {
+                continue;
+            }
+
+            SimpleFeature feature = serial.get(index++);
+            assertEquals(input.getID(), feature.getID());
+            assertEquals(expected.getArea(), area(feature), TOLERANCE);
+        }
+        assertEquals(index, serial.size());
+    }
+
+    @Test
+    public void testUnion() throws Exception {
+        SimpleFeatureCollection inputs = createCircles("inputs", "id", 400, 15, 5);
+        SimpleFeatureCollection overlays = createCircles("overlays", "code", 300, 15, 6);
+
+        List<SimpleFeature> serial = toList(union(inputs, overlays, false));
+        List<SimpleFeature> parallel = toList(union(inputs, overlays, true));
+        assertSameFeatures(serial, parallel);
+
+        // the intersections, then both differences
+        int count = 0;
+        double area = 0;
+        for (SimpleFeature input : toList(inputs)) {
+            Geometry geometry = (Geometry) input.getDefaultGeometry();
+            for (SimpleFeature overlay : toList(overlays)) {
+                Geometry other = (Geometry) overlay.getDefaultGeometry();
+                if (geometry.intersects(other)) {
+                    double intersection = geometry.intersection(other).getArea();
+                    count += intersection > 0 ? 1 : 0;
+                    area += intersection;
+                }
+            }
+
+            double difference = difference(geometry, overlays).getArea();
+            count += difference > 0 ? 1 : 0;
+            area += difference;
+        }
+        for (SimpleFeature overlay : toList(overlays)) {
+            double difference = difference((Geometry) overlay.getDefaultGeometry(), inputs)
+                    .getArea();
+            count += difference > 0 ? 1 : 0;
+            area += difference;
+        }
+
+        assertEquals(count, serial.size());
+        double total = 0;
+        for (SimpleFeature feature : serial) {
+            total += area(feature);
+        }
+        assertEquals(area, total, TOLERANCE * count);
+    }
+
+    private SimpleFeatureCollection union(SimpleFeatureCollection inputs,
+            SimpleFeatureCollection overlays, boolean parallel) throws Exception {
+        Map<String, Object> input = new HashMap<String, Object>();
+        input.put(UnionProcessFactory.inputFeatures.key, inputs);
+        input.put(UnionProcessFactory.overlayFeatures.key, overlays);
+        input.put(UnionProcessFactory.parallel.key, Boolean.valueOf(parallel));
+
+        Map<String, Object> result = new UnionProcess(null).execute(input, null);
+        return (SimpleFeatureCollection) result.get(UnionProcessFactory.RESULT.key);
+    }
+
+    private OverlayIndex createIndex(SimpleFeatureCollection overlays,
+            SimpleFeatureCollection inputs, int threadCount) {
+        OverlayIndex index = new OverlayIndex(overlays, inputs.getSchema()
+                .getCoordinateReferenceSystem());
+        index.setThreadCount(threadCount);
+        return index;
+    }
+
+    private Geometry difference(Geometry geometry, SimpleFeatureCollection features) {
+        List<Geometry> geometries = new ArrayList<Geometry>();
+        for (SimpleFeature feature : toList(features)) {
+            Geometry other = (Geometry) feature.getDefaultGeometry();
+            if (geometry.intersects(other)) {
+                geometries.add(other);
+            }
+        }
+
+        if (geometries.isEmpty()) {
+            return geometry;
+        }
+        return geometry.difference(new CascadedPolygonUnion(geometries).union());
+    }
+
+    private void assertSameFeatures(List<SimpleFeature> expected, List<SimpleFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SimpleFeature feature = expected.get(i);
+            SimpleFeature other = actual.get(i);
+            assertEquals(feature.getID(), other.getID());
+            assertEquals(feature.getAttributeCount(), other.getAttributeCount());
+            for (int k = 0; k < feature.getAttributeCount(); k++) {
+                Object value = feature.getAttribute(k);
+                if (value instanceof Geometry) {
+                    assertTrue(((Geometry) value).equalsExact((Geometry) other.getAttribute(k)));
+                } else {
+                    assertEquals(value, other.getAttribute(k));
+                }
+            }
+        }
+    }
+
+    private double area(SimpleFeature feature) {
+        return ((Geometry) feature.getDefaultGeometry()).getArea();
+    }
+
+    private SimpleFeatureCollection createCircles(String typeName, String field, int size,
+            double radius, long seed) throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType(typeName, "geom:Polygon," + field
+                + ":Integer");
+        ListFeatureCollection features = new ListFeatureCollection(schema);
+
+        Random random = new Random(seed);
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        for (int i = 0; i < size; i++) {
+            Coordinate center = new Coordinate(random.nextDouble() * 500,
+                    random.nextDouble() * 500);
+            builder.add(gf.createPoint(center).buffer(radius * (0.5 + random.nextDouble()), 8));
+            builder.add(Integer.valueOf(i));
+            features.add(builder.buildFeature(typeName + "." + i));
+        }
+        return features;
+    }
+
+    private List<SimpleFeature> toList(SimpleFeatureCollection features) {
+        List<SimpleFeature> list = new ArrayList<SimpleFeature>();
+        SimpleFeatureIterator iter = features.features();
+        try {
+            while (iter.hasNext()) {
+                list.add(iter.next());
+            }
+        } finally {
+            iter.close();
+        }
+        return list;
+    }
+}
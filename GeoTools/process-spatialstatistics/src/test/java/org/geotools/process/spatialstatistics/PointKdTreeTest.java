@@ -0,0 +1,171 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.geotools.process.spatialstatistics.core.PointKdTree;
+import org.geotools.process.spatialstatistics.core.PointKdTree.Neighbors;
+import org.junit.Test;
+
+public class PointKdTreeTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testNearest() throws Exception {
+        double[][] points = createPoints(3000, 5);
+        PointKdTree tree = new PointKdTree(points[0], points[1]);
+        assertEquals(3000, tree.size());
+
+        Random random = new Random(7);
+        Neighbors neighbors = new Neighbors();
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 1200 - 100;
+            double y = random.nextDouble() * 1200 - 100;
+            for (int k : new int[] { 1, 5, 12, 40 }) {
+                tree.search(x, y, k, Double.NaN, neighbors);
+                double[] expected = Arrays.copyOf(bruteForce(points, x, y), k);
+                assertDistances(points, x, y, expected, neighbors);
+            }
+        }
+    }
+
+    @Test
+    public void testNearestWithinDistance() throws Exception {
+        double[][] points = createPoints(3000, 11);
+        PointKdTree tree = new PointKdTree(points[0], points[1]);
+
+        Random random = new Random(13);
+        Neighbors neighbors = new Neighbors();
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double maxDistance = random.nextDouble() * 40;
+
+            // at most k, all of them within the distance
+            double[] sorted = bruteForce(points, x, y);
+            int count = 0;
+            while (count < 12 && sorted[count] <= maxDistance * maxDistance) {
+                count++;
+            }
+
+            tree.search(x, y, 12, maxDistance, neighbors);
+            assertDistances(points, x, y, Arrays.copyOf(sorted, count), neighbors);
+        }
+    }
+
+    @Test
+    public void testRadius() throws Exception {
+        double[][] points = createPoints(3000, 17);
+        PointKdTree tree = new PointKdTree(points[0], points[1]);
+
+        Random random = new Random(19);
+        Neighbors neighbors = new Neighbors();
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double radius = random.nextDouble() * 80;
+
+            double[] sorted = bruteForce(points, x, y);
+            int count = 0;
+            while (count < sorted.length && sorted[count] <= radius * radius) {
+                count++;
+            }
+
+            tree.searchRadius(x, y, radius, neighbors);
+            assertDistances(points, x, y, Arrays.copyOf(sorted, count), neighbors);
+        }
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        // many identical points, and points on the splitting lines
+        double[] xs = new double[500];
+        double[] ys = new double[500];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i < 250 ? 10 : i % 5;
+            ys[i] = i < 250 ? 10 : i % 7;
+        }
+        PointKdTree tree = new PointKdTree(xs, ys);
+
+        Neighbors neighbors = new Neighbors();
+        tree.searchRadius(10, 10, 0, neighbors);
+        assertEquals(250, neighbors.size());
+
+        tree.search(10, 10, 300, Double.NaN, neighbors);
+        assertEquals(300, neighbors.size());
+        assertDistances(new double[][] { xs, ys }, 10, 10,
+                Arrays.copyOf(bruteForce(new double[][] { xs, ys }, 10, 10), 300), neighbors);
+
+        // a point is found exactly once
+        tree.searchRadius(2, 3, 1000, neighbors);
+        assertEquals(xs.length, neighbors.size());
+        boolean[] found = new boolean[xs.length];
+        for (int i = 0; i < neighbors.size(); i++) {
+            assertFalse(found[neighbors.getIndex(i)]);
+            found[neighbors.getIndex(i)] = true;
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        PointKdTree tree = new PointKdTree(new double[0], new double[0]);
+        Neighbors neighbors = new Neighbors();
+        tree.search(0, 0, 5, Double.NaN, neighbors);
+        assertEquals(0, neighbors.size());
+        assertEquals(0d, neighbors.getFarthestDistanceSq(), 0d);
+    }
+
+    private void assertDistances(double[][] points, double x, double y, double[] expected,
+            Neighbors neighbors) {
+        assertEquals(expected.length, neighbors.size());
+
+        double[] actual = new double[neighbors.size()];
+        double farthest = 0;
+        for (int i = 0; i < neighbors.size(); i++) {
+            // the index refers to the input arrays
+            int index = neighbors.getIndex(i);
+            double dx = points[0][index] - x;
+            double dy = points[1][index] - y;
+            assertEquals(dx * dx + dy * dy, neighbors.getDistanceSq(i), 0d);
+
+            actual[i] = neighbors.getDistanceSq(i);
+            farthest = Math.max(farthest, actual[i]);
+        }
+        Arrays.sort(actual);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 0d);
+        }
+        assertEquals(farthest, neighbors.getFarthestDistanceSq(), 0d);
+    }
+
+    // sorted squared distances from the location to all points
+    private double[] bruteForce(double[][] points, double x, double y) {
+        double[] distances = new double[points[0].length];
+        for (int i = 0; i < distances.length; i++) {
+            double dx = points[0][i] - x;
+            double dy = points[1][i] - y;
+            distances[i] = dx * dx + dy * dy;
+        }
+        Arrays.sort(distances);
+        return distances;
+    }
+
+    private double[][] createPoints(int size, long seed) {
+        // clustered, with some exact duplicates
+        Random random = new Random(seed);
+        double[][] points = new double[2][size];
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && i % 50 == 0) {
+                points[0][i] = points[0][i - 1];
+                points[1][i] = points[1][i - 1];
+            } else if (i % 3 == 0) {
+                points[0][i] = 300 + random.nextGaussian() * 30;
+                points[1][i] = 700 + random.nextGaussian() * 30;
+            } else {
+                points[0][i] = random.nextDouble() * 1000;
+                points[1][i] = random.nextDouble() * 1000;
+            }
+        }
+        return points;
+    }
+}
@@ -0,0 +1,232 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.process.spatialstatistics.enumeration.DistanceMethod;
+import org.geotools.process.spatialstatistics.pattern.NNIOperation;
+import org.geotools.process.spatialstatistics.pattern.NNIOperation.NearestNeighborResult;
+import org.geotools.process.spatialstatistics.pattern.PointPattern;
+import org.geotools.process.spatialstatistics.pattern.QuadratOperation;
+import org.geotools.process.spatialstatistics.pattern.QuadratOperation.QuadratResult;
+import org.geotools.process.spatialstatistics.pattern.RipleysKOperation;
+import org.geotools.process.spatialstatistics.pattern.RipleysKOperation.RipleysKResult;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class PointPatternTest extends SpatialStatisticsTestCase {
+
+    static final double SPACING = 10d;
+
+    static final int SIDE = 10;
+
+    @Test
+    public void testPairCounts() throws Exception {
+        PointPattern pattern = new PointPattern(createGrid());
+        assertEquals(SIDE * SIDE, pattern.size());
+
+        // ordered pairs: 180 rook neighbors, 162 diagonal neighbors, 160 pairs two cells apart
+        double[] distances = { 5, 10, 14.15, 20 };
+        long[] pairs = pattern.getPairCounts(distances);
+        assertEquals(0, pairs[0]);
+        assertEquals(360, pairs[1]);
+        assertEquals(360 + 324, pairs[2]);
+        assertEquals(360 + 324 + 320, pairs[3]);
+
+        // a distance on the boundary of a band belongs to the band
+        double[] bands = { 9.5, 10, 25, 45, 200 };
+        assertPairCounts(pattern, bands, pattern.getPairCounts(bands));
+    }
+
+    @Test
+    public void testRandomPairCounts() throws Exception {
+        // more than one worker
+        PointPattern pattern = new PointPattern(createRandom(5000, 3));
+        double[] distances = { 0.5, 1, 2.5, 5, 7.5 };
+        assertPairCounts(pattern, distances, pattern.getPairCounts(distances));
+    }
+
+    @Test
+    public void testRipleysK() throws Exception {
+        SimpleFeatureCollection grid = createGrid();
+        PointPattern pattern = new PointPattern(grid);
+
+        final int n = SIDE * SIDE;
+        final double area = 8100d;
+        RipleysKResult result = new RipleysKOperation().execute(grid, 4, 10, 5, 0d);
+
+        // the study area defaults to the convex hull of the grid
+        assertEquals(area, result.getStudyArea(), 1e-9);
+        assertEquals(n, result.getFeatureCount());
+
+        double[] distances = { 10, 15, 20, 25 };
+        long[] pairs = bruteForcePairs(pattern, distances);
+        for (int band = 0; band < distances.length; band++) {
+            double expected = Math.sqrt(area * pairs[band] / (Math.PI * n * (n - 1)));
+            assertEquals(distances[band], result.getExpectedK()[band], 1e-9);
+            assertEquals(expected, result.getObservedK()[band], 1e-9);
+            assertEquals(expected - distances[band], result.getDiffK()[band], 1e-9);
+        }
+
+        // the lattice is dispersed at the shortest distances
+        assertTrue(result.getDiffK()[0] < 0);
+    }
+
+    @Test
+    public void testNearestNeighbor() throws Exception {
+        SimpleFeatureCollection grid = createGrid();
+        NearestNeighborResult result = new NNIOperation().execute(grid);
+        assertEquals(SPACING, result.getObserved_Mean_Distance(), 1e-9);
+
+        SimpleFeatureCollection points = createRandom(3000, 11);
+        assertEquals(strTreeMeanDistance(points),
+                new NNIOperation().execute(points).getObserved_Mean_Distance(), 1e-6);
+    }
+
+    @Test
+    public void testNearestNeighbors() throws Exception {
+        PointPattern pattern = new PointPattern(createRandom(2500, 17));
+        final int k = 4;
+        int[] neighbors = pattern.getNearestNeighbors(k);
+        double[] nearest = pattern.getNearestNeighborDistances(DistanceMethod.Euclidean);
+
+        for (int i = 0; i < pattern.size(); i++) {
+            double[] sorted = new double[pattern.size() - 1];
+            int count = 0;
+            for (int j = 0; j < pattern.size(); j++) {
+                if (j != i) {
+                    sorted[count++] = pattern.getDistance(i, j, DistanceMethod.Euclidean);
+                }
+            }
+            Arrays.sort(sorted);
+
+            assertEquals(sorted[0], nearest[i], 0d);
+            for (int n = 0; n < k; n++) {
+                int neighbor = neighbors[i * k + n];
+                assertTrue(neighbor != i);
+                assertEquals(sorted[n], pattern.getDistance(i, neighbor, DistanceMethod.Euclidean),
+                        0d);
+            }
+        }
+    }
+
+    @Test
+    public void testQuadratEdges() throws Exception {
+        // the grid spans 0 - 90, the points of the right and upper edges fall in the last quadrats
+        SimpleFeatureCollection grid = createGrid();
+        PointPattern pattern = new PointPattern(grid);
+        int[] counts = pattern.getQuadratCounts(30, 3, 3);
+        int[] expected = { 9, 9, 12, 9, 9, 12, 12, 12, 16 };
+        assertEquals(expected.length, counts.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], counts[i]);
+        }
+
+        QuadratResult result = new QuadratOperation().execute(grid, Double.valueOf(30));
+        assertEquals(3, result.getColumns());
+        assertEquals(3, result.getRows());
+        assertEquals(9, result.getNumber_of_Quadrats());
+        assertEquals(SIDE * SIDE / 9d, result.getMean(), 1e-9);
+    }
+
+    private void assertPairCounts(PointPattern pattern, double[] distances, long[] pairs) {
+        long[] expected = bruteForcePairs(pattern, distances);
+        assertEquals(expected.length, pairs.length);
+        for (int band = 0; band < expected.length; band++) {
+            assertEquals(expected[band], pairs[band]);
+        }
+    }
+
+    private long[] bruteForcePairs(PointPattern pattern, double[] distances) {
+        long[] pairs = new long[distances.length];
+        for (int i = 0; i < pattern.size(); i++) {
+            for (int j = 0; j < pattern.size(); j++) {
+                if (i == j) {
+                    continue;
+                }
+                double dx = pattern.getX(i) - pattern.getX(j);
+                double dy = pattern.getY(i) - pattern.getY(j);
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                for (int band = 0; band < distances.length; band++) {
+                    if (distance <= distances[band]) {
+                        pairs[band]++;
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    // the nearest neighbour search of the original NNIOperation
+    private double strTreeMeanDistance(SimpleFeatureCollection features) {
+        PointPattern pattern = new PointPattern(features);
+        STRtree spatialIndex = new STRtree();
+        for (int i = 0; i < pattern.size(); i++) {
+            spatialIndex.insert(new Envelope(pattern.getCoordinate(i)), Integer.valueOf(i));
+        }
+
+        final ItemDistance itemDistance = new ItemDistance() {
+            @Override
+            public double distance(ItemBoundable item1, ItemBoundable item2) {
+                Integer s1 = (Integer) item1.getItem();
+                Integer s2 = (Integer) item2.getItem();
+                if (s1.equals(s2)) {
+                    return Double.MAX_VALUE;
+                }
+                return ((Envelope) item1.getBounds()).distance((Envelope) item2.getBounds());
+            }
+        };
+
+        double distanceSum = 0d;
+        for (int i = 0; i < pattern.size(); i++) {
+            Coordinate source = pattern.getCoordinate(i);
+            Integer nearest = (Integer) spatialIndex.nearestNeighbour(new Envelope(source),
+                    Integer.valueOf(i), itemDistance);
+            distanceSum += source.distance(pattern.getCoordinate(nearest.intValue()));
+        }
+        return distanceSum / pattern.size();
+    }
+
+    private SimpleFeatureCollection createGrid() throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType("grid", "geom:Point,id:Integer");
+        ListFeatureCollection features = new ListFeatureCollection(schema);
+
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                int id = row * SIDE + col;
+                builder.add(gf.createPoint(new Coordinate(col * SPACING, row * SPACING)));
+                builder.add(Integer.valueOf(id));
+                features.add(builder.buildFeature("grid." + id));
+            }
+        }
+        return features;
+    }
+
+    private SimpleFeatureCollection createRandom(int size, long seed) throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType("random", "geom:Point,id:Integer");
+        ListFeatureCollection features = new ListFeatureCollection(schema);
+
+        Random random = new Random(seed);
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        for (int i = 0; i < size; i++) {
+            builder.add(gf.createPoint(new Coordinate(random.nextDouble() * 100,
+                    random.nextDouble() * 100)));
+            builder.add(Integer.valueOf(i));
+            features.add(builder.buildFeature("random." + i));
+        }
+        return features;
+    }
+}
@@ -0,0 +1,170 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.process.spatialstatistics.operations.PointStatisticsOperation;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class PointStatisticsOperationTest extends SpatialStatisticsTestCase {
+
+    static final GeometryFactory gf = new GeometryFactory();
+
+    @Test
+    public void testMedian() throws Exception {
+        SimpleFeatureCollection polygons = createPolygons(new Envelope(0, 10, 0, 10),
+                new Envelope(20, 30, 0, 10), new Envelope(40, 50, 0, 10));
+
+        SimpleFeatureType schema = DataUtilities.createType("points", "geom:Point,val:Double");
+        ListFeatureCollection points = new ListFeatureCollection(schema);
+        double[] odd = { 5, 1, 9, 3, 7 };
+        for (int i = 0; i < odd.length; i++) {
+            points.add(createPoint(schema, i, 1 + i, 5, odd[i]));
+        }
+        double[] even = { 2, 8, 4, 6 };
+        for (int i = 0; i < even.length; i++) {
+            points.add(createPoint(schema, 10 + i, 21 + i, 5, even[i]));
+        }
+
+        PointStatisticsOperation operation = new PointStatisticsOperation();
+        Map<Object, SimpleFeature> result = toMap(operation.execute(polygons, "cnt",
+                "MED.val,MEAN.val", "med_val,mean_val", points));
+
+        assertEquals(5, result.get(0).getAttribute("cnt"));
+        assertEquals(5d, ((Number) result.get(0).getAttribute("med_val")).doubleValue(), 0d);
+        assertEquals(5d, ((Number) result.get(0).getAttribute("mean_val")).doubleValue(), 0d);
+
+        // between the two middle values
+        assertEquals(4, result.get(1).getAttribute("cnt"));
+        assertEquals(5d, ((Number) result.get(1).getAttribute("med_val")).doubleValue(), 0d);
+
+        // no point, no statistics
+        assertEquals(0, result.get(2).getAttribute("cnt"));
+        assertNull(result.get(2).getAttribute("med_val"));
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        // overlapping squares, more than one batch of the operation
+        final int rows = 32, columns = 35;
+        Envelope[] envelopes = new Envelope[rows * columns];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                envelopes[row * columns + col] = new Envelope(col * 10, col * 10 + 12, row * 10,
+                        row * 10 + 12);
+            }
+        }
+        SimpleFeatureCollection polygons = createPolygons(envelopes);
+
+        SimpleFeatureType schema = DataUtilities.createType("points", "geom:Point,val:Double");
+        List<SimpleFeature> pointList = new ArrayList<SimpleFeature>();
+        Random random = new Random(7);
+        for (int i = 0; i < 6000; i++) {
+            Double value = i % 13 == 0 ? null : Double.valueOf(random.nextDouble() * 100 - 20);
+            pointList.add(createPoint(schema, i, random.nextDouble() * 360,
+                    random.nextDouble() * 330, value));
+        }
+        ListFeatureCollection points = new ListFeatureCollection(schema, pointList);
+
+        PointStatisticsOperation operation = new PointStatisticsOperation();
+        Map<Object, SimpleFeature> result = toMap(operation.execute(polygons, "cnt",
+                "FIRST.val,LAST.val,SUM.val,MEAN.val,MIN.val,MAX.val,VAR.val,COUNT.val",
+                "fst,lst,sum,mean,min,max,var,count", points));
+        assertEquals(envelopes.length, result.size());
+
+        // the serial aggregation: every point in the polygon, in the order of the points
+        for (int i = 0; i < envelopes.length; i++) {
+            Geometry polygon = gf.toGeometry(envelopes[i]);
+            int cnt = 0, count = 0;
+            double sum = 0, sumOfSqrs = 0;
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            Double first = null, last = null;
+            for (SimpleFeature point : pointList) {
+                if (!polygon.intersects((Geometry) point.getDefaultGeometry())) {
+                    continue;
+                }
+
+                cnt++;
+                Double value = (Double) point.getAttribute("val");
+                if (value == null) {
+                    continue;
+                }
+                first = first == null ? value : first;
+                last = value;
+                count++;
+                sum += value;
+                sumOfSqrs += value * value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            SimpleFeature feature = result.get(Integer.valueOf(i));
+            assertEquals(cnt, feature.getAttribute("cnt"));
+            if (count == 0) {
+                continue;
+            }
+
+            assertEquals(first.doubleValue(), toDouble(feature, "fst"), 0d);
+            assertEquals(last.doubleValue(), toDouble(feature, "lst"), 0d);
+            assertEquals(sum, toDouble(feature, "sum"), 1e-9);
+            assertEquals(sum / count, toDouble(feature, "mean"), 1e-9);
+            assertEquals(min, toDouble(feature, "min"), 0d);
+            assertEquals(max, toDouble(feature, "max"), 0d);
+            assertEquals((sumOfSqrs - sum * sum / count) / count, toDouble(feature, "var"), 1e-6);
+            assertEquals(count, toDouble(feature, "count"), 0d);
+        }
+    }
+
+    private double toDouble(SimpleFeature feature, String field) {
+        return ((Number) feature.getAttribute(field)).doubleValue();
+    }
+
+    private SimpleFeature createPoint(SimpleFeatureType schema, int id, double x, double y,
+            Object value) {
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        builder.add(gf.createPoint(new Coordinate(x, y)));
+        builder.add(value);
+        return builder.buildFeature("points." + id);
+    }
+
+    private SimpleFeatureCollection createPolygons(Envelope... envelopes) throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType("polygons", "geom:Polygon,id:Integer");
+        ListFeatureCollection polygons = new ListFeatureCollection(schema);
+
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        for (int i = 0; i < envelopes.length; i++) {
+            builder.add(gf.toGeometry(envelopes[i]));
+            builder.add(Integer.valueOf(i));
+            polygons.add(builder.buildFeature("polygons." + i));
+        }
+        return polygons;
+    }
+
+    private Map<Object, SimpleFeature> toMap(SimpleFeatureCollection features) {
+        Map<Object, SimpleFeature> map = new HashMap<Object, SimpleFeature>();
+        SimpleFeatureIterator iter = features.features();
+        try {
+            while (iter.hasNext()) {
+                SimpleFeature feature = iter.next();
+                map.put(feature.getAttribute("id"), feature);
+            }
+        } finally {
+            iter.close();
+        }
+        return map;
+    }
+}
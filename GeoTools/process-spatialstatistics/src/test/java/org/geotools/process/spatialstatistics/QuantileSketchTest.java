@@ -0,0 +1,133 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.geotools.process.spatialstatistics.core.QuantileSketch;
+import org.geotools.process.spatialstatistics.core.StatisticsVisitor;
+import org.geotools.process.spatialstatistics.core.StatisticsVisitor.DoubleStrategy;
+import org.geotools.process.spatialstatistics.core.StatisticsVisitor.IntegerStrategy;
+import org.geotools.process.spatialstatistics.core.StatisticsVisitor.LongStrategy;
+import org.geotools.process.spatialstatistics.core.StatisticsVisitorResult;
+import org.junit.Test;
+
+public class QuantileSketchTest extends SpatialStatisticsTestCase {
+
+    static final double[] QUANTILES = { 0.0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1.0 };
+
+    @Test
+    public void testExactQuantiles() throws Exception {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.getMedian()));
+
+        for (int value = 101; value >= 1; value--) {
+            sketch.add(value);
+        }
+        sketch.add(Double.NaN);
+
+        assertTrue(sketch.isExact());
+        assertEquals(101, sketch.getCount());
+        assertEquals(51.0, sketch.getMedian(), 0d);
+        assertEquals(26.0, sketch.getQuantile(0.25), 0d);
+        assertEquals(1.0, sketch.getQuantile(0.0), 0d);
+        assertEquals(101.0, sketch.getQuantile(1.0), 0d);
+        assertEquals(1.5, sketch.getQuantile(0.005), 1e-12);
+    }
+
+    @Test
+    public void testRelativeAccuracy() throws Exception {
+        Random random = new Random(17);
+        double[] values = new double[100000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // skewed, both signs and zeros
+            values[i] = i % 50 == 0 ? 0.0 : Math.exp(random.nextGaussian() * 3)
+                    * (random.nextInt(4) == 0 ? -1 : 1);
+            sketch.add(values[i]);
+        }
+        assertFalse(sketch.isExact());
+
+        assertQuantiles(values, sketch);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        Random random = new Random(23);
+        double[] values = new double[50000];
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch[] parts = new QuantileSketch[4];
+        for (int k = 0; k < parts.length; k++) {
+            parts[k] = new QuantileSketch();
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 1000 - 100;
+            all.add(values[i]);
+            // uneven parts, one of them stays exact
+            parts[i % 100 == 0 ? 3 : i % 3].add(values[i]);
+        }
+        assertTrue(parts[3].isExact());
+
+        QuantileSketch merged = new QuantileSketch();
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+
+        assertEquals(all.getCount(), merged.getCount());
+        assertQuantiles(values, merged);
+        for (double quantile : QUANTILES) {
+            assertEquals(all.getQuantile(quantile), merged.getQuantile(quantile),
+                    Math.abs(all.getQuantile(quantile)) * 0.02);
+        }
+    }
+
+    @Test
+    public void testVisitorMedian() throws Exception {
+        StatisticsVisitor visitor = new StatisticsVisitor(new DoubleStrategy(true));
+        for (int value = 1; value <= 9; value++) {
+            visitor.visit((double) value);
+        }
+        visitor.visit(Double.NaN);
+
+        StatisticsVisitorResult result = visitor.getResult();
+        assertEquals(9, result.getCount());
+        assertEquals(5.0, result.getMedian(), 0d);
+
+        // the median is not computed by default
+        visitor = new StatisticsVisitor(new DoubleStrategy());
+        visitor.visit(1.0);
+        assertTrue(Double.isNaN(visitor.getResult().getMedian()));
+    }
+
+    @Test
+    public void testIntegerNaN() throws Exception {
+        // NaN is not counted as 0
+        StatisticsVisitor visitor = new StatisticsVisitor(new IntegerStrategy());
+        visitor.visit(3.0);
+        visitor.visit(Double.NaN);
+        visitor.visit(5.0);
+
+        StatisticsVisitorResult result = visitor.getResult();
+        assertEquals(2, result.getCount());
+        assertEquals(3.0, result.getMinimum(), 0d);
+
+        visitor = new StatisticsVisitor(new LongStrategy());
+        visitor.visit(Double.NaN);
+        visitor.visit(-2.0);
+        result = visitor.getResult();
+        assertEquals(1, result.getCount());
+        assertEquals(-2.0, result.getMaximum(), 0d);
+    }
+
+    private void assertQuantiles(double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for (double quantile : QUANTILES) {
+            double expected = sorted[(int) Math.floor(quantile * (sorted.length - 1))];
+            double actual = sketch.getQuantile(quantile);
+            assertEquals(expected, actual, Math.abs(expected) * sketch.getRelativeAccuracy()
+                    + 1e-12);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.geotools.process.spatialstatistics;
+
+import java.awt.image.Raster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.filter.text.ecql.ECQL;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.process.spatialstatistics.gridcoverage.RasterMathOperation;
+import org.junit.Test;
+
+public class RasterMathOperationTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testNestedExpression() throws Exception {
+        float[][] a = createMatrix(40, 30, 1);
+        float[][] b = createMatrix(40, 30, 7);
+
+        Map<String, GridCoverage2D> coverages = new LinkedHashMap<String, GridCoverage2D>();
+        coverages.put("b", createCoverage("b", b, 0));
+        coverages.put("a", createCoverage("a", a, 0));
+
+        // the scratch arrays of the nested operands must not overlap
+        GridCoverage2D output = new RasterMathOperation().execute(coverages, "a",
+                ECQL.toExpression("(a + b) * (a - b) + max(a * 2, b / 2)"));
+
+        Raster raster = output.getRenderedImage().getData();
+        assertEquals(a[0].length, raster.getWidth());
+        for (int row = 0; row < a.length; row++) {
+            for (int col = 0; col < a[row].length; col++) {
+                double va = a[row][col];
+                double vb = b[row][col];
+                double expected = (va + vb) * (va - vb) + Math.max(va * 2, vb / 2);
+                assertEquals(expected, raster.getSampleDouble(raster.getMinX() + col,
+                        raster.getMinY() + row, 0), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testAliasedVariables() throws Exception {
+        float[][] a = createMatrix(40, 30, 3);
+        float[][] b = createMatrix(40, 30, 5);
+
+        Map<String, GridCoverage2D> coverages = new LinkedHashMap<String, GridCoverage2D>();
+        coverages.put("a", createCoverage("a", a, 0));
+        coverages.put("b", createCoverage("b", b, 0));
+
+        // a and a_B1 are the same band, read once into a shared array
+        GridCoverage2D output = new RasterMathOperation().execute(coverages, "a",
+                ECQL.toExpression("a_B1 * a - b_B1"));
+
+        Raster raster = output.getRenderedImage().getData();
+        for (int row = 0; row < a.length; row++) {
+            for (int col = 0; col < a[row].length; col++) {
+                double expected = a[row][col] * a[row][col] - b[row][col];
+                assertEquals(expected, raster.getSampleDouble(raster.getMinX() + col,
+                        raster.getMinY() + row, 0), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testMisalignedCoverages() throws Exception {
+        Map<String, GridCoverage2D> coverages = new LinkedHashMap<String, GridCoverage2D>();
+        coverages.put("a", createCoverage("a", createMatrix(20, 20, 1), 0));
+        coverages.put("b", createCoverage("b", createMatrix(20, 20, 2), 0.5));
+
+        try {
+            new RasterMathOperation().execute(coverages, "a", ECQL.toExpression("a + b"));
+            fail("misaligned coverages must be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private float[][] createMatrix(int rows, int columns, int seed) {
+        float[][] matrix = new float[rows][columns];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                matrix[row][col] = (row * columns + col) % 17 * seed + 0.5f;
+            }
+        }
+        return matrix;
+    }
+
+    private GridCoverage2D createCoverage(String name, float[][] matrix, double offset) {
+        ReferencedEnvelope extent = new ReferencedEnvelope(offset, offset + matrix[0].length, 0,
+                matrix.length, null);
+        return new GridCoverageFactory().create(name, matrix, extent);
+    }
+}
@@ -0,0 +1,177 @@
+package org.geotools.process.spatialstatistics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.geotools.data.shapefile.shp.JTSUtilities;
+import org.geotools.data.shapefile.shp.ShapeType;
+import org.geotools.data.shapefile.shp.ShapefileWriter;
+import org.geotools.process.spatialstatistics.storage.ShapefileWriter2;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+public class ShapefileWriter2Test extends SpatialStatisticsTestCase {
+
+    static final GeometryFactory gf = new GeometryFactory();
+
+    @Test
+    public void testPolygons() throws Exception {
+        List<Geometry> geometries = new ArrayList<Geometry>();
+        Random random = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            // both orientations of shells and holes
+            Polygon polygon = createPolygon(random, i % 2 == 0, i % 3 == 0);
+            if (i % 5 == 0) {
+                Polygon other = createPolygon(random, i % 4 == 0, true);
+                geometries.add(gf.createMultiPolygon(new Polygon[] { polygon, other }));
+            } else {
+                geometries.add(polygon);
+            }
+        }
+
+        // one record larger than the pooled buffer
+        geometries.add(gf.createPoint(new Coordinate(500, 500)).buffer(100, 2000));
+        assertSameFiles(ShapeType.POLYGON, geometries);
+    }
+
+    @Test
+    public void testLines() throws Exception {
+        List<Geometry> geometries = new ArrayList<Geometry>();
+        Random random = new Random(12);
+        for (int i = 0; i < 3000; i++) {
+            LineString line = createLine(random, 2 + random.nextInt(20));
+            if (i % 4 == 0) {
+                LineString other = createLine(random, 2 + random.nextInt(5));
+                geometries.add(gf.createMultiLineString(new LineString[] { line, other }));
+            } else {
+                geometries.add(line);
+            }
+        }
+        assertSameFiles(ShapeType.ARC, geometries);
+    }
+
+    @Test
+    public void testPoints() throws Exception {
+        List<Geometry> points = new ArrayList<Geometry>();
+        List<Geometry> multiPoints = new ArrayList<Geometry>();
+        Random random = new Random(13);
+        for (int i = 0; i < 5000; i++) {
+            Point point = gf.createPoint(new Coordinate(random.nextDouble() * 1000,
+                    random.nextDouble() * 1000));
+            points.add(point);
+            if (i % 3 == 0) {
+                multiPoints.add(gf.createMultiPoint(new Point[] { point,
+                        gf.createPoint(new Coordinate(point.getX() + 1, point.getY() - 1)) }));
+            } else {
+                multiPoints.add(point);
+            }
+        }
+        assertSameFiles(ShapeType.POINT, points);
+        assertSameFiles(ShapeType.MULTIPOINT, multiPoints);
+    }
+
+    /**
+     * The records must be the same bytes as the converted geometries written by the GeoTools writer.
+     */
+    private void assertSameFiles(ShapeType shapeType, List<Geometry> geometries)
+            throws Exception {
+        File expectedShp = createTempFile(".shp");
+        File expectedShx = createTempFile(".shx");
+        ShapefileWriter writer = new ShapefileWriter(
+                new RandomAccessFile(expectedShp, "rw").getChannel(), new RandomAccessFile(
+                        expectedShx, "rw").getChannel());
+        writer.writeHeaders(new Envelope(), shapeType, 0, 100);
+
+        int length = 100;
+        Envelope bounds = new Envelope();
+        for (Geometry geometry : geometries) {
+            Geometry converted = JTSUtilities.convertToCollection(geometry, shapeType);
+            length += shapeType.getShapeHandler(gf).getLength(converted) + 8;
+            bounds.expandToInclude(converted.getEnvelopeInternal());
+            writer.writeGeometry(converted);
+        }
+        writer.writeHeaders(bounds, shapeType, geometries.size(), length);
+        writer.close();
+
+        File shp = createTempFile(".shp");
+        File shx = createTempFile(".shx");
+        ShapefileWriter2 encoder = new ShapefileWriter2(shapeType,
+                new FileOutputStream(shp).getChannel(), new FileOutputStream(shx).getChannel());
+        for (Geometry geometry : geometries) {
+            assertTrue(encoder.accepts(geometry));
+            encoder.write(geometry);
+        }
+        assertEquals(geometries.size(), encoder.getNumRecords());
+        encoder.close();
+
+        assertTrue(Arrays.equals(readBytes(expectedShp), readBytes(shp)));
+        assertTrue(Arrays.equals(readBytes(expectedShx), readBytes(shx)));
+    }
+
+    private Polygon createPolygon(Random random, boolean clockwise, boolean hole) {
+        double x = random.nextDouble() * 1000;
+        double y = random.nextDouble() * 1000;
+        double size = 5 + random.nextDouble() * 20;
+
+        LinearRing shell = createRing(x, y, size, clockwise);
+        LinearRing[] holes = null;
+        if (hole) {
+            holes = new LinearRing[] { createRing(x + size / 4, y + size / 4, size / 2,
+                    !clockwise) };
+        }
+        return gf.createPolygon(shell, holes);
+    }
+
+    private LinearRing createRing(double x, double y, double size, boolean clockwise) {
+        Coordinate[] coordinates = { new Coordinate(x, y), new Coordinate(x + size, y),
+                new Coordinate(x + size, y + size), new Coordinate(x, y + size),
+                new Coordinate(x, y) };
+        if (clockwise) {
+            List<Coordinate> list = Arrays.asList(coordinates);
+            Collections.reverse(list);
+        }
+        return gf.createLinearRing(coordinates);
+    }
+
+    private LineString createLine(Random random, int numPoints) {
+        Coordinate[] coordinates = new Coordinate[numPoints];
+        double x = random.nextDouble() * 1000;
+        double y = random.nextDouble() * 1000;
+        for (int i = 0; i < numPoints; i++) {
+            x += random.nextDouble() * 10 - 5;
+            y += random.nextDouble() * 10 - 5;
+            coordinates[i] = new Coordinate(x, y);
+        }
+        return gf.createLineString(coordinates);
+    }
+
+    private File createTempFile(String suffix) throws Exception {
+        File file = File.createTempFile("shp", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private byte[] readBytes(File file) throws Exception {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) input.length()];
+            input.readFully(bytes);
+            return bytes;
+        } finally {
+            input.close();
+        }
+    }
+}
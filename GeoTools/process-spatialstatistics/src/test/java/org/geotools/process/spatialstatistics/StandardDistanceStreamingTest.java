@@ -0,0 +1,120 @@
+package org.geotools.process.spatialstatistics;
+
+import java.util.Random;
+
+import org.geotools.process.spatialstatistics.distribution.StandardDeviationalEllipse;
+import org.geotools.process.spatialstatistics.distribution.StandardDistance;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+
+public class StandardDistanceStreamingTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testStandardDistance() throws Exception {
+        Coordinate[] coordinates = createEvents(2000, 11);
+        double[] weights = createWeights(coordinates.length, 13);
+
+        StandardDistance array = new StandardDistance(false);
+        StandardDistance streaming = new StandardDistance(true);
+        for (int i = 0; i < coordinates.length; i++) {
+            array.addValue(coordinates[i], weights[i]);
+            streaming.addValue(coordinates[i], weights[i]);
+        }
+
+        double expected = new StandardDistanceCopy(coordinates, weights).sd * 2.0;
+        assertEquals(expected, array.getStdDist(2.0), expected * 1e-9);
+        assertEquals(expected, streaming.getStdDist(2.0), expected * 1e-9);
+    }
+
+    @Test
+    public void testStandardDeviationalEllipse() throws Exception {
+        Coordinate[] coordinates = createEvents(2000, 17);
+        double[] weights = createWeights(coordinates.length, 19);
+
+        StandardDeviationalEllipse array = new StandardDeviationalEllipse(false);
+        StandardDeviationalEllipse streaming = new StandardDeviationalEllipse(true);
+        for (int i = 0; i < coordinates.length; i++) {
+            array.addValue(coordinates[i], weights[i]);
+            streaming.addValue(coordinates[i], weights[i]);
+        }
+
+        array.calculateSDE(2.0);
+        streaming.calculateSDE(2.0);
+
+        assertEquals(array.seX, streaming.seX, array.seX * 1e-9);
+        assertEquals(array.seY, streaming.seY, array.seY * 1e-9);
+        assertEquals(array.radianRotation2, streaming.radianRotation2, 1e-6);
+        assertEquals(array.getMeanCenter().getX(), streaming.getMeanCenter().getX(), 1e-6);
+        assertEquals(array.getMeanCenter().getY(), streaming.getMeanCenter().getY(), 1e-6);
+    }
+
+    @Test
+    public void testIdenticalEvents() throws Exception {
+        // a negligible first event and identical others: the streaming sums cancel below zero
+        StandardDistance streaming = new StandardDistance(true);
+        StandardDeviationalEllipse ellipse = new StandardDeviationalEllipse(true);
+        Coordinate first = new Coordinate(523456.789, 4123456.789);
+        streaming.addValue(first, 1e-13);
+        ellipse.addValue(first, 1e-13);
+        for (int i = 0; i < 500; i++) {
+            Coordinate coordinate = new Coordinate(first.x + 13.869242289183921, first.y);
+            double weight = 0.1 + (i % 10) * 0.1;
+            streaming.addValue(coordinate, weight);
+            ellipse.addValue(coordinate, weight);
+        }
+
+        double sd = streaming.getStdDist(1.0);
+        assertFalse(Double.isNaN(sd));
+        assertEquals(0.0, sd, 1e-5);
+
+        ellipse.calculateSDE(1.0);
+        assertFalse(Double.isNaN(ellipse.seX));
+        assertFalse(Double.isNaN(ellipse.seY));
+    }
+
+    private Coordinate[] createEvents(int size, long seed) {
+        // an elongated, rotated cloud of projected coordinates
+        Random random = new Random(seed);
+        Coordinate[] coordinates = new Coordinate[size];
+        for (int i = 0; i < size; i++) {
+            double u = random.nextGaussian() * 3000;
+            double v = random.nextGaussian() * 800;
+            coordinates[i] = new Coordinate(312345.6 + u * 0.8 - v * 0.6,
+                    4156789.1 + u * 0.6 + v * 0.8);
+        }
+        return coordinates;
+    }
+
+    private double[] createWeights(int size, long seed) {
+        Random random = new Random(seed);
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            weights[i] = 0.5 + random.nextDouble() * 4;
+        }
+        return weights;
+    }
+
+    // the two pass calculation of the original implementation
+    static final class StandardDistanceCopy {
+        final double sd;
+
+        StandardDistanceCopy(Coordinate[] coordinates, double[] weights) {
+            double weightSum = 0, sumX = 0, sumY = 0;
+            for (int i = 0; i < coordinates.length; i++) {
+                weightSum += weights[i];
+                sumX += coordinates[i].x * weights[i];
+                sumY += coordinates[i].y * weights[i];
+            }
+
+            double meanX = sumX / weightSum;
+            double meanY = sumY / weightSum;
+            double sigXYSum = 0;
+            for (int i = 0; i < coordinates.length; i++) {
+                double devX = coordinates[i].x - meanX;
+                double devY = coordinates[i].y - meanY;
+                sigXYSum += (devX * devX + devY * devY) * weights[i];
+            }
+            sd = Math.sqrt(sigXYSum / weightSum);
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package org.geotools.process.spatialstatistics;
 
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.process.spatialstatistics.enumeration.ThiessenAttributeMode;
+import org.geotools.process.spatialstatistics.operations.ThiessenPolygonOperation;
 import org.geotools.process.spatialstatistics.process.ThiessenPolygonProcess;
 import org.geotools.process.spatialstatistics.storage.ShapeExportOperation;
 import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author houzhiwei
@@ -24,4 +36,82 @@ public class ThiessenPolygon extends SpatialStatisticsTestCase {
         ShapeExportOperation shapeExportOperation = new ShapeExportOperation();
 
     }
+
+    @Test
+    public void testCellOfEachPoint() throws IOException {
+        SimpleFeatureSource source = dataStore.getFeatureSource("point");
+        SimpleFeatureCollection points = source.getFeatures();
+
+        SimpleFeatureCollection cells = ThiessenPolygonProcess.process(points,
+                ThiessenAttributeMode.All, null, null);
+        assertEquals(points.size(), cells.size());
+
+        // every cell contains the point it was written for
+        Map<Object, Geometry> pointMap = new HashMap<Object, Geometry>();
+        SimpleFeatureIterator iter = points.features();
+        try {
+            while (iter.hasNext()) {
+                SimpleFeature feature = iter.next();
+                pointMap.put(feature.getAttribute("id"), (Geometry) feature.getDefaultGeometry());
+            }
+        } finally {
+            iter.close();
+        }
+
+        iter = cells.features();
+        try {
+            while (iter.hasNext()) {
+                SimpleFeature feature = iter.next();
+                Geometry point = pointMap.get(feature.getAttribute("id"));
+                assertTrue(((Geometry) feature.getDefaultGeometry()).contains(point));
+            }
+        } finally {
+            iter.close();
+        }
+    }
+
+    @Test
+    public void testMergedPoints() throws Exception {
+        SimpleFeatureType schema = DataUtilities.createType("sites", "geom:Point,name:String");
+        ListFeatureCollection points = new ListFeatureCollection(schema);
+
+        GeometryFactory gf = new GeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        double[][] sites = { { 0, 0 }, { 10, 0 }, { 0, 10 }, { 10, 10 }, { 5, 5 }, { 5.01, 5.0 },
+                { 5, 5 } };
+        for (int i = 0; i < sites.length; i++) {
+            builder.add(gf.createPoint(new Coordinate(sites[i][0], sites[i][1])));
+            builder.add("site" + i);
+            points.add(builder.buildFeature("sites." + i));
+        }
+
+        ThiessenPolygonOperation operation = new ThiessenPolygonOperation();
+        operation.setAttributeMode(ThiessenAttributeMode.All);
+        operation.setProximalTolerance(0.1);
+        SimpleFeatureCollection cells = operation.execute(points);
+
+        // the merged and the duplicated points are written with the shared cell
+        assertEquals(sites.length, cells.size());
+
+        Map<String, Geometry> cellMap = new HashMap<String, Geometry>();
+        SimpleFeatureIterator iter = cells.features();
+        try {
+            while (iter.hasNext()) {
+                SimpleFeature feature = iter.next();
+                cellMap.put((String) feature.getAttribute("name"),
+                        (Geometry) feature.getDefaultGeometry());
+            }
+        } finally {
+            iter.close();
+        }
+
+        Geometry center = cellMap.get("site4");
+        assertTrue(center.equalsExact(cellMap.get("site5")));
+        assertTrue(center.equalsExact(cellMap.get("site6")));
+        assertFalse(center.equalsExact(cellMap.get("site0")));
+        for (int i = 0; i < sites.length; i++) {
+            Geometry cell = cellMap.get("site" + i);
+            assertTrue(cell.contains(gf.createPoint(new Coordinate(sites[i][0], sites[i][1]))));
+        }
+    }
 }
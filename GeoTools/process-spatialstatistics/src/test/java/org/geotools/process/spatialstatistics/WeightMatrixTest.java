@@ -0,0 +1,178 @@
+package org.geotools.process.spatialstatistics;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.process.spatialstatistics.core.AbstractWeightMatrix.SpatialWeightMatrixType;
+import org.geotools.process.spatialstatistics.core.SparseWeightMatrix;
+import org.geotools.process.spatialstatistics.core.WeightMatrix;
+import org.geotools.process.spatialstatistics.core.WeightMatrixBuilder;
+import org.geotools.process.spatialstatistics.enumeration.SpatialConcept;
+import org.geotools.process.spatialstatistics.enumeration.StandardizationMethod;
+import org.junit.Test;
+import org.opengis.filter.expression.Expression;
+
+public class WeightMatrixTest extends SpatialStatisticsTestCase {
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        File file = File.createTempFile("weights", ".swm");
+        try {
+            WeightMatrix source = createMatrix();
+            source.saveBinary(file);
+
+            WeightMatrix loaded = new WeightMatrix(SpatialWeightMatrixType.Contiguity);
+            assertTrue(loaded.load(file, StandardCharsets.UTF_8));
+            assertEquals(SpatialWeightMatrixType.Distance, loaded.getSpatialWeightMatrixType());
+            assertEquals("sample", loaded.getTypeName());
+            assertEquals("code", loaded.getUniqueField());
+            assertEquals(source.getFeatureCount(), loaded.getFeatureCount());
+
+            SparseWeightMatrix expected = source.getSparseMatrix();
+            SparseWeightMatrix actual = loaded.getSparseMatrix();
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.getNonZeroCount(), actual.getNonZeroCount());
+            for (int k = 0; k < expected.getNonZeroCount(); k++) {
+                assertEquals(expected.getColumn(k), actual.getColumn(k));
+                assertEquals(expected.getWeight(k), actual.getWeight(k), 0d);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testInvalidBinaryFile() throws Exception {
+        File file = File.createTempFile("weights", ".swm");
+        try {
+            createMatrix().saveBinary(file);
+            long length = file.length();
+
+            // header: magic, version, type, type name, unique field
+            final int idCountOffset = 12 + 4 + "sample".length() + 4 + "code".length();
+
+            // id count far beyond the file size
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(idCountOffset);
+                raf.writeInt(Integer.MAX_VALUE);
+            } finally {
+                raf.close();
+            }
+            assertFalse(new WeightMatrix(SpatialWeightMatrixType.Distance).load(file, null));
+
+            // negative id count
+            raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(idCountOffset);
+                raf.writeInt(-1);
+            } finally {
+                raf.close();
+            }
+            assertFalse(new WeightMatrix(SpatialWeightMatrixType.Distance).load(file, null));
+
+            // truncated neighbors
+            createMatrix().saveBinary(file);
+            raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(length - 12);
+            } finally {
+                raf.close();
+            }
+            assertFalse(new WeightMatrix(SpatialWeightMatrixType.Distance).load(file, null));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBuilderSavesWeights() throws Exception {
+        SimpleFeatureCollection features = dataStore.getFeatureSource("polygon").getFeatures();
+        Expression value = CommonFactoryFinder.getFilterFactory2(null).literal(1.0);
+
+        File file = File.createTempFile("weights", ".swm");
+        try {
+            WeightMatrixBuilder built = new WeightMatrixBuilder(
+                    SpatialConcept.ContiguityEdgesNodes, StandardizationMethod.Row);
+            built.setSpatialWeightsFile(file);
+            built.buildWeightMatrix(features, value, null);
+            assertTrue(WeightMatrix.isBinary(file));
+
+            WeightMatrixBuilder loaded = new WeightMatrixBuilder(SpatialConcept.WeightsFromFile,
+                    StandardizationMethod.Row);
+            loaded.setSpatialWeightsFile(file);
+            loaded.buildWeightMatrix(features, value, null);
+
+            final int size = built.getEvents().size();
+            assertEquals(size, loaded.getEvents().size());
+            int[] expectedColumns = new int[size];
+            double[] expectedWeights = new double[size];
+            int[] columns = new int[size];
+            double[] weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                int count = built.getNeighbors(i, expectedColumns, expectedWeights);
+                assertEquals(count, loaded.getNeighbors(i, columns, weights));
+                for (int k = 0; k < count; k++) {
+                    assertEquals(expectedColumns[k], columns[k]);
+                    assertEquals(expectedWeights[k], weights[k], 0d);
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testResolveWeightsFile() throws Exception {
+        String previous = System.getProperty(WeightMatrix.WEIGHTS_DIRECTORY);
+        File directory = File.createTempFile("weights", "");
+        directory.delete();
+        directory.mkdir();
+        try {
+            System.clearProperty(WeightMatrix.WEIGHTS_DIRECTORY);
+            try {
+                WeightMatrix.resolveWeightsFile("sample.swm");
+                fail("the weights directory is not configured");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+
+            System.setProperty(WeightMatrix.WEIGHTS_DIRECTORY, directory.getPath());
+            File root = directory.getCanonicalFile();
+            assertEquals(new File(root, "sample.swm"),
+                    WeightMatrix.resolveWeightsFile("sample.swm"));
+            assertEquals(new File(root, "sub/sample.swm"),
+                    WeightMatrix.resolveWeightsFile("sub/../sub/sample.swm"));
+
+            for (String name : new String[] { "../sample.swm", "sub/../../sample.swm", "." }) {
+                try {
+                    WeightMatrix.resolveWeightsFile(name);
+                    fail(name + " is outside of the weights directory");
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty(WeightMatrix.WEIGHTS_DIRECTORY);
+            } else {
+                System.setProperty(WeightMatrix.WEIGHTS_DIRECTORY, previous);
+            }
+            directory.delete();
+        }
+    }
+
+    private WeightMatrix createMatrix() {
+        WeightMatrix matrix = new WeightMatrix(SpatialWeightMatrixType.Distance);
+        matrix.setupVariables("sample", "code");
+        matrix.visit(Integer.valueOf(10), Integer.valueOf(20), Double.valueOf(1.5));
+        matrix.visit(Integer.valueOf(10), Integer.valueOf(30), Double.valueOf(2.5));
+        matrix.visit(Integer.valueOf(20), Integer.valueOf(10), Double.valueOf(1.5));
+        matrix.visit(Integer.valueOf(30), Integer.valueOf(10), Double.valueOf(2.5));
+        matrix.visit(Integer.valueOf(30), Integer.valueOf(40), Double.valueOf(4.0));
+        return matrix;
+    }
+}